@@ -8,13 +8,26 @@ import environment.Environment;
  * its two expressions, whether it be addition, subtraction, multiplication,
  * etc.  The type of mathematical combination is dependent on the BinOp's
  * String.
+ * 
+ * The String is looked up once, when the BinOp is created, and replaced by
+ * one of the integer codes below, so that evaluating the BinOp never compares
+ * Strings.  The Parser creates BinOps through the create method, which
+ * returns a subclass specialized to a single operator, such as AddNode, so
+ * that each eval method performs its operation directly.
  * @author hkunda
  * @date March 17, 2015
  *
  */
 public class BinOp extends Expression
 {
+    public static final int ADD = 0;
+    public static final int SUBTRACT = 1;
+    public static final int MULTIPLY = 2;
+    public static final int DIVIDE = 3;
+    public static final int MOD = 4;
+
     private String op;
+    private int code;
     private Expression left;
     private Expression right;
     
@@ -29,14 +42,71 @@ public class BinOp extends Expression
     public BinOp(String op, Expression left, Expression right)
     {
         this.op = op;
+        code = codeOf(op);
         this.left = left;
         this.right = right;
     }
     
+    /**
+     * Creates a BinOp with the specified operator and left and right
+     * expressions, as an instance of the subclass that performs only that
+     * operator.
+     * 
+     * @param op the operand relating the left and right expressions
+     * @param left the expression preceding the operand
+     * @param right the expression following the operand
+     * @return the specialized BinOp
+     */
+    public static BinOp create(String op, Expression left, Expression right)
+    {
+        switch (codeOf(op))
+        {
+            case ADD:
+                return new AddNode(op, left, right);
+            case SUBTRACT:
+                return new SubtractNode(op, left, right);
+            case MULTIPLY:
+                return new MultiplyNode(op, left, right);
+            case DIVIDE:
+                return new DivideNode(op, left, right);
+            default:
+                return new ModNode(op, left, right);
+        }
+    }
+    
+    /**
+     * Returns the code of the specified operator.  Any operator other than
+     * addition, subtraction, multiplication, and division takes the
+     * remainder.
+     * 
+     * @param op the operator
+     * @return ADD, SUBTRACT, MULTIPLY, DIVIDE, or MOD
+     */
+    public static int codeOf(String op)
+    {
+        if (op.equals("+"))
+        {
+            return ADD;
+        }
+        if (op.equals("-"))
+        {
+            return SUBTRACT;
+        }
+        if (op.equals("*"))
+        {
+            return MULTIPLY;
+        }
+        if (op.equals("/"))
+        {
+            return DIVIDE;
+        }
+        return MOD;
+    }
+    
     /**
      * Evaluates the BinOp object by first evaluating the left and right hand
      * Expressions stored by the BinOp.  These two values are then related
-     * based on what the value of op is; for example, if op.equals("+"), then
+     * based on what the value of op is; for example, if op is "+", then
      * the two values are added together.  If, instead, op is a division sign
      * "/", then the first value is divided by the second value.  In the case
      * of division, if the right hand Expression evaluates to 0, then an 
@@ -50,29 +120,186 @@ public class BinOp extends Expression
     {
         int leftSide = left.eval(env);
         int rightSide = right.eval(env);
-        if (op.equals("+"))
+        switch (code)
         {
-            return leftSide + rightSide;
+            case ADD:
+                return leftSide + rightSide;
+            case SUBTRACT:
+                return leftSide - rightSide;
+            case MULTIPLY:
+                return leftSide * rightSide;
+            case DIVIDE:
+                return divide(leftSide, rightSide);
+            default:
+                return leftSide % rightSide;
         }
-        else if (op.equals("-"))
+    }
+    
+    /**
+     * Divides one value by another.
+     * 
+     * @param leftSide the dividend
+     * @param rightSide the divisor
+     * @return the quotient
+     * @throws ArithmeticException if the divisor is 0
+     */
+    static int divide(int leftSide, int rightSide)
+    {
+        if (rightSide == 0)
         {
-            return leftSide - rightSide;
+            throw new ArithmeticException("ERROR: DIVIDE BY ZERO");
         }
-        else if (op.equals("*"))
+        return leftSide / rightSide;
+    }
+    
+    /**
+     * The AddNode class is a BinOp that adds its two Expressions.
+     */
+    private static final class AddNode extends BinOp
+    {
+        /**
+         * Creates a new instance of the AddNode class.
+         * 
+         * @param op the operator, "+"
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        AddNode(String op, Expression left, Expression right)
+        {
+            super(op, left, right);
+        }
+        
+        /**
+         * Returns the sum of the two Expressions.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return the sum
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) + super.right.eval(env);
+        }
+    }
+    
+    /**
+     * The SubtractNode class is a BinOp that subtracts its right
+     * Expression from its left Expression.
+     */
+    private static final class SubtractNode extends BinOp
+    {
+        /**
+         * Creates a new instance of the SubtractNode class.
+         * 
+         * @param op the operator, "-"
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        SubtractNode(String op, Expression left, Expression right)
+        {
+            super(op, left, right);
+        }
+        
+        /**
+         * Returns the difference of the two Expressions.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return the difference
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) - super.right.eval(env);
+        }
+    }
+    
+    /**
+     * The MultiplyNode class is a BinOp that multiplies its two
+     * Expressions.
+     */
+    private static final class MultiplyNode extends BinOp
+    {
+        /**
+         * Creates a new instance of the MultiplyNode class.
+         * 
+         * @param op the operator, "*"
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        MultiplyNode(String op, Expression left, Expression right)
+        {
+            super(op, left, right);
+        }
+        
+        /**
+         * Returns the product of the two Expressions.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return the product
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) * super.right.eval(env);
+        }
+    }
+    
+    /**
+     * The DivideNode class is a BinOp that divides its left Expression
+     * by its right Expression.
+     */
+    private static final class DivideNode extends BinOp
+    {
+        /**
+         * Creates a new instance of the DivideNode class.
+         * 
+         * @param op the operator, "/"
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        DivideNode(String op, Expression left, Expression right)
         {
-            return leftSide * rightSide;
+            super(op, left, right);
         }
-        else if (op.equals("/"))
+        
+        /**
+         * Returns the quotient of the two Expressions.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return the quotient
+         * @throws ArithmeticException if the right Expression is 0
+         */
+        public int eval(Environment env)
+        {
+            return divide(super.left.eval(env), super.right.eval(env));
+        }
+    }
+    
+    /**
+     * The ModNode class is a BinOp that takes the remainder after
+     * dividing its left Expression by its right Expression.
+     */
+    private static final class ModNode extends BinOp
+    {
+        /**
+         * Creates a new instance of the ModNode class.
+         * 
+         * @param op the operator
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        ModNode(String op, Expression left, Expression right)
         {
-            if (rightSide == 0)
-            {
-                throw new ArithmeticException("ERROR: DIVIDE BY ZERO");
-            }
-            return leftSide / rightSide;
+            super(op, left, right);
         }
-        else
+        
+        /**
+         * Returns the remainder after dividing the left Expression by
+         * the right Expression.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return the remainder
+         */
+        public int eval(Environment env)
         {
-            return leftSide % rightSide;
+            return super.left.eval(env) % super.right.eval(env);
         }
     }
 }
@@ -41,6 +41,17 @@ import ast.Number;
  */
 public class Parser
 {
+    private static final int[] PRECEDENCE = new int[128];
+    
+    static
+    {
+        PRECEDENCE['+'] = 1;
+        PRECEDENCE['-'] = 1;
+        PRECEDENCE['*'] = 2;
+        PRECEDENCE['/'] = 2;
+        PRECEDENCE['%'] = 2;
+    }
+    
     private Token currentToken;
     private Scanner scanner;
     private int currentIndex;
@@ -163,7 +174,7 @@ public class Parser
             String logicOp = currentToken.getLexeme();
             eat(currentToken);
             Expression right = parseExpr();
-            Condition condition = new Condition(logicOp, left, right);
+            Condition condition = Condition.create(logicOp, left, right);
             eat(new Token("THEN", TokenType.keyword));
             Statement statement = parseStatement();
             return new If(condition, statement);
@@ -175,7 +186,7 @@ public class Parser
             String logicOp = currentToken.getLexeme();
             eat(currentToken);
             Expression right = parseExpr();
-            Condition condition = new Condition(logicOp, left, right);
+            Condition condition = Condition.create(logicOp, left, right);
             eat(new Token("DO", TokenType.keyword));
             Statement statement = parseStatement();
             return new While(condition, statement);
@@ -251,7 +262,7 @@ public class Parser
         {
             eat(new Token("-", TokenType.mathOperand));
             Number zero = new Number(0);
-            BinOp op = new BinOp("-", zero, parseFactor());
+            BinOp op = BinOp.create("-", zero, parseFactor());
             return op;
         }
         else if (currentToken.getLexeme().equals("("))
@@ -271,50 +282,30 @@ public class Parser
     }
     
     /**
-     * Parses a term and returns its value.  A term is defined to be either
-     * a single factor or a factor either multiplied, divided by, or modded 
-     * with another factor.  Due to this definition, a term consists of 
-     * a variable number of factors linked via multiplication, division, or
-     * modulus.  
+     * Returns the precedence of the operator stored in the specified Token,
+     * or 0 if the Token does not hold a binary operator.  Every operator
+     * is a single character, so the lexeme's only character is looked up
+     * in the PRECEDENCE table.
      * 
-     * To begin, a single factor is parsed and its value is stored within an
-     * Expression object. As long as multiplication, division, or modulus 
-     * symbols are stored in the current Token, additional factors are
-     * layered within BinOp objects.  Once the Scanner runs out of 
-     * multiplication, division, or modulus signs, the final Expression is
-     * returned.
-     *  
-     * @return an Expression that represents the term
-     * @throws ScanErrorException if the Scanner encounters an error while
-     * scanning its input stream for the next Token
-     * @throws IllegalArgumentException if the eat method encounters an error
-     * while advancing the Parser's input stream
+     * @param token the Token whose precedence is returned
+     * @return the precedence of the Token's operator, or 0 if it is not an
+     * operator
      */
-    private Expression parseTerm() throws ScanErrorException, 
-                                                     IllegalArgumentException
+    private static int precedence(Token token)
     {
-        Expression exp = parseFactor();
-        String op = currentToken.getLexeme();
-        while (op.equals("*") || op.equals("/") || op.equals("%"))
+        String lexeme = token.getLexeme();
+        if (lexeme.length() != 1 || lexeme.charAt(0) >= PRECEDENCE.length)
         {
-            eat(currentToken);
-            exp = new BinOp(op, exp, parseFactor());
-            op = currentToken.getLexeme();
+            return 0;
         }
-        return exp;
+        return PRECEDENCE[lexeme.charAt(0)];
     }
     
     /**
      * Parses and returns an Expression.  An expression is defined
      * to be either a single term or a term either added to or subtracted
-     * from another term.  Due to this definition, an expression consists
-     * of a variable number of terms linked via addition or subtraction.
-     * 
-     * To begin, a single term is parsed and its value is stored within an
-     * Expression object. As long as addition or subtraction symbols are 
-     * stored in the current Token, additional terms are layered within 
-     * BinOp objects.  Once the Scanner runs out of addition or subtraction
-     * signs, the final Expression is returned.
+     * from another term, where a term is a variable number of factors linked
+     * via multiplication, division, or modulus.
      * 
      * @return an Expression that represents the scanned expression
      * @throws ScanErrorException if the Scanner encounters an error while
@@ -325,13 +316,38 @@ public class Parser
     private Expression parseExpr() throws ScanErrorException, 
                                                      IllegalArgumentException
     {  
-        Expression exp = parseTerm();
-        String op = currentToken.getLexeme();
-        while (op.equals("+") || op.equals("-"))
+        return parseExpr(1);
+    }
+    
+    /**
+     * Parses an Expression whose operators all bind at least as tightly as
+     * the given precedence, using precedence climbing.  A single factor is
+     * parsed first; as long as the current Token is an operator whose
+     * precedence is at least minPrecedence, the operator is eaten and its
+     * right operand is parsed with a minimum precedence one higher, which
+     * keeps operators of equal precedence left-associative.  The trees built
+     * are the same as those of the expr and term productions in the grammar,
+     * but one call handles every level of precedence.
+     * 
+     * @param minPrecedence the lowest precedence an operator may have to be
+     * consumed by this call
+     * @return an Expression that represents the scanned expression
+     * @throws ScanErrorException if the Scanner encounters an error while
+     * scanning its input stream for the next Token
+     * @throws IllegalArgumentException if the eat method encounters an error
+     * while advancing the Parser's input stream
+     */
+    private Expression parseExpr(int minPrecedence) throws ScanErrorException, 
+                                                     IllegalArgumentException
+    {
+        Expression exp = parseFactor();
+        int precedence = precedence(currentToken);
+        while (precedence >= minPrecedence)
         {
+            String op = currentToken.getLexeme();
             eat(currentToken);
-            exp = new BinOp(op, exp, parseTerm());
-            op = currentToken.getLexeme();
+            exp = BinOp.create(op, exp, parseExpr(precedence + 1));
+            precedence = precedence(currentToken);
         }
         return exp;
     }
@@ -0,0 +1,369 @@
+package arena;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import ast.*;
+import environment.Scope;
+
+/**
+ * The FlatBuilder class converts the AST produced by the Parser into a
+ * FlatProgram.  The Program is resolved first, so every variable is stored
+ * with the depth and slot it was resolved to.  Every name is added to the
+ * pool of names, and every resolved variable to the pool of variables, once
+ * however many times it appears.  The arrays are grown as nodes are added
+ * and trimmed to size at the end, so that a FlatProgram retains no spare
+ * capacity.
+ */
+public class FlatBuilder
+{
+    private byte[] kinds;
+    private int[] operands;
+    private int size;
+    private int[] lists;
+    private int listSize;
+    private HashMap<String, Integer> nameIndex;
+    private ArrayList<String> names;
+    private HashMap<Long, Integer> variableIndex;
+    private int[] variableNames;
+    private int[] variableSlots;
+    private int variableCount;
+
+    /**
+     * Creates a new instance of the FlatBuilder class.
+     */
+    public FlatBuilder()
+    {
+        kinds = new byte[64];
+        operands = new int[64];
+        lists = new int[64];
+        variableNames = new int[16];
+        variableSlots = new int[16];
+    }
+
+    /**
+     * Resolves the specified Program and converts it into a FlatProgram.  The
+     * Program's Statement is added first, followed by the Statement of every
+     * procedure.
+     *
+     * @param program the Program to be converted
+     * @return the FlatProgram holding the same AST
+     */
+    public FlatProgram build(Program program)
+    {
+        Scope globals = program.resolve();
+        size = 0;
+        listSize = 0;
+        variableCount = 0;
+        nameIndex = new HashMap<String, Integer>();
+        names = new ArrayList<String>();
+        variableIndex = new HashMap<Long, Integer>();
+        List<ProcedureDeclaration> procedures = program.getProcedures();
+        int count = procedures.size();
+        int[] bodies = new int[count];
+        int[] paramCounts = new int[count];
+        String[][] frameNames = new String[count][];
+        int[][] paramSlots = new int[count][];
+        int[] returnSlots = new int[count];
+
+        int statement = addStatement(program.getStatement());
+        for (int i = 0; i < count; i++)
+        {
+            ProcedureDeclaration dec = procedures.get(i);
+            bodies[i] = addStatement(dec.getStatement());
+            paramCounts[i] = dec.getParams().size();
+            frameNames[i] = dec.getFrameNames();
+            paramSlots[i] = dec.getParamSlots();
+            returnSlots[i] = dec.getReturnSlot();
+            name(dec.getName());
+        }
+        List<String> declared = program.getVariables();
+        int[] declaredNames = new int[declared.size()];
+        for (int i = 0; i < declaredNames.length; i++)
+        {
+            declaredNames[i] = name(declared.get(i));
+        }
+        int[] procedureOf = new int[names.size()];
+        Arrays.fill(procedureOf, -1);
+        for (int i = 0; i < count; i++)
+        {
+            procedureOf[name(procedures.get(i).getName())] = i;
+        }
+        return new FlatProgram(Arrays.copyOf(kinds, size),
+                Arrays.copyOf(operands, size), Arrays.copyOf(lists, listSize),
+                names.toArray(new String[names.size()]),
+                Arrays.copyOf(variableNames, variableCount),
+                Arrays.copyOf(variableSlots, variableCount), procedureOf,
+                bodies, paramCounts, frameNames, paramSlots, returnSlots,
+                globals.getGlobalNames(), declaredNames, statement);
+    }
+
+    /**
+     * Adds the specified Statement, and everything within it, as nodes in
+     * pre-order.
+     *
+     * @param statement the Statement to be added
+     * @return the index of the Statement's node
+     */
+    private int addStatement(Statement statement)
+    {
+        if (statement instanceof Block)
+        {
+            List<Statement> statements = ((Block) statement).getStatements();
+            int node = add(NodeKind.BLOCK, 0);
+            int list = reserveList(statements.size());
+            for (int i = 0; i < statements.size(); i++)
+            {
+                int child = addStatement(statements.get(i));
+                lists[list + 1 + i] = child;
+            }
+            operands[node] = list;
+            return node;
+        }
+        if (statement instanceof Assignment)
+        {
+            Assignment assignment = (Assignment) statement;
+            int node = add(NodeKind.ASSIGN, 0);
+            addVariable(assignment.getVariable(), assignment.getDepth(),
+                    assignment.getSlot());
+            addExpression(assignment.getExpression());
+            return node;
+        }
+        if (statement instanceof Writeln)
+        {
+            int node = add(NodeKind.WRITELN, 0);
+            addExpression(((Writeln) statement).getExpression());
+            return node;
+        }
+        Condition condition;
+        Statement body;
+        int node;
+        if (statement instanceof If)
+        {
+            condition = ((If) statement).getCondition();
+            body = ((If) statement).getStatement();
+            node = add(NodeKind.IF, 0);
+        }
+        else
+        {
+            condition = ((While) statement).getCondition();
+            body = ((While) statement).getStatement();
+            node = add(NodeKind.WHILE, 0);
+        }
+        addCondition(condition);
+        int child = addStatement(body);
+        operands[node] = child;
+        return node;
+    }
+
+    /**
+     * Adds the specified Condition as a comparison node, followed by both of
+     * its sides.
+     *
+     * @param condition the Condition to be added
+     * @return the index of the comparison's node
+     */
+    private int addCondition(Condition condition)
+    {
+        String op = condition.getOperator();
+        int kind;
+        if (op.equals("<>"))
+        {
+            kind = NodeKind.NE;
+        }
+        else if (op.equals("<"))
+        {
+            kind = NodeKind.LT;
+        }
+        else if (op.equals("<="))
+        {
+            kind = NodeKind.LE;
+        }
+        else if (op.equals(">"))
+        {
+            kind = NodeKind.GT;
+        }
+        else if (op.equals(">="))
+        {
+            kind = NodeKind.GE;
+        }
+        else
+        {
+            kind = NodeKind.EQ;
+        }
+        int node = add(kind, 0);
+        addExpression(condition.getLeft());
+        int right = addExpression(condition.getRight());
+        operands[node] = right;
+        return node;
+    }
+
+    /**
+     * Adds the specified Expression, and everything within it, as nodes in
+     * pre-order.
+     *
+     * @param exp the Expression to be added
+     * @return the index of the Expression's node
+     */
+    private int addExpression(Expression exp)
+    {
+        if (exp instanceof ast.Number)
+        {
+            return add(NodeKind.NUMBER, ((ast.Number) exp).getValue());
+        }
+        if (exp instanceof Variable)
+        {
+            Variable variable = (Variable) exp;
+            return addVariable(variable.getName(), variable.getDepth(),
+                    variable.getSlot());
+        }
+        if (exp instanceof ProcedureCall)
+        {
+            ProcedureCall call = (ProcedureCall) exp;
+            List<Expression> params = call.getParams();
+            int node = add(NodeKind.CALL, 0);
+            int list = reserveList(params.size() + 1);
+            lists[list + 1] = name(call.getName());
+            for (int i = 0; i < params.size(); i++)
+            {
+                int param = addExpression(params.get(i));
+                lists[list + 2 + i] = param;
+            }
+            operands[node] = list;
+            return node;
+        }
+        BinOp binOp = (BinOp) exp;
+        String op = binOp.getOperator();
+        int kind;
+        if (op.equals("+"))
+        {
+            kind = NodeKind.ADD;
+        }
+        else if (op.equals("-"))
+        {
+            kind = NodeKind.SUB;
+        }
+        else if (op.equals("*"))
+        {
+            kind = NodeKind.MUL;
+        }
+        else if (op.equals("/"))
+        {
+            kind = NodeKind.DIV;
+        }
+        else
+        {
+            kind = NodeKind.MOD;
+        }
+        int node = add(kind, 0);
+        addExpression(binOp.getLeft());
+        int right = addExpression(binOp.getRight());
+        operands[node] = right;
+        return node;
+    }
+
+    /**
+     * Adds a variable node whose kind records the depth to which the variable
+     * was resolved, and whose operand is its index within the pool of
+     * variables.
+     *
+     * @param name the name of the variable
+     * @param depth Scope.LOCAL, Scope.GLOBAL, or Scope.DYNAMIC
+     * @param slot the Frame slot of a local or global variable
+     * @return the index of the variable's node
+     */
+    private int addVariable(String name, int depth, int slot)
+    {
+        int kind;
+        if (depth == Scope.LOCAL)
+        {
+            kind = NodeKind.LOCAL;
+        }
+        else if (depth == Scope.GLOBAL)
+        {
+            kind = NodeKind.GLOBAL;
+        }
+        else
+        {
+            kind = NodeKind.DYNAMIC;
+            slot = -1;
+        }
+        int index = name(name);
+        Long key = ((long) index << 32) | (slot & 0xFFFFFFFFL);
+        Integer variable = variableIndex.get(key);
+        if (variable == null)
+        {
+            if (variableCount == variableNames.length)
+            {
+                variableNames = Arrays.copyOf(variableNames, variableCount * 2);
+                variableSlots = Arrays.copyOf(variableSlots, variableCount * 2);
+            }
+            variableNames[variableCount] = index;
+            variableSlots[variableCount] = slot;
+            variable = variableCount++;
+            variableIndex.put(key, variable);
+        }
+        return add(kind, variable);
+    }
+
+    /**
+     * Adds a node of the specified kind, growing the arrays if they are full.
+     * The operand of a node with a second child is set once that child has
+     * been added.
+     *
+     * @param kind the kind of the node
+     * @param operand the operand of the node
+     * @return the index of the node
+     */
+    private int add(int kind, int operand)
+    {
+        if (size == kinds.length)
+        {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            operands = Arrays.copyOf(operands, size * 2);
+        }
+        kinds[size] = (byte) kind;
+        operands[size] = operand;
+        return size++;
+    }
+
+    /**
+     * Reserves room for a list of the specified length, growing the array of
+     * lists if it is too small, and stores the length at its start.
+     *
+     * @param length the number of nodes within the list
+     * @return the index at which the list begins
+     */
+    private int reserveList(int length)
+    {
+        while (listSize + length + 1 > lists.length)
+        {
+            lists = Arrays.copyOf(lists, lists.length * 2);
+        }
+        int list = listSize;
+        lists[list] = length;
+        listSize += length + 1;
+        return list;
+    }
+
+    /**
+     * Returns the index of the specified name within the pool, adding it if
+     * it is not there yet.
+     *
+     * @param name a name within the Program
+     * @return the index of the name
+     */
+    private int name(String name)
+    {
+        Integer index = nameIndex.get(name);
+        if (index == null)
+        {
+            index = names.size();
+            nameIndex.put(name, index);
+            names.add(name);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,499 @@
+package arena;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import ast.ProcedureFrame;
+import ast.Program;
+import ast.Writeln;
+import parser.Emitter;
+
+/**
+ * The FlatCompiler class compiles a FlatProgram to MIPS code by walking its
+ * arrays directly, emitting the same code as the compile methods of the AST.
+ * The number of temporary registers each node needs, and whether it calls a
+ * procedure, are computed once for every node before any code is emitted.
+ * Because every node's children follow it, this is a single pass over the
+ * nodes from last to first, with no recursion.  Procedures are laid out and
+ * called through a ProcedureFrame, as Program.compile does.
+ */
+public class FlatCompiler
+{
+    private byte[] kinds;
+    private int[] operands;
+    private int[] lists;
+    private String[] names;
+    private int[] variableNames;
+    private int[] needs;
+    private boolean[] calls;
+
+    /**
+     * Compiles the FlatProgram to MIPS code: the header, then the Program's
+     * Statement, then the exit command, the code of each procedure, and the
+     * data section, which holds a word for every global variable.  Only the
+     * last declaration of each procedure name is compiled, since it
+     * replaces any earlier one before the Statement runs.
+     *
+     * @param program the FlatProgram to be compiled
+     * @param e the Emitter that is used to write to file
+     * @throws IllegalArgumentException if a call names a procedure that is
+     *         not declared, or passes the wrong number of parameters
+     */
+    public void compile(FlatProgram program, Emitter e)
+    {
+        kinds = program.getKinds();
+        operands = program.getOperands();
+        lists = program.getLists();
+        names = program.getNames();
+        variableNames = program.getVariableNames();
+        measure();
+        String[][] frameNames = program.getFrameNames();
+        int[] returnSlots = program.getReturnSlots();
+        ArrayList<Integer> compiled = new ArrayList<Integer>();
+        HashSet<String> seen = new HashSet<String>();
+        for (int i = 0; i < frameNames.length; i++)
+        {
+            String name = frameNames[i][returnSlots[i]];
+            if (seen.add(name))
+            {
+                int last = i;
+                for (int j = i + 1; j < frameNames.length; j++)
+                {
+                    if (frameNames[j][returnSlots[j]].equals(name))
+                    {
+                        last = j;
+                    }
+                }
+                compiled.add(last);
+                e.declareProcedure(name, program.getParamCounts()[last]);
+            }
+        }
+        Program.emitHeader(e);
+        compileStatement(program.getStatement(), e);
+        Program.emitExit(e);
+        Set<String> dynamicNames = new LinkedHashSet<String>();
+        for (int node = 0; node < kinds.length; node++)
+        {
+            if (kinds[node] == NodeKind.DYNAMIC)
+            {
+                dynamicNames.add(variableName(node));
+            }
+        }
+        for (int procedure : compiled)
+        {
+            compileProcedure(program, procedure, dynamicNames, e);
+        }
+        Program.emitData(e, Arrays.asList(program.getGlobalNames()));
+    }
+
+    /**
+     * Compiles the specified procedure under the label proc<name>.  Its
+     * Statement's nodes run from its body up to the next procedure's body,
+     * and are searched for calls and WRITELNs to lay out its ProcedureFrame.
+     *
+     * @param program the FlatProgram being compiled
+     * @param procedure the index of the procedure
+     * @param dynamicNames the names that some procedure reads or assigns
+     *        without declaring them
+     * @param e the Emitter that is used to write to file
+     */
+    private void compileProcedure(FlatProgram program, int procedure,
+            Set<String> dynamicNames, Emitter e)
+    {
+        int[] bodies = program.getBodies();
+        String[] frame = program.getFrameNames()[procedure];
+        String name = frame[program.getReturnSlots()[procedure]];
+        ArrayList<String> params = new ArrayList<String>();
+        for (int slot : program.getParamSlots()[procedure])
+        {
+            params.add(frame[slot]);
+        }
+        int body = bodies[procedure];
+        int end = procedure + 1 < bodies.length ? bodies[procedure + 1]
+                : kinds.length;
+        boolean leaf = true;
+        boolean prints = false;
+        for (int node = body; node < end; node++)
+        {
+            if (kinds[node] == NodeKind.CALL)
+            {
+                leaf = false;
+            }
+            else if (kinds[node] == NodeKind.WRITELN)
+            {
+                prints = true;
+            }
+        }
+        ProcedureFrame procedureFrame = new ProcedureFrame(name, params, leaf,
+                prints, dynamicNames);
+        procedureFrame.emitEntry(e, startsWith(body, name));
+        compileStatement(body, e);
+        procedureFrame.emitReturn(e);
+    }
+
+    /**
+     * Returns whether the first thing the Statement at the specified node
+     * does is set the specified return variable without reading it, in the
+     * same way as the Inliner's startsWith method.
+     *
+     * @param node the index of the Statement's node
+     * @param name the name of the return variable
+     * @return true if the return variable need not be set to 0 first;
+     *         otherwise, false
+     */
+    private boolean startsWith(int node, String name)
+    {
+        while (kinds[node] == NodeKind.BLOCK && lists[operands[node]] > 0)
+        {
+            node = lists[operands[node] + 1];
+        }
+        return kinds[node] == NodeKind.ASSIGN
+                && variableName(node + 1).equals(name)
+                && !reads(node + 2, name);
+    }
+
+    /**
+     * Returns whether the Expression at the specified node reads the
+     * specified variable.
+     *
+     * @param node the index of the Expression's node
+     * @param name the name of the variable
+     * @return true if the variable is read; otherwise, false
+     */
+    private boolean reads(int node, String name)
+    {
+        int kind = kinds[node];
+        if (kind == NodeKind.NUMBER)
+        {
+            return false;
+        }
+        if (kind < NodeKind.ADD)
+        {
+            return variableName(node).equals(name);
+        }
+        if (kind == NodeKind.CALL)
+        {
+            int list = operands[node];
+            for (int i = 0; i < lists[list] - 1; i++)
+            {
+                if (reads(lists[list + 2 + i], name))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return reads(node + 1, name) || reads(operands[node], name);
+    }
+
+    /**
+     * Computes the number of temporary registers needed to evaluate each
+     * Expression without spilling, and whether it calls a procedure, in the
+     * same way as the getRegisterNeed and containsCall methods of the AST.
+     */
+    private void measure()
+    {
+        needs = new int[kinds.length];
+        calls = new boolean[kinds.length];
+        for (int node = kinds.length - 1; node >= 0; node--)
+        {
+            int kind = kinds[node];
+            if (kind == NodeKind.CALL)
+            {
+                needs[node] = Emitter.TEMP_REGISTERS;
+                calls[node] = true;
+            }
+            else if (kind >= NodeKind.ADD && kind <= NodeKind.MOD)
+            {
+                int left = node + 1;
+                int right = operands[node];
+                if (getImmediate(node) != Integer.MIN_VALUE)
+                {
+                    needs[node] = needs[left];
+                }
+                else if (needs[left] == needs[right])
+                {
+                    needs[node] = needs[left] + 1;
+                }
+                else
+                {
+                    needs[node] = Math.max(needs[left], needs[right]);
+                }
+                calls[node] = calls[left] || calls[right];
+            }
+            else
+            {
+                needs[node] = 1;
+            }
+        }
+    }
+
+    /**
+     * Compiles the Statement at the specified node.
+     *
+     * @param node the index of the Statement's node
+     * @param e the Emitter that is used to write to file
+     */
+    private void compileStatement(int node, Emitter e)
+    {
+        switch (kinds[node])
+        {
+            case NodeKind.BLOCK:
+                int list = operands[node];
+                int end = list + lists[list];
+                for (int i = list + 1; i <= end; i++)
+                {
+                    compileStatement(lists[i], e);
+                }
+                break;
+            case NodeKind.ASSIGN:
+                compileTo(node + 2, 0, e);
+                String location = e.location(variableName(node + 1));
+                if (Emitter.isRegister(location))
+                {
+                    e.emit("move " + location + ", $t0");
+                }
+                else
+                {
+                    e.emit("sw $t0, " + location);
+                }
+                break;
+            case NodeKind.WRITELN:
+                compileTo(node + 1, 0, e);
+                Writeln.emitPrint(e);
+                break;
+            case NodeKind.IF:
+                String id = "IfStatement" + e.nextLabelID();
+                compileBranch(node + 1, id, e);
+                compileStatement(operands[node], e);
+                e.emit(id + ":");
+                break;
+            default:
+                int labelID = e.nextLabelID();
+                String loop = "WhileStatement" + labelID;
+                String exit = "endWhile" + labelID;
+                e.emit(loop + ":");
+                compileBranch(node + 1, exit, e);
+                compileStatement(operands[node], e);
+                e.emit("j " + loop);
+                e.emit(exit + ":");
+                break;
+        }
+    }
+
+    /**
+     * Compiles the comparison at the specified node to a branch to the
+     * target label that is taken when the comparison is false.
+     *
+     * @param node the index of the comparison's node
+     * @param targetLabel the label branched to when the comparison is false
+     * @param e the Emitter that is used to write to file
+     */
+    private void compileBranch(int node, String targetLabel, Emitter e)
+    {
+        String[] registers = compileOperands(node, 0, e);
+        String pair = registers[0] + ", " + registers[1] + ", " + targetLabel;
+        switch (kinds[node])
+        {
+            case NodeKind.EQ:
+                e.emit("bne " + pair);
+                break;
+            case NodeKind.NE:
+                e.emit("beq " + pair);
+                break;
+            case NodeKind.LT:
+                e.emit("bge " + pair);
+                break;
+            case NodeKind.LE:
+                e.emit("bgt " + pair);
+                break;
+            case NodeKind.GT:
+                e.emit("ble " + pair);
+                break;
+            default:
+                e.emit("blt " + pair);
+                break;
+        }
+    }
+
+    /**
+     * Compiles the Expression at the specified node so that its value is
+     * left in temporary register $t<reg>.
+     *
+     * @param node the index of the Expression's node
+     * @param reg the index of the temporary register that receives the value
+     * @param e the Emitter that is used to write to file
+     */
+    private void compileTo(int node, int reg, Emitter e)
+    {
+        String result = Emitter.temp(reg);
+        int kind = kinds[node];
+        if (kind == NodeKind.NUMBER)
+        {
+            e.emit("li " + result + ", " + operands[node]);
+            return;
+        }
+        if (kind == NodeKind.CALL)
+        {
+            compileCall(node, e);
+            e.emit("move " + result + ", $v0");
+            return;
+        }
+        if (kind < NodeKind.ADD)
+        {
+            String location = e.location(variableName(node));
+            if (Emitter.isRegister(location))
+            {
+                e.emit("move " + result + ", " + location);
+            }
+            else
+            {
+                e.emit("lw " + result + ", " + location);
+            }
+            return;
+        }
+        int immediate = getImmediate(node);
+        if (immediate != Integer.MIN_VALUE)
+        {
+            compileTo(node + 1, reg, e);
+            e.emit("addiu " + result + ", " + result + ", " + immediate);
+            return;
+        }
+        String[] registers = compileOperands(node, reg, e);
+        String pair = registers[0] + ", " + registers[1];
+        switch (kind)
+        {
+            case NodeKind.ADD:
+                e.emit("addu " + result + ", " + pair);
+                break;
+            case NodeKind.SUB:
+                e.emit("subu " + result + ", " + pair);
+                break;
+            case NodeKind.MUL:
+                e.emit("mult " + pair);
+                e.emit("mflo " + result + " # stores product");
+                break;
+            case NodeKind.DIV:
+                e.emit("div " + pair);
+                e.emit("mflo " + result + " # stores quotient");
+                break;
+            default:
+                e.emit("div " + pair);
+                e.emit("mfhi " + result + " # stores remainder");
+                break;
+        }
+    }
+
+    /**
+     * Compiles the call at the specified node, leaving the procedure's
+     * result in $v0, in the same way as the compile method of the
+     * ProcedureCall class.
+     *
+     * @param node the index of the call's node
+     * @param e the Emitter that is used to write to file
+     */
+    private void compileCall(int node, Emitter e)
+    {
+        int list = operands[node];
+        int count = lists[list] - 1;
+        String name = names[lists[list + 1]];
+        int lastCall = -1;
+        for (int i = 0; i < count; i++)
+        {
+            if (calls[lists[list + 2 + i]])
+            {
+                lastCall = i;
+            }
+        }
+        ProcedureFrame.emitArgumentArea(e, name, count, lastCall);
+        for (int i = 0; i < count; i++)
+        {
+            compileTo(lists[list + 2 + i], 0, e);
+            ProcedureFrame.emitArgument(e, i, count, lastCall);
+        }
+        ProcedureFrame.emitCall(e, name, count, lastCall);
+    }
+
+    /**
+     * Compiles both operands of the operator or comparison at the specified
+     * node into registers, choosing which to evaluate first and whether to
+     * spill in the same way as the compileOperands method of the Expression
+     * class.
+     *
+     * @param node the index of the operator's node
+     * @param reg the index of the lowest temporary register that may be used
+     * @param e the Emitter that is used to write to file
+     * @return the registers holding the left and right values, in that order
+     */
+    private String[] compileOperands(int node, int reg, Emitter e)
+    {
+        int left = node + 1;
+        int right = operands[node];
+        boolean leftFirst = calls[left] || calls[right]
+                || needs[left] >= needs[right];
+        int firstNode = leftFirst ? left : right;
+        int secondNode = leftFirst ? right : left;
+        String firstReg;
+        String secondReg;
+        compileTo(firstNode, reg, e);
+        if (needs[secondNode] < Emitter.TEMP_REGISTERS - reg)
+        {
+            compileTo(secondNode, reg + 1, e);
+            firstReg = Emitter.temp(reg);
+            secondReg = Emitter.temp(reg + 1);
+        }
+        else
+        {
+            e.emitPush(Emitter.temp(reg));
+            compileTo(secondNode, reg, e);
+            e.emitPop("$v1");
+            firstReg = "$v1";
+            secondReg = Emitter.temp(reg);
+        }
+        if (leftFirst)
+        {
+            return new String[] {firstReg, secondReg};
+        }
+        return new String[] {secondReg, firstReg};
+    }
+
+    /**
+     * Returns the constant to be added by an addiu instruction if the
+     * operator at the specified node adds or subtracts a number that fits
+     * within 16 bits.
+     *
+     * @param node the index of the operator's node
+     * @return the constant to be added, or Integer.MIN_VALUE if the operator
+     *         cannot be compiled to an addiu
+     */
+    private int getImmediate(int node)
+    {
+        int kind = kinds[node];
+        int right = operands[node];
+        if (kinds[right] != NodeKind.NUMBER
+                || (kind != NodeKind.ADD && kind != NodeKind.SUB))
+        {
+            return Integer.MIN_VALUE;
+        }
+        int value = kind == NodeKind.SUB ? -operands[right] : operands[right];
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE)
+        {
+            return Integer.MIN_VALUE;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the name of the variable at the specified node.
+     *
+     * @param node the index of the variable's node
+     * @return the name of the variable
+     */
+    private String variableName(int node)
+    {
+        return names[variableNames[operands[node]]];
+    }
+}
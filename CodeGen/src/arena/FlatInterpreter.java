@@ -0,0 +1,255 @@
+package arena;
+
+import java.io.PrintStream;
+
+import environment.Environment;
+import environment.Frame;
+
+/**
+ * The FlatInterpreter class executes a FlatProgram by walking its arrays
+ * directly, in the same way as the exec and eval methods of the AST walk
+ * its nodes.  Each node is dispatched on its kind with a switch statement
+ * instead of a virtual call, and operators and comparisons are chosen by
+ * their kinds instead of by comparing Strings.  Variables are stored within
+ * Frames, exactly as they are when a resolved Program is executed, so
+ * dynamically scoped names are found in the same way.
+ *
+ * The FlatInterpreter produces the same output and throws the same
+ * exceptions as executing the Program's AST directly.
+ */
+public class FlatInterpreter
+{
+    private PrintStream out;
+    private byte[] kinds;
+    private int[] operands;
+    private int[] lists;
+    private String[] names;
+    private int[] variableNames;
+    private int[] variableSlots;
+    private int[] procedureOf;
+    private int[] bodies;
+    private int[] paramCounts;
+    private String[][] frameNames;
+    private int[][] paramSlots;
+    private int[] returnSlots;
+
+    /**
+     * Creates a new instance of the FlatInterpreter class that prints to
+     * stdout.
+     */
+    public FlatInterpreter()
+    {
+        this(System.out);
+    }
+
+    /**
+     * Creates a new instance of the FlatInterpreter class that prints to the
+     * specified stream.
+     *
+     * @param out the stream to which WRITELN output is printed
+     */
+    public FlatInterpreter(PrintStream out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Executes the Statement of the specified FlatProgram within a new root
+     * Frame.
+     *
+     * @param program the FlatProgram to be executed
+     */
+    public void run(FlatProgram program)
+    {
+        kinds = program.getKinds();
+        operands = program.getOperands();
+        lists = program.getLists();
+        names = program.getNames();
+        variableNames = program.getVariableNames();
+        variableSlots = program.getVariableSlots();
+        procedureOf = program.getProcedureOf();
+        bodies = program.getBodies();
+        paramCounts = program.getParamCounts();
+        frameNames = program.getFrameNames();
+        paramSlots = program.getParamSlots();
+        returnSlots = program.getReturnSlots();
+        exec(program.getStatement(), new Frame(program.getGlobalNames()));
+    }
+
+    /**
+     * Executes the Statement at the specified node.
+     *
+     * @param node the index of the Statement's node
+     * @param env the Environment in which the Statement is executed
+     */
+    private void exec(int node, Environment env)
+    {
+        switch (kinds[node])
+        {
+            case NodeKind.BLOCK:
+                int list = operands[node];
+                int end = list + lists[list];
+                for (int i = list + 1; i <= end; i++)
+                {
+                    exec(lists[i], env);
+                }
+                break;
+            case NodeKind.ASSIGN:
+                assign(node + 1, env, eval(node + 2, env));
+                break;
+            case NodeKind.WRITELN:
+                out.println(eval(node + 1, env));
+                break;
+            case NodeKind.IF:
+                if (test(node + 1, env))
+                {
+                    exec(operands[node], env);
+                }
+                break;
+            default:
+                while (test(node + 1, env))
+                {
+                    exec(operands[node], env);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Stores the specified value within the variable at the specified node,
+     * in the same way as an Assignment.
+     *
+     * @param node the index of the variable's node
+     * @param env the Environment in which the Assignment is executed
+     * @param value the value to be stored
+     */
+    private void assign(int node, Environment env, int value)
+    {
+        int variable = operands[node];
+        switch (kinds[node])
+        {
+            case NodeKind.LOCAL:
+                ((Frame) env).setLocal(variableSlots[variable], value);
+                break;
+            case NodeKind.GLOBAL:
+                ((Frame) env).setGlobal(variableSlots[variable], value);
+                break;
+            default:
+                env.setVariable(names[variableNames[variable]], value);
+                break;
+        }
+    }
+
+    /**
+     * Evaluates the comparison at the specified node, left side first.
+     *
+     * @param node the index of the comparison's node
+     * @param env the Environment in which the comparison is evaluated
+     * @return true if the comparison holds; otherwise, false
+     */
+    private boolean test(int node, Environment env)
+    {
+        int left = eval(node + 1, env);
+        int right = eval(operands[node], env);
+        switch (kinds[node])
+        {
+            case NodeKind.EQ:
+                return left == right;
+            case NodeKind.NE:
+                return left != right;
+            case NodeKind.LT:
+                return left < right;
+            case NodeKind.LE:
+                return left <= right;
+            case NodeKind.GT:
+                return left > right;
+            default:
+                return left >= right;
+        }
+    }
+
+    /**
+     * Evaluates the Expression at the specified node.
+     *
+     * @param node the index of the Expression's node
+     * @param env the Environment in which the Expression is evaluated
+     * @return the value of the Expression
+     */
+    private int eval(int node, Environment env)
+    {
+        int operand = operands[node];
+        switch (kinds[node])
+        {
+            case NodeKind.NUMBER:
+                return operand;
+            case NodeKind.LOCAL:
+                return ((Frame) env).getLocal(variableSlots[operand]);
+            case NodeKind.GLOBAL:
+                return ((Frame) env).getGlobal(variableSlots[operand]);
+            case NodeKind.DYNAMIC:
+                return env.getVariable(names[variableNames[operand]]);
+            case NodeKind.ADD:
+                return eval(node + 1, env) + eval(operand, env);
+            case NodeKind.SUB:
+                return eval(node + 1, env) - eval(operand, env);
+            case NodeKind.MUL:
+                return eval(node + 1, env) * eval(operand, env);
+            case NodeKind.DIV:
+                int dividend = eval(node + 1, env);
+                int divisor = eval(operand, env);
+                if (divisor == 0)
+                {
+                    throw new ArithmeticException("ERROR: DIVIDE BY ZERO");
+                }
+                return dividend / divisor;
+            case NodeKind.MOD:
+                return eval(node + 1, env) % eval(operand, env);
+            default:
+                return call(operand, env);
+        }
+    }
+
+    /**
+     * Evaluates a procedure call, given the list holding the name of the
+     * procedure and its parameters.  The procedure is found and its
+     * parameter count checked before the parameters are evaluated, as the
+     * ProcedureCall's eval method does, and its Statement is then executed
+     * within a new Frame that hangs off of the caller's.
+     *
+     * @param list the index of the call's list
+     * @param env the Environment in which the procedure is invoked
+     * @return the value of the procedure's return variable
+     * @throws IllegalArgumentException if no procedure has the call's name,
+     *         or if it takes a different number of parameters
+     */
+    private int call(int list, Environment env)
+    {
+        int name = lists[list + 1];
+        int procedure = procedureOf[name];
+        if (procedure < 0)
+        {
+            throw new IllegalArgumentException("Procedure " + names[name]
+                    + "has not been declared.");
+        }
+        int count = lists[list] - 1;
+        if (paramCounts[procedure] != count)
+        {
+            throw new IllegalArgumentException("Invalid Number of parameters"
+                    + "when calling Method " + names[name]);
+        }
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            values[i] = eval(lists[list + 2 + i], env);
+        }
+        Frame frame = new Frame((Frame) env, frameNames[procedure]);
+        int[] slots = paramSlots[procedure];
+        for (int i = 0; i < count; i++)
+        {
+            frame.setLocal(slots[i], values[i]);
+        }
+        frame.setLocal(returnSlots[procedure], 0);
+        exec(bodies[procedure], frame);
+        return frame.getLocal(returnSlots[procedure]);
+    }
+}
@@ -0,0 +1,253 @@
+package arena;
+
+/**
+ * The FlatProgram class holds the AST of a Program encoded within a few
+ * primitive arrays rather than as a graph of node objects.  Each node is an
+ * index into two parallel arrays: its kind, as defined by the NodeKind
+ * class, and its operand.  Nodes are laid out in pre-order, so every node's
+ * first child directly follows it and only its second child, if any, needs
+ * to be stored.  The Statements of a Block and the parameters of a
+ * procedure call are stored within a single array of lists, each of which
+ * is its length followed by its entries.
+ *
+ * Every name is stored once within a pool of names, and every variable that
+ * has been resolved to a particular slot is stored once within a pool of
+ * variables, which holds the index of its name and its slot; nodes refer to
+ * both by index.  The procedures are described by a few more arrays, indexed
+ * by the order in which they were declared, which also hold the Frame
+ * layout chosen for each by the resolution pass.
+ */
+public class FlatProgram
+{
+    private byte[] kinds;
+    private int[] operands;
+    private int[] lists;
+    private String[] names;
+    private int[] variableNames;
+    private int[] variableSlots;
+    private int[] procedureOf;
+    private int[] bodies;
+    private int[] paramCounts;
+    private String[][] frameNames;
+    private int[][] paramSlots;
+    private int[] returnSlots;
+    private String[] globalNames;
+    private int[] declared;
+    private int statement;
+
+    /**
+     * Creates a new instance of the FlatProgram class.
+     *
+     * @param kinds the kind of each node
+     * @param operands the operand of each node
+     * @param lists the lists of Statements and parameters, each preceded by
+     *        its length
+     * @param names the pool of names
+     * @param variableNames the name of each variable within the pool of
+     *        variables, as an index into the pool of names
+     * @param variableSlots the Frame slot of each variable within the pool
+     *        of variables, or -1 if it is looked up by name
+     * @param procedureOf for each name, the index of the procedure declared
+     *        with that name, or -1 if there is none
+     * @param bodies the node at which each procedure's Statement begins
+     * @param paramCounts the number of parameters of each procedure
+     * @param frameNames the names of each procedure's local variables, in
+     *        slot order
+     * @param paramSlots the local slot of each parameter of each procedure
+     * @param returnSlots the local slot of each procedure's return variable
+     * @param globalNames the name of each global slot
+     * @param declared the names declared with VAR, as indices into the pool
+     *        of names
+     * @param statement the node at which the Program's Statement begins
+     */
+    public FlatProgram(byte[] kinds, int[] operands, int[] lists,
+            String[] names, int[] variableNames, int[] variableSlots,
+            int[] procedureOf, int[] bodies, int[] paramCounts,
+            String[][] frameNames, int[][] paramSlots, int[] returnSlots,
+            String[] globalNames, int[] declared, int statement)
+    {
+        this.kinds = kinds;
+        this.operands = operands;
+        this.lists = lists;
+        this.names = names;
+        this.variableNames = variableNames;
+        this.variableSlots = variableSlots;
+        this.procedureOf = procedureOf;
+        this.bodies = bodies;
+        this.paramCounts = paramCounts;
+        this.frameNames = frameNames;
+        this.paramSlots = paramSlots;
+        this.returnSlots = returnSlots;
+        this.globalNames = globalNames;
+        this.declared = declared;
+        this.statement = statement;
+    }
+
+    /**
+     * Returns the kind of each node.
+     *
+     * @return the kinds of the nodes
+     */
+    public byte[] getKinds()
+    {
+        return kinds;
+    }
+
+    /**
+     * Returns the operand of each node.
+     *
+     * @return the operands of the nodes
+     */
+    public int[] getOperands()
+    {
+        return operands;
+    }
+
+    /**
+     * Returns the lists of Statements and parameters, each preceded by its
+     * length.
+     *
+     * @return the array of lists
+     */
+    public int[] getLists()
+    {
+        return lists;
+    }
+
+    /**
+     * Returns the pool of names.
+     *
+     * @return every name within the Program
+     */
+    public String[] getNames()
+    {
+        return names;
+    }
+
+    /**
+     * Returns the name of each variable within the pool of variables.
+     *
+     * @return the index of each variable's name
+     */
+    public int[] getVariableNames()
+    {
+        return variableNames;
+    }
+
+    /**
+     * Returns the Frame slot of each variable within the pool of variables.
+     *
+     * @return the slot of each variable, or -1 for one looked up by name
+     */
+    public int[] getVariableSlots()
+    {
+        return variableSlots;
+    }
+
+    /**
+     * Returns the index of the procedure declared with each name.
+     *
+     * @return for each name, a procedure index or -1
+     */
+    public int[] getProcedureOf()
+    {
+        return procedureOf;
+    }
+
+    /**
+     * Returns the node at which each procedure's Statement begins.
+     *
+     * @return the body of each procedure
+     */
+    public int[] getBodies()
+    {
+        return bodies;
+    }
+
+    /**
+     * Returns the number of parameters of each procedure.
+     *
+     * @return the parameter count of each procedure
+     */
+    public int[] getParamCounts()
+    {
+        return paramCounts;
+    }
+
+    /**
+     * Returns the names of each procedure's local variables, in slot order.
+     *
+     * @return the Frame layout of each procedure
+     */
+    public String[][] getFrameNames()
+    {
+        return frameNames;
+    }
+
+    /**
+     * Returns the local slot of each parameter of each procedure.
+     *
+     * @return the parameter slots of each procedure
+     */
+    public int[][] getParamSlots()
+    {
+        return paramSlots;
+    }
+
+    /**
+     * Returns the local slot of each procedure's return variable.
+     *
+     * @return the return slot of each procedure
+     */
+    public int[] getReturnSlots()
+    {
+        return returnSlots;
+    }
+
+    /**
+     * Returns the name of each global slot.
+     *
+     * @return the global variable names
+     */
+    public String[] getGlobalNames()
+    {
+        return globalNames;
+    }
+
+    /**
+     * Returns the names declared with VAR at the beginning of the Program.
+     *
+     * @return the declared variables, as indices into the pool of names
+     */
+    public int[] getDeclared()
+    {
+        return declared;
+    }
+
+    /**
+     * Returns the node at which the Program's Statement begins.
+     *
+     * @return the index of the Program's Statement
+     */
+    public int getStatement()
+    {
+        return statement;
+    }
+
+    /**
+     * Returns a listing of the nodes, one per line, each preceded by its
+     * index and followed by its operand.
+     *
+     * @return a String containing the listing
+     */
+    public String toString()
+    {
+        StringBuilder listing = new StringBuilder();
+        for (int i = 0; i < kinds.length; i++)
+        {
+            listing.append(i).append('\t').append(NodeKind.name(kinds[i]))
+                    .append(' ').append(operands[i]).append('\n');
+        }
+        return listing.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package arena;
+
+/**
+ * The NodeKind class defines the kinds of node stored within a FlatProgram.
+ * Every node has a kind and a single int operand, whose meaning depends on
+ * the kind as described below.  Nodes are laid out in pre-order, so a node
+ * that has children is always followed directly by its first child; the
+ * operand refers to its second child, if it has one.  A node refers to
+ * another node by its index, and to a list of nodes by the index at which
+ * the list begins within the FlatProgram's array of lists.  A variable's
+ * kind records the depth to which it was resolved, and its operand refers
+ * to its name and slot within the FlatProgram's pool of variables.
+ */
+public final class NodeKind
+{
+    /** a number whose value is the operand */
+    public static final int NUMBER = 0;
+    /** a variable stored within a local slot */
+    public static final int LOCAL = 1;
+    /** a variable stored within a global slot */
+    public static final int GLOBAL = 2;
+    /** a variable that may be shadowed by a caller and so is looked up by
+     *  name */
+    public static final int DYNAMIC = 3;
+    /** adds the right operand, given by the operand, to the left operand,
+     *  which is the first child; the other operators are the same */
+    public static final int ADD = 4;
+    public static final int SUB = 5;
+    public static final int MUL = 6;
+    public static final int DIV = 7;
+    public static final int MOD = 8;
+    /** a call to a procedure; the operand is a list holding the name of the
+     *  procedure followed by the parameters */
+    public static final int CALL = 9;
+    /** compares the right side, given by the operand, with the left side,
+     *  which is the first child; the other comparisons are the same */
+    public static final int EQ = 10;
+    public static final int NE = 11;
+    public static final int LT = 12;
+    public static final int LE = 13;
+    public static final int GT = 14;
+    public static final int GE = 15;
+    /** assigns to the variable that is its first child the value of the
+     *  Expression that directly follows that variable */
+    public static final int ASSIGN = 16;
+    /** prints the value of its first child on its own line */
+    public static final int WRITELN = 17;
+    /** executes the list of Statements given by the operand */
+    public static final int BLOCK = 18;
+    /** executes the operand if the comparison that is its first child is
+     *  true */
+    public static final int IF = 19;
+    /** executes the operand for as long as the comparison that is its first
+     *  child is true */
+    public static final int WHILE = 20;
+
+    private static final String[] NAMES = {"NUMBER", "LOCAL", "GLOBAL",
+        "DYNAMIC", "ADD", "SUB", "MUL", "DIV", "MOD", "CALL", "EQ", "NE", "LT",
+        "LE", "GT", "GE", "ASSIGN", "WRITELN", "BLOCK", "IF", "WHILE"};
+
+    /**
+     * Prevents the NodeKind class from being instantiated.
+     */
+    private NodeKind()
+    {
+    }
+
+    /**
+     * Returns the name of the specified kind.
+     *
+     * @param kind the kind of a node
+     * @return the name of the kind
+     */
+    public static String name(int kind)
+    {
+        return NAMES[kind];
+    }
+}
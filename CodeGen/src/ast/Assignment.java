@@ -2,6 +2,9 @@ package ast;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Frame;
+import environment.Scope;
+import environment.SlotCache;
 
 /**
  * The Assignment class encapsulates a String object and an Expression object.
@@ -16,6 +19,9 @@ public class Assignment extends Statement
 {
     private String var;
     private Expression exp;
+    private int depth;
+    private int slot;
+    private SlotCache cache;
     
     /**
      * Creates a new instance of the Assignment object that stores a variable
@@ -29,36 +35,150 @@ public class Assignment extends Statement
     {
         this.var = var;
         this.exp = exp;
+        depth = Scope.UNRESOLVED;
     }
     
     /**
      * Executes the assignment statement by associating the integer value
      * stored by the Expression and the variable name stored by the 
      * Assignment object.  This association is created in the form of a
-     * key, pair entry in the Environment object's variableTable.
+     * key, pair entry in the Environment object's variableTable, or, if the
+     * Assignment has been resolved, as a write to the variable's Frame slot.
      * 
      * @param env env the Environment object that stores known variables 
      */
     public void exec(Environment env)
     {
-        int value = exp.eval(env);
-        env.setVariable(var, value);
+        assign(env, exp.eval(env));
     }
     
     /**
-     * Compiles the Assignment statement to MIPS code.  The variable name is associated
-     * with the value of the expression using the sw command.  The $t0 register is pushed
-     * onto the stack in the event that it's needed to compute the value of the 
-     * expression.
+     * Stores the specified value in the assigned variable, either in its
+     * Frame slot or in the Environment's variableTable.  An unresolved or
+     * dynamically scoped variable within a Frame is written through a
+     * SlotCache, as described for the Variable class.
+     * 
+     * @param env the Environment object that stores known variables
+     * @param value the value of the Assignment's Expression
+     */
+    void assign(Environment env, int value)
+    {
+        if (depth == Scope.LOCAL)
+        {
+            ((Frame) env).setLocal(slot, value);
+        }
+        else if (depth == Scope.GLOBAL)
+        {
+            ((Frame) env).setGlobal(slot, value);
+        }
+        else if (!(env instanceof Frame))
+        {
+            env.setVariable(var, value);
+        }
+        else
+        {
+            if (cache == null)
+            {
+                cache = new SlotCache(var);
+            }
+            cache.set(env, value);
+        }
+    }
+    
+    /**
+     * Compiles the Assignment statement to MIPS code.  The expression is evaluated into
+     * the register $t0, and the variable name is then associated with that value using
+     * the sw command.
      * 
      * @param e the Emitter that is used to write to file
      */
     public void compile(Emitter e)
     {
-    	e.emit("la $t0, var" + var);
-    	e.emitPush("$t0");
-    	exp.compile(e);
-    	e.emitPop("$t0");
-    	e.emit("sw $v0, ($t0)");
+    	exp.compileTo(e, 0);
+    	emitStore(e);
+    }
+    
+    /**
+     * Emits the command that stores the value held in $t0 in the assigned
+     * variable: a sw to its word, or a move if the variable is held in a
+     * register by the procedure being compiled.
+     * 
+     * @param e the Emitter that is used to write to file
+     */
+    void emitStore(Emitter e)
+    {
+    	String location = e.location(var);
+    	if (Emitter.isRegister(location))
+    	{
+    		e.emit("move " + location + ", $t0");
+    	}
+    	else
+    	{
+    		e.emit("sw $t0, " + location);
+    	}
+    }
+    
+    /**
+     * Resolves the assigned variable to the depth and slot at which it is
+     * stored, and then resolves the variables within the Expression.
+     * 
+     * @param scope the Scope in which the Assignment is executed
+     */
+    public void resolve(Scope scope)
+    {
+        resolveVariable(scope);
+        exp.resolve(scope);
+    }
+    
+    /**
+     * Resolves the assigned variable alone to the depth and slot at which it
+     * is stored.
+     * 
+     * @param scope the Scope in which the Assignment is executed
+     */
+    void resolveVariable(Scope scope)
+    {
+        depth = scope.depthOf(var);
+        slot = scope.slotOf(var, depth);
+    }
+    
+    /**
+     * Returns the name of the assigned variable.
+     * 
+     * @return the variable name
+     */
+    public String getVariable()
+    {
+        return var;
+    }
+    
+    /**
+     * Returns the Expression whose value is assigned.
+     * 
+     * @return the assigned Expression
+     */
+    public Expression getExpression()
+    {
+        return exp;
+    }
+    
+    /**
+     * Returns the depth to which the assigned variable was resolved.
+     * 
+     * @return Scope.LOCAL, Scope.GLOBAL, Scope.DYNAMIC, or Scope.UNRESOLVED
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+    
+    /**
+     * Returns the Frame slot to which the assigned variable was resolved.
+     * 
+     * @return the index of the variable within its Frame
+     */
+    public int getSlot()
+    {
+        return slot;
     }
 }
@@ -0,0 +1,478 @@
+package ast;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The AstSerializer class converts a Program to a compact binary form and
+ * back.  The binary form begins with a magic number and a table of every
+ * String within the Program, each stored once as its length and UTF-8
+ * bytes.  The declared variables, the procedures, and the Program's
+ * Statement follow, with every node written in pre-order as a one-byte tag
+ * followed by its operands.  Every count, String reference and number is
+ * written as a varint, seven bits to a byte, so small values take a single
+ * byte; numbers are zigzag-encoded first so that small negative values do
+ * too.
+ *
+ * Reading a Program back creates new nodes, exactly as parsing its source
+ * would have, so the Program may be resolved and executed as usual.
+ */
+public class AstSerializer
+{
+    private static final int MAGIC = 0x50415331;
+
+    private static final int BLOCK = 0;
+    private static final int ASSIGN = 1;
+    private static final int WRITELN = 2;
+    private static final int IF = 3;
+    private static final int WHILE = 4;
+    private static final int NUMBER = 5;
+    private static final int VARIABLE = 6;
+    private static final int BINOP = 7;
+    private static final int CALL = 8;
+
+    private byte[] bytes;
+    private int size;
+    private HashMap<String, Integer> stringIndex;
+    private ArrayList<String> strings;
+
+    /**
+     * Converts the specified Program to its binary form.
+     *
+     * @param program the Program to be written
+     * @return the bytes of the binary form
+     */
+    public byte[] write(Program program)
+    {
+        bytes = new byte[256];
+        size = 0;
+        stringIndex = new HashMap<String, Integer>();
+        strings = new ArrayList<String>();
+        writeStrings(program.getVariables());
+        writeVarint(program.getProcedures().size());
+        for (ProcedureDeclaration dec : program.getProcedures())
+        {
+            writeString(dec.getName());
+            writeStrings(dec.getParams());
+            writeStatement(dec.getStatement());
+        }
+        writeStatement(program.getStatement());
+        byte[] body = Arrays.copyOf(bytes, size);
+
+        bytes = new byte[256];
+        size = 0;
+        writeInt(MAGIC);
+        writeVarint(strings.size());
+        for (String s : strings)
+        {
+            byte[] utf = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf.length);
+            writeBytes(utf);
+        }
+        writeBytes(body);
+        return Arrays.copyOf(bytes, size);
+    }
+
+    /**
+     * Writes the specified Statement and everything within it.
+     *
+     * @param statement the Statement to be written
+     */
+    private void writeStatement(Statement statement)
+    {
+        if (statement instanceof Block)
+        {
+            List<Statement> statements = ((Block) statement).getStatements();
+            writeVarint(BLOCK);
+            writeVarint(statements.size());
+            for (Statement s : statements)
+            {
+                writeStatement(s);
+            }
+        }
+        else if (statement instanceof Assignment)
+        {
+            writeVarint(ASSIGN);
+            writeString(((Assignment) statement).getVariable());
+            writeExpression(((Assignment) statement).getExpression());
+        }
+        else if (statement instanceof Writeln)
+        {
+            writeVarint(WRITELN);
+            writeExpression(((Writeln) statement).getExpression());
+        }
+        else if (statement instanceof If)
+        {
+            writeVarint(IF);
+            writeCondition(((If) statement).getCondition());
+            writeStatement(((If) statement).getStatement());
+        }
+        else
+        {
+            writeVarint(WHILE);
+            writeCondition(((While) statement).getCondition());
+            writeStatement(((While) statement).getStatement());
+        }
+    }
+
+    /**
+     * Writes the operator and both sides of the specified Condition.
+     *
+     * @param condition the Condition to be written
+     */
+    private void writeCondition(Condition condition)
+    {
+        writeString(condition.getOperator());
+        writeExpression(condition.getLeft());
+        writeExpression(condition.getRight());
+    }
+
+    /**
+     * Writes the specified Expression and everything within it.
+     *
+     * @param exp the Expression to be written
+     */
+    private void writeExpression(Expression exp)
+    {
+        if (exp instanceof Number)
+        {
+            int value = ((Number) exp).getValue();
+            writeVarint(NUMBER);
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+        else if (exp instanceof Variable)
+        {
+            writeVarint(VARIABLE);
+            writeString(((Variable) exp).getName());
+        }
+        else if (exp instanceof BinOp)
+        {
+            BinOp binOp = (BinOp) exp;
+            writeVarint(BINOP);
+            writeString(binOp.getOperator());
+            writeExpression(binOp.getLeft());
+            writeExpression(binOp.getRight());
+        }
+        else
+        {
+            ProcedureCall call = (ProcedureCall) exp;
+            writeVarint(CALL);
+            writeString(call.getName());
+            writeVarint(call.getParams().size());
+            for (Expression param : call.getParams())
+            {
+                writeExpression(param);
+            }
+        }
+    }
+
+    /**
+     * Writes the number of Strings in the specified List, followed by a
+     * reference to each.
+     *
+     * @param list the Strings to be written
+     */
+    private void writeStrings(List<String> list)
+    {
+        writeVarint(list.size());
+        for (String s : list)
+        {
+            writeString(s);
+        }
+    }
+
+    /**
+     * Writes a reference to the specified String, adding it to the table of
+     * Strings if it is not there yet.
+     *
+     * @param s the String to be written
+     */
+    private void writeString(String s)
+    {
+        Integer index = stringIndex.get(s);
+        if (index == null)
+        {
+            index = strings.size();
+            stringIndex.put(s, index);
+            strings.add(s);
+        }
+        writeVarint(index);
+    }
+
+    /**
+     * Writes the specified value seven bits at a time, lowest bits first,
+     * setting the high bit of every byte but the last.
+     *
+     * @param value the value to be written, treated as unsigned
+     */
+    private void writeVarint(int value)
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    /**
+     * Writes the specified value as four bytes, highest bits first.
+     *
+     * @param value the value to be written
+     */
+    private void writeInt(int value)
+    {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    /**
+     * Writes the specified bytes.
+     *
+     * @param data the bytes to be written
+     */
+    private void writeBytes(byte[] data)
+    {
+        while (size + data.length > bytes.length)
+        {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        System.arraycopy(data, 0, bytes, size, data.length);
+        size += data.length;
+    }
+
+    /**
+     * Writes the low eight bits of the specified value, growing the buffer if
+     * it is full.
+     *
+     * @param value the byte to be written
+     */
+    private void writeByte(int value)
+    {
+        if (size == bytes.length)
+        {
+            bytes = Arrays.copyOf(bytes, size * 2);
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    /**
+     * Reads a Program from its binary form.
+     *
+     * @param data the bytes of the binary form
+     * @return a new Program holding the same AST as the one written
+     * @throws IllegalArgumentException if the bytes are not a Program
+     *         written by the write method
+     */
+    public Program read(byte[] data)
+    {
+        bytes = data;
+        size = 0;
+        if (data.length < 4 || readInt() != MAGIC)
+        {
+            throw new IllegalArgumentException("Not a serialized Program");
+        }
+        int count = readVarint();
+        strings = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            int length = readVarint();
+            if (length < 0 || length > bytes.length - size)
+            {
+                throw new IllegalArgumentException("Truncated serialized "
+                        + "Program");
+            }
+            strings.add(new String(bytes, size, length, StandardCharsets.UTF_8));
+            size += length;
+        }
+        List<String> variables = readStrings();
+        count = readVarint();
+        ArrayList<ProcedureDeclaration> procedures =
+                new ArrayList<ProcedureDeclaration>(count);
+        for (int i = 0; i < count; i++)
+        {
+            String name = readString();
+            List<String> params = readStrings();
+            procedures.add(new ProcedureDeclaration(readStatement(), name,
+                    params));
+        }
+        Program program = new Program(variables, procedures, readStatement());
+        if (size != bytes.length)
+        {
+            throw new IllegalArgumentException("Trailing bytes after "
+                    + "serialized Program");
+        }
+        return program;
+    }
+
+    /**
+     * Reads a Statement and everything within it.
+     *
+     * @return the Statement that was read
+     */
+    private Statement readStatement()
+    {
+        int tag = readVarint();
+        if (tag == BLOCK)
+        {
+            int count = readVarint();
+            ArrayList<Statement> statements = new ArrayList<Statement>();
+            for (int i = 0; i < count; i++)
+            {
+                statements.add(readStatement());
+            }
+            return new Block(statements);
+        }
+        if (tag == ASSIGN)
+        {
+            String var = readString();
+            return new Assignment(var, readExpression());
+        }
+        if (tag == WRITELN)
+        {
+            return new Writeln(readExpression());
+        }
+        if (tag == IF)
+        {
+            Condition condition = readCondition();
+            return new If(condition, readStatement());
+        }
+        if (tag == WHILE)
+        {
+            Condition condition = readCondition();
+            return new While(condition, readStatement());
+        }
+        throw new IllegalArgumentException("Unknown Statement tag " + tag);
+    }
+
+    /**
+     * Reads the operator and both sides of a Condition.
+     *
+     * @return the Condition that was read
+     */
+    private Condition readCondition()
+    {
+        String op = readString();
+        Expression left = readExpression();
+        return Condition.create(op, left, readExpression());
+    }
+
+    /**
+     * Reads an Expression and everything within it.
+     *
+     * @return the Expression that was read
+     */
+    private Expression readExpression()
+    {
+        int tag = readVarint();
+        if (tag == NUMBER)
+        {
+            int value = readVarint();
+            return new Number((value >>> 1) ^ -(value & 1));
+        }
+        if (tag == VARIABLE)
+        {
+            return new Variable(readString());
+        }
+        if (tag == BINOP)
+        {
+            String op = readString();
+            Expression left = readExpression();
+            return BinOp.create(op, left, readExpression());
+        }
+        if (tag == CALL)
+        {
+            String name = readString();
+            int count = readVarint();
+            ArrayList<Expression> params = new ArrayList<Expression>();
+            for (int i = 0; i < count; i++)
+            {
+                params.add(readExpression());
+            }
+            return new ProcedureCall(name, params);
+        }
+        throw new IllegalArgumentException("Unknown Expression tag " + tag);
+    }
+
+    /**
+     * Reads a count followed by that many String references.
+     *
+     * @return a List containing the Strings that were read
+     */
+    private List<String> readStrings()
+    {
+        int count = readVarint();
+        ArrayList<String> list = new ArrayList<String>();
+        for (int i = 0; i < count; i++)
+        {
+            list.add(readString());
+        }
+        return list;
+    }
+
+    /**
+     * Reads a reference to a String within the table of Strings.
+     *
+     * @return the String that was referred to
+     */
+    private String readString()
+    {
+        int index = readVarint();
+        if (index < 0 || index >= strings.size())
+        {
+            throw new IllegalArgumentException("Unknown String " + index);
+        }
+        return strings.get(index);
+    }
+
+    /**
+     * Reads a value written by the writeVarint method.
+     *
+     * @return the value that was read
+     */
+    private int readVarint()
+    {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do
+        {
+            b = readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0 && shift < 35);
+        return value;
+    }
+
+    /**
+     * Reads a value written by the writeInt method.
+     *
+     * @return the value that was read
+     */
+    private int readInt()
+    {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8)
+                | readByte();
+    }
+
+    /**
+     * Reads the next byte.
+     *
+     * @return the byte, from 0 to 255
+     * @throws IllegalArgumentException if every byte has been read
+     */
+    private int readByte()
+    {
+        if (size == bytes.length)
+        {
+            throw new IllegalArgumentException("Truncated serialized Program");
+        }
+        return bytes[size++] & 0xFF;
+    }
+}
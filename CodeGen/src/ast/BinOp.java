@@ -2,6 +2,7 @@ package ast;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Scope;
 
 /**
  * The BinOp class encapsulates a String and two Expression objects.  Using 
@@ -9,15 +10,30 @@ import environment.Environment;
  * its two expressions, whether it be addition, subtraction, multiplication,
  * etc.  The type of mathematical combination is dependent on the BinOp's
  * String.
+ * 
+ * The String is looked up once, when the BinOp is created, and replaced by
+ * one of the integer codes below, so that evaluating the BinOp never compares
+ * Strings.  The Parser creates BinOps through the create method, which
+ * returns a subclass specialized to a single operator, such as AddNode, so
+ * that each eval method performs its operation directly.
  * @author hkunda
  * @date March 17, 2015
  *
  */
 public class BinOp extends Expression
 {
+    public static final int ADD = 0;
+    public static final int SUBTRACT = 1;
+    public static final int MULTIPLY = 2;
+    public static final int DIVIDE = 3;
+    public static final int MOD = 4;
+
     private String op;
+    private int code;
     private Expression left;
     private Expression right;
+    private int registerNeed;
+    private boolean call;
     
     /**
      * Creates a new instance of the BinOp class with the specified
@@ -30,14 +46,71 @@ public class BinOp extends Expression
     public BinOp(String op, Expression left, Expression right)
     {
         this.op = op;
+        code = codeOf(op);
         this.left = left;
         this.right = right;
     }
     
+    /**
+     * Creates a BinOp with the specified operator and left and right
+     * expressions, as an instance of the subclass that performs only that
+     * operator.
+     * 
+     * @param op the operand relating the left and right expressions
+     * @param left the expression preceding the operand
+     * @param right the expression following the operand
+     * @return the specialized BinOp
+     */
+    public static BinOp create(String op, Expression left, Expression right)
+    {
+        switch (codeOf(op))
+        {
+            case ADD:
+                return new AddNode(op, left, right);
+            case SUBTRACT:
+                return new SubtractNode(op, left, right);
+            case MULTIPLY:
+                return new MultiplyNode(op, left, right);
+            case DIVIDE:
+                return new DivideNode(op, left, right);
+            default:
+                return new ModNode(op, left, right);
+        }
+    }
+    
+    /**
+     * Returns the code of the specified operator.  Any operator other than
+     * addition, subtraction, multiplication, and division takes the
+     * remainder, as the "%" or "mod" operator does.
+     * 
+     * @param op the operator
+     * @return ADD, SUBTRACT, MULTIPLY, DIVIDE, or MOD
+     */
+    public static int codeOf(String op)
+    {
+        if (op.equals("+"))
+        {
+            return ADD;
+        }
+        if (op.equals("-"))
+        {
+            return SUBTRACT;
+        }
+        if (op.equals("*"))
+        {
+            return MULTIPLY;
+        }
+        if (op.equals("/"))
+        {
+            return DIVIDE;
+        }
+        return MOD;
+    }
+    
     /**
      * Evaluates the BinOp object by first evaluating the left and right hand
      * Expressions stored by the BinOp.  These two values are then related
-     * based on what the value of op is; for example, if op.equals("+"), then
+     * based on what the value of op is; for example, if op is "+", then
      * the two values are added together.  If, instead, op is a division sign
      * "/", then the first value is divided by the second value.  In the case
      * of division, if the right hand Expression evaluates to 0, then an 
@@ -49,32 +122,49 @@ public class BinOp extends Expression
      */
     public int eval(Environment env)
     {
-        int leftSide = left.eval(env);
-        int rightSide = right.eval(env);
-        if (op.equals("+"))
-        {
-            return leftSide + rightSide;
-        }
-        else if (op.equals("-"))
-        {
-            return leftSide - rightSide;
-        }
-        else if (op.equals("*"))
-        {
-            return leftSide * rightSide;
-        }
-        else if (op.equals("/"))
+        return apply(left.eval(env), right.eval(env));
+    }
+    
+    /**
+     * Relates the values of the left and right hand Expressions based on
+     * what the value of op is, as described for the eval method.
+     * 
+     * @param leftSide the value of the left Expression
+     * @param rightSide the value of the right Expression
+     * @return the integer value of the BinOp
+     */
+    int apply(int leftSide, int rightSide)
+    {
+        switch (code)
         {
-            if (rightSide == 0)
-            {
-                throw new ArithmeticException("ERROR: DIVIDE BY ZERO");
-            }
-            return leftSide / rightSide;
+            case ADD:
+                return leftSide + rightSide;
+            case SUBTRACT:
+                return leftSide - rightSide;
+            case MULTIPLY:
+                return leftSide * rightSide;
+            case DIVIDE:
+                return divide(leftSide, rightSide);
+            default:
+                return leftSide % rightSide;
         }
-        else
+    }
+    
+    /**
+     * Divides one value by another.
+     * 
+     * @param leftSide the dividend
+     * @param rightSide the divisor
+     * @return the quotient
+     * @throws ArithmeticException if the divisor is 0
+     */
+    static int divide(int leftSide, int rightSide)
+    {
+        if (rightSide == 0)
         {
-            return leftSide % rightSide;
+            throw new ArithmeticException("ERROR: DIVIDE BY ZERO");
         }
+        return leftSide / rightSide;
     }
     
     /**
@@ -89,43 +179,418 @@ public class BinOp extends Expression
     }
     
     /**
-     * Compiles the BinOp object to MIPS code.  The left side is first compiled and then
-     * pushed onto the stack, allowing space for the right side to be compiled.  The
-     * left side is then popped off the stack into the register $t0.  The appropriate
-     * operation is then called based on the value of the BinOp's op object. 
+     * Compiles the BinOp object to MIPS code that leaves its value in $v0.
+     * The BinOp is evaluated into the register $t0 and then moved to $v0.
      * 
      * @param e the Emitter that is used to write to file
      */
     public void compile(Emitter e)
     {
-    	left.compile(e);
-    	e.emitPush("$v0");
-    	right.compile(e);
-    	e.emitPop("$t0");
-    	e.emit("# left in $t0 and right in $v0");
-    	
-    	if (op.equals("+"))
+    	compileTo(e, 0);
+    	e.emit("move $v0, $t0");
+    }
+    
+    /**
+     * Compiles the BinOp object to MIPS code that leaves its value in the
+     * specified temporary register.  Both operands are evaluated into
+     * registers, spilling to the stack only if the BinOp needs more
+     * registers than remain, and the appropriate operation is then applied
+     * based on the value of the BinOp's op object.  Adding or subtracting a
+     * constant that fits within 16 bits is done with a single addiu.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param reg the index of the temporary register that receives the value
+     */
+    public void compileTo(Emitter e, int reg)
+    {
+    	if (getImmediate() != Integer.MIN_VALUE)
     	{
-    		e.emit("addu $v0, $t0, $v0 # adds the values and stores in $v0");
+    		left.compileTo(e, reg);
+    		emitImmediate(e, reg);
+    		return;
     	}
-    	else if (op.equals("-"))
+    	emitOperation(e, reg, compileOperands(e, left, right, reg));
+    }
+    
+    /**
+     * Emits the addiu instruction that adds the BinOp's constant to the
+     * value of the left operand, which is already held in the specified
+     * temporary register.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param reg the index of the temporary register that holds the left
+     *        operand and receives the value
+     */
+    void emitImmediate(Emitter e, int reg)
+    {
+    	String result = Emitter.temp(reg);
+    	e.emit("addiu " + result + ", " + result + ", " + getImmediate());
+    }
+    
+    /**
+     * Emits the instructions that apply the BinOp's operator to its two
+     * operands, which are already held in registers, and leave the value in
+     * the specified temporary register.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param reg the index of the temporary register that receives the value
+     * @param operands the registers holding the left and right values, in
+     *        that order
+     */
+    void emitOperation(Emitter e, int reg, String[] operands)
+    {
+    	String result = Emitter.temp(reg);
+    	String pair = operands[0] + ", " + operands[1];
+    	if (code == ADD)
     	{
-    		e.emit("subu $v0, $t0, $v0 # subtracts $v0 from $t0 and stores in $v0");
+    		e.emit("addu " + result + ", " + pair);
     	}
-    	else if (op.equals("*"))
+    	else if (code == SUBTRACT)
     	{
-    		e.emit("mult $t0, $v0");
-    		e.emit("mflo $v0 # stores product in $v0");
+    		e.emit("subu " + result + ", " + pair);
     	}
-    	else if (op.equals("/"))
+    	else if (code == MULTIPLY)
     	{
-    		e.emit("div $t0, $v0");
-    		e.emit("mflo $v0 # stores quotient in $v0");
+    		e.emit("mult " + pair);
+    		e.emit("mflo " + result + " # stores product");
     	}
-    	else if (op.equals("mod"))
+    	else if (code == DIVIDE)
     	{
-    		e.emit("div $t0, $v0");
-    		e.emit("mfhi $v0 # stores remainder in $v0");
+    		e.emit("div " + pair);
+    		e.emit("mflo " + result + " # stores quotient");
     	}
+    	else
+    	{
+    		e.emit("div " + pair);
+    		e.emit("mfhi " + result + " # stores remainder");
+    	}
+    }
+    
+    /**
+     * Returns the constant to be added by an addiu instruction if the BinOp
+     * adds or subtracts a Number that fits within 16 bits.
+     * 
+     * @return the constant to be added, or Integer.MIN_VALUE if the BinOp
+     *         cannot be compiled to an addiu
+     */
+    int getImmediate()
+    {
+        if (!(right instanceof Number))
+        {
+            return Integer.MIN_VALUE;
+        }
+        int value = ((Number) right).getValue();
+        if (code == SUBTRACT)
+        {
+            value = -value;
+        }
+        else if (code != ADD)
+        {
+            return Integer.MIN_VALUE;
+        }
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE)
+        {
+            return Integer.MIN_VALUE;
+        }
+        return value;
+    }
+    
+    /**
+     * Returns the number of temporary registers needed to evaluate the
+     * BinOp without spilling.  The result is computed once and cached,
+     * along with whether either operand calls a procedure.
+     * 
+     * @return the number of registers needed by the BinOp
+     */
+    public int getRegisterNeed()
+    {
+        if (registerNeed == 0)
+        {
+            if (getImmediate() != Integer.MIN_VALUE)
+            {
+                registerNeed = left.getRegisterNeed();
+            }
+            else
+            {
+                registerNeed = operandNeed(left, right);
+            }
+            call = left.containsCall() || right.containsCall();
+        }
+        return registerNeed;
+    }
+    
+    /**
+     * Returns whether either operand calls a procedure.  The result is
+     * cached by getRegisterNeed.
+     * 
+     * @return true if either operand contains a ProcedureCall; otherwise,
+     *         false
+     */
+    public boolean containsCall()
+    {
+        getRegisterNeed();
+        return call;
+    }
+    
+    /**
+     * Resolves the variables within the left and right Expressions.
+     * 
+     * @param scope the Scope in which the BinOp is evaluated
+     */
+    public void resolve(Scope scope)
+    {
+        left.resolve(scope);
+        right.resolve(scope);
+    }
+    
+    /**
+     * Returns the operator relating the two Expressions.
+     * 
+     * @return the BinOp's operator
+     */
+    public String getOperator()
+    {
+        return op;
+    }
+    
+    /**
+     * Returns the code of the operator relating the two Expressions.
+     * 
+     * @return ADD, SUBTRACT, MULTIPLY, DIVIDE, or MOD
+     */
+    public int getCode()
+    {
+        return code;
+    }
+    
+    /**
+     * Returns the Expression preceding the operator.
+     * 
+     * @return the left Expression
+     */
+    public Expression getLeft()
+    {
+        return left;
+    }
+    
+    /**
+     * Returns the Expression following the operator.
+     * 
+     * @return the right Expression
+     */
+    public Expression getRight()
+    {
+        return right;
+    }
+    
+    /**
+     * The AddNode class is a BinOp that adds its two Expressions.
+     */
+    private static final class AddNode extends BinOp
+    {
+        /**
+         * Creates a new instance of the AddNode class.
+         * 
+         * @param op the operator, "+"
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        AddNode(String op, Expression left, Expression right)
+        {
+            super(op, left, right);
+        }
+        
+        /**
+         * Returns the sum of the two Expressions.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return the sum
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) + super.right.eval(env);
+        }
+        
+        /**
+         * Returns the sum of the specified values.
+         * 
+         * @param leftSide the value of the left Expression
+         * @param rightSide the value of the right Expression
+         * @return the sum
+         */
+        int apply(int leftSide, int rightSide)
+        {
+            return leftSide + rightSide;
+        }
+    }
+    
+    /**
+     * The SubtractNode class is a BinOp that subtracts its right Expression
+     * from its left Expression.
+     */
+    private static final class SubtractNode extends BinOp
+    {
+        /**
+         * Creates a new instance of the SubtractNode class.
+         * 
+         * @param op the operator, "-"
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        SubtractNode(String op, Expression left, Expression right)
+        {
+            super(op, left, right);
+        }
+        
+        /**
+         * Returns the difference of the two Expressions.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return the difference
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) - super.right.eval(env);
+        }
+        
+        /**
+         * Returns the difference of the specified values.
+         * 
+         * @param leftSide the value of the left Expression
+         * @param rightSide the value of the right Expression
+         * @return the difference
+         */
+        int apply(int leftSide, int rightSide)
+        {
+            return leftSide - rightSide;
+        }
+    }
+    
+    /**
+     * The MultiplyNode class is a BinOp that multiplies its two Expressions.
+     */
+    private static final class MultiplyNode extends BinOp
+    {
+        /**
+         * Creates a new instance of the MultiplyNode class.
+         * 
+         * @param op the operator, "*"
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        MultiplyNode(String op, Expression left, Expression right)
+        {
+            super(op, left, right);
+        }
+        
+        /**
+         * Returns the product of the two Expressions.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return the product
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) * super.right.eval(env);
+        }
+        
+        /**
+         * Returns the product of the specified values.
+         * 
+         * @param leftSide the value of the left Expression
+         * @param rightSide the value of the right Expression
+         * @return the product
+         */
+        int apply(int leftSide, int rightSide)
+        {
+            return leftSide * rightSide;
+        }
+    }
+    
+    /**
+     * The DivideNode class is a BinOp that divides its left Expression by its
+     * right Expression.
+     */
+    private static final class DivideNode extends BinOp
+    {
+        /**
+         * Creates a new instance of the DivideNode class.
+         * 
+         * @param op the operator, "/"
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        DivideNode(String op, Expression left, Expression right)
+        {
+            super(op, left, right);
+        }
+        
+        /**
+         * Returns the quotient of the two Expressions.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return the quotient
+         * @throws ArithmeticException if the right Expression is 0
+         */
+        public int eval(Environment env)
+        {
+            return divide(super.left.eval(env), super.right.eval(env));
+        }
+        
+        /**
+         * Returns the quotient of the specified values.
+         * 
+         * @param leftSide the value of the left Expression
+         * @param rightSide the value of the right Expression
+         * @return the quotient
+         * @throws ArithmeticException if the right value is 0
+         */
+        int apply(int leftSide, int rightSide)
+        {
+            return divide(leftSide, rightSide);
+        }
+    }
+    
+    /**
+     * The ModNode class is a BinOp that takes the remainder after dividing
+     * its left Expression by its right Expression.
+     */
+    private static final class ModNode extends BinOp
+    {
+        /**
+         * Creates a new instance of the ModNode class.
+         * 
+         * @param op the operator
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        ModNode(String op, Expression left, Expression right)
+        {
+            super(op, left, right);
+        }
+        
+        /**
+         * Returns the remainder after dividing the left Expression by the
+         * right Expression.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return the remainder
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) % super.right.eval(env);
+        }
+        
+        /**
+         * Returns the remainder after dividing the left value by the right.
+         * 
+         * @param leftSide the value of the left Expression
+         * @param rightSide the value of the right Expression
+         * @return the remainder
+         */
+        int apply(int leftSide, int rightSide)
+        {
+            return leftSide % rightSide;
+        }
     }
-}
+}
\ No newline at end of file
@@ -4,6 +4,7 @@ import java.util.List;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Scope;
 
 /**
  * The Block class encapsulates a List of Statements.  Using this object,
@@ -53,4 +54,27 @@ public class Block extends Statement
     		s.compile(e);
     	}
     }
+    
+    /**
+     * Resolves the variables within each Statement in the Block.
+     * 
+     * @param scope the Scope in which the Block is executed
+     */
+    public void resolve(Scope scope)
+    {
+        for (Statement s : statements)
+        {
+            s.resolve(scope);
+        }
+    }
+    
+    /**
+     * Returns the Statements within the Block.
+     * 
+     * @return the Block's Statements, in order of execution
+     */
+    public List<Statement> getStatements()
+    {
+        return statements;
+    }
 }
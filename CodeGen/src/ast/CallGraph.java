@@ -0,0 +1,151 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The CallGraph class records which procedures of a Program each procedure
+ * may call, by finding every ProcedureCall within the procedure's Statement.
+ * A procedure is recursive if it can reach itself by following calls, and
+ * only a recursive procedure can nest calls to any depth while the Program
+ * runs.  As when the Program is executed, a later declaration of a name
+ * replaces an earlier one, and calls to undeclared procedures are ignored.
+ *
+ * Statements are walked with an explicit stack, so that a deeply nested
+ * procedure does not overflow the Java stack.
+ */
+public class CallGraph
+{
+    private Map<String, ProcedureDeclaration> declarations;
+    private Map<String, Set<String>> callees;
+
+    /**
+     * Creates the CallGraph of the specified Program.
+     *
+     * @param program the Program whose procedures are examined
+     */
+    public CallGraph(Program program)
+    {
+        declarations = new HashMap<String, ProcedureDeclaration>();
+        for (ProcedureDeclaration dec : program.getProcedures())
+        {
+            declarations.put(dec.getName(), dec);
+        }
+        callees = new HashMap<String, Set<String>>();
+        for (ProcedureDeclaration dec : declarations.values())
+        {
+            Set<String> called = new LinkedHashSet<String>();
+            for (ProcedureCall call : findCalls(dec.getStatement()))
+            {
+                if (declarations.containsKey(call.getName()))
+                {
+                    called.add(call.getName());
+                }
+            }
+            callees.put(dec.getName(), called);
+        }
+    }
+
+    /**
+     * Returns the declaration that a call to the specified name invokes.
+     *
+     * @param name the name of the procedure
+     * @return the last ProcedureDeclaration with the name, or null if there
+     *         is none
+     */
+    public ProcedureDeclaration getDeclaration(String name)
+    {
+        return declarations.get(name);
+    }
+
+    /**
+     * Returns the names of the declared procedures that the specified
+     * procedure calls directly.
+     *
+     * @param name the name of the procedure
+     * @return the names of the procedures it calls, in the order in which
+     *         they are first called, or an empty Set if the procedure is not
+     *         declared
+     */
+    public Set<String> getCallees(String name)
+    {
+        Set<String> called = callees.get(name);
+        return called == null ? new LinkedHashSet<String>() : called;
+    }
+
+    /**
+     * Returns whether the specified procedure can call itself, directly or
+     * through other procedures.
+     *
+     * @param name the name of the procedure
+     * @return true if the procedure is recursive; otherwise, false
+     */
+    public boolean isRecursive(String name)
+    {
+        ArrayList<String> pending = new ArrayList<String>(getCallees(name));
+        Set<String> seen = new LinkedHashSet<String>();
+        while (!pending.isEmpty())
+        {
+            String callee = pending.remove(pending.size() - 1);
+            if (callee.equals(name))
+            {
+                return true;
+            }
+            if (seen.add(callee))
+            {
+                pending.addAll(getCallees(callee));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether any declared procedure is recursive.
+     *
+     * @return true if some procedure can call itself; otherwise, false
+     */
+    public boolean hasRecursion()
+    {
+        for (String name : declarations.keySet())
+        {
+            if (isRecursive(name))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns every ProcedureCall within the specified Statement, including
+     * those within the parameters of other calls, in the order in which they
+     * appear.
+     *
+     * @param statement the Statement to be searched
+     * @return a List of the ProcedureCalls
+     */
+    public static List<ProcedureCall> findCalls(Statement statement)
+    {
+        List<ProcedureCall> calls = new ArrayList<ProcedureCall>();
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(statement);
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            if (node instanceof ProcedureCall)
+            {
+                calls.add((ProcedureCall) node);
+            }
+            List<Object> children = Nesting.children(node);
+            for (int i = children.size() - 1; i >= 0; i--)
+            {
+                pending.add(children.get(i));
+            }
+        }
+        return calls;
+    }
+}
@@ -2,6 +2,7 @@ package ast;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Scope;
 
 /**
  * The Condition class encapsulates a String and two Expression objects.
@@ -9,12 +10,25 @@ import environment.Environment;
  * between its two Expressions.  The type of logical comparison is dependent
  * on the String.
  * 
+ * As with a BinOp, the String is replaced by an integer code when the
+ * Condition is created, and the create method returns a subclass specialized
+ * to a single comparison, such as LessThanNode.
+ * 
  * @author hkunda
  * @date March 18, 2015
  */
 public class Condition
 {
+    public static final int UNKNOWN = -1;
+    public static final int NOT_EQUAL = 0;
+    public static final int LESS = 1;
+    public static final int LESS_EQUAL = 2;
+    public static final int GREATER = 3;
+    public static final int GREATER_EQUAL = 4;
+    public static final int EQUAL = 5;
+
     private String logicOp;
+    private int code;
     private Expression left;
     private Expression right;
     
@@ -28,71 +42,135 @@ public class Condition
     public Condition(String logicOp, Expression left, Expression right)
     {
         this.logicOp = logicOp;
+        code = codeOf(logicOp);
         this.left = left;
         this.right = right;
     }
     
     /**
-     * Evaluates the Condition by returning either 0 or 1 depending on 
-     * how the left and right Expressions compare to one another. This
-     * comparison is dependant on what logicOp is; for example, if 
-     * logicOp equals "<>", then eval will return 1 if the left expression
-     * is not equivalent to the right expression. Because the Condition should
-     * evaluate to true or false and the eval method only returns an int,
-     * 1 is used to represent true and 0 to represent false.
+     * Creates a Condition with the specified logic operator and left and
+     * right expressions, as an instance of the subclass that makes only that
+     * comparison.  A Condition with an unknown operator, which never holds,
+     * is not specialized.
      * 
-     * @param env the Environment object that stores known variables
-     * @return 1 if the Condition evaluates to true
-     *         0 if the Condition evaluates to false
+     * @param logicOp the logic operator
+     * @param left the expression preceding the logic operator
+     * @param right the expression following the logic operator
+     * @return the specialized Condition
      */
-    public int eval(Environment env)
+    public static Condition create(String logicOp, Expression left,
+            Expression right)
+    {
+        switch (codeOf(logicOp))
+        {
+            case NOT_EQUAL:
+                return new NotEqualNode(logicOp, left, right);
+            case LESS:
+                return new LessThanNode(logicOp, left, right);
+            case LESS_EQUAL:
+                return new LessEqualNode(logicOp, left, right);
+            case GREATER:
+                return new GreaterThanNode(logicOp, left, right);
+            case GREATER_EQUAL:
+                return new GreaterEqualNode(logicOp, left, right);
+            case EQUAL:
+                return new EqualNode(logicOp, left, right);
+            default:
+                return new Condition(logicOp, left, right);
+        }
+    }
+    
+    /**
+     * Returns the code of the specified logic operator.
+     * 
+     * @param logicOp the logic operator
+     * @return NOT_EQUAL, LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, or EQUAL,
+     *         or UNKNOWN if the String is not a logic operator
+     */
+    public static int codeOf(String logicOp)
     {
-        int leftExp = left.eval(env);
-        int rightExp = right.eval(env);
-        int cond = 0;
         if (logicOp.equals("<>"))
         {
-            if (rightExp != leftExp)
-            {
-                cond = 1;
-            }
+            return NOT_EQUAL;
         }
         if (logicOp.equals("<"))
         {
-            if (leftExp < rightExp)
-            {
-                cond = 1;
-            }
+            return LESS;
         }
         if (logicOp.equals("<="))
         {
-            if (leftExp <= rightExp)
-            {
-                cond = 1;
-            }
+            return LESS_EQUAL;
         }
         if (logicOp.equals(">"))
         {
-            if (leftExp > rightExp)
-            {
-                cond = 1;
-            }
+            return GREATER;
         }
         if (logicOp.equals(">="))
         {
-            if (leftExp >= rightExp)
-            {
-                cond = 1;
-            }
+            return GREATER_EQUAL;
         }
         if (logicOp.equals("="))
         {
-            if (leftExp == rightExp)
-            {
-                cond = 1;
-            }
+            return EQUAL;
         }
-        return cond;
+        return UNKNOWN;
+    }
+    
+    /**
+     * Evaluates the Condition by returning either 0 or 1 depending on 
+     * how the left and right Expressions compare to one another. This
+     * comparison is dependant on what logicOp is; for example, if 
+     * logicOp equals "<>", then eval will return 1 if the left expression
+     * is not equivalent to the right expression. Because the Condition should
+     * evaluate to true or false and the eval method only returns an int,
+     * 1 is used to represent true and 0 to represent false.
+     * 
+     * @param env the Environment object that stores known variables
+     * @return 1 if the Condition evaluates to true
+     *         0 if the Condition evaluates to false
+     */
+    public int eval(Environment env)
+    {
+        return test(left.eval(env), right.eval(env));
+    }
+    
+    /**
+     * Compares the values of the left and right Expressions according to
+     * logicOp, as described for the eval method.
+     * 
+     * @param leftExp the value of the left Expression
+     * @param rightExp the value of the right Expression
+     * @return 1 if the Condition evaluates to true
+     *         0 if the Condition evaluates to false
+     */
+    int test(int leftExp, int rightExp)
+    {
+        boolean holds;
+        switch (code)
+        {
+            case NOT_EQUAL:
+                holds = leftExp != rightExp;
+                break;
+            case LESS:
+                holds = leftExp < rightExp;
+                break;
+            case LESS_EQUAL:
+                holds = leftExp <= rightExp;
+                break;
+            case GREATER:
+                holds = leftExp > rightExp;
+                break;
+            case GREATER_EQUAL:
+                holds = leftExp >= rightExp;
+                break;
+            case EQUAL:
+                holds = leftExp == rightExp;
+                break;
+            default:
+                holds = false;
+                break;
+        }
+        return holds ? 1 : 0;
     }
     
     /**
@@ -110,9 +188,8 @@ public class Condition
      * Compiles the Condition to MIPS code. The comparison operation used is the inverse
      * of that stored by the Condition object due to the way that paths branch in MIPS.
      * 
-     * The left side of the Condition is first compiled, with its value pushed to the
-     * stack to make space for the right side.  The left side is then loaded into $t0,
-     * and the comparison is then made.
+     * Both sides of the Condition are evaluated into temporary registers, in the same
+     * way as the operands of a BinOp, and the comparison is then made.
      * 
      * @param e the Emitter that is used to write to file
      * @param targetLabel the label to be used to differentiate between the two possible
@@ -120,35 +197,346 @@ public class Condition
      */
     public void compile(Emitter e, String targetLabel)
     {
-    	left.compile(e);
-    	e.emitPush("$v0");
-    	right.compile(e);
-    	e.emitPop("$t0");
-    	e.emit("# left in $t0, right in $v0");
-    	if (logicOp.equals("<>"))
+    	emitBranch(e, Expression.compileOperands(e, left, right, 0), targetLabel);
+    }
+    
+    /**
+     * Emits the branch to the target label taken when the Condition is false,
+     * given the registers that already hold the values of its two sides.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param operands the registers holding the left and right values, in
+     *        that order
+     * @param targetLabel the label branched to when the Condition is false
+     */
+    void emitBranch(Emitter e, String[] operands, String targetLabel)
+    {
+    	String pair = operands[0] + ", " + operands[1] + ", " + targetLabel;
+    	switch (code)
+    	{
+    		case NOT_EQUAL:
+    			e.emit("beq " + pair);
+    			break;
+    		case LESS:
+    			e.emit("bge " + pair);
+    			break;
+    		case LESS_EQUAL:
+    			e.emit("bgt " + pair);
+    			break;
+    		case GREATER:
+    			e.emit("ble " + pair);
+    			break;
+    		case GREATER_EQUAL:
+    			e.emit("blt " + pair);
+    			break;
+    		case EQUAL:
+    			e.emit("bne " + pair);
+    			break;
+    		default:
+    			break;
+    	}
+    }
+    
+    /**
+     * Resolves the variables within the left and right Expressions.
+     * 
+     * @param scope the Scope in which the Condition is evaluated
+     */
+    public void resolve(Scope scope)
+    {
+        left.resolve(scope);
+        right.resolve(scope);
+    }
+    
+    /**
+     * Returns the logic operator relating the two Expressions.
+     * 
+     * @return the Condition's logic operator
+     */
+    public String getOperator()
+    {
+        return logicOp;
+    }
+    
+    /**
+     * Returns the code of the logic operator relating the two Expressions.
+     * 
+     * @return the code of the Condition's logic operator
+     */
+    public int getCode()
+    {
+        return code;
+    }
+    
+    /**
+     * Returns the Expression preceding the logic operator.
+     * 
+     * @return the left Expression
+     */
+    public Expression getLeft()
+    {
+        return left;
+    }
+    
+    /**
+     * Returns the Expression following the logic operator.
+     * 
+     * @return the right Expression
+     */
+    public Expression getRight()
+    {
+        return right;
+    }
+    
+    /**
+     * The NotEqualNode class is a Condition that holds if its two
+     * Expressions are not equal.
+     */
+    private static final class NotEqualNode extends Condition
+    {
+        /**
+         * Creates a new instance of the NotEqualNode class.
+         * 
+         * @param logicOp the logic operator, "<>"
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        NotEqualNode(String logicOp, Expression left, Expression right)
         {
-    		e.emit("beq $t0, $v0, " + targetLabel);
+            super(logicOp, left, right);
         }
-        if (logicOp.equals("<"))
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
         {
-        	e.emit("bge $t0, $v0, " + targetLabel);
+            return super.left.eval(env) != super.right.eval(env) ? 1 : 0;
         }
-        if (logicOp.equals("<="))
+        
+        /**
+         * Compares the specified values.
+         * 
+         * @param leftExp the value of the left Expression
+         * @param rightExp the value of the right Expression
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        int test(int leftExp, int rightExp)
         {
-        	e.emit("bgt $t0, $v0, " + targetLabel);
+            return leftExp != rightExp ? 1 : 0;
         }
-        if (logicOp.equals(">"))
+    }
+    
+    /**
+     * The LessThanNode class is a Condition that holds if its left
+     * Expression is less than its right Expression.
+     */
+    private static final class LessThanNode extends Condition
+    {
+        /**
+         * Creates a new instance of the LessThanNode class.
+         * 
+         * @param logicOp the logic operator, "<"
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        LessThanNode(String logicOp, Expression left, Expression right)
         {
-        	e.emit("ble $t0, $v0, " + targetLabel);
+            super(logicOp, left, right);
         }
-        if (logicOp.equals(">="))
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
         {
-            e.emit("blt $t0, $v0, " + targetLabel);
+            return super.left.eval(env) < super.right.eval(env) ? 1 : 0;
         }
-        if (logicOp.equals("="))
+        
+        /**
+         * Compares the specified values.
+         * 
+         * @param leftExp the value of the left Expression
+         * @param rightExp the value of the right Expression
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        int test(int leftExp, int rightExp)
         {
-            e.emit("bne $t0, $v0, " + targetLabel);
+            return leftExp < rightExp ? 1 : 0;
         }
     }
-}
-
+    
+    /**
+     * The LessEqualNode class is a Condition that holds if its left
+     * Expression is at most its right Expression.
+     */
+    private static final class LessEqualNode extends Condition
+    {
+        /**
+         * Creates a new instance of the LessEqualNode class.
+         * 
+         * @param logicOp the logic operator, "<="
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        LessEqualNode(String logicOp, Expression left, Expression right)
+        {
+            super(logicOp, left, right);
+        }
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) <= super.right.eval(env) ? 1 : 0;
+        }
+        
+        /**
+         * Compares the specified values.
+         * 
+         * @param leftExp the value of the left Expression
+         * @param rightExp the value of the right Expression
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        int test(int leftExp, int rightExp)
+        {
+            return leftExp <= rightExp ? 1 : 0;
+        }
+    }
+    
+    /**
+     * The GreaterThanNode class is a Condition that holds if its left
+     * Expression is greater than its right Expression.
+     */
+    private static final class GreaterThanNode extends Condition
+    {
+        /**
+         * Creates a new instance of the GreaterThanNode class.
+         * 
+         * @param logicOp the logic operator, ">"
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        GreaterThanNode(String logicOp, Expression left, Expression right)
+        {
+            super(logicOp, left, right);
+        }
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) > super.right.eval(env) ? 1 : 0;
+        }
+        
+        /**
+         * Compares the specified values.
+         * 
+         * @param leftExp the value of the left Expression
+         * @param rightExp the value of the right Expression
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        int test(int leftExp, int rightExp)
+        {
+            return leftExp > rightExp ? 1 : 0;
+        }
+    }
+    
+    /**
+     * The GreaterEqualNode class is a Condition that holds if its left
+     * Expression is at least its right Expression.
+     */
+    private static final class GreaterEqualNode extends Condition
+    {
+        /**
+         * Creates a new instance of the GreaterEqualNode class.
+         * 
+         * @param logicOp the logic operator, ">="
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        GreaterEqualNode(String logicOp, Expression left, Expression right)
+        {
+            super(logicOp, left, right);
+        }
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) >= super.right.eval(env) ? 1 : 0;
+        }
+        
+        /**
+         * Compares the specified values.
+         * 
+         * @param leftExp the value of the left Expression
+         * @param rightExp the value of the right Expression
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        int test(int leftExp, int rightExp)
+        {
+            return leftExp >= rightExp ? 1 : 0;
+        }
+    }
+    
+    /**
+     * The EqualNode class is a Condition that holds if its two
+     * Expressions are equal.
+     */
+    private static final class EqualNode extends Condition
+    {
+        /**
+         * Creates a new instance of the EqualNode class.
+         * 
+         * @param logicOp the logic operator, "="
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        EqualNode(String logicOp, Expression left, Expression right)
+        {
+            super(logicOp, left, right);
+        }
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) == super.right.eval(env) ? 1 : 0;
+        }
+        
+        /**
+         * Compares the specified values.
+         * 
+         * @param leftExp the value of the left Expression
+         * @param rightExp the value of the right Expression
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        int test(int leftExp, int rightExp)
+        {
+            return leftExp == rightExp ? 1 : 0;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,310 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ConstantFolder class rewrites the AST of a Program so that work whose
+ * result is known before the Program runs is not repeated every time it is
+ * evaluated or compiled.  The tree is rewritten from the bottom up, so a
+ * node is simplified only once its children have been:
+ *
+ * A BinOp whose sides are both Numbers becomes the Number it evaluates to,
+ * unless it divides by zero, which is left to fail when it is run.  Adding
+ * or subtracting 0, and multiplying or dividing by 1, leave the other side
+ * as it is; negating a negation, which the Parser builds as 0 - (0 - x),
+ * leaves x; and constants added to or subtracted from the same Expression
+ * in turn, as in x + 1 + 2, are combined into one.  Multiplying by 0, or
+ * taking the remainder after dividing by 1, is folded only when the other
+ * side is a Number too, so that x * 0 still fails when it is executed if x
+ * has never been set.
+ *
+ * A Condition whose sides are both Numbers is decided: an If whose
+ * Condition holds becomes its Statement, and an If or While whose
+ * Condition fails becomes an empty Block.
+ *
+ * Nodes that do not change are reused, so that an unchanged subtree is
+ * shared with the original Program.  Subtrees nested more than MAX_DEPTH
+ * nodes deep are left as they are, so that a deeply nested Program does not
+ * overflow the Java stack.
+ */
+public class ConstantFolder
+{
+    private int foldCount;
+
+    /**
+     * Returns the number of nodes that have been folded or simplified away
+     * by this ConstantFolder.
+     *
+     * @return the number of folded nodes
+     */
+    public int getFoldCount()
+    {
+        return foldCount;
+    }
+
+    /**
+     * Folds the Statement of every procedure and of the Program itself.
+     *
+     * @param program the Program to be folded
+     * @return the folded Program, or the same Program if nothing was folded
+     */
+    public Program fold(Program program)
+    {
+        boolean changed = false;
+        ArrayList<ProcedureDeclaration> procedures =
+                new ArrayList<ProcedureDeclaration>();
+        for (ProcedureDeclaration dec : program.getProcedures())
+        {
+            Statement body = fold(dec.getStatement(), 0);
+            if (body != dec.getStatement())
+            {
+                dec = new ProcedureDeclaration(body, dec.getName(),
+                        dec.getParams());
+                changed = true;
+            }
+            procedures.add(dec);
+        }
+        Statement statement = fold(program.getStatement(), 0);
+        if (!changed && statement == program.getStatement())
+        {
+            return program;
+        }
+        return new Program(program.getVariables(), procedures, statement);
+    }
+
+    /**
+     * Folds the specified Statement and everything within it.
+     *
+     * @param statement the Statement to be folded
+     * @param depth the number of nodes above the Statement
+     * @return the folded Statement
+     */
+    private Statement fold(Statement statement, int depth)
+    {
+        if (depth >= Nesting.MAX_DEPTH)
+        {
+            return statement;
+        }
+        if (statement instanceof Block)
+        {
+            List<Statement> statements = ((Block) statement).getStatements();
+            ArrayList<Statement> folded = new ArrayList<Statement>();
+            boolean changed = false;
+            for (Statement s : statements)
+            {
+                Statement f = fold(s, depth + 1);
+                changed = changed || f != s;
+                folded.add(f);
+            }
+            return changed ? new Block(folded) : statement;
+        }
+        if (statement instanceof Assignment)
+        {
+            Assignment assignment = (Assignment) statement;
+            Expression exp = fold(assignment.getExpression(), depth + 1);
+            return exp == assignment.getExpression() ? statement
+                    : new Assignment(assignment.getVariable(), exp);
+        }
+        if (statement instanceof Writeln)
+        {
+            Expression exp = ((Writeln) statement).getExpression();
+            Expression folded = fold(exp, depth + 1);
+            return folded == exp ? statement : new Writeln(folded);
+        }
+        boolean loop = statement instanceof While;
+        Condition condition = loop ? ((While) statement).getCondition()
+                : ((If) statement).getCondition();
+        Statement body = loop ? ((While) statement).getStatement()
+                : ((If) statement).getStatement();
+        Condition foldedCondition = fold(condition, depth + 1);
+        Expression left = foldedCondition.getLeft();
+        Expression right = foldedCondition.getRight();
+        if (left instanceof Number && right instanceof Number)
+        {
+            int holds = foldedCondition.test(((Number) left).getValue(),
+                    ((Number) right).getValue());
+            if (holds == 0)
+            {
+                foldCount++;
+                return new Block(new ArrayList<Statement>());
+            }
+            if (!loop)
+            {
+                foldCount++;
+                return fold(body, depth + 1);
+            }
+        }
+        Statement foldedBody = fold(body, depth + 1);
+        if (foldedCondition == condition && foldedBody == body)
+        {
+            return statement;
+        }
+        return loop ? new While(foldedCondition, foldedBody)
+                : new If(foldedCondition, foldedBody);
+    }
+
+    /**
+     * Folds both sides of the specified Condition.
+     *
+     * @param condition the Condition to be folded
+     * @param depth the number of nodes above the Condition
+     * @return the Condition with both sides folded
+     */
+    private Condition fold(Condition condition, int depth)
+    {
+        Expression left = fold(condition.getLeft(), depth + 1);
+        Expression right = fold(condition.getRight(), depth + 1);
+        if (left == condition.getLeft() && right == condition.getRight())
+        {
+            return condition;
+        }
+        return Condition.create(condition.getOperator(), left, right);
+    }
+
+    /**
+     * Folds the specified Expression and everything within it.
+     *
+     * @param exp the Expression to be folded
+     * @param depth the number of nodes above the Expression
+     * @return the folded Expression
+     */
+    private Expression fold(Expression exp, int depth)
+    {
+        if (depth >= Nesting.MAX_DEPTH)
+        {
+            return exp;
+        }
+        if (exp instanceof ProcedureCall)
+        {
+            ProcedureCall call = (ProcedureCall) exp;
+            ArrayList<Expression> params = new ArrayList<Expression>();
+            boolean changed = false;
+            for (Expression param : call.getParams())
+            {
+                Expression folded = fold(param, depth + 1);
+                changed = changed || folded != param;
+                params.add(folded);
+            }
+            return changed ? new ProcedureCall(call.getName(), params) : exp;
+        }
+        if (!(exp instanceof BinOp))
+        {
+            return exp;
+        }
+        BinOp binOp = (BinOp) exp;
+        Expression left = fold(binOp.getLeft(), depth + 1);
+        Expression right = fold(binOp.getRight(), depth + 1);
+        Expression simplified = simplify(binOp.getOperator(), left, right);
+        if (simplified != null)
+        {
+            foldCount++;
+            return simplified;
+        }
+        if (left == binOp.getLeft() && right == binOp.getRight())
+        {
+            return exp;
+        }
+        return BinOp.create(binOp.getOperator(), left, right);
+    }
+
+    /**
+     * Simplifies an operator whose sides have already been folded, as
+     * described for the class.
+     *
+     * @param op the operator
+     * @param left the folded left side
+     * @param right the folded right side
+     * @return the simplified Expression, or null if the operator cannot be
+     *         simplified
+     */
+    private Expression simplify(String op, Expression left, Expression right)
+    {
+        boolean divides = !op.equals("+") && !op.equals("-")
+                && !op.equals("*");
+        if (left instanceof Number && right instanceof Number)
+        {
+            int rightValue = ((Number) right).getValue();
+            if (divides && rightValue == 0)
+            {
+                return null;
+            }
+            return new Number(BinOp.create(op, left, right).apply(
+                    ((Number) left).getValue(), rightValue));
+        }
+        boolean additive = op.equals("+") || op.equals("-");
+        if (isConstant(right, 0) && additive)
+        {
+            return left;
+        }
+        if (isConstant(left, 0) && op.equals("+"))
+        {
+            return right;
+        }
+        if (isConstant(right, 1) && (op.equals("*") || op.equals("/")))
+        {
+            return left;
+        }
+        if (isConstant(left, 1) && op.equals("*"))
+        {
+            return right;
+        }
+        if (isConstant(left, 0) && op.equals("-") && right instanceof BinOp)
+        {
+            BinOp negated = (BinOp) right;
+            if (negated.getOperator().equals("-")
+                    && isConstant(negated.getLeft(), 0))
+            {
+                return negated.getRight();
+            }
+        }
+        if (additive && right instanceof Number && left instanceof BinOp)
+        {
+            BinOp inner = (BinOp) left;
+            String innerOp = inner.getOperator();
+            if ((innerOp.equals("+") || innerOp.equals("-"))
+                    && inner.getRight() instanceof Number)
+            {
+                int sum = signed(innerOp, inner.getRight())
+                        + signed(op, right);
+                if (sum == 0)
+                {
+                    return inner.getLeft();
+                }
+                if (sum < 0 && sum != Integer.MIN_VALUE)
+                {
+                    return BinOp.create("-", inner.getLeft(), new Number(-sum));
+                }
+                return BinOp.create("+", inner.getLeft(), new Number(sum));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value that the specified Number adds to an Expression
+     * when it follows the specified additive operator.
+     *
+     * @param op "+" or "-"
+     * @param number the Number following the operator
+     * @return the Number's value, negated if the operator is "-"
+     */
+    private static int signed(String op, Expression number)
+    {
+        int value = ((Number) number).getValue();
+        return op.equals("-") ? -value : value;
+    }
+
+    /**
+     * Returns whether the specified Expression is the specified constant.
+     *
+     * @param exp the Expression to be checked
+     * @param value the constant
+     * @return true if the Expression is a Number with the value; otherwise,
+     *         false
+     */
+    private static boolean isConstant(Expression exp, int value)
+    {
+        return exp instanceof Number && ((Number) exp).getValue() == value;
+    }
+}
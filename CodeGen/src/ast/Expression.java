@@ -2,6 +2,7 @@ package ast;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Scope;
 
 /**
  * The Expression class generalizes algebraic expressions.  Any subclass must
@@ -36,4 +37,135 @@ public abstract class Expression
      * @param e the Emitter that is used to write to file
      */
     public abstract void compile(Emitter e);
+    
+    /**
+     * Compiles the Expression to MIPS code that leaves its value in the
+     * temporary register $t<reg>, using only that register and the ones
+     * above it.  By default the Expression is compiled to $v0 and then
+     * moved into the temporary register; subclasses that can evaluate
+     * directly into a register override this method.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param reg the index of the temporary register that receives the value
+     */
+    public void compileTo(Emitter e, int reg)
+    {
+        compile(e);
+        e.emit("move " + Emitter.temp(reg) + ", $v0");
+    }
+    
+    /**
+     * Returns the number of temporary registers needed to evaluate the
+     * Expression without spilling to the stack (its Sethi-Ullman number).
+     * Leaves need a single register.
+     * 
+     * @return the number of registers needed by the Expression
+     */
+    public int getRegisterNeed()
+    {
+        return 1;
+    }
+    
+    /**
+     * Returns whether evaluating the Expression may call a procedure, which
+     * clobbers every temporary register.
+     * 
+     * @return true if the Expression contains a ProcedureCall; otherwise,
+     *         false
+     */
+    public boolean containsCall()
+    {
+        return false;
+    }
+    
+    /**
+     * Returns the number of temporary registers needed to evaluate two
+     * operands, given the number needed by each.  If the operands need
+     * different numbers of registers, the one needing more is evaluated
+     * first and its result held while the other is evaluated; if they need
+     * the same number, one more register is needed to hold the first result.
+     * 
+     * @param left the Expression preceding the operator
+     * @param right the Expression following the operator
+     * @return the number of registers needed to evaluate both operands
+     */
+    static int operandNeed(Expression left, Expression right)
+    {
+        int leftNeed = left.getRegisterNeed();
+        int rightNeed = right.getRegisterNeed();
+        if (leftNeed == rightNeed)
+        {
+            return leftNeed + 1;
+        }
+        return Math.max(leftNeed, rightNeed);
+    }
+    
+    /**
+     * Returns whether the left operand of an operator is evaluated before
+     * the right one: either operand calls a procedure, so they must be
+     * evaluated in order, or the left operand needs at least as many
+     * registers as the right one.
+     * 
+     * @param left the Expression preceding the operator
+     * @param right the Expression following the operator
+     * @return true if the left operand is evaluated first; otherwise, false
+     */
+    static boolean leftFirst(Expression left, Expression right)
+    {
+        return left.containsCall() || right.containsCall()
+                || left.getRegisterNeed() >= right.getRegisterNeed();
+    }
+    
+    /**
+     * Compiles the two operands of an operator so that both of their values
+     * are held in registers, using the temporary registers from $t<reg>
+     * upward.  The operand needing more registers is evaluated first, unless
+     * either operand calls a procedure, in which case they are evaluated
+     * left to right as the interpreter does.  If the second operand needs
+     * every remaining register, the first operand's value is pushed to the
+     * stack while the second is evaluated and then popped into $v1.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param left the Expression preceding the operator
+     * @param right the Expression following the operator
+     * @param reg the index of the lowest temporary register that may be used
+     * @return the registers holding the left and right values, in that order
+     */
+    static String[] compileOperands(Emitter e, Expression left,
+            Expression right, int reg)
+    {
+        boolean leftFirst = leftFirst(left, right);
+        Expression first = leftFirst ? left : right;
+        Expression second = leftFirst ? right : left;
+        String firstReg;
+        String secondReg;
+        first.compileTo(e, reg);
+        if (second.getRegisterNeed() < Emitter.TEMP_REGISTERS - reg)
+        {
+            second.compileTo(e, reg + 1);
+            firstReg = Emitter.temp(reg);
+            secondReg = Emitter.temp(reg + 1);
+        }
+        else
+        {
+            e.emitPush(Emitter.temp(reg));
+            second.compileTo(e, reg);
+            e.emitPop("$v1");
+            firstReg = "$v1";
+            secondReg = Emitter.temp(reg);
+        }
+        if (leftFirst)
+        {
+            return new String[] {firstReg, secondReg};
+        }
+        return new String[] {secondReg, firstReg};
+    }
+    
+    /**
+     * Resolves every variable within the Expression to a fixed (depth, slot)
+     * address within the specified Scope.
+     * 
+     * @param scope the Scope in which the Expression is evaluated
+     */
+    public abstract void resolve(Scope scope);
 }
@@ -2,6 +2,7 @@ package ast;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Scope;
 
 /**
  * The If class encapsulates a Condition object and a Statement object. Using
@@ -60,4 +61,35 @@ public class If extends Statement
     	statement.compile(e);
     	e.emit(id + ":");
     }
+    
+    /**
+     * Resolves the variables within the Condition and the Statement.
+     * 
+     * @param scope the Scope in which the If is executed
+     */
+    public void resolve(Scope scope)
+    {
+        condition.resolve(scope);
+        statement.resolve(scope);
+    }
+    
+    /**
+     * Returns the Condition of the If.
+     * 
+     * @return the If's Condition
+     */
+    public Condition getCondition()
+    {
+        return condition;
+    }
+    
+    /**
+     * Returns the Statement executed by the If.
+     * 
+     * @return the If's Statement
+     */
+    public Statement getStatement()
+    {
+        return statement;
+    }
 }
@@ -0,0 +1,770 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Inliner class rewrites the AST of a Program so that calls to small
+ * procedures are replaced by the procedures' Statements, sparing each call
+ * the work of entering and leaving an activation when it is executed and
+ * the calling sequence when it is compiled.  A call to a procedure is
+ * inlined only if:
+ *
+ * the procedure is the last one declared with its name, and the call passes
+ * it as many values as it has parameters;
+ * the procedure's Statement holds no more nodes than the Inliner's budget;
+ * and
+ * the procedure's Statement calls no procedure.
+ *
+ * A recursive procedure always calls itself, so it is never inlined.  A
+ * procedure that calls others may become small enough once the calls within
+ * it have been inlined, so the procedures are rewritten repeatedly until no
+ * call within them can be inlined any further, which inlines calls from the
+ * bottom of the CallGraph upwards.
+ *
+ * The language declares no local variables, so each parameter and the
+ * return variable of an inlined procedure is renamed to a fresh global
+ * variable, which is added to the Program's variables.  A fresh name holds
+ * an underscore, which the Scanner never allows within an identifier, so
+ * that it cannot clash with any name within the source text.  An inlined
+ * call is hoisted out of the Statement that holds it: its values are
+ * assigned to the renamed parameters, its return variable is set to 0, and
+ * the renamed Statement of the procedure is executed, after which the call
+ * is replaced by its return variable.  A procedure that does nothing but
+ * assign an Expression to its return variable is replaced by the renamed
+ * Expression instead, and a value that cannot change, such as a Number, is
+ * bound to its parameter without a fresh variable, as described for
+ * expand.  Because the Statement calls no
+ * procedure, any name it does not rename is looked up by the caller just
+ * as it would have been by the procedure, so dynamic scoping is kept.
+ *
+ * Hoisting a call executes it before whatever precedes it within the
+ * Statement, so whatever precedes it that may read a variable or fail is
+ * hoisted as well, by assigning it to a fresh variable first, and a call is
+ * inlined only if no call that is left precedes it, and none is left within
+ * its values.  Thus no call is ever executed between setting a fresh
+ * variable and reading it, so even an inlined call within a recursive
+ * procedure cannot have its variables changed by another activation.
+ * Conditions of WHILE loops are evaluated repeatedly, so calls within them
+ * are not inlined.
+ *
+ * Nodes that do not change are reused, so that an unchanged subtree is
+ * shared with the original Program.  Subtrees nested more than MAX_DEPTH
+ * nodes deep are left as they are, so that a deeply nested Program does not
+ * overflow the Java stack.
+ */
+public class Inliner
+{
+    private int budget;
+    private int inlineCount;
+    private Map<String, ProcedureDeclaration> declarations;
+    private Set<String> names;
+    private List<String> variables;
+    private int next;
+    private boolean calls;
+
+    /**
+     * Creates a new instance of the Inliner class, which inlines only
+     * procedures whose Statements hold at most the specified number of
+     * nodes.
+     *
+     * @param budget the greatest number of nodes within an inlined
+     *        procedure's Statement, or 0 to inline nothing
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public Inliner(int budget)
+    {
+        if (budget < 0)
+        {
+            throw new IllegalArgumentException("Invalid inlining budget "
+                    + budget);
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the number of calls that have been inlined by this Inliner.
+     *
+     * @return the number of inlined calls
+     */
+    public int getInlineCount()
+    {
+        return inlineCount;
+    }
+
+    /**
+     * Returns whether the specified name is one of the fresh variables to
+     * which an Inliner renames the parameters and return variables of
+     * inlined procedures.
+     *
+     * @param name the name of the variable
+     * @return true if the name was made by an Inliner; otherwise, false
+     */
+    public static boolean isTemporary(String name)
+    {
+        return name.indexOf('_') >= 0;
+    }
+
+    /**
+     * Inlines every call that can be inlined within the procedures and the
+     * Statement of the specified Program.
+     *
+     * @param program the Program to be rewritten
+     * @return the rewritten Program, or the same Program if no call was
+     *         inlined
+     */
+    public Program inline(Program program)
+    {
+        if (budget == 0)
+        {
+            return program;
+        }
+        int count = inlineCount;
+        declarations = new HashMap<String, ProcedureDeclaration>();
+        names = new HashSet<String>(program.getVariables());
+        variables = new ArrayList<String>(program.getVariables());
+        ArrayList<ProcedureDeclaration> procedures =
+                new ArrayList<ProcedureDeclaration>(program.getProcedures());
+        for (ProcedureDeclaration dec : procedures)
+        {
+            declarations.put(dec.getName(), dec);
+            names.add(dec.getName());
+            names.addAll(dec.getParams());
+        }
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (int i = 0; i < procedures.size(); i++)
+            {
+                ProcedureDeclaration dec = procedures.get(i);
+                Statement body = inline(dec.getStatement(), 0);
+                if (body != dec.getStatement())
+                {
+                    ProcedureDeclaration inlined = new ProcedureDeclaration(
+                            body, dec.getName(), dec.getParams());
+                    if (declarations.get(dec.getName()) == dec)
+                    {
+                        declarations.put(dec.getName(), inlined);
+                    }
+                    procedures.set(i, inlined);
+                    changed = true;
+                }
+            }
+        }
+        Statement statement = inline(program.getStatement(), 0);
+        if (inlineCount == count)
+        {
+            return program;
+        }
+        return new Program(variables, procedures, statement);
+    }
+
+    /**
+     * Inlines the calls within the specified Statement and everything
+     * within it.
+     *
+     * @param statement the Statement to be rewritten
+     * @param depth the number of nodes above the Statement
+     * @return the rewritten Statement
+     */
+    private Statement inline(Statement statement, int depth)
+    {
+        if (depth >= Nesting.MAX_DEPTH)
+        {
+            return statement;
+        }
+        if (statement instanceof Block)
+        {
+            List<Statement> statements = ((Block) statement).getStatements();
+            ArrayList<Statement> inlined = new ArrayList<Statement>();
+            boolean changed = false;
+            for (Statement s : statements)
+            {
+                Statement i = inline(s, depth + 1);
+                changed = changed || i != s;
+                inlined.add(i);
+            }
+            return changed ? new Block(inlined) : statement;
+        }
+        if (statement instanceof While)
+        {
+            While loop = (While) statement;
+            Statement body = inline(loop.getStatement(), depth + 1);
+            return body == loop.getStatement() ? statement
+                    : new While(loop.getCondition(), body);
+        }
+        ArrayList<Statement> hoisted = new ArrayList<Statement>();
+        calls = false;
+        Statement rewritten;
+        if (statement instanceof Assignment)
+        {
+            Assignment assignment = (Assignment) statement;
+            Expression exp = hoist(assignment.getExpression(), hoisted,
+                    depth + 1);
+            rewritten = exp == assignment.getExpression() ? statement
+                    : new Assignment(assignment.getVariable(), exp);
+        }
+        else if (statement instanceof Writeln)
+        {
+            Expression exp = ((Writeln) statement).getExpression();
+            Expression inlined = hoist(exp, hoisted, depth + 1);
+            rewritten = inlined == exp ? statement : new Writeln(inlined);
+        }
+        else
+        {
+            If branch = (If) statement;
+            Condition condition = branch.getCondition();
+            List<Expression> sides = hoist(Arrays.asList(condition.getLeft(),
+                    condition.getRight()), hoisted, depth + 2);
+            Statement body = inline(branch.getStatement(), depth + 1);
+            if (sides.get(0) != condition.getLeft()
+                    || sides.get(1) != condition.getRight())
+            {
+                condition = Condition.create(condition.getOperator(),
+                        sides.get(0), sides.get(1));
+            }
+            rewritten = condition == branch.getCondition()
+                    && body == branch.getStatement() ? statement
+                    : new If(condition, body);
+        }
+        if (hoisted.isEmpty())
+        {
+            return rewritten;
+        }
+        hoisted.add(rewritten);
+        return new Block(hoisted);
+    }
+
+    /**
+     * Inlines the calls within the specified Expression that can be inlined,
+     * adding the Statements that execute them to the specified List, in the
+     * order in which they are executed.  The calls field records whether
+     * anything left within the Statement so far calls a procedure.
+     *
+     * @param exp the Expression to be rewritten
+     * @param hoisted the List to which the Statements of inlined calls are
+     *        added
+     * @param depth the number of nodes above the Expression
+     * @return the rewritten Expression
+     */
+    private Expression hoist(Expression exp, List<Statement> hoisted,
+            int depth)
+    {
+        if (depth >= Nesting.MAX_DEPTH)
+        {
+            calls = true;
+            return exp;
+        }
+        if (exp instanceof BinOp)
+        {
+            BinOp binOp = (BinOp) exp;
+            List<Expression> sides = hoist(Arrays.asList(binOp.getLeft(),
+                    binOp.getRight()), hoisted, depth + 1);
+            if (sides.get(0) == binOp.getLeft()
+                    && sides.get(1) == binOp.getRight())
+            {
+                return exp;
+            }
+            return BinOp.create(binOp.getOperator(), sides.get(0),
+                    sides.get(1));
+        }
+        if (!(exp instanceof ProcedureCall))
+        {
+            return exp;
+        }
+        ProcedureCall call = (ProcedureCall) exp;
+        List<Expression> params = hoist(call.getParams(), hoisted, depth + 1);
+        ProcedureDeclaration dec = declarations.get(call.getName());
+        if (dec != null && !calls && isInlinable(dec, params))
+        {
+            return expand(dec, params, hoisted);
+        }
+        calls = true;
+        for (int i = 0; i < params.size(); i++)
+        {
+            if (params.get(i) != call.getParams().get(i))
+            {
+                return new ProcedureCall(call.getName(), params);
+            }
+        }
+        return exp;
+    }
+
+    /**
+     * Inlines the calls within each of the specified Expressions, which are
+     * evaluated in turn.  Whenever Statements are hoisted out of one of the
+     * Expressions, each Expression before it that is not stable is first
+     * assigned to a fresh variable, so that everything is still evaluated in
+     * the same order.  Such an Expression calls no procedure, since no call
+     * after a call is inlined.
+     *
+     * @param exps the Expressions to be rewritten
+     * @param hoisted the List to which the Statements of inlined calls are
+     *        added
+     * @param depth the number of nodes above the Expressions
+     * @return the rewritten Expressions
+     */
+    private List<Expression> hoist(List<Expression> exps,
+            List<Statement> hoisted, int depth)
+    {
+        ArrayList<Expression> rewritten = new ArrayList<Expression>();
+        int[] ends = new int[exps.size()];
+        for (int i = 0; i < exps.size(); i++)
+        {
+            int start = hoisted.size();
+            rewritten.add(hoist(exps.get(i), hoisted, depth));
+            if (hoisted.size() > start)
+            {
+                for (int j = i - 1; j >= 0; j--)
+                {
+                    if (!isStable(rewritten.get(j)))
+                    {
+                        String spilled = fresh("value");
+                        hoisted.add(ends[j], new Assignment(spilled,
+                                rewritten.get(j)));
+                        rewritten.set(j, new Variable(spilled));
+                    }
+                }
+            }
+            ends[i] = hoisted.size();
+        }
+        return rewritten;
+    }
+
+    /**
+     * Adds the Statements that execute an inlined call to the specified
+     * procedure to the specified List, and returns the Expression that
+     * replaces the call.  A value that is a Number or a fresh variable is
+     * bound to its parameter directly, as long as the procedure does not
+     * assign the parameter; so is the last value that is not, if it is a
+     * Variable, the procedure is quiet, and its Statement does nothing but
+     * assign an Expression to the return variable, so that the Variable is
+     * still read after every other value and before anything that could
+     * fail.  Every other value is assigned to its renamed parameter.  A
+     * procedure that does nothing but assign an Expression to its return
+     * variable is then replaced by the renamed Expression; any other
+     * procedure's renamed Statement is executed after its renamed return
+     * variable is set to 0, unless the Statement begins by setting it, and
+     * the call is replaced by the return variable.
+     *
+     * @param dec the ProcedureDeclaration of the called procedure
+     * @param params the values passed to the procedure
+     * @param hoisted the List to which the Statements are added
+     * @return the Expression that replaces the call
+     */
+    private Expression expand(ProcedureDeclaration dec,
+            List<Expression> params, List<Statement> hoisted)
+    {
+        String name = dec.getName();
+        List<String> names = dec.getParams();
+        Statement body = dec.getStatement();
+        Expression result = getResult(body, name);
+        Map<String, Expression> bound = new HashMap<String, Expression>();
+        boolean last = true;
+        for (int i = params.size() - 1; i >= 0; i--)
+        {
+            String param = names.get(i);
+            Expression value = params.get(i);
+            boolean bindable = !param.equals(name)
+                    && names.indexOf(param) == names.lastIndexOf(param)
+                    && !assigns(body, param);
+            if (bindable && (isSettled(value) || (last && result != null
+                    && value instanceof Variable && isQuiet(dec))))
+            {
+                bound.put(param, value);
+            }
+            last = last && isSettled(value);
+        }
+        Map<String, String> renamed = new HashMap<String, String>();
+        for (int i = 0; i < params.size(); i++)
+        {
+            String param = names.get(i);
+            if (!bound.containsKey(param))
+            {
+                if (!renamed.containsKey(param))
+                {
+                    renamed.put(param, fresh(name + "_" + param));
+                }
+                hoisted.add(new Assignment(renamed.get(param),
+                        params.get(i)));
+            }
+        }
+        inlineCount++;
+        if (result != null)
+        {
+            return copy(result, renamed, bound);
+        }
+        if (!renamed.containsKey(name))
+        {
+            renamed.put(name, fresh(name));
+        }
+        if (!startsWith(body, name))
+        {
+            hoisted.add(new Assignment(renamed.get(name), new Number(0)));
+        }
+        hoisted.add(copy(body, renamed, bound));
+        return new Variable(renamed.get(name));
+    }
+
+    /**
+     * Returns a fresh variable name beginning with the specified prefix, and
+     * adds it to the Program's variables.
+     *
+     * @param prefix the beginning of the name
+     * @return a name that no other variable or procedure has
+     */
+    private String fresh(String prefix)
+    {
+        String name = prefix + "_" + next++;
+        while (!names.add(name))
+        {
+            name = prefix + "_" + next++;
+        }
+        variables.add(name);
+        return name;
+    }
+
+    /**
+     * Returns whether a call that passes the specified values to the
+     * specified procedure may be inlined, as described for the class.
+     *
+     * @param dec the ProcedureDeclaration of the called procedure
+     * @param params the values passed to the procedure
+     * @return true if the call may be inlined; otherwise, false
+     */
+    private boolean isInlinable(ProcedureDeclaration dec,
+            List<Expression> params)
+    {
+        if (params.size() != dec.getParams().size())
+        {
+            return false;
+        }
+        int size = 0;
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(dec.getStatement());
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            size++;
+            if (size > budget || node instanceof ProcedureCall)
+            {
+                return false;
+            }
+            pending.addAll(Nesting.children(node));
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the Statement of the specified procedure touches only
+     * the procedure's own variables and the fresh variables of calls inlined
+     * within it, writes nothing, and does not divide, so that executing it
+     * earlier or later can make no difference.
+     *
+     * @param dec the ProcedureDeclaration to be checked
+     * @return true if the procedure is quiet; otherwise, false
+     */
+    private static boolean isQuiet(ProcedureDeclaration dec)
+    {
+        Set<String> locals = new HashSet<String>(dec.getParams());
+        locals.add(dec.getName());
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(dec.getStatement());
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            if (node instanceof Writeln
+                    || (node instanceof BinOp && divides((BinOp) node))
+                    || (node instanceof Assignment && !isLocal(
+                            ((Assignment) node).getVariable(), locals))
+                    || (node instanceof Variable && !isLocal(
+                            ((Variable) node).getName(), locals)))
+            {
+                return false;
+            }
+            pending.addAll(Nesting.children(node));
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the specified variable belongs to a single call of a
+     * procedure.
+     *
+     * @param name the name of the variable
+     * @param locals the procedure's parameters and return variable
+     * @return true if the variable is one of the locals or a fresh variable
+     *         of a call inlined within the procedure; otherwise, false
+     */
+    private static boolean isLocal(String name, Set<String> locals)
+    {
+        return locals.contains(name) || isTemporary(name);
+    }
+
+    /**
+     * Returns whether the specified BinOp divides or takes a remainder,
+     * which could fail.
+     *
+     * @param binOp the BinOp to be checked
+     * @return true if the BinOp may fail; otherwise, false
+     */
+    private static boolean divides(BinOp binOp)
+    {
+        String op = binOp.getOperator();
+        return !op.equals("+") && !op.equals("-") && !op.equals("*");
+    }
+
+    /**
+     * Returns whether the specified Expression is a Number or a fresh
+     * variable, whose value no inlined Statement can change.
+     *
+     * @param exp the Expression to be checked
+     * @return true if the Expression may be bound to a parameter wherever
+     *         it lies; otherwise, false
+     */
+    private static boolean isSettled(Expression exp)
+    {
+        return exp instanceof Number || (exp instanceof Variable
+                && isTemporary(((Variable) exp).getName()));
+    }
+
+    /**
+     * Returns whether the specified Expression is stable: it reads no
+     * variable but fresh ones, which no hoisted Statement can change, and
+     * does not divide, so it cannot fail.
+     *
+     * @param exp the Expression to be checked
+     * @return true if the Expression may be evaluated later; otherwise,
+     *         false
+     */
+    private static boolean isStable(Expression exp)
+    {
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(exp);
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            if ((node instanceof Variable && !isSettled((Variable) node))
+                    || (node instanceof BinOp && divides((BinOp) node)))
+            {
+                return false;
+            }
+            pending.addAll(Nesting.children(node));
+        }
+        return true;
+    }
+
+    /**
+     * Returns the Expression that the specified Statement assigns to the
+     * return variable, if the Statement does nothing else.
+     *
+     * @param body the Statement of a procedure
+     * @param name the name of the procedure
+     * @return the Expression, or null if the Statement does anything else or
+     *         the Expression reads the return variable
+     */
+    private static Expression getResult(Statement body, String name)
+    {
+        while (body instanceof Block
+                && ((Block) body).getStatements().size() == 1)
+        {
+            body = ((Block) body).getStatements().get(0);
+        }
+        return isSetting(body, name)
+                ? ((Assignment) body).getExpression() : null;
+    }
+
+    /**
+     * Returns whether the first thing the specified Statement does is set
+     * the return variable without reading it.
+     *
+     * @param body the Statement of a procedure
+     * @param name the name of the procedure
+     * @return true if the return variable need not be set to 0 first;
+     *         otherwise, false
+     */
+    static boolean startsWith(Statement body, String name)
+    {
+        while (body instanceof Block && !((Block) body).getStatements()
+                .isEmpty())
+        {
+            body = ((Block) body).getStatements().get(0);
+        }
+        return isSetting(body, name);
+    }
+
+    /**
+     * Returns whether the specified Statement is an Assignment to the
+     * specified variable whose Expression does not read the variable.
+     *
+     * @param statement the Statement to be checked
+     * @param name the name of the variable
+     * @return true if the Statement sets the variable afresh; otherwise,
+     *         false
+     */
+    private static boolean isSetting(Statement statement, String name)
+    {
+        if (!(statement instanceof Assignment)
+                || !((Assignment) statement).getVariable().equals(name))
+        {
+            return false;
+        }
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(((Assignment) statement).getExpression());
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            if (node instanceof Variable
+                    && ((Variable) node).getName().equals(name))
+            {
+                return false;
+            }
+            pending.addAll(Nesting.children(node));
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the specified Statement assigns the specified
+     * variable.
+     *
+     * @param statement the Statement to be checked
+     * @param name the name of the variable
+     * @return true if an Assignment within the Statement sets the variable;
+     *         otherwise, false
+     */
+    private static boolean assigns(Statement statement, String name)
+    {
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(statement);
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            if (node instanceof Assignment
+                    && ((Assignment) node).getVariable().equals(name))
+            {
+                return true;
+            }
+            pending.addAll(Nesting.children(node));
+        }
+        return false;
+    }
+
+    /**
+     * Copies the specified Statement, which calls no procedure, renaming
+     * the variables it reads and assigns and replacing the bound parameters
+     * it reads as specified.  Every Variable and Assignment is new, since
+     * each is resolved where it lies.
+     *
+     * @param statement the Statement to be copied
+     * @param renamed the new name of each renamed variable
+     * @param bound the value of each bound parameter
+     * @return the renamed copy of the Statement
+     */
+    private static Statement copy(Statement statement,
+            Map<String, String> renamed, Map<String, Expression> bound)
+    {
+        if (statement instanceof Block)
+        {
+            ArrayList<Statement> statements = new ArrayList<Statement>();
+            for (Statement s : ((Block) statement).getStatements())
+            {
+                statements.add(copy(s, renamed, bound));
+            }
+            return new Block(statements);
+        }
+        if (statement instanceof Assignment)
+        {
+            Assignment assignment = (Assignment) statement;
+            return new Assignment(rename(assignment.getVariable(), renamed),
+                    copy(assignment.getExpression(), renamed, bound));
+        }
+        if (statement instanceof Writeln)
+        {
+            return new Writeln(copy(((Writeln) statement).getExpression(),
+                    renamed, bound));
+        }
+        if (statement instanceof While)
+        {
+            While loop = (While) statement;
+            return new While(copy(loop.getCondition(), renamed, bound),
+                    copy(loop.getStatement(), renamed, bound));
+        }
+        If branch = (If) statement;
+        return new If(copy(branch.getCondition(), renamed, bound),
+                copy(branch.getStatement(), renamed, bound));
+    }
+
+    /**
+     * Copies the specified Condition, renaming the variables it reads and
+     * replacing the bound parameters.
+     *
+     * @param condition the Condition to be copied
+     * @param renamed the new name of each renamed variable
+     * @param bound the value of each bound parameter
+     * @return the renamed copy of the Condition
+     */
+    private static Condition copy(Condition condition,
+            Map<String, String> renamed, Map<String, Expression> bound)
+    {
+        return Condition.create(condition.getOperator(),
+                copy(condition.getLeft(), renamed, bound),
+                copy(condition.getRight(), renamed, bound));
+    }
+
+    /**
+     * Copies the specified Expression, which calls no procedure, renaming
+     * the variables it reads and replacing the bound parameters.
+     *
+     * @param exp the Expression to be copied
+     * @param renamed the new name of each renamed variable
+     * @param bound the value of each bound parameter, which is a Number or a
+     *        Variable
+     * @return the renamed copy of the Expression
+     */
+    private static Expression copy(Expression exp,
+            Map<String, String> renamed, Map<String, Expression> bound)
+    {
+        if (exp instanceof Variable)
+        {
+            String name = ((Variable) exp).getName();
+            Expression value = bound.get(name);
+            if (value instanceof Number)
+            {
+                return value;
+            }
+            if (value != null)
+            {
+                return new Variable(((Variable) value).getName());
+            }
+            return new Variable(rename(name, renamed));
+        }
+        if (exp instanceof BinOp)
+        {
+            BinOp binOp = (BinOp) exp;
+            return BinOp.create(binOp.getOperator(),
+                    copy(binOp.getLeft(), renamed, bound),
+                    copy(binOp.getRight(), renamed, bound));
+        }
+        return exp;
+    }
+
+    /**
+     * Returns the new name of the specified variable.
+     *
+     * @param name the name of the variable
+     * @param renamed the new name of each renamed variable
+     * @return the variable's new name, or the same name if it is not renamed
+     */
+    private static String rename(String name, Map<String, String> renamed)
+    {
+        String fresh = renamed.get(name);
+        return fresh == null ? name : fresh;
+    }
+}
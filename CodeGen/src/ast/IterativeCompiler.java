@@ -0,0 +1,465 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import parser.Emitter;
+import environment.Scope;
+
+/**
+ * The IterativeCompiler class compiles a Program to MIPS code in the same
+ * way as the Program's own compile method, but without recursing through
+ * deeply nested parts of the AST, so that the depth to which statements and
+ * expressions may be nested is limited only by memory rather than by the
+ * Java stack.
+ *
+ * Any node whose subtree is at most Nesting.MAX_DEPTH nodes tall is handed
+ * to its own recursive compile method.  Work on taller nodes is kept on an
+ * explicit stack of steps, each of which pairs an AST node with an action,
+ * the temporary register the node is compiled to, and a label or line of
+ * code where one is needed.  An operator whose operands are compiled to
+ * registers is finished by two further steps: one carried out once its
+ * first operand has been compiled, which chooses whether to spill it to the
+ * stack, and one carried out once its second operand has been compiled,
+ * which emits the operation or branch.  Nodes are compiled in the same
+ * order as by the recursive methods, so the same code and labels are
+ * emitted.
+ */
+public class IterativeCompiler
+{
+    private static final int STATEMENT = 0;
+    private static final int EXPRESSION = 1;
+    private static final int FIRST = 2;
+    private static final int SECOND = 3;
+    private static final int SPILLED = 4;
+    private static final int IMMEDIATE = 5;
+    private static final int STORE = 6;
+    private static final int PRINT = 7;
+    private static final int EMIT = 8;
+    private static final int ARGUMENT = 9;
+    private static final int CALL = 10;
+
+    private Object[] nodes;
+    private int[] actions;
+    private int[] registers;
+    private String[] labels;
+    private int steps;
+    private Set<Object> deep;
+
+    /**
+     * Creates a new IterativeCompiler with an empty stack of steps.
+     */
+    public IterativeCompiler()
+    {
+        nodes = new Object[64];
+        actions = new int[64];
+        registers = new int[64];
+        labels = new String[64];
+    }
+
+    /**
+     * Compiles the Program to MIPS code: the header, then the Program's
+     * Statement, then the exit command, the code of each procedure, and the
+     * data section.
+     *
+     * @param program the Program to be compiled
+     * @param e the Emitter that is used to write to file
+     */
+    public void compile(Program program, Emitter e)
+    {
+        List<ProcedureDeclaration> compiled = program.declareProcedures(e);
+        deep = Nesting.findDeepNodes(program.getStatement(), false);
+        for (ProcedureDeclaration dec : compiled)
+        {
+            deep.addAll(Nesting.findDeepNodes(dec.getStatement(), false));
+        }
+        Program.emitHeader(e);
+        compile(program.getStatement(), e);
+        Program.emitExit(e);
+        Set<String> dynamicNames = program.findDynamicNames();
+        for (ProcedureDeclaration dec : compiled)
+        {
+            dec.emitEntry(e, dynamicNames);
+            compile(dec.getStatement(), e);
+            dec.emitReturn(e);
+        }
+        Scope globals = new IterativeInterpreter().resolve(program);
+        Program.emitData(e, Arrays.asList(globals.getGlobalNames()));
+    }
+
+    /**
+     * Compiles the specified Statement of the Program being compiled to MIPS
+     * code.
+     *
+     * @param statement the Statement to be compiled
+     * @param e the Emitter that is used to write to file
+     */
+    private void compile(Statement statement, Emitter e)
+    {
+        steps = 0;
+        push(STATEMENT, statement, 0, null);
+        while (steps > 0)
+        {
+            steps--;
+            Object node = nodes[steps];
+            nodes[steps] = null;
+            int reg = registers[steps];
+            String label = labels[steps];
+            switch (actions[steps])
+            {
+                case STATEMENT:
+                    begin((Statement) node, e);
+                    break;
+                case EXPRESSION:
+                    begin((Expression) node, reg, e);
+                    break;
+                case FIRST:
+                    compileSecond(node, reg, label, e);
+                    break;
+                case SECOND:
+                    finish(node, reg, label, Emitter.temp(reg),
+                            Emitter.temp(reg + 1), e);
+                    break;
+                case SPILLED:
+                    e.emitPop("$v1");
+                    finish(node, reg, label, "$v1", Emitter.temp(reg), e);
+                    break;
+                case IMMEDIATE:
+                    ((BinOp) node).emitImmediate(e, reg);
+                    break;
+                case STORE:
+                    ((Assignment) node).emitStore(e);
+                    break;
+                case PRINT:
+                    Writeln.emitPrint(e);
+                    break;
+                case ARGUMENT:
+                    ((ProcedureCall) node).emitArgument(e, reg);
+                    break;
+                case CALL:
+                    ((ProcedureCall) node).emitCall(e);
+                    e.emit("move " + Emitter.temp(reg) + ", $v0");
+                    break;
+                default:
+                    e.emit(label);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Begins the compilation of the specified Statement by pushing the steps
+     * that compile it, or compiles it at once if it is shallow enough to be
+     * compiled recursively.  The labels of an If or While are numbered, and
+     * the label at the top of a While emitted, before anything within it is
+     * compiled, as the recursive compile methods do.
+     *
+     * @param statement the Statement to be compiled
+     * @param e the Emitter that is used to write to file
+     */
+    private void begin(Statement statement, Emitter e)
+    {
+        if (!deep.contains(statement))
+        {
+            statement.compile(e);
+        }
+        else if (statement instanceof Block)
+        {
+            List<Statement> statements = ((Block) statement).getStatements();
+            for (int i = statements.size() - 1; i >= 0; i--)
+            {
+                push(STATEMENT, statements.get(i), 0, null);
+            }
+        }
+        else if (statement instanceof Assignment)
+        {
+            push(STORE, statement, 0, null);
+            pushExpression(((Assignment) statement).getExpression(), 0);
+        }
+        else if (statement instanceof Writeln)
+        {
+            push(PRINT, statement, 0, null);
+            pushExpression(((Writeln) statement).getExpression(), 0);
+        }
+        else if (statement instanceof If)
+        {
+            If ifStatement = (If) statement;
+            String id = "IfStatement" + e.nextLabelID();
+            push(EMIT, null, 0, id + ":");
+            push(STATEMENT, ifStatement.getStatement(), 0, null);
+            pushCondition(ifStatement.getCondition(), id);
+        }
+        else if (statement instanceof While)
+        {
+            While loop = (While) statement;
+            int labelID = e.nextLabelID();
+            String id = "WhileStatement" + labelID;
+            String end = "endWhile" + labelID;
+            e.emit(id + ":");
+            push(EMIT, null, 0, end + ":");
+            push(EMIT, null, 0, "j " + id);
+            push(STATEMENT, loop.getStatement(), 0, null);
+            pushCondition(loop.getCondition(), end);
+        }
+    }
+
+    /**
+     * Begins the compilation of the specified Expression into the temporary
+     * register $t<reg>.  A BinOp that adds a constant compiles its left
+     * operand and then an addiu; any other BinOp compiles both of its
+     * operands.  A ProcedureCall reserves the words for its parameters at
+     * once and then compiles and passes each parameter in turn before the
+     * call itself.  Expressions that are shallow enough to be compiled
+     * recursively, and any other Expression, are compiled at once.
+     *
+     * @param exp the Expression to be compiled
+     * @param reg the index of the temporary register that receives the value
+     * @param e the Emitter that is used to write to file
+     */
+    private void begin(Expression exp, int reg, Emitter e)
+    {
+        if (deep.contains(exp) && exp instanceof ProcedureCall)
+        {
+            ProcedureCall call = (ProcedureCall) exp;
+            List<Expression> params = call.getParams();
+            push(CALL, call, reg, null);
+            for (int i = params.size() - 1; i >= 0; i--)
+            {
+                push(ARGUMENT, call, i, null);
+                pushExpression(params.get(i), 0);
+            }
+            call.emitArgumentArea(e);
+            return;
+        }
+        if (!deep.contains(exp) || !(exp instanceof BinOp))
+        {
+            exp.compileTo(e, reg);
+            return;
+        }
+        BinOp op = (BinOp) exp;
+        if (op.getImmediate() != Integer.MIN_VALUE)
+        {
+            push(IMMEDIATE, op, reg, null);
+            push(EXPRESSION, op.getLeft(), reg, null);
+        }
+        else
+        {
+            compileFirst(op, op.getLeft(), op.getRight(), reg, null);
+        }
+    }
+
+    /**
+     * Pushes the steps that compile the specified Expression into the
+     * temporary register $t<reg>.  If the Expression is too deep to be
+     * compiled recursively, the register needs of every BinOp within it are
+     * computed first, children before parents, so that none of them needs
+     * to recurse to compute its own.
+     *
+     * @param exp the Expression to be compiled
+     * @param reg the index of the temporary register that receives the value
+     */
+    private void pushExpression(Expression exp, int reg)
+    {
+        if (deep.contains(exp))
+        {
+            prepare(exp);
+        }
+        push(EXPRESSION, exp, reg, null);
+    }
+
+    /**
+     * Pushes the steps that compile both sides of the specified Condition
+     * and then branch to the target label if it is false, computing the
+     * register needs of either side that is too deep to compute its own.
+     *
+     * @param condition the Condition to be compiled
+     * @param targetLabel the label branched to when the Condition is false
+     */
+    private void pushCondition(Condition condition, String targetLabel)
+    {
+        if (deep.contains(condition.getLeft()))
+        {
+            prepare(condition.getLeft());
+        }
+        if (deep.contains(condition.getRight()))
+        {
+            prepare(condition.getRight());
+        }
+        compileFirst(condition, condition.getLeft(), condition.getRight(), 0,
+                targetLabel);
+    }
+
+    /**
+     * Pushes the steps that compile the operand of a BinOp or Condition
+     * that is evaluated first into $t<reg>, followed by the step that
+     * compiles the other operand.
+     *
+     * @param owner the BinOp or Condition whose operands are compiled
+     * @param left the Expression preceding the operator
+     * @param right the Expression following the operator
+     * @param reg the index of the lowest temporary register that may be used
+     * @param label the target label of a Condition, or null for a BinOp
+     */
+    private void compileFirst(Object owner, Expression left, Expression right,
+            int reg, String label)
+    {
+        push(FIRST, owner, reg, label);
+        if (Expression.leftFirst(left, right))
+        {
+            push(EXPRESSION, left, reg, null);
+        }
+        else
+        {
+            push(EXPRESSION, right, reg, null);
+        }
+    }
+
+    /**
+     * Pushes the steps that compile the operand of a BinOp or Condition
+     * that is evaluated second, once the first is held in $t<reg>.  If the
+     * second operand needs every remaining register, the first is pushed to
+     * the stack and the second compiled into $t<reg>; otherwise the second
+     * is compiled into $t<reg + 1>.
+     *
+     * @param owner the BinOp or Condition whose operands are compiled
+     * @param reg the index of the register holding the first operand
+     * @param label the target label of a Condition, or null for a BinOp
+     * @param e the Emitter that is used to write to file
+     */
+    private void compileSecond(Object owner, int reg, String label, Emitter e)
+    {
+        Expression left = left(owner);
+        Expression right = right(owner);
+        Expression second = Expression.leftFirst(left, right) ? right : left;
+        if (second.getRegisterNeed() < Emitter.TEMP_REGISTERS - reg)
+        {
+            push(SECOND, owner, reg, label);
+            push(EXPRESSION, second, reg + 1, null);
+        }
+        else
+        {
+            e.emitPush(Emitter.temp(reg));
+            push(SPILLED, owner, reg, label);
+            push(EXPRESSION, second, reg, null);
+        }
+    }
+
+    /**
+     * Emits the operation of a BinOp or the branch of a Condition once both
+     * of its operands are held in registers.
+     *
+     * @param owner the BinOp or Condition whose operands were compiled
+     * @param reg the index of the temporary register that receives the value
+     * @param label the target label of a Condition, or null for a BinOp
+     * @param firstReg the register holding the operand evaluated first
+     * @param secondReg the register holding the operand evaluated second
+     * @param e the Emitter that is used to write to file
+     */
+    private void finish(Object owner, int reg, String label, String firstReg,
+            String secondReg, Emitter e)
+    {
+        String[] operands;
+        if (Expression.leftFirst(left(owner), right(owner)))
+        {
+            operands = new String[] {firstReg, secondReg};
+        }
+        else
+        {
+            operands = new String[] {secondReg, firstReg};
+        }
+        if (owner instanceof BinOp)
+        {
+            ((BinOp) owner).emitOperation(e, reg, operands);
+        }
+        else
+        {
+            ((Condition) owner).emitBranch(e, operands, label);
+        }
+    }
+
+    /**
+     * Returns the Expression preceding the operator of a BinOp or Condition.
+     *
+     * @param owner a BinOp or Condition
+     * @return the left Expression
+     */
+    private static Expression left(Object owner)
+    {
+        if (owner instanceof BinOp)
+        {
+            return ((BinOp) owner).getLeft();
+        }
+        return ((Condition) owner).getLeft();
+    }
+
+    /**
+     * Returns the Expression following the operator of a BinOp or Condition.
+     *
+     * @param owner a BinOp or Condition
+     * @return the right Expression
+     */
+    private static Expression right(Object owner)
+    {
+        if (owner instanceof BinOp)
+        {
+            return ((BinOp) owner).getRight();
+        }
+        return ((Condition) owner).getRight();
+    }
+
+    /**
+     * Computes and caches the register need of every BinOp within the
+     * specified Expression.  The BinOps are listed in pre-order, and their
+     * needs computed in the reverse of that order, so that every BinOp's
+     * operands are computed before it is.
+     *
+     * @param exp the Expression whose register needs are computed
+     */
+    private static void prepare(Expression exp)
+    {
+        ArrayList<BinOp> ops = new ArrayList<BinOp>();
+        ArrayList<Expression> pending = new ArrayList<Expression>();
+        pending.add(exp);
+        while (!pending.isEmpty())
+        {
+            Expression next = pending.remove(pending.size() - 1);
+            if (next instanceof BinOp)
+            {
+                BinOp op = (BinOp) next;
+                ops.add(op);
+                pending.add(op.getRight());
+                pending.add(op.getLeft());
+            }
+        }
+        for (int i = ops.size() - 1; i >= 0; i--)
+        {
+            ops.get(i).getRegisterNeed();
+        }
+    }
+
+    /**
+     * Pushes a step onto the stack of steps, growing it if it is full.
+     *
+     * @param action the action to be carried out
+     * @param node the AST node on which the action is carried out
+     * @param reg the index of the temporary register used by the step
+     * @param label the label or line of code used by the step, if any
+     */
+    private void push(int action, Object node, int reg, String label)
+    {
+        if (steps == nodes.length)
+        {
+            nodes = Arrays.copyOf(nodes, steps * 2);
+            actions = Arrays.copyOf(actions, steps * 2);
+            registers = Arrays.copyOf(registers, steps * 2);
+            labels = Arrays.copyOf(labels, steps * 2);
+        }
+        nodes[steps] = node;
+        actions[steps] = action;
+        registers[steps] = reg;
+        labels[steps] = label;
+        steps++;
+    }
+}
@@ -0,0 +1,536 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import environment.Environment;
+import environment.Frame;
+import environment.MemoCache;
+import environment.Scope;
+
+/**
+ * The IterativeInterpreter class resolves and executes a Program in the same
+ * way as the Program's own resolve and exec methods, but without recursing
+ * through deeply nested parts of the AST, so that the depth to which
+ * statements and expressions may be nested is limited only by memory rather
+ * than by the Java stack.
+ *
+ * Any node whose subtree is at most Nesting.MAX_DEPTH nodes tall is handed
+ * to its own recursive method, so ordinary programs run as quickly as they
+ * do without the IterativeInterpreter.  Work on taller nodes is kept on an
+ * explicit stack of steps, each of which pairs an AST node with an action:
+ * executing a Statement, evaluating an Expression, or finishing a node
+ * whose children have been evaluated, such as applying a BinOp to the
+ * values of its two sides.  The values of evaluated Expressions are kept
+ * on a stack of ints, and every procedure invoked by such a step gets its
+ * local Environment pushed onto a stack of Environments until it returns.
+ * Nodes are visited in the same order as by the recursive methods, so the
+ * output and any errors are the same.  If any procedure is recursive, every
+ * ProcedureCall is treated as too deep, so that procedures may recurse as
+ * deeply as memory allows as well.  A procedure's self tail call starts its
+ * Statement over with new parameter values instead, as ProcedureDeclaration's
+ * execBody method does, so that it needs no further memory.
+ */
+public class IterativeInterpreter
+{
+    private static final int EXEC = 0;
+    private static final int EVAL = 1;
+    private static final int APPLY = 2;
+    private static final int ASSIGN = 3;
+    private static final int PRINT = 4;
+    private static final int IF = 5;
+    private static final int WHILE = 6;
+    private static final int CALL = 7;
+    private static final int RETURN = 8;
+    private static final int TAIL = 9;
+
+    private Object[] nodes;
+    private int[] actions;
+    private int steps;
+    private int[] values;
+    private int valueCount;
+    private Environment[] environments;
+    private ProcedureDeclaration[] declarations;
+    private MemoCache.Key[] keys;
+    private int environmentCount;
+    private int declarationCount;
+    private Program measured;
+    private Set<Object> deep;
+
+    /**
+     * Creates a new IterativeInterpreter with empty stacks.
+     */
+    public IterativeInterpreter()
+    {
+        nodes = new Object[64];
+        actions = new int[64];
+        values = new int[64];
+        environments = new Environment[16];
+        declarations = new ProcedureDeclaration[16];
+        keys = new MemoCache.Key[16];
+    }
+
+    /**
+     * Resolves every variable and procedure parameter within the Program to
+     * a fixed (depth, slot) address, in the same way as Program's resolve
+     * method.
+     *
+     * @param program the Program to be resolved
+     * @return the global Scope, which can be used to create the root Frame
+     * in which the Program is executed
+     */
+    public Scope resolve(Program program)
+    {
+        measure(program);
+        Scope globals = program.createScope();
+        for (ProcedureDeclaration dec : program.getProcedures())
+        {
+            resolve(dec.getStatement(), dec.createScope(globals));
+        }
+        resolve(program.getStatement(), globals);
+        return globals;
+    }
+
+    /**
+     * Resolves every variable within the specified Statement.  The nodes of
+     * the Statement that are too deep to be resolved recursively are visited
+     * in pre-order, children left to right, by pushing each node's children
+     * onto a stack in reverse order.
+     *
+     * @param statement the Statement to be resolved
+     * @param scope the Scope in which the Statement is executed
+     */
+    private void resolve(Statement statement, Scope scope)
+    {
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(statement);
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            if (!deep.contains(node))
+            {
+                if (node instanceof Statement)
+                {
+                    ((Statement) node).resolve(scope);
+                }
+                else
+                {
+                    ((Expression) node).resolve(scope);
+                }
+                continue;
+            }
+            if (node instanceof Assignment)
+            {
+                ((Assignment) node).resolveVariable(scope);
+            }
+            List<Object> children = Nesting.children(node);
+            for (int i = children.size() - 1; i >= 0; i--)
+            {
+                pending.add(children.get(i));
+            }
+        }
+    }
+
+    /**
+     * Finds the nodes of the specified Program that are too deep to be
+     * walked recursively, unless they have already been found.  If the
+     * Statement of any procedure is too deep, every ProcedureCall is too,
+     * since evaluating it executes that Statement.  So is every
+     * ProcedureCall of a Program with a recursive procedure, whose calls
+     * may be nested arbitrarily deep while it runs.
+     *
+     * @param program the Program to be measured
+     */
+    private void measure(Program program)
+    {
+        if (program == measured)
+        {
+            return;
+        }
+        boolean deepCalls = new CallGraph(program).hasRecursion();
+        for (ProcedureDeclaration dec : program.getProcedures())
+        {
+            if (!Nesting.findDeepNodes(dec.getStatement(), false).isEmpty())
+            {
+                deepCalls = true;
+            }
+        }
+        deep = Nesting.findDeepNodes(program.getStatement(), deepCalls);
+        for (ProcedureDeclaration dec : program.getProcedures())
+        {
+            deep.addAll(Nesting.findDeepNodes(dec.getStatement(), deepCalls));
+        }
+        measured = program;
+    }
+
+    /**
+     * Executes each procedure declaration within the given Environment and
+     * then executes the Program's statement, in the same way as Program's
+     * exec method.
+     *
+     * @param program the Program to be executed
+     * @param env the Environment in which the Program is to be executed
+     */
+    public void run(Program program, Environment env)
+    {
+        measure(program);
+        for (ProcedureDeclaration dec : program.getProcedures())
+        {
+            dec.exec(env);
+        }
+        start(env);
+        push(EXEC, program.getStatement());
+        execute();
+    }
+
+    /**
+     * Empties every stack, including any activations left on the FrameStack
+     * by a run that failed, and makes the specified Environment the current
+     * one.
+     *
+     * @param env the Environment in which execution begins
+     */
+    private void start(Environment env)
+    {
+        if (env instanceof Frame)
+        {
+            ((Frame) env).getStack().release(0);
+        }
+        steps = 0;
+        valueCount = 0;
+        environmentCount = 0;
+        declarationCount = 0;
+        pushEnvironment(env);
+    }
+
+    /**
+     * Carries out steps until none remain.  Each step is popped from the
+     * top of the stack, and may push further steps that are carried out
+     * before the ones beneath it.
+     */
+    private void execute()
+    {
+        while (steps > 0)
+        {
+            steps--;
+            Object node = nodes[steps];
+            nodes[steps] = null;
+            Environment env = environments[environmentCount - 1];
+            switch (actions[steps])
+            {
+                case EXEC:
+                    begin((Statement) node, env);
+                    break;
+                case EVAL:
+                    begin((Expression) node, env);
+                    break;
+                case APPLY:
+                    valueCount--;
+                    values[valueCount - 1] = ((BinOp) node).apply(
+                            values[valueCount - 1], values[valueCount]);
+                    break;
+                case ASSIGN:
+                    ((Assignment) node).assign(env, values[--valueCount]);
+                    break;
+                case PRINT:
+                    System.out.println(values[--valueCount]);
+                    break;
+                case IF:
+                    If ifStatement = (If) node;
+                    if (test(ifStatement.getCondition()) == 1)
+                    {
+                        push(EXEC, ifStatement.getStatement());
+                    }
+                    break;
+                case WHILE:
+                    While loop = (While) node;
+                    if (test(loop.getCondition()) == 1)
+                    {
+                        push(EXEC, loop);
+                        push(EXEC, loop.getStatement());
+                    }
+                    break;
+                case CALL:
+                    call((ProcedureCall) node, env);
+                    break;
+                case TAIL:
+                    tailCall((ProcedureCall) node, env);
+                    break;
+                default:
+                    environmentCount--;
+                    environments[environmentCount] = null;
+                    declarationCount--;
+                    ProcedureDeclaration dec = declarations[declarationCount];
+                    int result = ((ProcedureCall) node).leave(dec, env);
+                    if (keys[declarationCount] != null)
+                    {
+                        dec.getMemo().put(keys[declarationCount], result);
+                        keys[declarationCount] = null;
+                    }
+                    push(result);
+                    declarations[declarationCount] = null;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Begins the execution of the specified Statement by pushing the steps
+     * that execute it, or executes it at once if it is shallow enough to be
+     * executed recursively.
+     *
+     * @param statement the Statement to be executed
+     * @param env the current Environment
+     */
+    private void begin(Statement statement, Environment env)
+    {
+        if (!deep.contains(statement))
+        {
+            statement.exec(env);
+        }
+        else if (statement instanceof Block)
+        {
+            List<Statement> statements = ((Block) statement).getStatements();
+            for (int i = statements.size() - 1; i >= 0; i--)
+            {
+                push(EXEC, statements.get(i));
+            }
+        }
+        else if (isTailCall(statement, env))
+        {
+            ProcedureCall call = (ProcedureCall)
+                    ((Assignment) statement).getExpression();
+            push(TAIL, call);
+            List<Expression> params = call.getParams();
+            for (int i = params.size() - 1; i >= 0; i--)
+            {
+                push(EVAL, params.get(i));
+            }
+        }
+        else if (statement instanceof Assignment)
+        {
+            push(ASSIGN, statement);
+            push(EVAL, ((Assignment) statement).getExpression());
+        }
+        else if (statement instanceof Writeln)
+        {
+            push(PRINT, statement);
+            push(EVAL, ((Writeln) statement).getExpression());
+        }
+        else if (statement instanceof If)
+        {
+            push(IF, statement);
+            pushCondition(((If) statement).getCondition());
+        }
+        else if (statement instanceof While)
+        {
+            push(WHILE, statement);
+            pushCondition(((While) statement).getCondition());
+        }
+    }
+
+    /**
+     * Begins the evaluation of the specified Expression by pushing the steps
+     * that evaluate it, or evaluates it at once if it is shallow enough to
+     * be evaluated recursively.  The ProcedureDeclaration invoked by a
+     * ProcedureCall is looked up before its parameters are evaluated, as
+     * ProcedureCall's eval method does.
+     *
+     * @param exp the Expression to be evaluated
+     * @param env the current Environment
+     */
+    private void begin(Expression exp, Environment env)
+    {
+        if (!deep.contains(exp))
+        {
+            push(exp.eval(env));
+        }
+        else if (exp instanceof BinOp)
+        {
+            push(APPLY, exp);
+            push(EVAL, ((BinOp) exp).getRight());
+            push(EVAL, ((BinOp) exp).getLeft());
+        }
+        else if (exp instanceof ProcedureCall)
+        {
+            ProcedureCall call = (ProcedureCall) exp;
+            pushDeclaration(call.getDeclaration(env));
+            push(CALL, call);
+            List<Expression> params = call.getParams();
+            for (int i = params.size() - 1; i >= 0; i--)
+            {
+                push(EVAL, params.get(i));
+            }
+        }
+    }
+
+    /**
+     * Pushes the steps that evaluate both sides of the specified Condition,
+     * left first.
+     *
+     * @param condition the Condition whose sides are evaluated
+     */
+    private void pushCondition(Condition condition)
+    {
+        push(EVAL, condition.getRight());
+        push(EVAL, condition.getLeft());
+    }
+
+    /**
+     * Pops the values of both sides of the specified Condition and compares
+     * them.
+     *
+     * @param condition the Condition being evaluated
+     * @return 1 if the Condition evaluates to true
+     *         0 if the Condition evaluates to false
+     */
+    private int test(Condition condition)
+    {
+        valueCount -= 2;
+        return condition.test(values[valueCount], values[valueCount + 1]);
+    }
+
+    /**
+     * Invokes a procedure once the values of its parameters have been
+     * pushed.  The values are popped into the procedure's new local
+     * Environment, which becomes the current one until the step that
+     * returns from the procedure, pushed beneath its Statement, is reached.
+     * In a resolved Program, the local Environment is an activation on the
+     * FrameStack, so no call allocates anything once the stacks have grown.
+     *
+     * If the procedure has a MemoCache that remembers a result for the
+     * same values, the result is pushed instead and the procedure is not
+     * invoked.  Otherwise the Key of the call is kept alongside its
+     * declaration, so that the result can be remembered when it returns.
+     *
+     * @param call the ProcedureCall being evaluated
+     * @param env the Environment in which the ProcedureCall was invoked
+     */
+    private void call(ProcedureCall call, Environment env)
+    {
+        int count = call.getParams().size();
+        valueCount -= count;
+        ProcedureDeclaration dec = declarations[declarationCount - 1];
+        MemoCache memo = dec.getMemo();
+        if (memo != null)
+        {
+            if (memo.lookup(values, valueCount, count))
+            {
+                declarationCount--;
+                declarations[declarationCount] = null;
+                push(memo.getValue());
+                return;
+            }
+            keys[declarationCount - 1] = memo.key(values, valueCount, count);
+        }
+        pushEnvironment(call.enter(dec, env, values, valueCount));
+        push(RETURN, call);
+        push(EXEC, dec.getStatement());
+    }
+
+    /**
+     * Returns whether the specified Statement is the self tail call of the
+     * procedure being executed, as described for ProcedureDeclaration's
+     * execBody method, and its name still refers to that procedure.  The
+     * procedure's Statement is then started over with new values instead
+     * of invoking the procedure again.  No step of that Statement remains
+     * beneath a tail call, which is the last thing it does, so the step
+     * that returns from the procedure is left where it is.
+     *
+     * @param statement the Statement being executed
+     * @param env the current Environment
+     * @return true if the Statement is a self tail call; otherwise, false
+     */
+    private boolean isTailCall(Statement statement, Environment env)
+    {
+        if (declarationCount == 0)
+        {
+            return false;
+        }
+        ProcedureDeclaration dec = declarations[declarationCount - 1];
+        return dec.getTailCall() == statement && ((ProcedureCall)
+                dec.getTailCall().getExpression()).getDeclaration(env) == dec;
+    }
+
+    /**
+     * Rebinds the parameters of the procedure being executed to the values
+     * of a self tail call's parameters, once they have been pushed, and
+     * starts its Statement over.
+     *
+     * @param call the self tail call
+     * @param env the local Environment of the procedure being executed
+     */
+    private void tailCall(ProcedureCall call, Environment env)
+    {
+        valueCount -= call.getParams().size();
+        ProcedureDeclaration dec = declarations[declarationCount - 1];
+        call.rebind(dec, env, values, valueCount);
+        push(EXEC, dec.getStatement());
+    }
+
+    /**
+     * Pushes a step onto the stack of steps, growing it if it is full.
+     *
+     * @param action the action to be carried out
+     * @param node the AST node on which the action is carried out
+     */
+    private void push(int action, Object node)
+    {
+        if (steps == nodes.length)
+        {
+            nodes = Arrays.copyOf(nodes, steps * 2);
+            actions = Arrays.copyOf(actions, steps * 2);
+        }
+        nodes[steps] = node;
+        actions[steps] = action;
+        steps++;
+    }
+
+    /**
+     * Pushes a value onto the stack of values, growing it if it is full.
+     *
+     * @param value the value of an evaluated Expression
+     */
+    private void push(int value)
+    {
+        if (valueCount == values.length)
+        {
+            values = Arrays.copyOf(values, valueCount * 2);
+        }
+        values[valueCount++] = value;
+    }
+
+    /**
+     * Makes the specified Environment the current one, growing the stack of
+     * Environments if it is full.
+     *
+     * @param env the Environment to be made current
+     */
+    private void pushEnvironment(Environment env)
+    {
+        if (environmentCount == environments.length)
+        {
+            environments = Arrays.copyOf(environments, environmentCount * 2);
+        }
+        environments[environmentCount++] = env;
+    }
+
+    /**
+     * Pushes the ProcedureDeclaration of a procedure being invoked, with no
+     * Key for its result, growing the stack of declarations if it is full.
+     *
+     * @param dec the ProcedureDeclaration of the invoked procedure
+     */
+    private void pushDeclaration(ProcedureDeclaration dec)
+    {
+        if (declarationCount == declarations.length)
+        {
+            declarations = Arrays.copyOf(declarations, declarationCount * 2);
+            keys = Arrays.copyOf(keys, declarationCount * 2);
+        }
+        keys[declarationCount] = null;
+        declarations[declarationCount++] = dec;
+    }
+}
@@ -0,0 +1,247 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The Nesting class finds the nodes of an AST that are nested too deeply to
+ * be walked by the recursive exec, eval, compile, and resolve methods.  A
+ * node whose subtree is at most MAX_DEPTH nodes tall can safely be handed
+ * to those methods; the IterativeInterpreter and IterativeCompiler walk
+ * every taller node with explicit stacks instead.
+ *
+ * The height of every node is computed in post-order with explicit stacks:
+ * each node is expanded once to push its children, and finished once the
+ * heights of all of its children are on top of the stack of heights.  The
+ * height of a Number or Variable is pushed as soon as its parent is
+ * expanded, since such a node has no children to wait for.
+ */
+class Nesting
+{
+    static final int MAX_DEPTH = 256;
+
+    private Object[] pending;
+    private int[] childCounts;
+    private int pendingCount;
+    private int[] heights;
+    private int heightCount;
+
+    /**
+     * Creates a new Nesting with empty stacks.
+     */
+    private Nesting()
+    {
+        pending = new Object[64];
+        childCounts = new int[64];
+        heights = new int[64];
+    }
+
+    /**
+     * Returns the nodes within the specified Statement whose subtrees are
+     * more than MAX_DEPTH nodes tall.  The sides of a Condition are counted
+     * as children of its If or While.
+     *
+     * @param root the Statement to be measured
+     * @param deepCalls true if every ProcedureCall must be treated as too
+     *        deep, because the Statement of some procedure is
+     * @return the set of nodes that are too deep to be walked recursively
+     */
+    static Set<Object> findDeepNodes(Statement root, boolean deepCalls)
+    {
+        return new Nesting().measure(root, deepCalls);
+    }
+
+    /**
+     * Computes the height of every node within the specified Statement and
+     * collects the nodes that are too deep, as described for findDeepNodes.
+     *
+     * @param root the Statement to be measured
+     * @param deepCalls true if every ProcedureCall must be treated as too
+     *        deep
+     * @return the set of nodes that are too deep to be walked recursively
+     */
+    private Set<Object> measure(Statement root, boolean deepCalls)
+    {
+        HashSet<Object> deep = new HashSet<Object>();
+        push(root, -1);
+        while (pendingCount > 0)
+        {
+            pendingCount--;
+            Object node = pending[pendingCount];
+            pending[pendingCount] = null;
+            int children = childCounts[pendingCount];
+            if (children < 0)
+            {
+                int count = pendingCount;
+                push(node, 0);
+                children = expand(node);
+                if (pendingCount > count + 1)
+                {
+                    childCounts[count] = children;
+                    continue;
+                }
+                pendingCount--;
+                pending[pendingCount] = null;
+            }
+            int height = 0;
+            for (int i = 0; i < children; i++)
+            {
+                height = Math.max(height, heights[--heightCount]);
+            }
+            height++;
+            if (deepCalls && node instanceof ProcedureCall)
+            {
+                height = Math.max(height, MAX_DEPTH + 1);
+            }
+            if (height > MAX_DEPTH)
+            {
+                deep.add(node);
+            }
+            pushHeight(height);
+        }
+        return deep;
+    }
+
+    /**
+     * Pushes the children of the specified node, as returned by the children
+     * method, in reverse order, except that the height of each Number or
+     * Variable among them is pushed at once instead.
+     *
+     * @param node the node being expanded
+     * @return the number of children the node has
+     */
+    private int expand(Object node)
+    {
+        List<? extends Object> children;
+        if (node instanceof Block)
+        {
+            children = ((Block) node).getStatements();
+        }
+        else if (node instanceof BinOp)
+        {
+            expandChild(((BinOp) node).getRight());
+            expandChild(((BinOp) node).getLeft());
+            return 2;
+        }
+        else if (node instanceof ProcedureCall)
+        {
+            children = ((ProcedureCall) node).getParams();
+        }
+        else
+        {
+            children = children(node);
+        }
+        for (int i = children.size() - 1; i >= 0; i--)
+        {
+            expandChild(children.get(i));
+        }
+        return children.size();
+    }
+
+    /**
+     * Pushes the specified child so that it is expanded later, or pushes its
+     * height of 1 if it is a Number or Variable.
+     *
+     * @param child a child of the node being expanded
+     */
+    private void expandChild(Object child)
+    {
+        if (child instanceof Number || child instanceof Variable)
+        {
+            pushHeight(1);
+        }
+        else
+        {
+            push(child, -1);
+        }
+    }
+
+    /**
+     * Pushes a node onto the stack of pending nodes, growing it if it is
+     * full.
+     *
+     * @param node the node to be expanded or finished
+     * @param children the number of the node's children, or -1 if the node
+     *        has not yet been expanded
+     */
+    private void push(Object node, int children)
+    {
+        if (pendingCount == pending.length)
+        {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+            childCounts = Arrays.copyOf(childCounts, pendingCount * 2);
+        }
+        pending[pendingCount] = node;
+        childCounts[pendingCount] = children;
+        pendingCount++;
+    }
+
+    /**
+     * Pushes the height of a finished node onto the stack of heights,
+     * growing it if it is full.
+     *
+     * @param height the height of the node's subtree
+     */
+    private void pushHeight(int height)
+    {
+        if (heightCount == heights.length)
+        {
+            heights = Arrays.copyOf(heights, heightCount * 2);
+        }
+        heights[heightCount++] = height;
+    }
+
+    /**
+     * Returns the children of the specified node: the Statements of a
+     * Block, the Expression of an Assignment or Writeln, the sides of the
+     * Condition and the Statement of an If or While, the operands of a
+     * BinOp, or the parameters of a ProcedureCall.  Any other node has no
+     * children.
+     *
+     * @param node a Statement or Expression
+     * @return a List containing the node's children
+     */
+    static List<Object> children(Object node)
+    {
+        ArrayList<Object> children = new ArrayList<Object>();
+        if (node instanceof Block)
+        {
+            children.addAll(((Block) node).getStatements());
+        }
+        else if (node instanceof Assignment)
+        {
+            children.add(((Assignment) node).getExpression());
+        }
+        else if (node instanceof Writeln)
+        {
+            children.add(((Writeln) node).getExpression());
+        }
+        else if (node instanceof If)
+        {
+            If ifStatement = (If) node;
+            children.add(ifStatement.getCondition().getLeft());
+            children.add(ifStatement.getCondition().getRight());
+            children.add(ifStatement.getStatement());
+        }
+        else if (node instanceof While)
+        {
+            While loop = (While) node;
+            children.add(loop.getCondition().getLeft());
+            children.add(loop.getCondition().getRight());
+            children.add(loop.getStatement());
+        }
+        else if (node instanceof BinOp)
+        {
+            children.add(((BinOp) node).getLeft());
+            children.add(((BinOp) node).getRight());
+        }
+        else if (node instanceof ProcedureCall)
+        {
+            children.addAll(((ProcedureCall) node).getParams());
+        }
+        return children;
+    }
+}
@@ -2,6 +2,7 @@ package ast;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Scope;
 
 /**
  * The Number class serves as a wrapper for a single integer value. Numbers, 
@@ -56,4 +57,35 @@ public class Number extends Expression
     {
     	e.emit("li $v0, " + value);
     }
+    
+    /**
+     * Compiles the Number to MIPS code by loading it directly into the
+     * specified temporary register.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param reg the index of the temporary register that receives the value
+     */
+    public void compileTo(Emitter e, int reg)
+    {
+        e.emit("li " + Emitter.temp(reg) + ", " + value);
+    }
+    
+    /**
+     * Numbers do not contain any variables, so there is nothing to resolve.
+     * 
+     * @param scope the Scope in which the Number is evaluated
+     */
+    public void resolve(Scope scope)
+    {
+    }
+    
+    /**
+     * Returns the integer value stored by the Number.
+     * 
+     * @return the Number's value
+     */
+    public int getValue()
+    {
+        return value;
+    }
 }
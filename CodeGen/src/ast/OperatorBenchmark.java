@@ -0,0 +1,286 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import environment.Environment;
+import environment.Frame;
+import environment.Scope;
+
+/**
+ * The OperatorBenchmark class measures how long BinOps and Conditions take
+ * to evaluate depending on how they choose their operator.  The same random
+ * Conditions, each comparing two random Expressions over a few variables,
+ * are built three times: with nodes that compare the operator's String on
+ * every evaluation, as BinOp and Condition once did; with plain BinOps and
+ * Conditions, which switch on the operator's integer code; and with the
+ * specialized subclasses returned by the create methods, as the Parser
+ * builds them.  Each set is evaluated repeatedly after warming up, and the
+ * best time per Condition is reported, along with a checksum of the results
+ * to show that all three agree.
+ */
+public class OperatorBenchmark
+{
+    private static final int STRINGS = 0;
+    private static final int CODES = 1;
+    private static final int SPECIALIZED = 2;
+    private static final String[] NAMES = {"a", "b", "c", "d"};
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "%"};
+    private static final String[] LOGIC_OPERATORS =
+            {"<>", "<", "<=", ">", ">=", "="};
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of Conditions, followed by the depth of each
+     *        Expression, if given
+     */
+    public static void main(String[] args)
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        Scope scope = new Scope(new HashSet<String>());
+        String[] labels = {"String comparisons", "integer codes",
+            "specialized nodes"};
+        long[] best = new long[labels.length];
+        long[] checksums = new long[labels.length];
+        List<List<Condition>> sets = new ArrayList<List<Condition>>();
+        for (int kind = 0; kind < labels.length; kind++)
+        {
+            Random random = new Random(42);
+            List<Condition> conditions = new ArrayList<Condition>();
+            for (int i = 0; i < count; i++)
+            {
+                Condition condition = condition(kind, random, depth);
+                condition.resolve(scope);
+                conditions.add(condition);
+            }
+            sets.add(conditions);
+            best[kind] = Long.MAX_VALUE;
+        }
+        Frame frame = new Frame(scope);
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            frame.setVariable(NAMES[i], 3 * i + 7);
+        }
+        for (int round = 0; round < 30; round++)
+        {
+            for (int kind = 0; kind < labels.length; kind++)
+            {
+                long start = System.nanoTime();
+                checksums[kind] = run(sets.get(kind), frame, 20);
+                best[kind] = Math.min(best[kind], System.nanoTime() - start);
+            }
+        }
+        for (int kind = 0; kind < labels.length; kind++)
+        {
+            System.out.println(labels[kind] + ": "
+                    + String.format("%.1f", best[kind] / (20.0 * count))
+                    + " ns per Condition (checksum " + checksums[kind] + ")");
+        }
+        System.out.println("speedup over String comparisons: "
+                + String.format("%.2f", (double) best[STRINGS]
+                        / best[SPECIALIZED]) + "x");
+    }
+
+    /**
+     * Evaluates every Condition within a set a number of times.
+     *
+     * @param conditions the Conditions to be evaluated
+     * @param env the Environment holding the variables
+     * @param times the number of times each Condition is evaluated
+     * @return the number of evaluations in which a Condition held
+     */
+    private static long run(List<Condition> conditions, Environment env,
+            int times)
+    {
+        long held = 0;
+        for (int t = 0; t < times; t++)
+        {
+            for (Condition condition : conditions)
+            {
+                held += condition.eval(env);
+            }
+        }
+        return held;
+    }
+
+    /**
+     * Builds a random Condition comparing two random Expressions.
+     *
+     * @param kind STRINGS, CODES, or SPECIALIZED
+     * @param random the source of random choices
+     * @param depth the depth of each Expression
+     * @return the Condition
+     */
+    private static Condition condition(int kind, Random random, int depth)
+    {
+        String logicOp = LOGIC_OPERATORS[random.nextInt(
+                LOGIC_OPERATORS.length)];
+        Expression left = expression(kind, random, depth);
+        Expression right = expression(kind, random, depth);
+        if (kind == STRINGS)
+        {
+            return new StringCondition(logicOp, left, right);
+        }
+        if (kind == CODES)
+        {
+            return new Condition(logicOp, left, right);
+        }
+        return Condition.create(logicOp, left, right);
+    }
+
+    /**
+     * Builds a random Expression of variables and Numbers.  Only Numbers
+     * other than 0 are divided by, so that no Expression fails.
+     *
+     * @param kind STRINGS, CODES, or SPECIALIZED
+     * @param random the source of random choices
+     * @param depth the depth of the Expression
+     * @return the Expression
+     */
+    private static Expression expression(int kind, Random random, int depth)
+    {
+        if (depth == 0)
+        {
+            if (random.nextBoolean())
+            {
+                return new Number(random.nextInt(100));
+            }
+            return new Variable(NAMES[random.nextInt(NAMES.length)]);
+        }
+        String op = OPERATORS[random.nextInt(OPERATORS.length)];
+        Expression left = expression(kind, random, depth - 1);
+        Expression right;
+        if (op.equals("/") || op.equals("%"))
+        {
+            right = new Number(random.nextInt(9) + 1);
+        }
+        else
+        {
+            right = expression(kind, random, depth - 1);
+        }
+        if (kind == STRINGS)
+        {
+            return new StringBinOp(op, left, right);
+        }
+        if (kind == CODES)
+        {
+            return new BinOp(op, left, right);
+        }
+        return BinOp.create(op, left, right);
+    }
+
+    /**
+     * The StringBinOp class is a BinOp that compares its operator against
+     * each String in turn every time it is evaluated.
+     */
+    private static class StringBinOp extends BinOp
+    {
+        /**
+         * Creates a new instance of the StringBinOp class.
+         *
+         * @param op the operator
+         * @param left the expression preceding the operator
+         * @param right the expression following the operator
+         */
+        StringBinOp(String op, Expression left, Expression right)
+        {
+            super(op, left, right);
+        }
+
+        /**
+         * Evaluates both Expressions and relates them by the operator.
+         *
+         * @param env the Environment object that stores known variables
+         * @return the integer value of the BinOp
+         */
+        public int eval(Environment env)
+        {
+            int leftSide = getLeft().eval(env);
+            int rightSide = getRight().eval(env);
+            String op = getOperator();
+            if (op.equals("+"))
+            {
+                return leftSide + rightSide;
+            }
+            else if (op.equals("-"))
+            {
+                return leftSide - rightSide;
+            }
+            else if (op.equals("*"))
+            {
+                return leftSide * rightSide;
+            }
+            else if (op.equals("/"))
+            {
+                return divide(leftSide, rightSide);
+            }
+            else
+            {
+                return leftSide % rightSide;
+            }
+        }
+    }
+
+    /**
+     * The StringCondition class is a Condition that compares its logic
+     * operator against every String every time it is evaluated.
+     */
+    private static class StringCondition extends Condition
+    {
+        /**
+         * Creates a new instance of the StringCondition class.
+         *
+         * @param logicOp the logic operator
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        StringCondition(String logicOp, Expression left, Expression right)
+        {
+            super(logicOp, left, right);
+        }
+
+        /**
+         * Evaluates both Expressions and compares them by the logic
+         * operator.
+         *
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
+        {
+            int leftExp = getLeft().eval(env);
+            int rightExp = getRight().eval(env);
+            String logicOp = getOperator();
+            int cond = 0;
+            if (logicOp.equals("<>") && rightExp != leftExp)
+            {
+                cond = 1;
+            }
+            if (logicOp.equals("<") && leftExp < rightExp)
+            {
+                cond = 1;
+            }
+            if (logicOp.equals("<=") && leftExp <= rightExp)
+            {
+                cond = 1;
+            }
+            if (logicOp.equals(">") && leftExp > rightExp)
+            {
+                cond = 1;
+            }
+            if (logicOp.equals(">=") && leftExp >= rightExp)
+            {
+                cond = 1;
+            }
+            if (logicOp.equals("=") && leftExp == rightExp)
+            {
+                cond = 1;
+            }
+            return cond;
+        }
+    }
+}
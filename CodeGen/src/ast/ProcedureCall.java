@@ -5,6 +5,10 @@ import java.util.List;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Frame;
+import environment.FrameStack;
+import environment.MemoCache;
+import environment.Scope;
 
 /**
  * The ProcedureCall class serves as one half of the procedure structure
@@ -20,6 +24,9 @@ public class ProcedureCall extends Expression
 {
     private String name;
     private List<Expression> params;
+    private Environment cachedRoot;
+    private int cachedVersion;
+    private ProcedureDeclaration cachedDeclaration;
     
     /**
      * Creates a new instance of the ProcedureCall class with the specified
@@ -46,6 +53,18 @@ public class ProcedureCall extends Expression
      * procedure is also created;  it serves as the return value of the
      * procedure.
      * 
+     * If the Program has been resolved, the procedure instead gets an
+     * activation on the root Frame's FrameStack.  The value of each
+     * parameter is pushed onto the FrameStack as it is evaluated, where it
+     * already lies in the slot that the ProcedureDeclaration assigned to it,
+     * so the call allocates nothing.  The activation is popped once the
+     * return variable has been read, or if the procedure fails.
+     * 
+     * If the procedure is pure and has a MemoCache, its result is looked up
+     * there first, as described for evalMemoized.  Its Statement is executed
+     * by the ProcedureDeclaration's execBody method, which runs any self
+     * tail call as a loop.
+     * 
      * @param env the Environment in which the ProcedureCall has been invoked
      * 
      * @return the value stored within the return variable - this value
@@ -53,22 +72,259 @@ public class ProcedureCall extends Expression
      */
     public int eval(Environment env)
     {
+        ProcedureDeclaration dec = getDeclaration(env);
+        MemoCache memo = dec.getMemo();
+        if (memo != null)
+        {
+            return evalMemoized(dec, memo, env);
+        }
+        String[] names = dec.getFrameNames();
+        if (names != null)
+        {
+            FrameStack stack = ((Frame) env).getStack();
+            int mark = stack.getTop();
+            try
+            {
+                for (int i = 0; i < params.size(); i++)
+                {
+                    stack.push(params.get(i).eval(env));
+                }
+                FrameStack local = stack.enter(mark, names,
+                        dec.getParamSlots(), dec.getReturnSlot());
+                dec.execBody(local);
+                return local.getLocal(dec.getReturnSlot());
+            }
+            finally
+            {
+                stack.release(mark);
+            }
+        }
+        int[] values = new int[params.size()];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = params.get(i).eval(env);
+        }
+        Environment local = enter(dec, env, values, 0);
+        dec.execBody(local);
+        return leave(dec, local);
+    }
+    
+    /**
+     * Evaluates a call to a pure procedure.  The values of the parameters
+     * are looked up in the procedure's MemoCache, and the remembered result
+     * is returned without executing the procedure if there is one.
+     * Otherwise the procedure is executed as usual and its result is
+     * remembered, unless it fails.
+     * 
+     * @param dec the ProcedureDeclaration of the invoked procedure
+     * @param memo the procedure's MemoCache
+     * @param env the Environment in which the ProcedureCall has been invoked
+     * @return the value returned by the procedure
+     */
+    private int evalMemoized(ProcedureDeclaration dec, MemoCache memo,
+            Environment env)
+    {
+        int[] values = new int[params.size()];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = params.get(i).eval(env);
+        }
+        if (memo.lookup(values, 0, values.length))
+        {
+            return memo.getValue();
+        }
+        int result;
+        if (dec.getFrameNames() != null)
+        {
+            FrameStack stack = ((Frame) env).getStack();
+            int mark = stack.getTop();
+            try
+            {
+                Environment local = enter(dec, env, values, 0);
+                dec.execBody(local);
+                result = leave(dec, local);
+            }
+            finally
+            {
+                stack.release(mark);
+            }
+        }
+        else
+        {
+            Environment local = enter(dec, env, values, 0);
+            dec.execBody(local);
+            result = leave(dec, local);
+        }
+        memo.put(memo.key(values, 0, values.length), result);
+        return result;
+    }
+    
+    /**
+     * Retrieves the invoked ProcedureDeclaration from the specified
+     * Environment and checks that it takes as many parameters as the
+     * ProcedureCall passes.
+     * 
+     * The ProcedureCall specializes itself the first time it runs: the
+     * ProcedureDeclaration that passed the check is cached along with the
+     * global Environment it came from and the version of its procedure
+     * table.  Later calls under the same global Environment return the
+     * cached ProcedureDeclaration without looking it up or checking it
+     * again, unless a procedure has been declared since, in which case it is
+     * looked up and cached anew.
+     * 
+     * @param env the Environment in which the ProcedureCall has been invoked
+     * @return the ProcedureDeclaration of the invoked procedure
+     * @throws IllegalArgumentException if the numbers of parameters differ
+     */
+    ProcedureDeclaration getDeclaration(Environment env)
+    {
+        Environment root = env.getRoot();
+        if (root == cachedRoot && root.getProcedureVersion() == cachedVersion)
+        {
+            return cachedDeclaration;
+        }
         ProcedureDeclaration dec = env.getProcedure(name);
-        Environment local = new Environment(env);
         if (dec.getParams().size() != params.size())
         {
             throw new IllegalArgumentException("Invalid Number of parameters"
                     + "when calling Method " + name);
         }
+        cachedRoot = root;
+        cachedVersion = root.getProcedureVersion();
+        cachedDeclaration = dec;
+        return dec;
+    }
+    
+    /**
+     * Creates the local Environment in which the procedure's Statement is
+     * executed, defining each parameter with its value and the return
+     * variable with 0.  If the Program has been resolved, the local
+     * Environment is a new activation on the root Frame's FrameStack, laid
+     * out as the ProcedureDeclaration assigned the slots.
+     * 
+     * @param dec the ProcedureDeclaration of the invoked procedure
+     * @param env the Environment in which the ProcedureCall has been invoked
+     * @param values an array holding the values of the parameters, in order
+     * @param from the index within the array of the first parameter's value
+     * @return the local Environment of the procedure
+     */
+    Environment enter(ProcedureDeclaration dec, Environment env, int[] values,
+            int from)
+    {
+        int count = params.size();
+        if (dec.getFrameNames() != null)
+        {
+            FrameStack stack = ((Frame) env).getStack();
+            int mark = stack.getTop();
+            for (int i = 0; i < count; i++)
+            {
+                stack.push(values[from + i]);
+            }
+            return stack.enter(mark, dec.getFrameNames(), dec.getParamSlots(),
+                    dec.getReturnSlot());
+        }
+        Environment local = new Environment(env);
         List<String> variableNames = dec.getParams();
-        for (int i = 0; i < params.size(); i++)
+        for (int i = 0; i < count; i++)
         {
-            String var = variableNames.get(i);
-            int value = params.get(i).eval(env);
-            local.declareVariable(var, value);
+            local.declareVariable(variableNames.get(i), values[from + i]);
         }
         local.declareVariable(name, 0);
-        dec.getStatement().exec(local);
+        return local;
+    }
+    
+    /**
+     * Runs this ProcedureCall, a self tail call of the specified procedure,
+     * by rebinding the parameters of the procedure's current invocation
+     * instead of invoking it again.  The values of the parameters are
+     * evaluated within the current invocation, and then take the place of
+     * its parameters, with every other local variable set to 0 as in a new
+     * invocation.  On a FrameStack, the values are pushed above the
+     * activation and then moved down into it, so nothing is allocated.
+     * 
+     * @param dec the ProcedureDeclaration of the procedure whose Statement
+     *        holds this ProcedureCall as its self tail call
+     * @param local the local Environment of the current invocation
+     * @return true if the parameters were rebound; false if the name now
+     *         refers to another procedure, which must be invoked as usual
+     */
+    boolean rebind(ProcedureDeclaration dec, Environment local)
+    {
+        if (getDeclaration(local) != dec)
+        {
+            return false;
+        }
+        if (dec.getFrameNames() != null)
+        {
+            FrameStack stack = (FrameStack) local;
+            int mark = stack.getTop();
+            for (int i = 0; i < params.size(); i++)
+            {
+                stack.push(params.get(i).eval(local));
+            }
+            stack.reenter(mark, dec.getParamSlots(), dec.getReturnSlot());
+            return true;
+        }
+        int[] values = new int[params.size()];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = params.get(i).eval(local);
+        }
+        rebind(dec, local, values, 0);
+        return true;
+    }
+    
+    /**
+     * Rebinds the parameters of the current invocation of a procedure to
+     * values that have already been evaluated, as described for the other
+     * rebind method.
+     * 
+     * @param dec the ProcedureDeclaration of the invoked procedure
+     * @param local the local Environment of the current invocation
+     * @param values an array holding the values of the parameters, in order
+     * @param from the index within the array of the first parameter's value
+     */
+    void rebind(ProcedureDeclaration dec, Environment local, int[] values,
+            int from)
+    {
+        int count = params.size();
+        if (dec.getFrameNames() != null)
+        {
+            FrameStack stack = (FrameStack) local;
+            int mark = stack.getTop();
+            for (int i = 0; i < count; i++)
+            {
+                stack.push(values[from + i]);
+            }
+            stack.reenter(mark, dec.getParamSlots(), dec.getReturnSlot());
+            return;
+        }
+        List<String> variableNames = dec.getParams();
+        for (int i = 0; i < count; i++)
+        {
+            local.declareVariable(variableNames.get(i), values[from + i]);
+        }
+        local.declareVariable(name, 0);
+    }
+    
+    /**
+     * Returns the value stored within the return variable of a procedure
+     * whose Statement has been executed in the specified local Environment,
+     * popping its activation if it has one.
+     * 
+     * @param dec the ProcedureDeclaration of the invoked procedure
+     * @param local the local Environment created by enter
+     * @return the value returned by the procedure
+     */
+    int leave(ProcedureDeclaration dec, Environment local)
+    {
+        if (dec.getFrameNames() != null)
+        {
+            FrameStack stack = (FrameStack) local;
+            int result = stack.getLocal(dec.getReturnSlot());
+            stack.leave();
+            return result;
+        }
         return local.getVariable(name);
     }
     
@@ -83,8 +339,136 @@ public class ProcedureCall extends Expression
         return "Procedure: " + name;
     }
     
+    /**
+     * Compiles the ProcedureCall to MIPS code that leaves the procedure's
+     * result in $v0, following the calling convention described in the
+     * ProcedureFrame class.  Each parameter is evaluated in order into $t0
+     * and then passed.  No other register needs saving, since a call is
+     * always compiled when no temporary register is in use.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @throws IllegalArgumentException if no procedure of that name is
+     *         compiled, or it takes a different number of parameters
+     */
     public void compile(Emitter e)
     {
-    	
+        emitArgumentArea(e);
+        for (int i = 0; i < params.size(); i++)
+        {
+            params.get(i).compileTo(e, 0);
+            emitArgument(e, i);
+        }
+        emitCall(e);
+    }
+    
+    /**
+     * Checks the call and reserves the words on the stack in which its
+     * parameters are passed or kept, if it needs any.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @throws IllegalArgumentException if no procedure of that name is
+     *         compiled, or it takes a different number of parameters
+     */
+    void emitArgumentArea(Emitter e)
+    {
+        ProcedureFrame.emitArgumentArea(e, name, params.size(), getLastCall());
+    }
+    
+    /**
+     * Emits the code that passes the value of the parameter at the
+     * specified index, held in $t0.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param index the index of the parameter
+     */
+    void emitArgument(Emitter e, int index)
+    {
+        ProcedureFrame.emitArgument(e, index, params.size(), getLastCall());
+    }
+    
+    /**
+     * Emits the jump to the procedure, along with the loads of any
+     * parameters kept on the stack before it and the release of the
+     * reserved words after it.
+     * 
+     * @param e the Emitter that is used to write to file
+     */
+    void emitCall(Emitter e)
+    {
+        ProcedureFrame.emitCall(e, name, params.size(), getLastCall());
+    }
+    
+    /**
+     * Returns the index of the last parameter that contains a call.
+     * 
+     * @return the index of the parameter, or -1 if none contains a call
+     */
+    private int getLastCall()
+    {
+        int last = -1;
+        for (int i = 0; i < params.size(); i++)
+        {
+            if (params.get(i).containsCall())
+            {
+                last = i;
+            }
+        }
+        return last;
+    }
+    
+    /**
+     * A procedure call may overwrite every temporary register, so it is
+     * treated as needing all of them.  This forces the code generator to
+     * evaluate the call before any other operand is held in a register, or
+     * to spill that operand to the stack.
+     * 
+     * @return the number of temporary registers
+     */
+    public int getRegisterNeed()
+    {
+        return Emitter.TEMP_REGISTERS;
+    }
+    
+    /**
+     * Returns true, since a ProcedureCall calls a procedure.
+     * 
+     * @return true
+     */
+    public boolean containsCall()
+    {
+        return true;
+    }
+    
+    /**
+     * Resolves the variables within each of the ProcedureCall's parameters.
+     * 
+     * @param scope the Scope in which the ProcedureCall is evaluated
+     */
+    public void resolve(Scope scope)
+    {
+        for (Expression param : params)
+        {
+            param.resolve(scope);
+        }
+    }
+    
+    /**
+     * Returns the name of the procedure being invoked.
+     * 
+     * @return the procedure's name
+     */
+    public String getName()
+    {
+        return name;
+    }
+    
+    /**
+     * Returns the parameters provided to the procedure.
+     * 
+     * @return a List containing the parameter Expressions
+     */
+    public List<Expression> getParams()
+    {
+        return params;
     }
 }
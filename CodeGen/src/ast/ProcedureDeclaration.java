@@ -1,8 +1,13 @@
 package ast;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
+import parser.Emitter;
 import environment.Environment;
+import environment.MemoCache;
+import environment.Scope;
 
 /**
  * The ProcedureDeclaration class encapsulates the definition of a procedure
@@ -19,6 +24,12 @@ public class ProcedureDeclaration
     private Statement statement;
     private String name;
     private List<String> params;
+    private String[] frameNames;
+    private int[] paramSlots;
+    private int returnSlot;
+    private MemoCache memo;
+    private Assignment tailCall;
+    private ProcedureFrame frame;
     
     /**
      * Creates a new instance of the ProcedureDeclaration class with the 
@@ -34,6 +45,7 @@ public class ProcedureDeclaration
         this.statement = statement;
         this.name = name;
         this.params = params;
+        tailCall = findTailCall();
     }
     
     /**
@@ -46,6 +58,180 @@ public class ProcedureDeclaration
         env.setProcedure(name, this);
     }
     
+    /**
+     * Executes the procedure's Statement within the specified local
+     * Environment, running any self tail call as a loop.
+     * 
+     * A self tail call assigns the return variable the result of calling
+     * the procedure itself, with as many parameters as it takes, as the last
+     * thing the Statement does: it is the last Statement of a Block, or the
+     * Statement of an If, that is itself in such a position.  Calling the
+     * procedure there and returning its result is the same as starting the
+     * Statement over with the parameters bound to new values, so the
+     * Statement is walked down to the tail call, which rebinds the
+     * parameters in place instead of invoking the procedure, and the walk
+     * begins again.  A procedure that recurses only through tail calls thus
+     * runs in constant Java stack space, however deeply it recurses.  If the
+     * procedure's name has been declared again since, the call invokes
+     * that other declaration as usual.
+     * 
+     * @param local the local Environment of an invocation of the procedure
+     */
+    public void execBody(Environment local)
+    {
+        if (tailCall == null)
+        {
+            statement.exec(local);
+            return;
+        }
+        ProcedureCall call = (ProcedureCall) tailCall.getExpression();
+        Statement s = statement;
+        while (true)
+        {
+            if (s == tailCall)
+            {
+                if (!call.rebind(this, local))
+                {
+                    s.exec(local);
+                    return;
+                }
+                s = statement;
+            }
+            else if (s instanceof Block)
+            {
+                List<Statement> statements = ((Block) s).getStatements();
+                int last = statements.size() - 1;
+                for (int i = 0; i < last; i++)
+                {
+                    statements.get(i).exec(local);
+                }
+                s = statements.get(last);
+            }
+            else if (((If) s).getCondition().eval(local) == 1)
+            {
+                s = ((If) s).getStatement();
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Returns the self tail call within the procedure's Statement, as
+     * described for execBody.
+     * 
+     * @return the Assignment holding the self tail call, or null if there is
+     *         none
+     */
+    public Assignment getTailCall()
+    {
+        return tailCall;
+    }
+    
+    /**
+     * Finds the self tail call within the procedure's Statement by
+     * following the last Statement of each Block and the Statement of each
+     * If from the top of the Statement down.
+     * 
+     * @return the Assignment holding the self tail call, or null if there is
+     *         none
+     */
+    private Assignment findTailCall()
+    {
+        Statement s = statement;
+        while (true)
+        {
+            if (s instanceof Block)
+            {
+                List<Statement> statements = ((Block) s).getStatements();
+                if (statements.isEmpty())
+                {
+                    return null;
+                }
+                s = statements.get(statements.size() - 1);
+            }
+            else if (s instanceof If)
+            {
+                s = ((If) s).getStatement();
+            }
+            else if (s instanceof Assignment
+                    && ((Assignment) s).getVariable().equals(name)
+                    && ((Assignment) s).getExpression()
+                            instanceof ProcedureCall)
+            {
+                ProcedureCall call = (ProcedureCall)
+                        ((Assignment) s).getExpression();
+                boolean self = call.getName().equals(name)
+                        && call.getParams().size() == params.size();
+                return self ? (Assignment) s : null;
+            }
+            else
+            {
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * Compiles the procedure to MIPS code under the label proc<name>, as
+     * described for emitEntry and emitReturn.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param dynamicNames the names that some procedure reads or assigns
+     *        without declaring them, as found by Program.findDynamicNames
+     */
+    public void compile(Emitter e, Set<String> dynamicNames)
+    {
+        emitEntry(e, dynamicNames);
+        statement.compile(e);
+        emitReturn(e);
+    }
+    
+    /**
+     * Lays out the procedure's ProcedureFrame, which depends on whether the
+     * procedure calls another or writes anything, and emits its label and
+     * entry code.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param dynamicNames the names that some procedure reads or assigns
+     *        without declaring them
+     */
+    void emitEntry(Emitter e, Set<String> dynamicNames)
+    {
+        boolean leaf = true;
+        boolean prints = false;
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(statement);
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            if (node instanceof ProcedureCall)
+            {
+                leaf = false;
+            }
+            else if (node instanceof Writeln)
+            {
+                prints = true;
+            }
+            pending.addAll(Nesting.children(node));
+        }
+        frame = new ProcedureFrame(name, params, leaf, prints, dynamicNames);
+        frame.emitEntry(e, Inliner.startsWith(statement, name));
+    }
+    
+    /**
+     * Emits the code that returns from the procedure once its Statement has
+     * been compiled.
+     * 
+     * @param e the Emitter that is used to write to file
+     */
+    void emitReturn(Emitter e)
+    {
+        frame.emitReturn(e);
+    }
+    
     /**
      * Gets the executable portion of the ProcedureDeclaration.
      * 
@@ -65,4 +251,112 @@ public class ProcedureDeclaration
     {
         return params;
     }
+    
+    /**
+     * Returns the name of the procedure.
+     * 
+     * @return the procedure's name
+     */
+    public String getName()
+    {
+        return name;
+    }
+    
+    /**
+     * Assigns a Frame slot to each parameter and to the return variable of
+     * the procedure, and then resolves the procedure's body within a Scope
+     * containing those slots.  Parameters that share a name share a slot.
+     * 
+     * @param globals the global Scope of the Program
+     */
+    public void resolve(Scope globals)
+    {
+        statement.resolve(createScope(globals));
+    }
+    
+    /**
+     * Assigns a Frame slot to each parameter and to the return variable of
+     * the procedure and returns the Scope in which the procedure's body is
+     * resolved, without resolving the body itself.
+     * 
+     * @param globals the global Scope of the Program
+     * @return the Scope containing the procedure's local variables
+     */
+    Scope createScope(Scope globals)
+    {
+        ArrayList<String> locals = new ArrayList<String>();
+        paramSlots = new int[params.size()];
+        for (int i = 0; i < params.size(); i++)
+        {
+            String param = params.get(i);
+            if (!locals.contains(param))
+            {
+                locals.add(param);
+            }
+            paramSlots[i] = locals.indexOf(param);
+        }
+        if (!locals.contains(name))
+        {
+            locals.add(name);
+        }
+        returnSlot = locals.indexOf(name);
+        frameNames = locals.toArray(new String[locals.size()]);
+        return new Scope(globals, locals);
+    }
+    
+    /**
+     * Returns the names of the procedure's local variables in slot order, or
+     * null if the procedure has not been resolved.
+     * 
+     * @return the names stored within each of the procedure's Frames
+     */
+    public String[] getFrameNames()
+    {
+        return frameNames;
+    }
+    
+    /**
+     * Returns the Frame slot of each parameter, in order of declaration.
+     * 
+     * @return the slots of the procedure's parameters
+     */
+    public int[] getParamSlots()
+    {
+        return paramSlots;
+    }
+    
+    /**
+     * Returns the Frame slot of the procedure's return variable.
+     * 
+     * @return the slot of the return variable
+     */
+    public int getReturnSlot()
+    {
+        return returnSlot;
+    }
+    
+    /**
+     * Returns the MemoCache that remembers the results of the procedure, if
+     * the procedure is pure and has been given one.
+     * 
+     * @return the procedure's MemoCache, or null if its calls are always
+     *         executed
+     */
+    public MemoCache getMemo()
+    {
+        return memo;
+    }
+    
+    /**
+     * Sets the MemoCache that remembers the results of the procedure.  Only
+     * a procedure that a PurityAnalyzer has found to be pure may be given
+     * one.
+     * 
+     * @param memo the procedure's MemoCache, or null to always execute its
+     *        calls
+     */
+    public void setMemo(MemoCache memo)
+    {
+        this.memo = memo;
+    }
 }
@@ -0,0 +1,374 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import parser.Emitter;
+
+/**
+ * The ProcedureFrame class lays out where the local variables of a compiled
+ * procedure live and emits both sides of the MIPS calling convention, so
+ * that every compiler that emits MIPS calls procedures in the same way.  A
+ * caller passes the first four parameters in $a0-$a3 and any others in
+ * words it reserves at the top of the stack, the fifth parameter at
+ * 0($sp), and expects the result in $v0.
+ *
+ * A leaf procedure, one that calls no procedure, needs no saved $ra, and if
+ * it writes nothing either, its parameters stay in the argument registers
+ * and its return variable is $v0, so it needs no frame at all.  Any other
+ * procedure reserves a frame whose size is computed from its locals: a word
+ * for $ra unless it is a leaf, and a word for each local that does not stay
+ * where the caller passed it.  Frame words are addressed from $sp, which
+ * the Emitter follows through every push, so $fp is neither used nor saved.
+ *
+ * A local of a procedure that calls others may be read by those others
+ * through dynamic scoping if it is one of the dynamic names.  Such a local
+ * is kept in the global word var<name>, which every procedure reads for a
+ * name it does not declare: its old value is saved in the frame on entry
+ * and put back on return, so the word always holds the innermost binding of
+ * the name.
+ */
+public class ProcedureFrame
+{
+    private String name;
+    private List<String> params;
+    private boolean leaf;
+    private List<String> locals;
+    private List<String> boundNames;
+    private HashMap<String, String> registers;
+    private HashMap<String, Integer> offsets;
+    private int frameSize;
+
+    /**
+     * Lays out the frame of the specified procedure.
+     *
+     * @param name the name of the procedure
+     * @param params the names of the procedure's parameters, in order
+     * @param leaf true if the procedure calls no procedure
+     * @param prints true if the procedure contains a WRITELN
+     * @param dynamicNames the names that some procedure reads or assigns
+     *        without declaring them
+     */
+    public ProcedureFrame(String name, List<String> params, boolean leaf,
+            boolean prints, Set<String> dynamicNames)
+    {
+        this.name = name;
+        this.params = params;
+        this.leaf = leaf;
+        locals = new ArrayList<String>();
+        for (String param : params)
+        {
+            if (!locals.contains(param))
+            {
+                locals.add(param);
+            }
+        }
+        if (!locals.contains(name))
+        {
+            locals.add(name);
+        }
+        boundNames = new ArrayList<String>();
+        ArrayList<String> framed = new ArrayList<String>();
+        registers = new HashMap<String, String>();
+        for (String local : locals)
+        {
+            int index = params.lastIndexOf(local);
+            if (!leaf && dynamicNames.contains(local))
+            {
+                boundNames.add(local);
+            }
+            else if (index < Emitter.ARGUMENT_REGISTERS && leaf && !prints)
+            {
+                registers.put(local, index < 0 ? "$v0" : "$a" + index);
+            }
+            else if (index < Emitter.ARGUMENT_REGISTERS)
+            {
+                framed.add(local);
+            }
+        }
+        int words = boundNames.size() + framed.size() + (leaf ? 0 : 1);
+        frameSize = 4 * words;
+        offsets = new HashMap<String, Integer>();
+        for (int i = 0; i < framed.size(); i++)
+        {
+            offsets.put(framed.get(i), 4 * (boundNames.size() + i));
+        }
+        for (String local : locals)
+        {
+            if (params.lastIndexOf(local) >= Emitter.ARGUMENT_REGISTERS
+                    && !boundNames.contains(local))
+            {
+                offsets.put(local, getArgumentOffset(local));
+            }
+        }
+    }
+
+    /**
+     * Emits the label proc<name> and the entry code of the procedure, and
+     * tells the Emitter where each of its local variables lives while its
+     * Statement is compiled.  The frame is reserved and $ra saved, the
+     * global words of the dynamic locals saved, and the parameters bound.
+     * The return variable is then set to 0, unless the Statement begins by
+     * setting it and no other procedure can read it first.
+     *
+     * @param e the Emitter that is used to write to file
+     * @param setsResult true if the procedure's Statement begins by setting
+     *        the return variable without reading it
+     */
+    public void emitEntry(Emitter e, boolean setsResult)
+    {
+        e.emit("proc" + name + ":");
+        if (frameSize > 0)
+        {
+            e.emitAllocate(frameSize);
+        }
+        e.setLocals(registers, offsets);
+        if (!leaf)
+        {
+            e.emit("sw $ra, " + (frameSize - 4) + "($sp)");
+        }
+        for (int i = 0; i < boundNames.size(); i++)
+        {
+            e.emit("lw $t0, var" + boundNames.get(i));
+            e.emit("sw $t0, " + 4 * i + "($sp)");
+        }
+        for (String local : locals)
+        {
+            int index = params.lastIndexOf(local);
+            if (index < 0)
+            {
+                continue;
+            }
+            String argument = index < Emitter.ARGUMENT_REGISTERS
+                    ? "$a" + index : getArgumentOffset(local) + "($sp)";
+            String location = e.location(local);
+            if (!argument.equals(location))
+            {
+                emitCopy(e, argument, location);
+            }
+        }
+        if (!setsResult || boundNames.contains(name))
+        {
+            String result = e.location(name);
+            if (Emitter.isRegister(result))
+            {
+                e.emit("li " + result + ", 0");
+            }
+            else
+            {
+                e.emit("sw $zero, " + result);
+            }
+        }
+    }
+
+    /**
+     * Emits the code that returns from the procedure once its Statement has
+     * run: the return variable is copied to $v0, the global words of the
+     * locals bound on entry are restored, and $ra and the frame are
+     * released before jumping back to the caller.
+     *
+     * @param e the Emitter that is used to write to file
+     */
+    public void emitReturn(Emitter e)
+    {
+        String result = e.location(name);
+        if (!result.equals("$v0"))
+        {
+            emitCopy(e, result, "$v0");
+        }
+        for (int i = 0; i < boundNames.size(); i++)
+        {
+            e.emit("lw $t0, " + 4 * i + "($sp)");
+            e.emit("sw $t0, var" + boundNames.get(i));
+        }
+        if (!leaf)
+        {
+            e.emit("lw $ra, " + (frameSize - 4) + "($sp)");
+        }
+        if (frameSize > 0)
+        {
+            e.emitFree(frameSize);
+        }
+        e.setLocals(null, null);
+        e.emit("jr $ra");
+    }
+
+    /**
+     * Returns the offset from $sp, within the procedure's frame, of the
+     * word in which the caller passed the specified parameter, which must
+     * be one of those that do not fit in the argument registers.  The last
+     * parameter of that name is the one that is bound.
+     *
+     * @param param the name of the parameter
+     * @return the offset of the parameter's word in bytes
+     */
+    private int getArgumentOffset(String param)
+    {
+        int index = params.lastIndexOf(param);
+        return frameSize + 4 * (index - Emitter.ARGUMENT_REGISTERS);
+    }
+
+    /**
+     * Emits the code that copies a value from one register or word of
+     * memory to another, through $t0 if both are words of memory.
+     *
+     * @param e the Emitter that is used to write to file
+     * @param from the register or address holding the value
+     * @param to the register or address that receives the value
+     */
+    private static void emitCopy(Emitter e, String from, String to)
+    {
+        if (Emitter.isRegister(from) && Emitter.isRegister(to))
+        {
+            e.emit("move " + to + ", " + from);
+        }
+        else if (Emitter.isRegister(from))
+        {
+            e.emit("sw " + from + ", " + to);
+        }
+        else if (Emitter.isRegister(to))
+        {
+            e.emit("lw " + to + ", " + from);
+        }
+        else
+        {
+            e.emit("lw $t0, " + from);
+            e.emit("sw $t0, " + to);
+        }
+    }
+
+    /**
+     * Checks that the named procedure is compiled and takes the specified
+     * number of parameters, then reserves the words on the stack in which a
+     * call passes or keeps its parameters, if it needs any.  A parameter
+     * bound for an argument register that is followed by another containing
+     * a call would lose its register to that call, so it is kept on the
+     * stack and only loaded into its register just before the jal.
+     *
+     * @param e the Emitter that is used to write to file
+     * @param name the name of the invoked procedure
+     * @param count the number of parameters passed
+     * @param lastCall the index of the last parameter that contains a call,
+     *        or -1 if none does
+     * @throws IllegalArgumentException if no procedure of that name is
+     *         compiled, or it takes a different number of parameters
+     */
+    public static void emitArgumentArea(Emitter e, String name, int count,
+            int lastCall)
+    {
+        int expected = e.getParamCount(name);
+        if (expected < 0)
+        {
+            throw new IllegalArgumentException("Procedure " + name
+                    + " is not declared");
+        }
+        if (expected != count)
+        {
+            throw new IllegalArgumentException("Invalid Number of parameters"
+                    + " when calling Method " + name);
+        }
+        if (getAreaSize(count, lastCall) > 0)
+        {
+            e.emitAllocate(getAreaSize(count, lastCall));
+        }
+    }
+
+    /**
+     * Emits the code that passes the value of the parameter at the
+     * specified index, held in $t0: a move to its argument register, or a
+     * store to its word on the stack.
+     *
+     * @param e the Emitter that is used to write to file
+     * @param index the index of the parameter
+     * @param count the number of parameters passed
+     * @param lastCall the index of the last parameter that contains a call,
+     *        or -1 if none does
+     */
+    public static void emitArgument(Emitter e, int index, int count,
+            int lastCall)
+    {
+        if (index >= Emitter.ARGUMENT_REGISTERS)
+        {
+            e.emit("sw $t0, " + 4 * (index - Emitter.ARGUMENT_REGISTERS)
+                    + "($sp)");
+        }
+        else if (index < getKeptCount(lastCall))
+        {
+            e.emit("sw $t0, " + 4 * (getStackCount(count) + index)
+                    + "($sp)");
+        }
+        else
+        {
+            e.emit("move $a" + index + ", $t0");
+        }
+    }
+
+    /**
+     * Emits the code that loads the parameters kept on the stack into their
+     * argument registers, jumps to the named procedure, and releases the
+     * words reserved by emitArgumentArea once it returns.  The procedure's
+     * result is left in $v0.
+     *
+     * @param e the Emitter that is used to write to file
+     * @param name the name of the invoked procedure
+     * @param count the number of parameters passed
+     * @param lastCall the index of the last parameter that contains a call,
+     *        or -1 if none does
+     */
+    public static void emitCall(Emitter e, String name, int count,
+            int lastCall)
+    {
+        int stack = getStackCount(count);
+        for (int i = 0; i < getKeptCount(lastCall); i++)
+        {
+            e.emit("lw $a" + i + ", " + 4 * (stack + i) + "($sp)");
+        }
+        e.emit("jal proc" + name);
+        if (getAreaSize(count, lastCall) > 0)
+        {
+            e.emitFree(getAreaSize(count, lastCall));
+        }
+    }
+
+    /**
+     * Returns the number of parameters that do not fit in the argument
+     * registers and are passed on the stack.
+     *
+     * @param count the number of parameters passed
+     * @return the number of parameters after the fourth
+     */
+    private static int getStackCount(int count)
+    {
+        return Math.max(0, count - Emitter.ARGUMENT_REGISTERS);
+    }
+
+    /**
+     * Returns the number of parameters bound for argument registers that
+     * are kept on the stack while a later parameter, which contains a call,
+     * is evaluated.  These are the leading parameters up to the last one
+     * containing a call.
+     *
+     * @param lastCall the index of the last parameter that contains a call,
+     *        or -1 if none does
+     * @return the number of parameters kept on the stack
+     */
+    private static int getKeptCount(int lastCall)
+    {
+        return Math.max(0, Math.min(lastCall, Emitter.ARGUMENT_REGISTERS));
+    }
+
+    /**
+     * Returns the number of bytes a call reserves on the stack.
+     *
+     * @param count the number of parameters passed
+     * @param lastCall the index of the last parameter that contains a call,
+     *        or -1 if none does
+     * @return four bytes for each parameter passed or kept on the stack
+     */
+    private static int getAreaSize(int count, int lastCall)
+    {
+        return 4 * (getStackCount(count) + getKeptCount(lastCall));
+    }
+}
@@ -1,9 +1,16 @@
 package ast;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Scope;
 
 /**
  * The Program class serves as an encapsulation of an entire program;
@@ -56,13 +63,130 @@ public class Program
      * Compiles the Program to MIPS code.
      * 
      * After the header is emitted to the file, the Statement is compiled.  The exit
-     * command is then added, followed by the data section.  In the data section, a 
-     * new line character is defined along with all variables declared at the beginning of
-     * the Pascal code.
+     * command is then added, followed by the code of each procedure and the data
+     * section.  In the data section, a new line character is defined along with all
+     * variables declared at the beginning of the Pascal code, followed by every other
+     * global variable that resolving the Program finds.
      * 
      * @param e the Emitter that is used to write to file
      */
     public void compile(Emitter e)
+    {
+    	emitHeader(e);
+    	List<ProcedureDeclaration> compiled = declareProcedures(e);
+    	statement.compile(e);
+    	emitExit(e);
+    	Set<String> dynamicNames = findDynamicNames();
+    	for (ProcedureDeclaration dec : compiled)
+    	{
+    		dec.compile(e, dynamicNames);
+    	}
+    	emitData(e, Arrays.asList(resolve().getGlobalNames()));
+    }
+    
+    /**
+     * Tells the Emitter about each procedure that is compiled, so that calls
+     * to it can be checked, and returns them.  Only the last declaration of
+     * each name is compiled, since it replaces any earlier one before the
+     * Statement runs.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @return the ProcedureDeclarations to be compiled
+     */
+    List<ProcedureDeclaration> declareProcedures(Emitter e)
+    {
+        LinkedHashMap<String, ProcedureDeclaration> compiled =
+                new LinkedHashMap<String, ProcedureDeclaration>();
+        for (ProcedureDeclaration dec : procedures)
+        {
+            compiled.put(dec.getName(), dec);
+        }
+        for (ProcedureDeclaration dec : compiled.values())
+        {
+            e.declareProcedure(dec.getName(), dec.getParams().size());
+        }
+        return new ArrayList<ProcedureDeclaration>(compiled.values());
+    }
+    
+    /**
+     * Returns the names that some procedure reads or assigns without
+     * declaring them, but that are parameters or return variables of some
+     * procedure: the names that dynamic scoping may resolve to a caller's
+     * variable.
+     * 
+     * @return the set of dynamic names
+     */
+    Set<String> findDynamicNames()
+    {
+        HashSet<String> locals = new HashSet<String>();
+        for (ProcedureDeclaration dec : procedures)
+        {
+            locals.addAll(dec.getParams());
+            locals.add(dec.getName());
+        }
+        Set<String> dynamicNames = new LinkedHashSet<String>();
+        for (ProcedureDeclaration dec : procedures)
+        {
+            collectNames(dec, dynamicNames);
+        }
+        dynamicNames.retainAll(locals);
+        return dynamicNames;
+    }
+    
+    /**
+     * Adds to the specified set every name that the specified procedure's
+     * Statement reads or assigns without declaring it.
+     * 
+     * @param dec the ProcedureDeclaration to be searched
+     * @param names the set to which the names are added
+     */
+    private static void collectNames(ProcedureDeclaration dec,
+            Set<String> names)
+    {
+        HashSet<String> locals = new HashSet<String>(dec.getParams());
+        locals.add(dec.getName());
+        collectNames(dec.getStatement(), locals, names);
+    }
+    
+    /**
+     * Adds to the specified set the name of every variable read or assigned
+     * within the specified Statement, other than the specified locals.
+     * 
+     * @param statement the Statement to be searched
+     * @param locals the names to be left out
+     * @param names the set to which the names are added
+     */
+    private static void collectNames(Statement statement, Set<String> locals,
+            Set<String> names)
+    {
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(statement);
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            String name = null;
+            if (node instanceof Variable)
+            {
+                name = ((Variable) node).getName();
+            }
+            else if (node instanceof Assignment)
+            {
+                name = ((Assignment) node).getVariable();
+            }
+            if (name != null && !locals.contains(name))
+            {
+                names.add(name);
+            }
+            pending.addAll(Nesting.children(node));
+        }
+    }
+    
+    /**
+     * Emits the header of the MIPS code, which ends with the main label.
+     * 
+     * @param e the Emitter that is used to write to file
+     */
+    public static void emitHeader(Emitter e)
     {
     	e.emit("# Hemant Kunda");
     	e.emit("# Generated via Pascal to MIPS compiler");
@@ -70,9 +194,41 @@ public class Program
     	e.emit(".text");
     	e.emit(".globl main");
     	e.emit("main: ");
-    	statement.compile(e);
+    }
+    
+    /**
+     * Emits the exit command and the data section of the MIPS code, which
+     * holds a word for each of the specified variables.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param variables the variables declared at the beginning of the Program
+     */
+    public static void emitFooter(Emitter e, List<String> variables)
+    {
+    	emitExit(e);
+    	emitData(e, variables);
+    }
+    
+    /**
+     * Emits the exit command that ends the main program.
+     * 
+     * @param e the Emitter that is used to write to file
+     */
+    public static void emitExit(Emitter e)
+    {
     	e.emit("li $v0, 10");
     	e.emit("syscall");
+    }
+    
+    /**
+     * Emits the data section of the MIPS code, which holds a word for each
+     * of the specified variables.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param variables the variables that live in global words
+     */
+    public static void emitData(Emitter e, List<String> variables)
+    {
     	e.emit(".data");
     	e.emit("nl:");
     	e.emit(".asciiz \"\\n\"");
@@ -82,4 +238,78 @@ public class Program
     		e.emit(".word 0");
     	}
     }
+    
+    /**
+     * Resolves every variable and procedure parameter within the Program to
+     * a fixed (depth, slot) address.  Names that are local to any procedure
+     * are collected first so that procedure bodies can tell which of their
+     * non-local names may refer to a caller's variable.  Variables declared
+     * with VAR are given the first global slots.
+     * 
+     * @return the global Scope, which can be used to create the root Frame
+     * in which the Program is executed
+     */
+    public Scope resolve()
+    {
+        Scope globals = createScope();
+        for (ProcedureDeclaration dec : procedures)
+        {
+            dec.resolve(globals);
+        }
+        statement.resolve(globals);
+        return globals;
+    }
+    
+    /**
+     * Creates the global Scope of the Program, in which the variables
+     * declared with VAR are given the first global slots, without resolving
+     * any procedure or Statement.
+     * 
+     * @return the global Scope of the Program
+     */
+    Scope createScope()
+    {
+        HashSet<String> dynamicNames = new HashSet<String>();
+        for (ProcedureDeclaration dec : procedures)
+        {
+            dynamicNames.addAll(dec.getParams());
+            dynamicNames.add(dec.getName());
+        }
+        Scope globals = new Scope(dynamicNames);
+        for (String v : variables)
+        {
+            globals.depthOf(v);
+        }
+        return globals;
+    }
+    
+    /**
+     * Returns the variables declared at the beginning of the Program.
+     * 
+     * @return a List containing the declared variable names
+     */
+    public List<String> getVariables()
+    {
+        return variables;
+    }
+    
+    /**
+     * Returns the procedures declared within the Program.
+     * 
+     * @return a List containing the ProcedureDeclarations
+     */
+    public List<ProcedureDeclaration> getProcedures()
+    {
+        return procedures;
+    }
+    
+    /**
+     * Returns the Statement that the Program executes.
+     * 
+     * @return the Program's Statement
+     */
+    public Statement getStatement()
+    {
+        return statement;
+    }
 }
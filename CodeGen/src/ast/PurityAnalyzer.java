@@ -0,0 +1,191 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import environment.MemoCache;
+
+/**
+ * The PurityAnalyzer class finds the procedures of a Program whose return
+ * value depends on nothing but the values of their parameters, and which
+ * have no effect beyond returning it, so that a call can be answered from a
+ * MemoCache instead of executing the procedure again.  A procedure is pure
+ * if its Statement:
+ *
+ * assigns only the procedure's own parameters and return variable, along
+ * with the fresh variables of any call an Inliner has inlined within it;
+ * reads only those variables, since with dynamic scoping any other variable
+ * may be a global or a local of whichever procedure called it;
+ * writes nothing; and
+ * calls only declared procedures that are pure themselves.
+ *
+ * The last condition is settled by first taking every procedure that meets
+ * the others to be pure, and then repeatedly dropping any that calls a
+ * procedure that is not, until none is dropped, so that procedures that
+ * call each other recursively may all be pure.  Statements are walked with
+ * an explicit stack, so that a deeply nested procedure does not overflow
+ * the Java stack.
+ *
+ * An inlined call's fresh variables are global, but each is always set by
+ * the procedure before it is read, with no call in between, so their values
+ * never reach beyond a single call.
+ */
+public class PurityAnalyzer
+{
+    private CallGraph graph;
+    private Set<String> pure;
+
+    /**
+     * Creates a new instance of the PurityAnalyzer class and finds the pure
+     * procedures of the specified Program.
+     *
+     * @param program the Program to be analyzed
+     */
+    public PurityAnalyzer(Program program)
+    {
+        graph = new CallGraph(program);
+        pure = new HashSet<String>();
+        for (ProcedureDeclaration dec : program.getProcedures())
+        {
+            if (graph.getDeclaration(dec.getName()) == dec && isLocal(dec))
+            {
+                pure.add(dec.getName());
+            }
+        }
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (String name : new ArrayList<String>(pure))
+            {
+                for (ProcedureCall call : CallGraph.findCalls(
+                        graph.getDeclaration(name).getStatement()))
+                {
+                    if (!pure.contains(call.getName()))
+                    {
+                        pure.remove(name);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the procedure with the specified name is pure.
+     *
+     * @param name the name of the procedure
+     * @return true if the procedure is pure; otherwise, false
+     */
+    public boolean isPure(String name)
+    {
+        return pure.contains(name);
+    }
+
+    /**
+     * Gives every pure procedure that is worth memoizing a new MemoCache of
+     * the specified capacity, and takes away the MemoCache of every other
+     * procedure.  A pure procedure is worth memoizing only if it calls a
+     * procedure or loops; any other Statement does less work than looking
+     * up its result would.
+     *
+     * @param program the Program that was analyzed
+     * @param capacity the greatest number of results kept for each
+     *        procedure
+     * @return the number of procedures that were given a MemoCache
+     */
+    public int memoize(Program program, int capacity)
+    {
+        int count = 0;
+        for (ProcedureDeclaration dec : program.getProcedures())
+        {
+            if (isPure(dec.getName()) && graph.getDeclaration(dec.getName())
+                    == dec && isCostly(dec.getStatement()))
+            {
+                dec.setMemo(new MemoCache(capacity));
+                count++;
+            }
+            else
+            {
+                dec.setMemo(null);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether the Statement of the specified procedure touches only
+     * the procedure's own variables and writes nothing.
+     *
+     * @param dec the ProcedureDeclaration to be checked
+     * @return true if the procedure meets every condition for purity but
+     *         the one on the procedures it calls; otherwise, false
+     */
+    private static boolean isLocal(ProcedureDeclaration dec)
+    {
+        Set<String> locals = new HashSet<String>(dec.getParams());
+        locals.add(dec.getName());
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(dec.getStatement());
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            if (node instanceof Writeln)
+            {
+                return false;
+            }
+            if (node instanceof Assignment
+                    && !isLocal(((Assignment) node).getVariable(), locals))
+            {
+                return false;
+            }
+            if (node instanceof Variable
+                    && !isLocal(((Variable) node).getName(), locals))
+            {
+                return false;
+            }
+            pending.addAll(Nesting.children(node));
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the specified variable belongs to a single call of a
+     * procedure.
+     *
+     * @param name the name of the variable
+     * @param locals the procedure's parameters and return variable
+     * @return true if the variable is one of the locals or a fresh variable
+     *         made by an Inliner; otherwise, false
+     */
+    private static boolean isLocal(String name, Set<String> locals)
+    {
+        return locals.contains(name) || Inliner.isTemporary(name);
+    }
+
+    /**
+     * Returns whether the specified Statement calls a procedure or contains
+     * a WHILE loop.
+     *
+     * @param statement the Statement to be checked
+     * @return true if the Statement may do more work than a lookup; otherwise,
+     *         false
+     */
+    private static boolean isCostly(Statement statement)
+    {
+        ArrayList<Object> pending = new ArrayList<Object>();
+        pending.add(statement);
+        while (!pending.isEmpty())
+        {
+            Object node = pending.remove(pending.size() - 1);
+            if (node instanceof ProcedureCall || node instanceof While)
+            {
+                return true;
+            }
+            pending.addAll(Nesting.children(node));
+        }
+        return false;
+    }
+}
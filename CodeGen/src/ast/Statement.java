@@ -1,6 +1,7 @@
 package ast;
 import parser.Emitter;
 import environment.Environment;
+import environment.Scope;
 
 /**
  * The Statement class generalizes a single full command. Any subclass must
@@ -26,4 +27,12 @@ public abstract class Statement
      * @param e the Emitter that is used to write to file
      */
     public abstract void compile(Emitter e);
+    
+    /**
+     * Resolves every variable within the Statement to a fixed (depth, slot)
+     * address within the specified Scope.
+     * 
+     * @param scope the Scope in which the Statement is executed
+     */
+    public abstract void resolve(Scope scope);
 }
@@ -2,6 +2,9 @@ package ast;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Frame;
+import environment.Scope;
+import environment.SlotCache;
 
 /**
  * The Variable class encapsulates a single String value.  With this value,
@@ -15,6 +18,9 @@ import environment.Environment;
 public class Variable extends Expression
 {
     private String name;
+    private int depth;
+    private int slot;
+    private SlotCache cache;
     
     /**
      * Creates a new instance of the Variable class that encapsulates a
@@ -24,11 +30,18 @@ public class Variable extends Expression
     public Variable(String name)
     {
         this.name = name;
+        depth = Scope.UNRESOLVED;
     }
     
     /**
      * Returns the integer value stored within the variable.  The integer value
-     * is accessed through the provided Environment object.
+     * is accessed through the provided Environment object.  If the Variable
+     * has been resolved to a local or global slot, the value is read directly
+     * from the corresponding Frame.  Otherwise, within a Frame, the Variable
+     * specializes itself the first time it runs: the slot at which the name
+     * was found is kept in a SlotCache, and later reads go straight to that
+     * slot for as long as the chain of Frames matches.  Within any other
+     * Environment the value is looked up by name.
      * 
      * @param env the Environment object that stores known variables
      * 
@@ -37,7 +50,23 @@ public class Variable extends Expression
      */
     public int eval(Environment env)
     {
-        return env.getVariable(name);
+        if (depth == Scope.LOCAL)
+        {
+            return ((Frame) env).getLocal(slot);
+        }
+        if (depth == Scope.GLOBAL)
+        {
+            return ((Frame) env).getGlobal(slot);
+        }
+        if (!(env instanceof Frame))
+        {
+            return env.getVariable(name);
+        }
+        if (cache == null)
+        {
+            cache = new SlotCache(name);
+        }
+        return cache.get(env);
     }
     
     /**
@@ -52,14 +81,86 @@ public class Variable extends Expression
     }
     
     /**
-     * Compiles the Variable to MIPS code by associating the value stored in $v0 with
-     * the variable name's memory address.
+     * Compiles the Variable to MIPS code by loading its value into $v0.
      * 
      * @param e the Emitter that is used to write to file
      */
     public void compile(Emitter e)
     {
-    	e.emit("la $t0, var" + name);
-    	e.emit("lw $v0, ($t0)");
+    	emitLoad(e, "$v0");
+    }
+    
+    /**
+     * Compiles the Variable to MIPS code by loading its value directly into
+     * the specified temporary register.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param reg the index of the temporary register that receives the value
+     */
+    public void compileTo(Emitter e, int reg)
+    {
+        emitLoad(e, Emitter.temp(reg));
+    }
+    
+    /**
+     * Emits the code that copies the Variable's value into the specified
+     * register from wherever the Emitter says it lives: the word labelled
+     * var<name>, a word of the current procedure's frame, or a register.
+     * 
+     * @param e the Emitter that is used to write to file
+     * @param reg the register that receives the value
+     */
+    private void emitLoad(Emitter e, String reg)
+    {
+        String location = e.location(name);
+        if (Emitter.isRegister(location))
+        {
+            e.emit("move " + reg + ", " + location);
+        }
+        else
+        {
+            e.emit("lw " + reg + ", " + location);
+        }
+    }
+    
+    /**
+     * Resolves the Variable to the depth and slot at which it is stored.
+     * 
+     * @param scope the Scope in which the Variable is evaluated
+     */
+    public void resolve(Scope scope)
+    {
+        depth = scope.depthOf(name);
+        slot = scope.slotOf(name, depth);
+    }
+    
+    /**
+     * Returns the name of the Variable.
+     * 
+     * @return the Variable's name
+     */
+    public String getName()
+    {
+        return name;
+    }
+    
+    /**
+     * Returns the depth to which the Variable was resolved.
+     * 
+     * @return Scope.LOCAL, Scope.GLOBAL, Scope.DYNAMIC, or Scope.UNRESOLVED
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+    
+    /**
+     * Returns the Frame slot to which the Variable was resolved.
+     * 
+     * @return the index of the Variable within its Frame
+     */
+    public int getSlot()
+    {
+        return slot;
     }
 }
@@ -2,6 +2,7 @@ package ast;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Scope;
 
 /**
  * The While class encapsulates a Condition and Statement object. Using these
@@ -67,4 +68,35 @@ public class While extends Statement
     	e.emit(end + ":");
     }
     
+    
+    /**
+     * Resolves the variables within the Condition and the Statement.
+     * 
+     * @param scope the Scope in which the While is executed
+     */
+    public void resolve(Scope scope)
+    {
+        condition.resolve(scope);
+        statement.resolve(scope);
+    }
+    
+    /**
+     * Returns the Condition of the While.
+     * 
+     * @return the While's Condition
+     */
+    public Condition getCondition()
+    {
+        return condition;
+    }
+    
+    /**
+     * Returns the Statement executed by the While.
+     * 
+     * @return the While's Statement
+     */
+    public Statement getStatement()
+    {
+        return statement;
+    }
 }
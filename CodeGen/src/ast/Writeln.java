@@ -2,6 +2,7 @@ package ast;
 
 import parser.Emitter;
 import environment.Environment;
+import environment.Scope;
 
 /**
  * The Writeln class encapsulates a single Expression object. Using this 
@@ -39,20 +40,51 @@ public class Writeln extends Statement
     }
     
     /**
-     * Compiles the Writeln object to MIPS code by compiling the Writeln's Expression, 
-     * storing that value in $a0, and printing it out via MIPS's syscall function.
+     * Compiles the Writeln object to MIPS code by compiling the Writeln's Expression
+     * into $t0, moving that value to $a0, and printing it out via MIPS's syscall function.
      * A newline character is then printed to visually advance the cursor one line on the
      * console.  
      * @param e the Emitter that is used to write to file
      */
     public void compile(Emitter e)
     {
-    	exp.compile(e);
-    	e.emit("move $a0, $v0");
+    	exp.compileTo(e, 0);
+    	emitPrint(e);
+    }
+    
+    /**
+     * Emits the syscalls that print the value held in $t0 followed by a
+     * newline character.
+     * 
+     * @param e the Emitter that is used to write to file
+     */
+    public static void emitPrint(Emitter e)
+    {
+    	e.emit("move $a0, $t0");
     	e.emit("li $v0, 1");
     	e.emit("syscall");
     	e.emit("li $v0, 4");
     	e.emit("la $a0, nl");
     	e.emit("syscall");
     }
+    
+    /**
+     * Resolves the variables within the Writeln's Expression.
+     * 
+     * @param scope the Scope in which the Writeln is executed
+     */
+    public void resolve(Scope scope)
+    {
+        exp.resolve(scope);
+    }
+    
+    /**
+     * Returns the Expression printed by the Writeln.
+     * 
+     * @return the Writeln's Expression
+     */
+    public Expression getExpression()
+    {
+        return exp;
+    }
 }
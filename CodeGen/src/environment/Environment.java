@@ -22,6 +22,8 @@ public class Environment
     private HashMap<String, Integer> variableTable;
     private HashMap<String, ProcedureDeclaration> procedureTable;
     private Environment parent;
+    private Environment root;
+    private int procedureVersion;
     
     /**
      * Creates a new instance of the Environment class.
@@ -31,8 +33,65 @@ public class Environment
         variableTable = new HashMap<String, Integer>();
         procedureTable = new HashMap<String, ProcedureDeclaration>();
         this.parent = parent;
+        root = parent == null ? this : parent.root;
     }
-    
+
+    /**
+     * Creates a new instance of the Environment class whose tables are only
+     * allocated if requested.  Subclasses that store their variables
+     * elsewhere use this constructor to avoid allocating unused HashMaps;
+     * the procedure table is only ever consulted within the root Environment.
+     *
+     * @param parent the Environment that this Environment hangs off of
+     * @param createTables true if the variable and procedure tables should
+     * be allocated
+     */
+    protected Environment(Environment parent, boolean createTables)
+    {
+        if (createTables)
+        {
+            variableTable = new HashMap<String, Integer>();
+            procedureTable = new HashMap<String, ProcedureDeclaration>();
+        }
+        this.parent = parent;
+        root = parent == null ? this : parent.root;
+    }
+
+    /**
+     * Returns the Environment that this Environment hangs off of.
+     *
+     * @return the parent Environment, or null if this is the global
+     * Environment
+     */
+    public Environment getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * Returns the global Environment at the end of the chain of parents,
+     * which holds the procedure table.
+     *
+     * @return the global Environment
+     */
+    public Environment getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Returns the number of times a procedure has been declared within the
+     * global Environment.  A node that caches the ProcedureDeclaration it
+     * retrieved can compare this number to tell whether the procedure table
+     * has changed since.
+     *
+     * @return the version of the procedure table
+     */
+    public int getProcedureVersion()
+    {
+        return root.procedureVersion;
+    }
+
     /**
      * Declares the specified variable with the specified value within the 
      * global Environment object by adding the variable and value as a 
@@ -105,11 +164,8 @@ public class Environment
      */
     public void setProcedure(String name, ProcedureDeclaration procedure)
     {
-        if (parent == null)
-        {
-            procedureTable.put(name, procedure);
-        }
-        else parent.setProcedure(name, procedure);
+        root.procedureTable.put(name, procedure);
+        root.procedureVersion++;
     }
     
     /**
@@ -123,16 +179,12 @@ public class Environment
      */
     public ProcedureDeclaration getProcedure(String name)
     {
-        if (parent == null)
+        ProcedureDeclaration procedure = root.procedureTable.get(name);
+        if (procedure == null)
         {
-            if (procedureTable.containsKey(name))
-            {
-                return procedureTable.get(name);
-            }
             throw new IllegalArgumentException("Procedure " + name + "has not"
                     + " been declared.");
         }
-        else return parent.getProcedure(name);
-        
+        return procedure;
     }
 }
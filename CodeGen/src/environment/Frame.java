@@ -0,0 +1,354 @@
+package environment;
+
+import java.util.HashMap;
+
+/**
+ * The Frame class is an Environment whose variables are stored within an
+ * int array rather than a HashMap.  Every variable is addressed by the slot
+ * that the resolution pass assigned to it (see the Scope class), so reading
+ * or writing a resolved variable is a single array access instead of a chain
+ * of hash lookups.
+ *
+ * The root Frame holds the global variables and the procedure table.  Each
+ * procedure invocation creates a Frame that holds the procedure's parameters
+ * and return variable and that hangs off of the Environment of its caller.
+ * Frames still support the name-based methods of the Environment class so
+ * that dynamically scoped names can be found by walking the parent chain.
+ * Procedures invoked by the AST interpreters do not get Frames of their own;
+ * their variables live on the FrameStack shared by every Frame with the
+ * same root, which answers the same methods for its current activation.
+ */
+public class Frame extends Environment
+{
+    private int[] slots;
+    private String[] names;
+    private boolean[] assigned;
+    private HashMap<String, Integer> globalIndex;
+    private Frame root;
+    private FrameStack stack;
+
+    /**
+     * Creates a new root Frame that holds every global variable within the
+     * specified Scope.
+     *
+     * @param globals the global Scope produced by the resolution pass
+     */
+    public Frame(Scope globals)
+    {
+        this(globals.getGlobalNames());
+    }
+
+    /**
+     * Creates a new root Frame that holds a global variable with each of the
+     * specified names.
+     *
+     * @param globalNames the name of each global slot, in slot order
+     */
+    public Frame(String[] globalNames)
+    {
+        super(null, true);
+        names = globalNames;
+        slots = new int[names.length];
+        assigned = new boolean[names.length];
+        globalIndex = new HashMap<String, Integer>();
+        for (int i = 0; i < names.length; i++)
+        {
+            globalIndex.put(names[i], i);
+        }
+        root = this;
+    }
+
+    /**
+     * Creates a new procedure Frame that hangs off of the specified caller.
+     *
+     * @param caller the Frame in which the procedure was invoked
+     * @param names the names of the procedure's local variables, in slot order
+     */
+    public Frame(Frame caller, String[] names)
+    {
+        super(caller, false);
+        this.names = names;
+        slots = new int[names.length];
+        root = caller.root;
+    }
+
+    /**
+     * Creates the FrameStack of the specified root Frame, which holds no
+     * variables of its own.
+     *
+     * @param root the root Frame
+     */
+    protected Frame(Frame root)
+    {
+        super(root, false);
+        this.root = root;
+    }
+
+    /**
+     * Returns the FrameStack on which procedures invoked within this Frame
+     * keep their variables, creating it the first time it is needed.  Every
+     * Frame with the same root shares one FrameStack.
+     *
+     * @return the FrameStack of the root Frame
+     */
+    public FrameStack getStack()
+    {
+        if (root.stack == null)
+        {
+            root.stack = new FrameStack(root);
+        }
+        return root.stack;
+    }
+
+    /**
+     * Returns the value stored within the specified local slot.
+     *
+     * @param slot the index of the variable within this Frame
+     * @return the value of the variable
+     */
+    public int getLocal(int slot)
+    {
+        return slots[slot];
+    }
+
+    /**
+     * Stores the specified value within the specified local slot.
+     *
+     * @param slot the index of the variable within this Frame
+     * @param value the value to be stored
+     */
+    public void setLocal(int slot, int value)
+    {
+        slots[slot] = value;
+    }
+
+    /**
+     * Returns the value stored within the specified global slot.  An
+     * IllegalArgumentException is thrown if the global variable has never
+     * been assigned, mirroring the behavior of the Environment class.
+     *
+     * @param slot the index of the variable within the root Frame
+     * @return the value of the global variable
+     */
+    public int getGlobal(int slot)
+    {
+        Frame global = root;
+        if (!global.assigned[slot])
+        {
+            throw new IllegalArgumentException("Variable " + global.names[slot]
+                    + " has not been initialized.");
+        }
+        return global.slots[slot];
+    }
+
+    /**
+     * Stores the specified value within the specified global slot.
+     *
+     * @param slot the index of the variable within the root Frame
+     * @param value the value to be stored
+     */
+    public void setGlobal(int slot, int value)
+    {
+        Frame global = root;
+        global.slots[slot] = value;
+        global.assigned[slot] = true;
+    }
+
+    /**
+     * Returns the names of the variables stored within this Frame, in slot
+     * order.  Every Frame of the same procedure shares the same array.
+     *
+     * @return the names of the Frame's variables
+     */
+    public String[] getNames()
+    {
+        return names;
+    }
+
+    /**
+     * Returns the names of the variables stored within the Frame a number of
+     * calls up the chain of callers from this one.
+     *
+     * @param hops the number of Frames to skip, 0 for this Frame
+     * @return the names of that Frame's variables, or null if the chain
+     *         ends, or leaves the Frames, before that Frame
+     */
+    public String[] getNames(int hops)
+    {
+        Environment env = this;
+        for (int i = 0; i < hops && env instanceof Frame; i++)
+        {
+            env = env.getParent();
+        }
+        return env instanceof Frame ? ((Frame) env).getNames() : null;
+    }
+
+    /**
+     * Returns whether the Frames up the chain of callers from this one hold
+     * exactly the specified names, in order.
+     *
+     * @param shapes the names held by each Frame, starting with this one
+     * @return true if every Frame holds the same array of names; otherwise,
+     *         false
+     */
+    public boolean matches(String[][] shapes)
+    {
+        Environment env = this;
+        for (int i = 0; i < shapes.length; i++)
+        {
+            if (!(env instanceof Frame) || ((Frame) env).getNames() != shapes[i])
+            {
+                return false;
+            }
+            env = env.getParent();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value stored within a slot of the Frame a number of calls
+     * up the chain of callers from this one.
+     *
+     * @param hops the number of Frames to skip, 0 for this Frame
+     * @param slot the index of the variable within that Frame
+     * @return the value of the variable
+     * @throws IllegalArgumentException if that Frame is the root Frame and
+     *         the variable has never been assigned
+     */
+    public int read(int hops, int slot)
+    {
+        Frame frame = this;
+        for (int i = 0; i < hops; i++)
+        {
+            frame = (Frame) frame.getParent();
+        }
+        return frame == root ? getGlobal(slot) : frame.getLocal(slot);
+    }
+
+    /**
+     * Stores the specified value within a slot of the Frame a number of
+     * calls up the chain of callers from this one.
+     *
+     * @param hops the number of Frames to skip, 0 for this Frame
+     * @param slot the index of the variable within that Frame
+     * @param value the value to be stored
+     */
+    public void write(int hops, int slot, int value)
+    {
+        Frame frame = this;
+        for (int i = 0; i < hops; i++)
+        {
+            frame = (Frame) frame.getParent();
+        }
+        if (frame == root)
+        {
+            setGlobal(slot, value);
+        }
+        else
+        {
+            frame.setLocal(slot, value);
+        }
+    }
+
+    /**
+     * Returns the local slot of the specified variable, or -1 if the
+     * variable isn't stored within this Frame.
+     *
+     * @param variable the name of the variable
+     * @return the slot of the variable
+     */
+    private int indexOf(String variable)
+    {
+        if (globalIndex != null)
+        {
+            Integer slot = globalIndex.get(variable);
+            return slot == null ? -1 : slot;
+        }
+        for (int i = 0; i < names.length; i++)
+        {
+            if (names[i].equals(variable))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Retrieves the value of the specified variable by name, searching this
+     * Frame and then every Frame that it hangs off of.
+     *
+     * @param variable the name of the variable whose value is to be returned
+     * @return the value stored within the specified variable
+     */
+    public int getVariable(String variable)
+    {
+        int slot = indexOf(variable);
+        if (slot >= 0)
+        {
+            return root == this ? getGlobal(slot) : slots[slot];
+        }
+        if (getParent() == null)
+        {
+            throw new IllegalArgumentException("Variable " + variable + " has"
+                    + " not been initialized.");
+        }
+        return getParent().getVariable(variable);
+    }
+
+    /**
+     * Sets the specified variable by name within the nearest Frame that
+     * stores it, or within the root Frame if no Frame does.
+     *
+     * @param variable the name of the variable to be set
+     * @param value the value of the variable
+     */
+    public void setVariable(String variable, int value)
+    {
+        int slot = indexOf(variable);
+        if (slot >= 0)
+        {
+            if (root == this)
+            {
+                setGlobal(slot, value);
+            }
+            else
+            {
+                slots[slot] = value;
+            }
+        }
+        else if (getParent() == null)
+        {
+            throw new IllegalArgumentException("Variable " + variable + " has"
+                    + " not been resolved.");
+        }
+        else
+        {
+            getParent().setVariable(variable, value);
+        }
+    }
+
+    /**
+     * Sets the specified variable by name within this Frame.
+     *
+     * @param variable the name of the variable to be set
+     * @param value the value of the variable
+     */
+    public void declareVariable(String variable, int value)
+    {
+        int slot = indexOf(variable);
+        if (slot < 0)
+        {
+            throw new IllegalArgumentException("Variable " + variable + " has"
+                    + " not been resolved.");
+        }
+        if (root == this)
+        {
+            setGlobal(slot, value);
+        }
+        else
+        {
+            slots[slot] = value;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package environment;
+
+import java.util.Arrays;
+
+/**
+ * The FrameStack class keeps the variables of every procedure invocation
+ * under one root Frame within a single contiguous int array, so that calling
+ * a procedure allocates nothing once the array has grown large enough.
+ *
+ * Each invocation occupies an activation: a run of slots beginning at the
+ * activation's base, laid out as the ProcedureDeclaration's Frame names
+ * are, with the parameters first and the return variable after them.  A
+ * caller pushes the values of the parameters onto the top of the stack
+ * as it evaluates them, so they are already in place when enter turns them
+ * into the new activation; leave pops the activation again.  Evaluating a
+ * parameter may itself call procedures, whose activations are pushed above
+ * the values already pushed and popped before the next one is.
+ *
+ * The FrameStack is itself the Frame in which every procedure body runs:
+ * its local slots are those of the current activation, which is changed by
+ * enter and leave, and its global slots are those of the root Frame.  Since
+ * procedures return in the reverse order of their invocation, a caller
+ * finds its own activation current again once the callee has returned.
+ * Names are looked up through every activation from the current one down
+ * to the root Frame, in the same way as through a chain of Frames.
+ */
+public class FrameStack extends Frame
+{
+    private int[] stack;
+    private int top;
+    private int base;
+    private String[][] activationNames;
+    private int[] bases;
+    private int depth;
+    private int maxDepth;
+    private Frame root;
+
+    /**
+     * Creates a new, empty FrameStack for the specified root Frame.
+     *
+     * @param root the root Frame, which holds the global variables
+     */
+    FrameStack(Frame root)
+    {
+        super(root);
+        this.root = root;
+        stack = new int[256];
+        activationNames = new String[64][];
+        bases = new int[64];
+    }
+
+    /**
+     * Returns the index of the first free slot, at which the value of the
+     * next parameter is pushed.
+     *
+     * @return the top of the stack
+     */
+    public int getTop()
+    {
+        return top;
+    }
+
+    /**
+     * Returns the number of activations on the stack.
+     *
+     * @return the depth of the stack
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Returns the largest number of activations that have been on the stack
+     * at once.
+     *
+     * @return the greatest depth of the stack
+     */
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the number of slots the stack can hold before it must grow.
+     *
+     * @return the capacity of the stack
+     */
+    public int getCapacity()
+    {
+        return stack.length;
+    }
+
+    /**
+     * Pushes the value of a parameter onto the top of the stack, growing
+     * the stack if it is full.
+     *
+     * @param value the value of the parameter
+     */
+    public void push(int value)
+    {
+        if (top == stack.length)
+        {
+            stack = Arrays.copyOf(stack, top * 2);
+        }
+        stack[top++] = value;
+    }
+
+    /**
+     * Turns the parameter values pushed since the specified top of the stack
+     * into a new activation, which becomes the current one.  Each value is
+     * moved to the slot of its parameter, which only differs from its
+     * position if a parameter is named twice.  Every other slot, and the
+     * return variable even if a parameter shares its name, is set to 0.
+     *
+     * @param from the top of the stack before the first parameter was pushed
+     * @param names the names of the activation's variables, in slot order
+     * @param paramSlots the slot of each parameter
+     * @param returnSlot the slot of the return variable
+     * @return this FrameStack, as the Environment of the new activation
+     */
+    public FrameStack enter(int from, String[] names, int[] paramSlots,
+            int returnSlot)
+    {
+        int end = from + names.length;
+        if (end > stack.length)
+        {
+            stack = Arrays.copyOf(stack, Math.max(end, stack.length * 2));
+        }
+        place(from, from, names.length, paramSlots, returnSlot);
+        if (depth == bases.length)
+        {
+            bases = Arrays.copyOf(bases, depth * 2);
+            activationNames = Arrays.copyOf(activationNames, depth * 2);
+        }
+        bases[depth] = from;
+        activationNames[depth] = names;
+        depth++;
+        maxDepth = Math.max(maxDepth, depth);
+        base = from;
+        top = end;
+        return this;
+    }
+
+    /**
+     * Starts the current activation over with the parameter values pushed
+     * since the specified top of the stack, as if it had been popped and a
+     * new one entered in its place.  Each value is moved down to the slot
+     * of its parameter, and every other slot, and the return variable, is
+     * set to 0.
+     *
+     * @param from the top of the stack before the first parameter was pushed
+     * @param paramSlots the slot of each parameter
+     * @param returnSlot the slot of the return variable
+     */
+    public void reenter(int from, int[] paramSlots, int returnSlot)
+    {
+        int size = getNames().length;
+        place(base, from, size, paramSlots, returnSlot);
+        top = base + size;
+    }
+
+    /**
+     * Lays out an activation from parameter values lying higher up the
+     * stack, or in place.  A value is never overwritten before it is moved,
+     * since each parameter's slot lies no further into the activation than
+     * its position among the values.
+     *
+     * @param to the base of the activation
+     * @param from the index of the first parameter value
+     * @param size the number of slots within the activation
+     * @param paramSlots the slot of each parameter
+     * @param returnSlot the slot of the return variable
+     */
+    private void place(int to, int from, int size, int[] paramSlots,
+            int returnSlot)
+    {
+        int filled = 0;
+        for (int i = 0; i < paramSlots.length; i++)
+        {
+            stack[to + paramSlots[i]] = stack[from + i];
+            filled = Math.max(filled, paramSlots[i] + 1);
+        }
+        for (int i = to + filled; i < to + size; i++)
+        {
+            stack[i] = 0;
+        }
+        stack[to + returnSlot] = 0;
+    }
+
+    /**
+     * Pops the current activation, making its caller's activation current
+     * again.
+     */
+    public void leave()
+    {
+        depth--;
+        top = bases[depth];
+        activationNames[depth] = null;
+        base = depth > 0 ? bases[depth - 1] : 0;
+    }
+
+    /**
+     * Pops every activation and parameter value pushed since the specified
+     * top of the stack, such as those left behind by a procedure that
+     * failed.
+     *
+     * @param mark the top of the stack to be restored
+     */
+    public void release(int mark)
+    {
+        while (depth > 0 && bases[depth - 1] >= mark)
+        {
+            leave();
+        }
+        top = mark;
+    }
+
+    /**
+     * Returns the value stored within the specified slot of the current
+     * activation.
+     *
+     * @param slot the index of the variable within the activation
+     * @return the value of the variable
+     */
+    public int getLocal(int slot)
+    {
+        return stack[base + slot];
+    }
+
+    /**
+     * Stores the specified value within the specified slot of the current
+     * activation.
+     *
+     * @param slot the index of the variable within the activation
+     * @param value the value to be stored
+     */
+    public void setLocal(int slot, int value)
+    {
+        stack[base + slot] = value;
+    }
+
+    /**
+     * Returns the names of the variables of the current activation.
+     *
+     * @return the names of the activation's variables
+     */
+    public String[] getNames()
+    {
+        return activationNames[depth - 1];
+    }
+
+    /**
+     * Returns the names of the variables of the activation a number of calls
+     * below the current one, or of the root Frame beneath them all.
+     *
+     * @param hops the number of activations to skip, 0 for the current one
+     * @return the names of that activation's variables, or null if there is
+     *         no such activation
+     */
+    public String[] getNames(int hops)
+    {
+        if (hops < depth)
+        {
+            return activationNames[depth - 1 - hops];
+        }
+        return root.getNames(hops - depth);
+    }
+
+    /**
+     * Returns whether the activations from the current one down hold exactly
+     * the specified names, in order.
+     *
+     * @param shapes the names held by each activation, starting with the
+     *        current one
+     * @return true if every activation holds the same array of names;
+     *         otherwise, false
+     */
+    public boolean matches(String[][] shapes)
+    {
+        if (shapes.length > depth + 1)
+        {
+            return false;
+        }
+        for (int i = 0; i < shapes.length; i++)
+        {
+            if (getNames(i) != shapes[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value stored within a slot of the activation a number of
+     * calls below the current one, or of the root Frame beneath them all.
+     *
+     * @param hops the number of activations to skip, 0 for the current one
+     * @param slot the index of the variable within that activation
+     * @return the value of the variable
+     * @throws IllegalArgumentException if the variable is a global variable
+     *         that has never been assigned
+     */
+    public int read(int hops, int slot)
+    {
+        if (hops < depth)
+        {
+            return stack[bases[depth - 1 - hops] + slot];
+        }
+        return getGlobal(slot);
+    }
+
+    /**
+     * Stores the specified value within a slot of the activation a number
+     * of calls below the current one, or of the root Frame beneath them all.
+     *
+     * @param hops the number of activations to skip, 0 for the current one
+     * @param slot the index of the variable within that activation
+     * @param value the value to be stored
+     */
+    public void write(int hops, int slot, int value)
+    {
+        if (hops < depth)
+        {
+            stack[bases[depth - 1 - hops] + slot] = value;
+        }
+        else
+        {
+            setGlobal(slot, value);
+        }
+    }
+
+    /**
+     * Retrieves the value of the specified variable by name, searching the
+     * activations from the current one down and then the root Frame.
+     *
+     * @param variable the name of the variable whose value is to be returned
+     * @return the value stored within the specified variable
+     */
+    public int getVariable(String variable)
+    {
+        for (int d = depth - 1; d >= 0; d--)
+        {
+            int slot = indexOf(activationNames[d], variable);
+            if (slot >= 0)
+            {
+                return stack[bases[d] + slot];
+            }
+        }
+        return root.getVariable(variable);
+    }
+
+    /**
+     * Sets the specified variable by name within the nearest activation that
+     * stores it, or within the root Frame if none does.
+     *
+     * @param variable the name of the variable to be set
+     * @param value the value of the variable
+     */
+    public void setVariable(String variable, int value)
+    {
+        for (int d = depth - 1; d >= 0; d--)
+        {
+            int slot = indexOf(activationNames[d], variable);
+            if (slot >= 0)
+            {
+                stack[bases[d] + slot] = value;
+                return;
+            }
+        }
+        root.setVariable(variable, value);
+    }
+
+    /**
+     * Sets the specified variable by name within the current activation.
+     *
+     * @param variable the name of the variable to be set
+     * @param value the value of the variable
+     */
+    public void declareVariable(String variable, int value)
+    {
+        int slot = depth == 0 ? -1 : indexOf(getNames(), variable);
+        if (slot < 0)
+        {
+            throw new IllegalArgumentException("Variable " + variable + " has"
+                    + " not been resolved.");
+        }
+        stack[base + slot] = value;
+    }
+
+    /**
+     * Returns the index of the specified name within an array of names.
+     *
+     * @param names the names to be searched
+     * @param variable the name to be found
+     * @return the index of the name, or -1 if it is not in the array
+     */
+    private static int indexOf(String[] names, String variable)
+    {
+        for (int i = 0; i < names.length; i++)
+        {
+            if (names[i].equals(variable))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
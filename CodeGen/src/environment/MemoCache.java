@@ -0,0 +1,252 @@
+package environment;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The MemoCache class remembers the values returned by a pure procedure,
+ * keyed on the values of its parameters, so that calling the procedure
+ * again with the same values need not execute its Statement.  At most a
+ * fixed number of results are kept; once the cache is full, the result that
+ * was used least recently is evicted to make room for a new one.
+ *
+ * Looking a call up copies nothing: the values are compared where they lie,
+ * within the caller's array, through a single probe Key that is reused for
+ * every lookup.  Only a result that is remembered gets a Key of its own.
+ * The number of lookups that found a result, and of those that did not, are
+ * counted.
+ */
+public class MemoCache
+{
+    private int capacity;
+    private Map<Key, Integer> results;
+    private Key probe;
+    private int value;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a new, empty MemoCache that keeps at most the specified number
+     * of results.
+     *
+     * @param capacity the greatest number of results kept
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public MemoCache(int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Invalid memo capacity "
+                    + capacity);
+        }
+        this.capacity = capacity;
+        results = new LinkedHashMap<Key, Integer>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest)
+            {
+                if (size() > MemoCache.this.capacity)
+                {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        probe = new Key(null, 0, 0);
+    }
+
+    /**
+     * Looks up the result of a call with the specified parameter values,
+     * marking it as the most recently used if it is found.  The result is
+     * then returned by getValue.
+     *
+     * @param args an array holding the values of the parameters
+     * @param from the index within the array of the first parameter's value
+     * @param count the number of parameters
+     * @return true if the result was found; otherwise, false
+     */
+    public boolean lookup(int[] args, int from, int count)
+    {
+        probe.reset(args, from, count);
+        Integer result = results.get(probe);
+        probe.reset(null, 0, 0);
+        if (result == null)
+        {
+            misses++;
+            return false;
+        }
+        hits++;
+        value = result;
+        return true;
+    }
+
+    /**
+     * Returns the result found by the last successful lookup.
+     *
+     * @return the value returned by the procedure
+     */
+    public int getValue()
+    {
+        return value;
+    }
+
+    /**
+     * Creates a Key holding a copy of the specified parameter values, under
+     * which the result of the call can later be stored.
+     *
+     * @param args an array holding the values of the parameters
+     * @param from the index within the array of the first parameter's value
+     * @param count the number of parameters
+     * @return the Key of the call
+     */
+    public Key key(int[] args, int from, int count)
+    {
+        return new Key(Arrays.copyOfRange(args, from, from + count), 0, count);
+    }
+
+    /**
+     * Remembers the result of a call, evicting the least recently used
+     * result if the cache is full.
+     *
+     * @param key the Key of the call, as returned by key
+     * @param result the value returned by the procedure
+     */
+    public void put(Key key, int result)
+    {
+        results.put(key, result);
+    }
+
+    /**
+     * Returns the number of lookups that found a result.
+     *
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find a result.
+     *
+     * @return the number of misses
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the number of results that have been evicted to make room for
+     * newer ones.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of results currently kept.
+     *
+     * @return the size of the cache
+     */
+    public int size()
+    {
+        return results.size();
+    }
+
+    /**
+     * Returns the greatest number of results the cache keeps.
+     *
+     * @return the capacity of the cache
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * The Key class identifies a call by the values of its parameters, which
+     * lie within a run of an int array.
+     */
+    public static final class Key
+    {
+        private int[] args;
+        private int from;
+        private int count;
+        private int hash;
+
+        /**
+         * Creates a new Key for the specified run of parameter values.
+         *
+         * @param args an array holding the values of the parameters
+         * @param from the index within the array of the first value
+         * @param count the number of parameters
+         */
+        private Key(int[] args, int from, int count)
+        {
+            reset(args, from, count);
+        }
+
+        /**
+         * Makes this Key refer to another run of parameter values.
+         *
+         * @param args an array holding the values of the parameters
+         * @param from the index within the array of the first value
+         * @param count the number of parameters
+         */
+        private void reset(int[] args, int from, int count)
+        {
+            this.args = args;
+            this.from = from;
+            this.count = count;
+            hash = 1;
+            for (int i = 0; i < count; i++)
+            {
+                hash = 31 * hash + args[from + i];
+            }
+        }
+
+        /**
+         * Returns a hash code computed from the parameter values.
+         *
+         * @return the hash code of the Key
+         */
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        /**
+         * Returns whether the specified object is a Key with the same
+         * parameter values.
+         *
+         * @param other the object to be compared
+         * @return true if both Keys hold the same values; otherwise, false
+         */
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Key))
+            {
+                return false;
+            }
+            Key key = (Key) other;
+            if (key.hash != hash || key.count != count)
+            {
+                return false;
+            }
+            for (int i = 0; i < count; i++)
+            {
+                if (key.args[key.from + i] != args[from + i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package environment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The Scope class is the symbol table used by the resolution pass that runs
+ * after a Program has been parsed.  It assigns every variable a fixed
+ * (depth, slot) address so that Frames can store variables within int
+ * arrays instead of HashMaps.
+ *
+ * Because procedures cannot be nested, only two depths exist: LOCAL, which
+ * refers to the Frame of the procedure currently executing, and GLOBAL, which
+ * refers to the root Frame.  Procedures hang off of the Environment that
+ * called them, so a name that is not local to a procedure but is a parameter
+ * of some other procedure may refer to the caller's variable rather than the
+ * global one.  Such names are given the DYNAMIC depth and are looked up by
+ * name at runtime, exactly as the Environment class does.
+ */
+public class Scope
+{
+    public static final int UNRESOLVED = -2;
+    public static final int DYNAMIC = -1;
+    public static final int LOCAL = 0;
+    public static final int GLOBAL = 1;
+
+    private HashMap<String, Integer> globals;
+    private ArrayList<String> globalNames;
+    private HashMap<String, Integer> locals;
+    private Set<String> dynamicNames;
+
+    /**
+     * Creates a new global Scope.  Names in the specified set are local to at
+     * least one procedure and therefore must be resolved dynamically from
+     * within procedure bodies.
+     *
+     * @param dynamicNames the names of every procedure parameter and
+     * return variable in the Program
+     */
+    public Scope(Set<String> dynamicNames)
+    {
+        globals = new HashMap<String, Integer>();
+        globalNames = new ArrayList<String>();
+        locals = null;
+        this.dynamicNames = dynamicNames;
+    }
+
+    /**
+     * Creates a new procedure Scope that shares its global table with the
+     * specified parent Scope.
+     *
+     * @param parent the global Scope
+     * @param localNames the names of the procedure's local variables, in
+     * slot order
+     */
+    public Scope(Scope parent, List<String> localNames)
+    {
+        globals = parent.globals;
+        globalNames = parent.globalNames;
+        dynamicNames = parent.dynamicNames;
+        locals = new HashMap<String, Integer>();
+        for (int i = 0; i < localNames.size(); i++)
+        {
+            locals.put(localNames.get(i), i);
+        }
+    }
+
+    /**
+     * Returns the depth at which the specified variable lives, as seen from
+     * code that is resolved within this Scope.  Names that are not local are
+     * allocated a global slot if they don't already have one, since a
+     * dynamic lookup may still fall through to the root Frame.
+     *
+     * @param name the name of the variable
+     * @return LOCAL, GLOBAL, or DYNAMIC
+     */
+    public int depthOf(String name)
+    {
+        if (locals != null && locals.containsKey(name))
+        {
+            return LOCAL;
+        }
+        globalSlot(name);
+        if (locals != null && dynamicNames.contains(name))
+        {
+            return DYNAMIC;
+        }
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the slot of the specified variable at the specified depth.
+     *
+     * @param name the name of the variable
+     * @param depth the depth returned by depthOf
+     * @return the index of the variable within its Frame, or -1 if the
+     * variable is resolved dynamically
+     */
+    public int slotOf(String name, int depth)
+    {
+        if (depth == LOCAL)
+        {
+            return locals.get(name);
+        }
+        if (depth == GLOBAL)
+        {
+            return globalSlot(name);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the global slot of the specified variable, allocating a new one
+     * if the variable has not been seen before.
+     *
+     * @param name the name of the variable
+     * @return the index of the variable within the root Frame
+     */
+    private int globalSlot(String name)
+    {
+        Integer slot = globals.get(name);
+        if (slot == null)
+        {
+            slot = globalNames.size();
+            globals.put(name, slot);
+            globalNames.add(name);
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the names of every global variable in slot order.
+     *
+     * @return the global variable names
+     */
+    public String[] getGlobalNames()
+    {
+        return globalNames.toArray(new String[globalNames.size()]);
+    }
+}
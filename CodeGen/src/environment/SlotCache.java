@@ -0,0 +1,149 @@
+package environment;
+
+/**
+ * The SlotCache class is an inline cache that lets a node which refers to a
+ * variable by name, because it has not been resolved to a fixed slot or is
+ * scoped dynamically, read and write the variable as a slot once it has run.
+ * The first time the node runs, the variable is looked up by name along the
+ * chain of Frames, or of activations on a FrameStack, and the cache
+ * remembers the slot at which it was found along with the names held by
+ * every Frame that was searched.  A Frame's
+ * names are shared by every invocation of the same procedure, so as long as
+ * the Frames along the chain hold the same names, the variable is found in
+ * the same place, and the cache reads the slot directly after comparing one
+ * reference per Frame instead of searching each Frame by name.
+ *
+ * If the chain no longer matches, the cache is rebuilt from the Frames at
+ * hand.  A node whose cache has been rebuilt MAX_REWRITES times under the
+ * same root Frame gives up and looks the variable up by name for the rest of
+ * that run, as does one that runs within an Environment that is not a Frame.
+ * Running under a new root Frame starts the count again.
+ */
+public class SlotCache
+{
+    public static final int MAX_REWRITES = 8;
+
+    private String name;
+    private String[][] shapes;
+    private int slot;
+    private Environment root;
+    private int rewrites;
+
+    /**
+     * Creates a new, empty instance of the SlotCache class for the variable
+     * with the specified name.
+     *
+     * @param name the name of the variable
+     */
+    public SlotCache(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Retrieves the value of the variable as seen from the specified
+     * Environment.
+     *
+     * @param env the Environment in which the variable is read
+     * @return the value of the variable
+     * @throws IllegalArgumentException if no Frame stores the variable, or
+     *         if it is a global variable that has never been assigned
+     */
+    public int get(Environment env)
+    {
+        if (!find(env))
+        {
+            return env.getVariable(name);
+        }
+        return ((Frame) env).read(shapes.length - 1, slot);
+    }
+
+    /**
+     * Stores the specified value within the variable as seen from the
+     * specified Environment.
+     *
+     * @param env the Environment in which the variable is written
+     * @param value the value to be stored
+     * @throws IllegalArgumentException if no Frame stores the variable
+     */
+    public void set(Environment env, int value)
+    {
+        if (!find(env))
+        {
+            env.setVariable(name, value);
+        }
+        else
+        {
+            ((Frame) env).write(shapes.length - 1, slot, value);
+        }
+    }
+
+    /**
+     * Returns the number of times the cache has been built under the
+     * current root Frame.
+     *
+     * @return the number of rewrites
+     */
+    public int getRewrites()
+    {
+        return rewrites;
+    }
+
+    /**
+     * Checks the cache, rebuilding it if the chain of Frames no longer
+     * matches.
+     *
+     * @param env the Environment in which the variable is accessed
+     * @return true if the cache holds the variable's location; false if the
+     *         variable must be looked up by name
+     */
+    private boolean find(Environment env)
+    {
+        if (shapes != null && ((Frame) env).matches(shapes))
+        {
+            return true;
+        }
+        return rewrite((Frame) env);
+    }
+
+    /**
+     * Searches the chain of Frames for the variable by name and rebuilds
+     * the cache from the Frames that were searched.
+     *
+     * @param frame the Frame in which the variable is accessed
+     * @return true if the variable was found; false if it must be looked up
+     *         by name
+     */
+    private boolean rewrite(Frame frame)
+    {
+        shapes = null;
+        if (frame.getRoot() != root)
+        {
+            root = frame.getRoot();
+            rewrites = 0;
+        }
+        if (rewrites >= MAX_REWRITES)
+        {
+            return false;
+        }
+        rewrites++;
+        String[] names;
+        for (int hops = 0; (names = frame.getNames(hops)) != null; hops++)
+        {
+            for (int i = 0; i < names.length; i++)
+            {
+                if (names[i].equals(name))
+                {
+                    shapes = new String[hops + 1][];
+                    for (int h = 0; h <= hops; h++)
+                    {
+                        shapes[h] = frame.getNames(h);
+                    }
+                    slot = i;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,305 @@
+package jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The ClassFileWriter class assembles a JVM class file containing static
+ * fields and static methods.  Only the small part of the class file format
+ * needed by the JitCompiler is supported.  Classes are written with major
+ * version 49 so that the JVM infers the types of locals and stack entries
+ * itself and no StackMapTable attributes are required.
+ */
+public class ClassFileWriter
+{
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private ByteArrayOutputStream poolBytes;
+    private DataOutputStream pool;
+    private HashMap<String, Integer> poolIndex;
+    private int poolCount;
+    private String name;
+    private ArrayList<byte[]> fields;
+    private ArrayList<byte[]> methods;
+
+    /**
+     * Creates a new instance of the ClassFileWriter class for a class with
+     * the specified internal name (using '/' as the package separator).
+     *
+     * @param name the internal name of the class
+     */
+    public ClassFileWriter(String name)
+    {
+        poolBytes = new ByteArrayOutputStream();
+        pool = new DataOutputStream(poolBytes);
+        poolIndex = new HashMap<String, Integer>();
+        poolCount = 1;
+        this.name = name;
+        fields = new ArrayList<byte[]>();
+        methods = new ArrayList<byte[]>();
+    }
+
+    /**
+     * Returns the internal name of the class being written.
+     *
+     * @return the class's internal name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the constant pool index of the specified entry, adding it to
+     * the pool if it isn't already present.
+     *
+     * @param key a String that uniquely identifies the entry
+     * @param tag the tag of the entry
+     * @param a the first operand of the entry
+     * @param b the second operand of the entry, or -1 if there is none
+     * @param utf the text of a UTF8 entry, or null
+     * @return the index of the entry
+     */
+    private int entry(String key, int tag, int a, int b, String utf)
+    {
+        Integer index = poolIndex.get(key);
+        if (index != null)
+        {
+            return index;
+        }
+        try
+        {
+            pool.writeByte(tag);
+            if (tag == UTF8)
+            {
+                pool.writeUTF(utf);
+            }
+            else if (tag == INTEGER)
+            {
+                pool.writeInt(a);
+            }
+            else
+            {
+                pool.writeShort(a);
+                if (b >= 0)
+                {
+                    pool.writeShort(b);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        index = poolCount++;
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    /**
+     * Returns the pool index of a UTF8 entry.
+     *
+     * @param text the text of the entry
+     * @return the index of the entry
+     */
+    public int utf8(String text)
+    {
+        return entry("U" + text, UTF8, 0, -1, text);
+    }
+
+    /**
+     * Returns the pool index of an Integer entry.
+     *
+     * @param value the value of the entry
+     * @return the index of the entry
+     */
+    public int integer(int value)
+    {
+        return entry("I" + value, INTEGER, value, -1, null);
+    }
+
+    /**
+     * Returns the pool index of a Class entry.
+     *
+     * @param internalName the internal name of the class
+     * @return the index of the entry
+     */
+    public int classRef(String internalName)
+    {
+        int utf = utf8(internalName);
+        return entry("C" + internalName, CLASS, utf, -1, null);
+    }
+
+    /**
+     * Returns the pool index of a String entry.
+     *
+     * @param text the value of the String
+     * @return the index of the entry
+     */
+    public int string(String text)
+    {
+        int utf = utf8(text);
+        return entry("S" + text, STRING, utf, -1, null);
+    }
+
+    /**
+     * Returns the pool index of a NameAndType entry.
+     *
+     * @param member the name of the field or method
+     * @param descriptor the descriptor of the field or method
+     * @return the index of the entry
+     */
+    private int nameAndType(String member, String descriptor)
+    {
+        int n = utf8(member);
+        int d = utf8(descriptor);
+        return entry("N" + member + " " + descriptor, NAME_AND_TYPE, n, d, null);
+    }
+
+    /**
+     * Returns the pool index of a Fieldref entry.
+     *
+     * @param owner the internal name of the class declaring the field
+     * @param field the name of the field
+     * @param descriptor the descriptor of the field
+     * @return the index of the entry
+     */
+    public int fieldRef(String owner, String field, String descriptor)
+    {
+        int c = classRef(owner);
+        int nt = nameAndType(field, descriptor);
+        return entry("F" + owner + "." + field + " " + descriptor, FIELD_REF,
+                c, nt, null);
+    }
+
+    /**
+     * Returns the pool index of a Methodref entry.
+     *
+     * @param owner the internal name of the class declaring the method
+     * @param method the name of the method
+     * @param descriptor the descriptor of the method
+     * @return the index of the entry
+     */
+    public int methodRef(String owner, String method, String descriptor)
+    {
+        int c = classRef(owner);
+        int nt = nameAndType(method, descriptor);
+        return entry("M" + owner + "." + method + " " + descriptor, METHOD_REF,
+                c, nt, null);
+    }
+
+    /**
+     * Adds a static int field to the class.
+     *
+     * @param field the name of the field
+     * @param descriptor the descriptor of the field
+     */
+    public void addStaticField(String field, String descriptor)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            out.writeShort(ACC_STATIC);
+            out.writeShort(utf8(field));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * Adds a public static method whose body was assembled by the specified
+     * MethodWriter.
+     *
+     * @param method the name of the method
+     * @param descriptor the descriptor of the method
+     * @param code the assembled body of the method
+     */
+    public void addStaticMethod(String method, String descriptor,
+            MethodWriter code)
+    {
+        byte[] body = code.toByteArray();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            out.writeShort(ACC_PUBLIC | ACC_STATIC);
+            out.writeShort(utf8(method));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + body.length);
+            out.writeShort(code.getMaxStack());
+            out.writeShort(code.getMaxLocals());
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    /**
+     * Returns the bytes of the complete class file.
+     *
+     * @return the class file
+     */
+    public byte[] toByteArray()
+    {
+        int thisClass = classRef(name);
+        int superClass = classRef("java/lang/Object");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            out.write(poolBytes.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for (byte[] field : fields)
+            {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (byte[] method : methods)
+            {
+                out.write(method);
+            }
+            out.writeShort(0);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
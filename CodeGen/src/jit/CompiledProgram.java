@@ -0,0 +1,49 @@
+package jit;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * The CompiledProgram class wraps the entry point of a Program that was
+ * compiled to a hidden class by the JitCompiler.  The same CompiledProgram
+ * can be run any number of times; every run starts with no variables
+ * assigned, exactly like a fresh Environment.
+ */
+public class CompiledProgram
+{
+    private MethodHandle run;
+
+    /**
+     * Creates a new instance of the CompiledProgram class.
+     *
+     * @param run a handle to the generated class's static run method
+     */
+    public CompiledProgram(MethodHandle run)
+    {
+        this.run = run;
+    }
+
+    /**
+     * Executes the compiled Program.  Exceptions thrown by the Program, such
+     * as those for uninitialized variables or division by zero, are
+     * propagated unchanged.
+     */
+    public void run()
+    {
+        try
+        {
+            run.invokeExact();
+        }
+        catch (RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Error e)
+        {
+            throw e;
+        }
+        catch (Throwable t)
+        {
+            throw new IllegalStateException(t);
+        }
+    }
+}
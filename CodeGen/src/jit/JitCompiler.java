@@ -0,0 +1,615 @@
+package jit;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.List;
+
+import ast.*;
+import environment.Scope;
+
+/**
+ * The JitCompiler class translates a Program into a JVM class and loads it
+ * as a hidden class, so that HotSpot compiles the Pascal code exactly as it
+ * would compile Java.  Each ProcedureDeclaration becomes a static method
+ * that takes its parameters as ints and returns the value of its return
+ * variable; the Program's Statement becomes a static method named run.
+ *
+ * Procedure locals become JVM locals.  Global variables that are only used
+ * by the Program's Statement also become JVM locals of run; every other
+ * global becomes a static field.  Each global is paired with a flag that
+ * records whether it has been assigned, and a read is only checked against
+ * its flag if the global is not definitely assigned at that point, so the
+ * error for reading an uninitialized variable matches the interpreter's
+ * without slowing down loops.
+ *
+ * Programs in which a procedure reads or writes another procedure's local
+ * variable through dynamic scoping cannot be expressed with JVM locals, so
+ * compile throws an UnsupportedOperationException for them.
+ */
+public class JitCompiler
+{
+    private static final String OWNER = "jit/PascalProgram";
+    private static final String RUNTIME = "jit/JitRuntime";
+
+    private ClassFileWriter classFile;
+    private MethodWriter method;
+    private String[] globalNames;
+    private boolean[] isStatic;
+    private int[] valueLocal;
+    private int[] flagLocal;
+    private boolean[] assigned;
+    private int localBase;
+    private boolean procedureBody;
+    private List<ProcedureDeclaration> procedures;
+    private HashMap<String, Integer> procedureIndex;
+
+    /**
+     * Compiles the specified Program to a hidden class and returns a handle
+     * that executes it.
+     *
+     * @param program the Program to be compiled
+     * @return the compiled Program
+     * @throws UnsupportedOperationException if the Program uses dynamically
+     * scoped variables or is too large to be compiled
+     */
+    public CompiledProgram compile(Program program)
+    {
+        byte[] bytes = generate(program);
+        try
+        {
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClass(bytes, true);
+            MethodHandle run = lookup.findStatic(lookup.lookupClass(), "run",
+                    MethodType.methodType(void.class));
+            return new CompiledProgram(run);
+        }
+        catch (IllegalAccessException | NoSuchMethodException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Generates the class file for the specified Program.
+     *
+     * @param program the Program to be compiled
+     * @return the bytes of the class file
+     */
+    public byte[] generate(Program program)
+    {
+        Scope globals = program.resolve();
+        globalNames = globals.getGlobalNames();
+        isStatic = new boolean[globalNames.length];
+        procedures = program.getProcedures();
+        procedureIndex = new HashMap<String, Integer>();
+        procedureBody = true;
+        for (int i = 0; i < procedures.size(); i++)
+        {
+            procedureIndex.put(procedures.get(i).getName(), i);
+            markStatics(procedures.get(i).getStatement());
+        }
+        procedureBody = false;
+        markStatics(program.getStatement());
+
+        classFile = new ClassFileWriter(OWNER);
+        for (int g = 0; g < globalNames.length; g++)
+        {
+            if (isStatic[g])
+            {
+                classFile.addStaticField("g" + g, "I");
+                classFile.addStaticField("a" + g, "Z");
+            }
+        }
+        for (int i = 0; i < procedures.size(); i++)
+        {
+            compileProcedure(i);
+        }
+        compileMain(program.getStatement());
+        return classFile.toByteArray();
+    }
+
+    /**
+     * Marks every global referenced within a procedure body as static.  The
+     * Program's Statement is walked as well so that dynamically scoped
+     * variables are rejected wherever they appear.
+     *
+     * @param s the Statement to be walked
+     */
+    private void markStatics(Statement s)
+    {
+        if (s instanceof Block)
+        {
+            for (Statement child : ((Block) s).getStatements())
+            {
+                markStatics(child);
+            }
+        }
+        else if (s instanceof Assignment)
+        {
+            Assignment a = (Assignment) s;
+            markVariable(a.getDepth(), a.getSlot());
+            markStatics(a.getExpression());
+        }
+        else if (s instanceof Writeln)
+        {
+            markStatics(((Writeln) s).getExpression());
+        }
+        else if (s instanceof If)
+        {
+            markStatics(((If) s).getCondition().getLeft());
+            markStatics(((If) s).getCondition().getRight());
+            markStatics(((If) s).getStatement());
+        }
+        else if (s instanceof While)
+        {
+            markStatics(((While) s).getCondition().getLeft());
+            markStatics(((While) s).getCondition().getRight());
+            markStatics(((While) s).getStatement());
+        }
+    }
+
+    /**
+     * Marks every global referenced within an Expression as static, if the
+     * Expression belongs to a procedure.
+     *
+     * @param exp the Expression to be walked
+     */
+    private void markStatics(Expression exp)
+    {
+        if (exp instanceof Variable)
+        {
+            markVariable(((Variable) exp).getDepth(), ((Variable) exp).getSlot());
+        }
+        else if (exp instanceof BinOp)
+        {
+            markStatics(((BinOp) exp).getLeft());
+            markStatics(((BinOp) exp).getRight());
+        }
+        else if (exp instanceof ProcedureCall)
+        {
+            for (Expression param : ((ProcedureCall) exp).getParams())
+            {
+                markStatics(param);
+            }
+        }
+    }
+
+    /**
+     * Records a reference to a variable.  References from a procedure body
+     * are resolved either LOCAL or GLOBAL or DYNAMIC; the Program's
+     * Statement only ever references globals, which it can hold in locals.
+     *
+     * @param depth the depth to which the variable was resolved
+     * @param slot the slot to which the variable was resolved
+     */
+    private void markVariable(int depth, int slot)
+    {
+        if (depth == Scope.DYNAMIC)
+        {
+            throw new UnsupportedOperationException("Dynamically scoped "
+                    + "variables cannot be compiled to JVM locals");
+        }
+        if (depth == Scope.GLOBAL && procedureBody)
+        {
+            isStatic[slot] = true;
+        }
+    }
+
+    /**
+     * Compiles the procedure with the specified index as a static method.
+     * The parameters are copied into the locals that hold the procedure's
+     * frame slots, so that parameters sharing a name behave as they do in
+     * the interpreter, and the return variable is initialized to 0.
+     *
+     * @param index the index of the procedure
+     */
+    private void compileProcedure(int index)
+    {
+        ProcedureDeclaration dec = procedures.get(index);
+        int[] paramSlots = dec.getParamSlots();
+        method = new MethodWriter(paramSlots.length);
+        localBase = paramSlots.length;
+        assigned = new boolean[globalNames.length];
+        for (int i = 0; i < paramSlots.length; i++)
+        {
+            method.load(i);
+            method.store(localBase + paramSlots[i]);
+        }
+        method.pushInt(0, classFile);
+        method.store(localBase + dec.getReturnSlot());
+        compileStatement(dec.getStatement());
+        method.load(localBase + dec.getReturnSlot());
+        method.op(MethodWriter.IRETURN, -1);
+        classFile.addStaticMethod("p" + index, descriptor(paramSlots.length),
+                method);
+    }
+
+    /**
+     * Compiles the Program's Statement as the static method run.  Every
+     * static field is reset first so that the Program can be run more than
+     * once, and every global held in a local is initialized.
+     *
+     * @param statement the Program's Statement
+     */
+    private void compileMain(Statement statement)
+    {
+        method = new MethodWriter(0);
+        localBase = 0;
+        valueLocal = new int[globalNames.length];
+        flagLocal = new int[globalNames.length];
+        assigned = new boolean[globalNames.length];
+        int next = 0;
+        for (int g = 0; g < globalNames.length; g++)
+        {
+            method.pushInt(0, classFile);
+            if (isStatic[g])
+            {
+                method.op(MethodWriter.DUP, 1);
+                method.poolOp(MethodWriter.PUTSTATIC,
+                        classFile.fieldRef(OWNER, "g" + g, "I"), -1);
+                method.poolOp(MethodWriter.PUTSTATIC,
+                        classFile.fieldRef(OWNER, "a" + g, "Z"), -1);
+            }
+            else
+            {
+                valueLocal[g] = next++;
+                flagLocal[g] = next++;
+                method.op(MethodWriter.DUP, 1);
+                method.store(valueLocal[g]);
+                method.store(flagLocal[g]);
+            }
+        }
+        compileStatement(statement);
+        method.op(MethodWriter.RETURN, 0);
+        classFile.addStaticMethod("run", "()V", method);
+    }
+
+    /**
+     * Returns the descriptor of a method that takes the specified number of
+     * ints and returns an int.
+     *
+     * @param params the number of parameters
+     * @return the method descriptor
+     */
+    private static String descriptor(int params)
+    {
+        StringBuilder d = new StringBuilder("(");
+        for (int i = 0; i < params; i++)
+        {
+            d.append('I');
+        }
+        return d.append(")I").toString();
+    }
+
+    /**
+     * Compiles the specified Statement into the current method.  The set of
+     * definitely assigned globals is updated as the Statement is compiled;
+     * assignments made within the body of an If or While do not count once
+     * the If or While has been compiled, since the body may never execute.
+     *
+     * @param s the Statement to be compiled
+     */
+    private void compileStatement(Statement s)
+    {
+        if (s instanceof Block)
+        {
+            for (Statement child : ((Block) s).getStatements())
+            {
+                compileStatement(child);
+            }
+        }
+        else if (s instanceof Assignment)
+        {
+            compileAssignment((Assignment) s);
+        }
+        else if (s instanceof Writeln)
+        {
+            method.poolOp(MethodWriter.GETSTATIC, classFile.fieldRef(
+                    "java/lang/System", "out", "Ljava/io/PrintStream;"), 1);
+            compileExpression(((Writeln) s).getExpression());
+            method.poolOp(MethodWriter.INVOKEVIRTUAL, classFile.methodRef(
+                    "java/io/PrintStream", "println", "(I)V"), -2);
+        }
+        else if (s instanceof If)
+        {
+            If i = (If) s;
+            int end = method.newLabel();
+            compileCondition(i.getCondition(), end);
+            boolean[] before = assigned.clone();
+            compileStatement(i.getStatement());
+            assigned = before;
+            method.mark(end);
+        }
+        else if (s instanceof While)
+        {
+            While w = (While) s;
+            int top = method.newLabel();
+            int end = method.newLabel();
+            method.mark(top);
+            compileCondition(w.getCondition(), end);
+            boolean[] before = assigned.clone();
+            compileStatement(w.getStatement());
+            assigned = before;
+            method.branch(MethodWriter.GOTO, top, 0);
+            method.mark(end);
+        }
+        else
+        {
+            throw new UnsupportedOperationException("Cannot compile " + s);
+        }
+    }
+
+    /**
+     * Compiles an Assignment.  An Assignment of the form x := x + k or
+     * x := x - k to a variable held in a local is compiled as an iinc.
+     *
+     * @param a the Assignment to be compiled
+     */
+    private void compileAssignment(Assignment a)
+    {
+        int depth = a.getDepth();
+        int slot = a.getSlot();
+        Expression exp = a.getExpression();
+        if (exp instanceof BinOp && (depth == Scope.LOCAL
+                || (depth == Scope.GLOBAL && !isStatic[slot])))
+        {
+            BinOp b = (BinOp) exp;
+            String op = b.getOperator();
+            if ((op.equals("+") || op.equals("-"))
+                    && b.getLeft() instanceof Variable
+                    && b.getRight() instanceof ast.Number
+                    && ((Variable) b.getLeft()).getDepth() == depth
+                    && ((Variable) b.getLeft()).getSlot() == slot)
+            {
+                int k = ((ast.Number) b.getRight()).getValue();
+                if (op.equals("-"))
+                {
+                    k = -k;
+                }
+                if (k >= Short.MIN_VALUE && k <= Short.MAX_VALUE)
+                {
+                    if (depth == Scope.LOCAL)
+                    {
+                        method.increment(localBase + slot, k);
+                    }
+                    else
+                    {
+                        checkAssigned(slot);
+                        method.increment(valueLocal[slot], k);
+                    }
+                    return;
+                }
+            }
+        }
+        compileExpression(exp);
+        if (depth == Scope.LOCAL)
+        {
+            method.store(localBase + slot);
+        }
+        else if (isStatic[slot])
+        {
+            method.poolOp(MethodWriter.PUTSTATIC,
+                    classFile.fieldRef(OWNER, "g" + slot, "I"), -1);
+            if (!assigned[slot])
+            {
+                method.pushInt(1, classFile);
+                method.poolOp(MethodWriter.PUTSTATIC,
+                        classFile.fieldRef(OWNER, "a" + slot, "Z"), -1);
+            }
+            assigned[slot] = true;
+        }
+        else
+        {
+            method.store(valueLocal[slot]);
+            if (!assigned[slot])
+            {
+                method.pushInt(1, classFile);
+                method.store(flagLocal[slot]);
+            }
+            assigned[slot] = true;
+        }
+    }
+
+    /**
+     * Emits a check that throws the interpreter's exception if the specified
+     * global is read before it has been assigned.  No check is emitted if
+     * the global is definitely assigned.
+     *
+     * @param slot the global slot of the variable
+     */
+    private void checkAssigned(int slot)
+    {
+        if (assigned[slot])
+        {
+            return;
+        }
+        int ok = method.newLabel();
+        if (isStatic[slot])
+        {
+            method.poolOp(MethodWriter.GETSTATIC,
+                    classFile.fieldRef(OWNER, "a" + slot, "Z"), 1);
+        }
+        else
+        {
+            method.load(flagLocal[slot]);
+        }
+        method.branch(MethodWriter.IFNE, ok, -1);
+        int depth = method.getDepth();
+        method.pushString(globalNames[slot], classFile);
+        method.poolOp(MethodWriter.INVOKESTATIC, classFile.methodRef(RUNTIME,
+                "uninitialized", "(Ljava/lang/String;)"
+                + "Ljava/lang/IllegalArgumentException;"), 0);
+        method.op(MethodWriter.ATHROW, -1);
+        method.setDepth(depth);
+        method.mark(ok);
+    }
+
+    /**
+     * Compiles the specified Condition as a branch to the specified label
+     * that is taken when the Condition is false.
+     *
+     * @param c the Condition to be compiled
+     * @param label the label to branch to
+     */
+    private void compileCondition(Condition c, int label)
+    {
+        compileExpression(c.getLeft());
+        compileExpression(c.getRight());
+        String op = c.getOperator();
+        int opcode;
+        if (op.equals("<>"))
+        {
+            opcode = MethodWriter.IF_ICMPEQ;
+        }
+        else if (op.equals("<"))
+        {
+            opcode = MethodWriter.IF_ICMPGE;
+        }
+        else if (op.equals("<="))
+        {
+            opcode = MethodWriter.IF_ICMPGT;
+        }
+        else if (op.equals(">"))
+        {
+            opcode = MethodWriter.IF_ICMPLE;
+        }
+        else if (op.equals(">="))
+        {
+            opcode = MethodWriter.IF_ICMPLT;
+        }
+        else if (op.equals("="))
+        {
+            opcode = MethodWriter.IF_ICMPNE;
+        }
+        else
+        {
+            method.op(MethodWriter.POP2, -2);
+            method.branch(MethodWriter.GOTO, label, 0);
+            return;
+        }
+        method.branch(opcode, label, -2);
+    }
+
+    /**
+     * Compiles the specified Expression so that its value is left on top of
+     * the JVM operand stack.
+     *
+     * @param exp the Expression to be compiled
+     */
+    private void compileExpression(Expression exp)
+    {
+        if (exp instanceof ast.Number)
+        {
+            method.pushInt(((ast.Number) exp).getValue(), classFile);
+        }
+        else if (exp instanceof Variable)
+        {
+            Variable v = (Variable) exp;
+            int slot = v.getSlot();
+            if (v.getDepth() == Scope.LOCAL)
+            {
+                method.load(localBase + slot);
+            }
+            else
+            {
+                checkAssigned(slot);
+                if (isStatic[slot])
+                {
+                    method.poolOp(MethodWriter.GETSTATIC,
+                            classFile.fieldRef(OWNER, "g" + slot, "I"), 1);
+                }
+                else
+                {
+                    method.load(valueLocal[slot]);
+                }
+            }
+        }
+        else if (exp instanceof BinOp)
+        {
+            BinOp b = (BinOp) exp;
+            compileExpression(b.getLeft());
+            compileExpression(b.getRight());
+            String op = b.getOperator();
+            if (op.equals("+"))
+            {
+                method.op(MethodWriter.IADD, -1);
+            }
+            else if (op.equals("-"))
+            {
+                method.op(MethodWriter.ISUB, -1);
+            }
+            else if (op.equals("*"))
+            {
+                method.op(MethodWriter.IMUL, -1);
+            }
+            else if (op.equals("/"))
+            {
+                if (b.getRight() instanceof ast.Number
+                        && ((ast.Number) b.getRight()).getValue() != 0)
+                {
+                    method.op(MethodWriter.IDIV, -1);
+                }
+                else
+                {
+                    method.poolOp(MethodWriter.INVOKESTATIC, classFile.methodRef(
+                            RUNTIME, "divide", "(II)I"), -1);
+                }
+            }
+            else
+            {
+                method.op(MethodWriter.IREM, -1);
+            }
+        }
+        else if (exp instanceof ProcedureCall)
+        {
+            compileCall((ProcedureCall) exp);
+        }
+        else
+        {
+            throw new UnsupportedOperationException("Cannot compile " + exp);
+        }
+    }
+
+    /**
+     * Compiles the specified ProcedureCall as an invocation of the static
+     * method generated for the procedure.  A call to an undeclared
+     * procedure, or one with the wrong number of parameters, throws the
+     * interpreter's exception when it executes.
+     *
+     * @param call the ProcedureCall to be compiled
+     */
+    private void compileCall(ProcedureCall call)
+    {
+        Integer index = procedureIndex.get(call.getName());
+        List<Expression> params = call.getParams();
+        String message = null;
+        if (index == null)
+        {
+            message = "Procedure " + call.getName() + "has not been declared.";
+        }
+        else if (procedures.get(index).getParams().size() != params.size())
+        {
+            message = "Invalid Number of parameters" + "when calling Method "
+                    + call.getName();
+        }
+        if (message != null)
+        {
+            int depth = method.getDepth();
+            method.pushString(message, classFile);
+            method.poolOp(MethodWriter.INVOKESTATIC, classFile.methodRef(RUNTIME,
+                    "fail", "(Ljava/lang/String;)"
+                    + "Ljava/lang/IllegalArgumentException;"), 0);
+            method.op(MethodWriter.ATHROW, -1);
+            method.setDepth(depth + 1);
+            return;
+        }
+        for (Expression param : params)
+        {
+            compileExpression(param);
+        }
+        method.poolOp(MethodWriter.INVOKESTATIC, classFile.methodRef(OWNER,
+                "p" + index, descriptor(params.size())), 1 - params.size());
+    }
+}
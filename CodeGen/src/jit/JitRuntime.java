@@ -0,0 +1,57 @@
+package jit;
+
+/**
+ * The JitRuntime class contains the helper methods that classes generated by
+ * the JitCompiler call whenever the interpreter's behavior cannot be
+ * expressed by a single JVM instruction.  Each method is small enough for
+ * HotSpot to inline at the call site.
+ */
+public final class JitRuntime
+{
+    private JitRuntime()
+    {
+    }
+
+    /**
+     * Divides the first value by the second, throwing the same exception as
+     * the BinOp class if the divisor is 0.
+     *
+     * @param left the dividend
+     * @param right the divisor
+     * @return the quotient
+     */
+    public static int divide(int left, int right)
+    {
+        if (right == 0)
+        {
+            throw new ArithmeticException("ERROR: DIVIDE BY ZERO");
+        }
+        return left / right;
+    }
+
+    /**
+     * Creates the exception thrown when a variable is read before it has
+     * been assigned.
+     *
+     * @param name the name of the variable
+     * @return the exception to be thrown
+     */
+    public static IllegalArgumentException uninitialized(String name)
+    {
+        return new IllegalArgumentException("Variable " + name + " has"
+                + " not been initialized.");
+    }
+
+    /**
+     * Creates an IllegalArgumentException with the specified message.  It is
+     * used for invalid procedure calls, which are reported only if the call
+     * executes.
+     *
+     * @param message the message of the exception
+     * @return the exception to be thrown
+     */
+    public static IllegalArgumentException fail(String message)
+    {
+        return new IllegalArgumentException(message);
+    }
+}
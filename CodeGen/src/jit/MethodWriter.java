@@ -0,0 +1,360 @@
+package jit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The MethodWriter class assembles the bytecode of a single JVM method.  It
+ * tracks the depth of the operand stack and the number of locals used so
+ * that the method's max_stack and max_locals can be filled in, and it
+ * resolves forward branches to labels once their positions are known.
+ */
+public class MethodWriter
+{
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int ISTORE = 0x36;
+    public static final int POP = 0x57;
+    public static final int POP2 = 0x58;
+    public static final int DUP = 0x59;
+    public static final int IADD = 0x60;
+    public static final int ISUB = 0x64;
+    public static final int IMUL = 0x68;
+    public static final int IDIV = 0x6c;
+    public static final int IREM = 0x70;
+    public static final int IINC = 0x84;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int IF_ICMPEQ = 0x9f;
+    public static final int IF_ICMPNE = 0xa0;
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPGT = 0xa3;
+    public static final int IF_ICMPLE = 0xa4;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac;
+    public static final int RETURN = 0xb1;
+    public static final int GETSTATIC = 0xb2;
+    public static final int PUTSTATIC = 0xb3;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int ATHROW = 0xbf;
+    public static final int WIDE = 0xc4;
+
+    private byte[] code;
+    private int size;
+    private int depth;
+    private int maxStack;
+    private int maxLocals;
+    private ArrayList<int[]> fixups;
+    private ArrayList<Integer> labels;
+
+    /**
+     * Creates a new instance of the MethodWriter class.
+     *
+     * @param params the number of int parameters of the method, which
+     * occupy the first locals
+     */
+    public MethodWriter(int params)
+    {
+        code = new byte[256];
+        maxLocals = params;
+        fixups = new ArrayList<int[]>();
+        labels = new ArrayList<Integer>();
+    }
+
+    /**
+     * Appends a single byte to the code.
+     *
+     * @param b the byte to be appended
+     */
+    private void put(int b)
+    {
+        if (size == code.length)
+        {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = (byte) b;
+    }
+
+    /**
+     * Appends a two-byte big-endian value to the code.
+     *
+     * @param s the value to be appended
+     */
+    private void putShort(int s)
+    {
+        put(s >> 8);
+        put(s);
+    }
+
+    /**
+     * Records a change in the depth of the operand stack.
+     *
+     * @param change the number of values pushed (or popped, if negative)
+     */
+    private void adjust(int change)
+    {
+        depth += change;
+        if (depth > maxStack)
+        {
+            maxStack = depth;
+        }
+    }
+
+    /**
+     * Records that the specified local is used by the method.
+     *
+     * @param local the index of the local
+     */
+    private void useLocal(int local)
+    {
+        if (local + 1 > maxLocals)
+        {
+            maxLocals = local + 1;
+        }
+    }
+
+    /**
+     * Appends an instruction that has no operands.
+     *
+     * @param opcode the instruction's opcode
+     * @param change the change in stack depth caused by the instruction
+     */
+    public void op(int opcode, int change)
+    {
+        put(opcode);
+        adjust(change);
+    }
+
+    /**
+     * Appends an instruction with a two-byte constant pool operand, such as
+     * a field access or method invocation.
+     *
+     * @param opcode the instruction's opcode
+     * @param index the constant pool index
+     * @param change the change in stack depth caused by the instruction
+     */
+    public void poolOp(int opcode, int index, int change)
+    {
+        put(opcode);
+        putShort(index);
+        adjust(change);
+    }
+
+    /**
+     * Appends the shortest instruction that pushes the specified int.
+     *
+     * @param value the int to be pushed
+     * @param classFile the class file whose constant pool holds large ints
+     */
+    public void pushInt(int value, ClassFileWriter classFile)
+    {
+        if (value >= -1 && value <= 5)
+        {
+            put(ICONST_0 + value);
+        }
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+        {
+            put(BIPUSH);
+            put(value);
+        }
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+        {
+            put(SIPUSH);
+            putShort(value);
+        }
+        else
+        {
+            put(LDC_W);
+            putShort(classFile.integer(value));
+        }
+        adjust(1);
+    }
+
+    /**
+     * Appends an instruction that pushes a String constant.
+     *
+     * @param text the String to be pushed
+     * @param classFile the class file whose constant pool holds the String
+     */
+    public void pushString(String text, ClassFileWriter classFile)
+    {
+        put(LDC_W);
+        putShort(classFile.string(text));
+        adjust(1);
+    }
+
+    /**
+     * Appends an instruction that pushes the value of an int local.
+     *
+     * @param local the index of the local
+     */
+    public void load(int local)
+    {
+        localOp(ILOAD, local);
+        adjust(1);
+    }
+
+    /**
+     * Appends an instruction that pops a value into an int local.
+     *
+     * @param local the index of the local
+     */
+    public void store(int local)
+    {
+        localOp(ISTORE, local);
+        adjust(-1);
+    }
+
+    /**
+     * Appends an instruction that adds a constant to an int local.
+     *
+     * @param local the index of the local
+     * @param increment the constant to be added
+     */
+    public void increment(int local, int increment)
+    {
+        useLocal(local);
+        if (local < 256 && increment >= Byte.MIN_VALUE
+                && increment <= Byte.MAX_VALUE)
+        {
+            put(IINC);
+            put(local);
+            put(increment);
+        }
+        else
+        {
+            put(WIDE);
+            put(IINC);
+            putShort(local);
+            putShort(increment);
+        }
+    }
+
+    /**
+     * Appends a load or store of the specified local, using the wide form
+     * of the instruction only if the local's index requires it.
+     *
+     * @param opcode ILOAD or ISTORE
+     * @param local the index of the local
+     */
+    private void localOp(int opcode, int local)
+    {
+        useLocal(local);
+        if (local < 256)
+        {
+            put(opcode);
+            put(local);
+        }
+        else
+        {
+            put(WIDE);
+            put(opcode);
+            putShort(local);
+        }
+    }
+
+    /**
+     * Creates a new label whose position is not yet known.
+     *
+     * @return the label
+     */
+    public int newLabel()
+    {
+        labels.add(-1);
+        return labels.size() - 1;
+    }
+
+    /**
+     * Places the specified label at the current position.
+     *
+     * @param label the label to be placed
+     */
+    public void mark(int label)
+    {
+        labels.set(label, size);
+    }
+
+    /**
+     * Appends a branch instruction to the specified label.
+     *
+     * @param opcode the opcode of the branch
+     * @param label the label to branch to
+     * @param change the change in stack depth caused by the branch
+     */
+    public void branch(int opcode, int label, int change)
+    {
+        fixups.add(new int[] {size, label});
+        put(opcode);
+        putShort(0);
+        adjust(change);
+    }
+
+    /**
+     * Returns the current depth of the operand stack.
+     *
+     * @return the stack depth
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Sets the depth of the operand stack, which is needed after
+     * instructions such as athrow that never complete normally.
+     *
+     * @param depth the stack depth
+     */
+    public void setDepth(int depth)
+    {
+        this.depth = depth;
+    }
+
+    /**
+     * Returns the maximum depth of the operand stack.
+     *
+     * @return the max_stack of the method
+     */
+    public int getMaxStack()
+    {
+        return maxStack;
+    }
+
+    /**
+     * Returns the number of locals used by the method.
+     *
+     * @return the max_locals of the method
+     */
+    public int getMaxLocals()
+    {
+        return maxLocals;
+    }
+
+    /**
+     * Returns the assembled code with every branch resolved.  An
+     * UnsupportedOperationException is thrown if the method is too large to
+     * be expressed with 16-bit branch offsets.
+     *
+     * @return the bytecode of the method
+     */
+    public byte[] toByteArray()
+    {
+        if (size > 32767)
+        {
+            throw new UnsupportedOperationException("Method too large: "
+                    + size + " bytes");
+        }
+        for (int[] fixup : fixups)
+        {
+            int offset = labels.get(fixup[1]) - fixup[0];
+            code[fixup[0] + 1] = (byte) (offset >> 8);
+            code[fixup[0] + 2] = (byte) offset;
+        }
+        return Arrays.copyOf(code, size);
+    }
+}
@@ -0,0 +1,300 @@
+package mips;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import parser.Instruction;
+
+/**
+ * The Assembler class reads MIPS assembly source and produces a MipsProgram.
+ * It accepts the subset of MARS syntax written by the Emitter and used by
+ * the MIPS and subroutine labs: .text and .data sections, labels (alone or
+ * followed by an instruction on the same line), # comments, the .asciiz,
+ * .ascii, .word, .byte and .space directives, and the instructions and
+ * pseudo-instructions listed in MNEMONICS.  Each pseudo-instruction occupies
+ * a single slot of the text segment rather than being expanded.
+ */
+public class Assembler
+{
+    /** every instruction and pseudo-instruction the Simulator executes */
+    public static final HashSet<String> MNEMONICS = new HashSet<String>(
+            Arrays.asList("add", "addu", "addi", "addiu", "sub", "subu", "and",
+                    "andi", "or", "ori", "xor", "xori", "nor", "slt", "sltu",
+                    "slti", "sll", "srl", "sra", "mul", "mult", "div", "rem",
+                    "mflo", "mfhi", "li", "la", "move", "neg", "lw", "sw", "lb",
+                    "sb", "j", "jal", "jr", "jalr", "b", "beq", "bne", "blt",
+                    "ble", "bgt", "bge", "beqz", "bnez", "syscall", "nop"));
+
+    /** the instructions whose last operand is a label */
+    public static final HashSet<String> LABEL_TARGETS = new HashSet<String>(
+            Arrays.asList("j", "jal", "b", "beq", "bne", "blt", "ble", "bgt",
+                    "bge", "beqz", "bnez", "la"));
+
+    private static final Pattern LABEL = Pattern.compile(
+            "^\\s*([A-Za-z_][A-Za-z0-9_.$]*)\\s*:(.*)$");
+
+    private Assembler()
+    {
+    }
+
+    /**
+     * Assembles the MIPS source read from the specified stream.
+     *
+     * @param in the stream containing the assembly source
+     * @return the assembled program
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the source is not valid, with the
+     * offending line number in the message
+     */
+    public static MipsProgram assemble(InputStream in) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        List<Instruction> text = new ArrayList<Instruction>();
+        List<Integer> lines = new ArrayList<Integer>();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        HashMap<String, Integer> labels = new HashMap<String, Integer>();
+        List<String> pending = new ArrayList<String>();
+        boolean inText = true;
+        int lineNumber = 0;
+        String line = reader.readLine();
+        while (line != null)
+        {
+            lineNumber++;
+            Matcher m = LABEL.matcher(line);
+            while (m.matches())
+            {
+                String label = m.group(1);
+                if (labels.containsKey(label))
+                {
+                    throw error(lineNumber, "Duplicate label " + label);
+                }
+                if (inText)
+                {
+                    labels.put(label, MipsProgram.TEXT_BASE + 4 * text.size());
+                }
+                else
+                {
+                    labels.put(label, -1);
+                    pending.add(label);
+                }
+                line = m.group(2);
+                m = LABEL.matcher(line);
+            }
+            Instruction ins = Instruction.parse(line);
+            String op = ins.getOp();
+            if (op == null)
+            {
+                line = reader.readLine();
+                continue;
+            }
+            if (op.equals(".text"))
+            {
+                bind(labels, pending, data.size());
+                inText = true;
+            }
+            else if (op.equals(".data"))
+            {
+                inText = false;
+            }
+            else if (op.startsWith("."))
+            {
+                if (!op.equals(".globl"))
+                {
+                    if (inText)
+                    {
+                        throw error(lineNumber, op + " within .text");
+                    }
+                    if (op.equals(".word"))
+                    {
+                        while (data.size() % 4 != 0)
+                        {
+                            data.write(0);
+                        }
+                    }
+                    bind(labels, pending, data.size());
+                    directive(data, op, ins.getOperandCount() > 0
+                            ? ins.getOperand(0) : "", lineNumber);
+                }
+            }
+            else if (!inText)
+            {
+                throw error(lineNumber, "Instruction within .data: " + op);
+            }
+            else if (!MNEMONICS.contains(op))
+            {
+                throw error(lineNumber, "Unknown instruction " + op);
+            }
+            else
+            {
+                text.add(ins);
+                lines.add(lineNumber);
+            }
+            line = reader.readLine();
+        }
+        bind(labels, pending, data.size());
+        int[] lineNumbers = new int[lines.size()];
+        for (int i = 0; i < text.size(); i++)
+        {
+            lineNumbers[i] = lines.get(i);
+            Instruction ins = text.get(i);
+            if (LABEL_TARGETS.contains(ins.getOp()))
+            {
+                String target = ins.getOperand(ins.getOperandCount() - 1);
+                if (!labels.containsKey(target))
+                {
+                    throw error(lineNumbers[i], "Undefined label " + target);
+                }
+            }
+        }
+        return new MipsProgram(text, lineNumbers, data.toByteArray(), labels);
+    }
+
+    /**
+     * Gives every data label that has been seen since the last data
+     * directive the specified offset within the data segment.  Binding is
+     * delayed until the next directive so that a label preceding a .word
+     * names the word after it has been aligned.
+     *
+     * @param labels the address of every label
+     * @param pending the data labels that have not yet been bound
+     * @param offset the offset within the data segment
+     */
+    private static void bind(HashMap<String, Integer> labels,
+            List<String> pending, int offset)
+    {
+        for (String label : pending)
+        {
+            labels.put(label, Memory.DATA_BASE + offset);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Appends the bytes described by a data directive to the data segment.
+     *
+     * @param data the data segment
+     * @param op the directive
+     * @param operand the text following the directive
+     * @param lineNumber the line on which the directive was written
+     */
+    private static void directive(ByteArrayOutputStream data, String op,
+            String operand, int lineNumber)
+    {
+        if (op.equals(".asciiz") || op.equals(".ascii"))
+        {
+            String s = operand.trim();
+            if (s.length() < 2 || !s.startsWith("\"") || !s.endsWith("\""))
+            {
+                throw error(lineNumber, "Expected a string after " + op);
+            }
+            for (int i = 1; i < s.length() - 1; i++)
+            {
+                char c = s.charAt(i);
+                if (c == '\\' && i + 1 < s.length() - 1)
+                {
+                    i++;
+                    c = escape(s.charAt(i));
+                }
+                data.write(c);
+            }
+            if (op.equals(".asciiz"))
+            {
+                data.write(0);
+            }
+        }
+        else if (op.equals(".word"))
+        {
+            for (String value : operand.split(","))
+            {
+                int word = number(value.trim(), lineNumber);
+                for (int i = 0; i < 4; i++)
+                {
+                    data.write(word >> (8 * i));
+                }
+            }
+        }
+        else if (op.equals(".byte"))
+        {
+            for (String value : operand.split(","))
+            {
+                data.write(number(value.trim(), lineNumber));
+            }
+        }
+        else if (op.equals(".space"))
+        {
+            int count = number(operand.trim(), lineNumber);
+            for (int i = 0; i < count; i++)
+            {
+                data.write(0);
+            }
+        }
+        else
+        {
+            throw error(lineNumber, "Unknown directive " + op);
+        }
+    }
+
+    /**
+     * Returns the character represented by an escape sequence.
+     *
+     * @param c the character following the backslash
+     * @return the escaped character
+     */
+    private static char escape(char c)
+    {
+        if (c == 'n')
+        {
+            return '\n';
+        }
+        if (c == 't')
+        {
+            return '\t';
+        }
+        if (c == '0')
+        {
+            return '\0';
+        }
+        return c;
+    }
+
+    /**
+     * Parses an integer written in decimal or hexadecimal.
+     *
+     * @param value the text of the integer
+     * @param lineNumber the line on which the integer was written
+     * @return the integer
+     */
+    private static int number(String value, int lineNumber)
+    {
+        try
+        {
+            return Long.decode(value).intValue();
+        }
+        catch (NumberFormatException e)
+        {
+            throw error(lineNumber, "Expected a number: " + value);
+        }
+    }
+
+    /**
+     * Creates the exception thrown for invalid source.
+     *
+     * @param lineNumber the line containing the error
+     * @param message a description of the error
+     * @return the exception to be thrown
+     */
+    private static IllegalArgumentException error(int lineNumber, String message)
+    {
+        return new IllegalArgumentException("Line " + lineNumber + ": " + message);
+    }
+}
@@ -0,0 +1,422 @@
+package mips;
+
+import java.util.List;
+
+import parser.Instruction;
+
+/**
+ * The Decoder class translates the text segment of a MipsProgram into a
+ * compact int array that the Simulator can execute without looking at any
+ * text.  Every instruction occupies WIDTH consecutive ints: an opcode
+ * followed by up to three operands.  Register names are replaced by their
+ * numbers, constants and data labels by their values, and branch and jump
+ * labels by the position within the array of the instruction they name.  Whether an operand is
+ * a register or a constant is folded into the opcode, so no operand needs to
+ * be examined before it is used.
+ *
+ * Writes to $zero are redirected to SINK, an extra register that is never
+ * read, so that executing an instruction never needs to check its
+ * destination.
+ */
+public final class Decoder
+{
+    /** the number of ints occupied by each decoded instruction */
+    public static final int WIDTH = 4;
+    /** the register that receives writes to $zero */
+    public static final int SINK = 32;
+    /** added to the opcode of an operation whose last source is a constant */
+    public static final int IMMEDIATE = 16;
+
+    static final int ADD = 0;
+    static final int SUB = 1;
+    static final int AND = 2;
+    static final int OR = 3;
+    static final int XOR = 4;
+    static final int NOR = 5;
+    static final int SLT = 6;
+    static final int SLTU = 7;
+    static final int SLL = 8;
+    static final int SRL = 9;
+    static final int SRA = 10;
+    static final int MUL = 11;
+    static final int DIV3 = 12;
+    static final int REM = 13;
+    static final int ADD_I = ADD + IMMEDIATE;
+    static final int SUB_I = SUB + IMMEDIATE;
+    static final int AND_I = AND + IMMEDIATE;
+    static final int OR_I = OR + IMMEDIATE;
+    static final int XOR_I = XOR + IMMEDIATE;
+    static final int NOR_I = NOR + IMMEDIATE;
+    static final int SLT_I = SLT + IMMEDIATE;
+    static final int SLTU_I = SLTU + IMMEDIATE;
+    static final int SLL_I = SLL + IMMEDIATE;
+    static final int SRL_I = SRL + IMMEDIATE;
+    static final int SRA_I = SRA + IMMEDIATE;
+    static final int MUL_I = MUL + IMMEDIATE;
+    static final int DIV3_I = DIV3 + IMMEDIATE;
+    static final int REM_I = REM + IMMEDIATE;
+    static final int MULT = 32;
+    static final int DIV = 33;
+    static final int MFLO = 34;
+    static final int MFHI = 35;
+    static final int LI = 36;
+    static final int MOVE = 37;
+    static final int LW = 38;
+    static final int LB = 39;
+    static final int SW = 40;
+    static final int SB = 41;
+    static final int J = 42;
+    static final int JAL = 43;
+    static final int JR = 44;
+    static final int JALR = 45;
+    static final int BEQ = 46;
+    static final int BNE = 47;
+    static final int BLT = 48;
+    static final int BLE = 49;
+    static final int BGT = 50;
+    static final int BGE = 51;
+    static final int BEQ_I = 52;
+    static final int BNE_I = 53;
+    static final int BLT_I = 54;
+    static final int BLE_I = 55;
+    static final int BGT_I = 56;
+    static final int BGE_I = 57;
+    static final int SYSCALL = 58;
+    static final int NOP = 59;
+    /** one more than the largest opcode */
+    static final int OPCODES = 60;
+
+    private static final String[] ALU = {"add", "sub", "and", "or", "xor",
+        "nor", "slt", "sltu", "sll", "srl", "sra", "mul", "div", "rem"};
+    private static final String[] BRANCHES = {"beq", "bne", "blt", "ble",
+        "bgt", "bge"};
+
+    private Decoder()
+    {
+    }
+
+    /**
+     * Decodes the text segment of the specified program.
+     *
+     * @param program the program to be decoded
+     * @return the decoded instructions, WIDTH ints per instruction
+     * @throws IllegalArgumentException if an instruction has invalid
+     * operands, with the line of the instruction in the message
+     */
+    public static int[] decode(MipsProgram program)
+    {
+        List<Instruction> text = program.getText();
+        int[] code = new int[text.size() * WIDTH];
+        for (int i = 0; i < text.size(); i++)
+        {
+            try
+            {
+                decode(program, text.get(i), i, code, i * WIDTH);
+            }
+            catch (RuntimeException e)
+            {
+                throw new IllegalArgumentException("Line "
+                        + program.getLineNumber(i) + ": " + e.getMessage(), e);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Decodes a single instruction into the code array.
+     *
+     * @param program the program being decoded
+     * @param ins the instruction
+     * @param index the index of the instruction
+     * @param code the decoded instructions
+     * @param at the position of the instruction within the code array
+     */
+    private static void decode(MipsProgram program, Instruction ins, int index,
+            int[] code, int at)
+    {
+        String op = ins.getOp();
+        int alu = aluIndex(op);
+        if (alu >= 0 && !(alu == DIV3 && ins.getOperandCount() == 2))
+        {
+            put(code, at, alu, dest(ins), reg(ins, 1), 0);
+            source(code, at, ins, 2);
+            return;
+        }
+        for (int b = 0; b < BRANCHES.length; b++)
+        {
+            if (op.equals(BRANCHES[b]))
+            {
+                int target = target(program, ins, 2);
+                if (operand(ins, 1).startsWith("$"))
+                {
+                    put(code, at, BEQ + b, reg(ins, 0), reg(ins, 1), target);
+                }
+                else
+                {
+                    put(code, at, BEQ_I + b, reg(ins, 0), constant(ins, 1), target);
+                }
+                return;
+            }
+        }
+        switch (op)
+        {
+            case "addi":
+            case "addiu":
+                put(code, at, ADD_I, dest(ins), reg(ins, 1), constant(ins, 2));
+                break;
+            case "andi":
+                put(code, at, AND_I, dest(ins), reg(ins, 1), constant(ins, 2));
+                break;
+            case "ori":
+                put(code, at, OR_I, dest(ins), reg(ins, 1), constant(ins, 2));
+                break;
+            case "xori":
+                put(code, at, XOR_I, dest(ins), reg(ins, 1), constant(ins, 2));
+                break;
+            case "slti":
+                put(code, at, SLT_I, dest(ins), reg(ins, 1), constant(ins, 2));
+                break;
+            case "mult":
+                put(code, at, MULT, reg(ins, 0), reg(ins, 1), 0);
+                break;
+            case "div":
+                put(code, at, DIV, reg(ins, 0), reg(ins, 1), 0);
+                break;
+            case "mflo":
+                put(code, at, MFLO, dest(ins), 0, 0);
+                break;
+            case "mfhi":
+                put(code, at, MFHI, dest(ins), 0, 0);
+                break;
+            case "li":
+                put(code, at, LI, dest(ins), constant(ins, 1), 0);
+                break;
+            case "la":
+                put(code, at, LI, dest(ins), program.getAddress(operand(ins, 1)), 0);
+                break;
+            case "move":
+                put(code, at, MOVE, dest(ins), reg(ins, 1), 0);
+                break;
+            case "neg":
+                put(code, at, SUB, dest(ins), 0, reg(ins, 1));
+                break;
+            case "lw":
+                memory(program, code, at, LW, dest(ins), operand(ins, 1));
+                break;
+            case "lb":
+                memory(program, code, at, LB, dest(ins), operand(ins, 1));
+                break;
+            case "sw":
+                memory(program, code, at, SW, reg(ins, 0), operand(ins, 1));
+                break;
+            case "sb":
+                memory(program, code, at, SB, reg(ins, 0), operand(ins, 1));
+                break;
+            case "j":
+            case "b":
+                put(code, at, J, target(program, ins, 0), 0, 0);
+                break;
+            case "jal":
+                put(code, at, JAL, target(program, ins, 0),
+                        MipsProgram.TEXT_BASE + 4 * (index + 1), 0);
+                break;
+            case "jr":
+                put(code, at, JR, reg(ins, 0), 0, 0);
+                break;
+            case "jalr":
+                put(code, at, JALR, reg(ins, 0),
+                        MipsProgram.TEXT_BASE + 4 * (index + 1), 0);
+                break;
+            case "beqz":
+                put(code, at, BEQ_I, reg(ins, 0), 0, target(program, ins, 1));
+                break;
+            case "bnez":
+                put(code, at, BNE_I, reg(ins, 0), 0, target(program, ins, 1));
+                break;
+            case "syscall":
+                put(code, at, SYSCALL, 0, 0, 0);
+                break;
+            case "nop":
+                put(code, at, NOP, 0, 0, 0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown instruction " + op);
+        }
+    }
+
+    /**
+     * Returns the position of a three-operand ALU mnemonic within ALU, with
+     * the unsigned forms of add and sub treated as the signed forms, since
+     * the Simulator never traps on overflow.
+     *
+     * @param op the mnemonic
+     * @return the ALU opcode, or -1 if the mnemonic is not a three-operand
+     *         ALU operation
+     */
+    private static int aluIndex(String op)
+    {
+        if (op.equals("addu"))
+        {
+            return ADD;
+        }
+        if (op.equals("subu"))
+        {
+            return SUB;
+        }
+        for (int i = 0; i < ALU.length; i++)
+        {
+            if (op.equals(ALU[i]))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores a decoded instruction.
+     *
+     * @param code the decoded instructions
+     * @param at the position of the instruction
+     * @param op the opcode
+     * @param a the first operand
+     * @param b the second operand
+     * @param c the third operand
+     */
+    private static void put(int[] code, int at, int op, int a, int b, int c)
+    {
+        code[at] = op;
+        code[at + 1] = a;
+        code[at + 2] = b;
+        code[at + 3] = c;
+    }
+
+    /**
+     * Decodes the last source operand of an ALU operation, which may be a
+     * register or a constant.  A constant is stored in place of the
+     * register and the opcode is switched to its immediate form.
+     *
+     * @param code the decoded instructions
+     * @param at the position of the instruction
+     * @param ins the instruction
+     * @param index the position of the source operand
+     */
+    private static void source(int[] code, int at, Instruction ins, int index)
+    {
+        String operand = operand(ins, index);
+        if (operand.startsWith("$"))
+        {
+            code[at + 3] = Simulator.registerNumber(operand);
+        }
+        else
+        {
+            code[at + 3] = constant(ins, index);
+            code[at] += IMMEDIATE;
+        }
+    }
+
+    /**
+     * Decodes a memory operand into a base register and an offset.  A label
+     * becomes an offset from $zero.
+     *
+     * @param program the program being decoded
+     * @param code the decoded instructions
+     * @param at the position of the instruction
+     * @param op the opcode
+     * @param value the register loaded or stored
+     * @param operand the memory operand
+     */
+    private static void memory(MipsProgram program, int[] code, int at, int op,
+            int value, String operand)
+    {
+        int open = operand.indexOf('(');
+        if (open < 0)
+        {
+            put(code, at, op, value, 0, program.getAddress(operand));
+            return;
+        }
+        int base = Simulator.registerNumber(operand.substring(open + 1,
+                operand.length() - 1).trim());
+        String offset = operand.substring(0, open).trim();
+        int displacement = 0;
+        if (program.hasLabel(offset))
+        {
+            displacement = program.getAddress(offset);
+        }
+        else if (offset.length() > 0)
+        {
+            displacement = Long.decode(offset).intValue();
+        }
+        put(code, at, op, value, base, displacement);
+    }
+
+    /**
+     * Returns the operand at the specified position.
+     *
+     * @param ins the instruction
+     * @param index the position of the operand
+     * @return the operand
+     */
+    private static String operand(Instruction ins, int index)
+    {
+        String operand = ins.getOperand(index);
+        if (operand == null)
+        {
+            throw new IllegalArgumentException("Missing operand for "
+                    + ins.getOp());
+        }
+        return operand;
+    }
+
+    /**
+     * Returns the number of the register given by an operand.
+     *
+     * @param ins the instruction
+     * @param index the position of the operand
+     * @return the register's number
+     */
+    private static int reg(Instruction ins, int index)
+    {
+        return Simulator.registerNumber(operand(ins, index));
+    }
+
+    /**
+     * Returns the number of the destination register of an instruction,
+     * redirecting $zero to SINK.
+     *
+     * @param ins the instruction
+     * @return the number of the register to be written
+     */
+    private static int dest(Instruction ins)
+    {
+        int reg = reg(ins, 0);
+        return reg == 0 ? SINK : reg;
+    }
+
+    /**
+     * Returns the value of a constant operand.
+     *
+     * @param ins the instruction
+     * @param index the position of the operand
+     * @return the constant
+     */
+    private static int constant(Instruction ins, int index)
+    {
+        return Long.decode(operand(ins, index)).intValue();
+    }
+
+    /**
+     * Returns the position within the code array of the instruction named
+     * by a label operand.
+     *
+     * @param program the program being decoded
+     * @param ins the instruction
+     * @param index the position of the label operand
+     * @return the position of the labeled instruction
+     */
+    private static int target(MipsProgram program, Instruction ins, int index)
+    {
+        return ((program.getAddress(operand(ins, index)) - MipsProgram.TEXT_BASE)
+                >> 2) * WIDTH;
+    }
+}
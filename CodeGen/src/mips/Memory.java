@@ -0,0 +1,233 @@
+package mips;
+
+import java.util.Arrays;
+
+/**
+ * The Memory class models the parts of the MIPS address space used by
+ * simulated programs: the static data segment, which grows upward from
+ * DATA_BASE, and the stack, which grows downward from STACK_TOP.  Each
+ * region is stored as an int array of words that is enlarged as needed.
+ * Bytes are stored little-endian within words, as in MARS.  Reading memory
+ * that has never been written returns 0.
+ */
+public class Memory
+{
+    /** the address of the first byte of the static data segment */
+    public static final int DATA_BASE = 0x10010000;
+    /** the address of the highest word of the stack */
+    public static final int STACK_TOP = 0x7ffffffc;
+    /** the initial value of $sp */
+    public static final int INITIAL_SP = 0x7fffeffc;
+    /** addresses at or above this value belong to the stack */
+    private static final int STACK_LIMIT = 0x70000000;
+
+    private int[] data;
+    private int[] stack;
+
+    /**
+     * Creates a new instance of the Memory class whose data segment holds
+     * the specified bytes.
+     *
+     * @param initialData the contents of the data segment
+     */
+    public Memory(byte[] initialData)
+    {
+        data = new int[Math.max(16, (initialData.length + 3) / 4)];
+        stack = new int[1024];
+        for (int i = 0; i < initialData.length; i++)
+        {
+            storeByte(DATA_BASE + i, initialData[i]);
+        }
+    }
+
+    /**
+     * Returns the word stored at the specified address.  Only the common
+     * case of an aligned address within an allocated word is handled here,
+     * so that the method is small enough to be inlined into the Simulator's
+     * loop; every other case is handled by loadWordSlowly.
+     *
+     * @param address the address of the word, which must be a multiple of 4
+     * @return the word at that address
+     */
+    public int loadWord(int address)
+    {
+        if ((address & 3) == 0)
+        {
+            if (address >= STACK_LIMIT)
+            {
+                int index = (STACK_TOP - address) >>> 2;
+                if (index < stack.length)
+                {
+                    return stack[index];
+                }
+            }
+            else
+            {
+                int index = (address - DATA_BASE) >>> 2;
+                if (address >= DATA_BASE && index < data.length)
+                {
+                    return data[index];
+                }
+            }
+        }
+        return loadWordSlowly(address);
+    }
+
+    /**
+     * Returns the word stored at an address that is unaligned, out of
+     * range, or has never been allocated.
+     *
+     * @param address the address of the word
+     * @return 0, since the word has never been written
+     */
+    private int loadWordSlowly(int address)
+    {
+        checkAligned(address);
+        if (address < STACK_LIMIT)
+        {
+            dataIndex(address);
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a word at the specified address.  As with loadWord, only the
+     * common case is handled here; storeWordSlowly handles the rest.
+     *
+     * @param address the address of the word, which must be a multiple of 4
+     * @param value the word to be stored
+     */
+    public void storeWord(int address, int value)
+    {
+        if ((address & 3) == 0)
+        {
+            if (address >= STACK_LIMIT)
+            {
+                int index = (STACK_TOP - address) >>> 2;
+                if (index < stack.length)
+                {
+                    stack[index] = value;
+                    return;
+                }
+            }
+            else
+            {
+                int index = (address - DATA_BASE) >>> 2;
+                if (address >= DATA_BASE && index < data.length)
+                {
+                    data[index] = value;
+                    return;
+                }
+            }
+        }
+        storeWordSlowly(address, value);
+    }
+
+    /**
+     * Stores a word at an address that is unaligned, out of range, or not
+     * yet allocated, enlarging the region that contains it.
+     *
+     * @param address the address of the word
+     * @param value the word to be stored
+     */
+    private void storeWordSlowly(int address, int value)
+    {
+        checkAligned(address);
+        if (address >= STACK_LIMIT)
+        {
+            int index = (STACK_TOP - address) >>> 2;
+            if (index >= stack.length)
+            {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, index + 1));
+            }
+            stack[index] = value;
+        }
+        else
+        {
+            int index = dataIndex(address);
+            if (index >= data.length)
+            {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, index + 1));
+            }
+            data[index] = value;
+        }
+    }
+
+    /**
+     * Returns the sign-extended byte stored at the specified address.
+     *
+     * @param address the address of the byte
+     * @return the byte at that address
+     */
+    public int loadByte(int address)
+    {
+        int shift = (address & 3) * 8;
+        return (byte) (loadWord(address & ~3) >> shift);
+    }
+
+    /**
+     * Stores the low byte of a value at the specified address.
+     *
+     * @param address the address of the byte
+     * @param value the value whose low byte is stored
+     */
+    public void storeByte(int address, int value)
+    {
+        int word = address & ~3;
+        int shift = (address & 3) * 8;
+        int old = loadWord(word);
+        storeWord(word, (old & ~(0xff << shift)) | ((value & 0xff) << shift));
+    }
+
+    /**
+     * Returns the String stored at the specified address, ending at the
+     * first zero byte.
+     *
+     * @param address the address of the first character
+     * @return the String at that address
+     */
+    public String loadString(int address)
+    {
+        StringBuilder text = new StringBuilder();
+        int c = loadByte(address);
+        while (c != 0)
+        {
+            text.append((char) (c & 0xff));
+            address++;
+            c = loadByte(address);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the index within the data array of the word at the specified
+     * address.
+     *
+     * @param address the address of the word
+     * @return the index of the word
+     */
+    private static int dataIndex(int address)
+    {
+        if (address < DATA_BASE)
+        {
+            throw new IllegalStateException("Address out of range: 0x"
+                    + Integer.toHexString(address));
+        }
+        return (address - DATA_BASE) >>> 2;
+    }
+
+    /**
+     * Throws an IllegalStateException if the specified address is not a
+     * multiple of 4.
+     *
+     * @param address the address of a word
+     */
+    private static void checkAligned(int address)
+    {
+        if ((address & 3) != 0)
+        {
+            throw new IllegalStateException("Unaligned word address: 0x"
+                    + Integer.toHexString(address));
+        }
+    }
+}
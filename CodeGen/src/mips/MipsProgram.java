@@ -0,0 +1,117 @@
+package mips;
+
+import java.util.HashMap;
+import java.util.List;
+
+import parser.Instruction;
+
+/**
+ * The MipsProgram class holds an assembled MIPS program: the instructions of
+ * its text segment, the initial contents of its data segment, and the
+ * address of every label.  Instructions are stored as parsed Instruction
+ * records; the instruction at index i of the text segment has the address
+ * TEXT_BASE + 4 * i.
+ */
+public class MipsProgram
+{
+    /** the address of the first instruction of the text segment */
+    public static final int TEXT_BASE = 0x00400000;
+
+    private List<Instruction> text;
+    private int[] lineNumbers;
+    private byte[] data;
+    private HashMap<String, Integer> labels;
+
+    /**
+     * Creates a new instance of the MipsProgram class.
+     *
+     * @param text the instructions of the text segment
+     * @param lineNumbers the source line of each instruction
+     * @param data the initial contents of the data segment
+     * @param labels the address of every label
+     */
+    public MipsProgram(List<Instruction> text, int[] lineNumbers, byte[] data,
+            HashMap<String, Integer> labels)
+    {
+        this.text = text;
+        this.lineNumbers = lineNumbers;
+        this.data = data;
+        this.labels = labels;
+    }
+
+    /**
+     * Returns the instructions of the text segment.
+     *
+     * @return the instructions, in order of address
+     */
+    public List<Instruction> getText()
+    {
+        return text;
+    }
+
+    /**
+     * Returns the source line number of the instruction at the specified
+     * index of the text segment.
+     *
+     * @param index the index of the instruction
+     * @return the line on which the instruction was written
+     */
+    public int getLineNumber(int index)
+    {
+        return lineNumbers[index];
+    }
+
+    /**
+     * Returns the initial contents of the data segment.
+     *
+     * @return the bytes of the data segment, starting at Memory.DATA_BASE
+     */
+    public byte[] getData()
+    {
+        return data;
+    }
+
+    /**
+     * Returns the address of the specified label.
+     *
+     * @param label the name of the label
+     * @return the label's address
+     * @throws IllegalArgumentException if the label is not defined
+     */
+    public int getAddress(String label)
+    {
+        Integer address = labels.get(label);
+        if (address == null)
+        {
+            throw new IllegalArgumentException("Undefined label " + label);
+        }
+        return address;
+    }
+
+    /**
+     * Returns whether the specified label is defined.
+     *
+     * @param label the name of the label
+     * @return true if the label is defined; otherwise, false
+     */
+    public boolean hasLabel(String label)
+    {
+        return labels.containsKey(label);
+    }
+
+    /**
+     * Returns the index of the instruction at which execution begins: the
+     * instruction labeled main if there is one, or else the first
+     * instruction.
+     *
+     * @return the index of the first instruction to execute
+     */
+    public int getEntryIndex()
+    {
+        if (labels.containsKey("main"))
+        {
+            return (labels.get("main") - TEXT_BASE) / 4;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,834 @@
+package mips;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+
+import parser.Instruction;
+
+/**
+ * The Simulator class executes an assembled MipsProgram, standing in for
+ * MARS or SPIM so that generated code can be run and measured without
+ * either.  The run method first translates the program with the Decoder and
+ * then executes the decoded ints in a single loop that dispatches with a
+ * switch statement and allocates nothing once it has started.  Rather than
+ * keep a counter for each statistic, the loop counts the executions of each
+ * opcode in a single array, from which the statistics are summed when it
+ * stops; only taken branches are counted separately.
+ * The interpret method instead dispatches on the mnemonic of each
+ * Instruction record and interprets its operands from their text every time
+ * it is executed; it is kept as a reference for the decoded loop.  Syscalls
+ * 1 (print integer), 4 (print string), 5 (read integer) and 10 (exit) are
+ * supported.
+ *
+ * While running, the Simulator counts the instructions executed, the loads
+ * and stores performed, the conditional branches executed and taken, and
+ * the unconditional jumps executed.  Pseudo-instructions count as a single
+ * instruction.
+ */
+public class Simulator
+{
+    private static final HashMap<String, Integer> REGISTERS = registerTable();
+
+    private MipsProgram program;
+    private Memory memory;
+    private BufferedReader in;
+    private PrintStream out;
+    private int[] regs;
+    private int hi;
+    private int lo;
+
+    private long instructions;
+    private long loads;
+    private long stores;
+    private long branches;
+    private long taken;
+    private long jumps;
+
+    /**
+     * Creates a new instance of the Simulator class.
+     *
+     * @param program the program to be executed
+     * @param in the stream from which syscall 5 reads integers
+     * @param out the stream to which syscalls 1 and 4 print
+     */
+    public Simulator(MipsProgram program, InputStream in, PrintStream out)
+    {
+        this.program = program;
+        this.in = new BufferedReader(new InputStreamReader(in));
+        this.out = out;
+        memory = new Memory(program.getData());
+        regs = new int[Decoder.SINK + 1];
+        regs[REGISTERS.get("$sp")] = Memory.INITIAL_SP;
+        regs[REGISTERS.get("$gp")] = 0x10008000;
+    }
+
+    /**
+     * Builds the table mapping each register name, both symbolic ($t0) and
+     * numeric ($8), to its number.
+     *
+     * @return the register table
+     */
+    private static HashMap<String, Integer> registerTable()
+    {
+        String[] names = {"zero", "at", "v0", "v1", "a0", "a1", "a2", "a3",
+            "t0", "t1", "t2", "t3", "t4", "t5", "t6", "t7", "s0", "s1", "s2",
+            "s3", "s4", "s5", "s6", "s7", "t8", "t9", "k0", "k1", "gp", "sp",
+            "fp", "ra"};
+        HashMap<String, Integer> table = new HashMap<String, Integer>();
+        for (int i = 0; i < names.length; i++)
+        {
+            table.put("$" + names[i], i);
+            table.put("$" + i, i);
+        }
+        table.put("$s8", 30);
+        return table;
+    }
+
+    /**
+     * Returns the number of the register with the specified name.
+     *
+     * @param name the name of the register, such as $t0 or $8
+     * @return the register's number
+     * @throws IllegalArgumentException if there is no such register
+     */
+    public static int registerNumber(String name)
+    {
+        Integer number = REGISTERS.get(name);
+        if (number == null)
+        {
+            throw new IllegalArgumentException("Unknown register " + name);
+        }
+        return number;
+    }
+
+    /**
+     * Decodes the program and executes it from its entry point until it
+     * exits via syscall 10 or runs past its last instruction.
+     *
+     * @throws IllegalArgumentException if the program cannot be decoded
+     * @throws IllegalStateException if an instruction cannot be executed,
+     * with the line of the instruction in the message
+     */
+    public void run()
+    {
+        int[] code = Decoder.decode(program);
+        int[] r = regs;
+        Memory mem = memory;
+        int end = code.length;
+        int pc = program.getEntryIndex() * Decoder.WIDTH;
+        long[] executed = new long[Decoder.OPCODES];
+        long takenCount = 0;
+        try
+        {
+            while (pc >= 0 && pc < end)
+            {
+                int op = code[pc];
+                executed[op]++;
+                int a = code[pc + 1];
+                int b = code[pc + 2];
+                int c = code[pc + 3];
+                int next = pc + Decoder.WIDTH;
+                switch (op)
+                {
+                    case Decoder.ADD:
+                        r[a] = r[b] + r[c];
+                        break;
+                    case Decoder.SUB:
+                        r[a] = r[b] - r[c];
+                        break;
+                    case Decoder.AND:
+                        r[a] = r[b] & r[c];
+                        break;
+                    case Decoder.OR:
+                        r[a] = r[b] | r[c];
+                        break;
+                    case Decoder.XOR:
+                        r[a] = r[b] ^ r[c];
+                        break;
+                    case Decoder.NOR:
+                        r[a] = ~(r[b] | r[c]);
+                        break;
+                    case Decoder.SLT:
+                        r[a] = r[b] < r[c] ? 1 : 0;
+                        break;
+                    case Decoder.SLTU:
+                        r[a] = Integer.compareUnsigned(r[b], r[c]) < 0 ? 1 : 0;
+                        break;
+                    case Decoder.SLL:
+                        r[a] = r[b] << r[c];
+                        break;
+                    case Decoder.SRL:
+                        r[a] = r[b] >>> r[c];
+                        break;
+                    case Decoder.SRA:
+                        r[a] = r[b] >> r[c];
+                        break;
+                    case Decoder.MUL:
+                        lo = r[b] * r[c];
+                        r[a] = lo;
+                        break;
+                    case Decoder.DIV3:
+                        r[a] = r[b] / nonZero(r[c]);
+                        break;
+                    case Decoder.REM:
+                        r[a] = r[b] % nonZero(r[c]);
+                        break;
+                    case Decoder.ADD_I:
+                        r[a] = r[b] + c;
+                        break;
+                    case Decoder.SUB_I:
+                        r[a] = r[b] - c;
+                        break;
+                    case Decoder.AND_I:
+                        r[a] = r[b] & c;
+                        break;
+                    case Decoder.OR_I:
+                        r[a] = r[b] | c;
+                        break;
+                    case Decoder.XOR_I:
+                        r[a] = r[b] ^ c;
+                        break;
+                    case Decoder.NOR_I:
+                        r[a] = ~(r[b] | c);
+                        break;
+                    case Decoder.SLT_I:
+                        r[a] = r[b] < c ? 1 : 0;
+                        break;
+                    case Decoder.SLTU_I:
+                        r[a] = Integer.compareUnsigned(r[b], c) < 0 ? 1 : 0;
+                        break;
+                    case Decoder.SLL_I:
+                        r[a] = r[b] << c;
+                        break;
+                    case Decoder.SRL_I:
+                        r[a] = r[b] >>> c;
+                        break;
+                    case Decoder.SRA_I:
+                        r[a] = r[b] >> c;
+                        break;
+                    case Decoder.MUL_I:
+                        lo = r[b] * c;
+                        r[a] = lo;
+                        break;
+                    case Decoder.DIV3_I:
+                        r[a] = r[b] / nonZero(c);
+                        break;
+                    case Decoder.REM_I:
+                        r[a] = r[b] % nonZero(c);
+                        break;
+                    case Decoder.MULT:
+                        long product = (long) r[a] * r[b];
+                        lo = (int) product;
+                        hi = (int) (product >> 32);
+                        break;
+                    case Decoder.DIV:
+                        if (r[b] != 0)
+                        {
+                            lo = r[a] / r[b];
+                            hi = r[a] % r[b];
+                        }
+                        break;
+                    case Decoder.MFLO:
+                        r[a] = lo;
+                        break;
+                    case Decoder.MFHI:
+                        r[a] = hi;
+                        break;
+                    case Decoder.LI:
+                        r[a] = b;
+                        break;
+                    case Decoder.MOVE:
+                        r[a] = r[b];
+                        break;
+                    case Decoder.LW:
+                        r[a] = mem.loadWord(r[b] + c);
+                        break;
+                    case Decoder.LB:
+                        r[a] = mem.loadByte(r[b] + c);
+                        break;
+                    case Decoder.SW:
+                        mem.storeWord(r[b] + c, r[a]);
+                        break;
+                    case Decoder.SB:
+                        mem.storeByte(r[b] + c, r[a]);
+                        break;
+                    case Decoder.J:
+                        next = a;
+                        break;
+                    case Decoder.JAL:
+                        r[31] = b;
+                        next = a;
+                        break;
+                    case Decoder.JR:
+                        next = ((r[a] - MipsProgram.TEXT_BASE) >> 2) * Decoder.WIDTH;
+                        break;
+                    case Decoder.JALR:
+                        next = ((r[a] - MipsProgram.TEXT_BASE) >> 2) * Decoder.WIDTH;
+                        r[31] = b;
+                        break;
+                    case Decoder.BEQ:
+                        if (r[a] == r[b])
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BNE:
+                        if (r[a] != r[b])
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BLT:
+                        if (r[a] < r[b])
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BLE:
+                        if (r[a] <= r[b])
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BGT:
+                        if (r[a] > r[b])
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BGE:
+                        if (r[a] >= r[b])
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BEQ_I:
+                        if (r[a] == b)
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BNE_I:
+                        if (r[a] != b)
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BLT_I:
+                        if (r[a] < b)
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BLE_I:
+                        if (r[a] <= b)
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BGT_I:
+                        if (r[a] > b)
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.BGE_I:
+                        if (r[a] >= b)
+                        {
+                            takenCount++;
+                            next = c;
+                        }
+                        break;
+                    case Decoder.SYSCALL:
+                        if (syscall())
+                        {
+                            next = -1;
+                        }
+                        break;
+                    case Decoder.NOP:
+                        break;
+                    default:
+                        throw new IllegalStateException("Invalid opcode " + code[pc]);
+                }
+                pc = next;
+            }
+        }
+        catch (RuntimeException e)
+        {
+            throw new IllegalStateException("Line " + program.getLineNumber(
+                    pc / Decoder.WIDTH) + ": " + e.getMessage(), e);
+        }
+        finally
+        {
+            for (int op = 0; op < executed.length; op++)
+            {
+                instructions += executed[op];
+            }
+            loads += executed[Decoder.LW] + executed[Decoder.LB];
+            stores += executed[Decoder.SW] + executed[Decoder.SB];
+            for (int op = Decoder.BEQ; op <= Decoder.BGE_I; op++)
+            {
+                branches += executed[op];
+            }
+            taken += takenCount;
+            for (int op = Decoder.J; op <= Decoder.JALR; op++)
+            {
+                jumps += executed[op];
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Executes the program from its entry point until it exits via syscall
+     * 10 or runs past its last instruction, interpreting each Instruction
+     * record from its text.  This is much slower than run, but needs no
+     * decoding.
+     *
+     * @throws IllegalStateException if an instruction cannot be executed,
+     * with the line of the instruction in the message
+     */
+    public void interpret()
+    {
+        List<Instruction> text = program.getText();
+        int pc = program.getEntryIndex();
+        while (pc >= 0 && pc < text.size())
+        {
+            try
+            {
+                pc = step(text.get(pc), pc);
+            }
+            catch (RuntimeException e)
+            {
+                throw new IllegalStateException("Line "
+                        + program.getLineNumber(pc) + ": " + e.getMessage(), e);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Executes a single instruction.
+     *
+     * @param ins the instruction
+     * @param pc the index of the instruction
+     * @return the index of the next instruction, or -1 to stop
+     */
+    private int step(Instruction ins, int pc)
+    {
+        instructions++;
+        String op = ins.getOp();
+        switch (op)
+        {
+            case "add":
+            case "addu":
+            case "addi":
+            case "addiu":
+                set(ins, value(ins, 1) + value(ins, 2));
+                break;
+            case "sub":
+            case "subu":
+                set(ins, value(ins, 1) - value(ins, 2));
+                break;
+            case "and":
+            case "andi":
+                set(ins, value(ins, 1) & value(ins, 2));
+                break;
+            case "or":
+            case "ori":
+                set(ins, value(ins, 1) | value(ins, 2));
+                break;
+            case "xor":
+            case "xori":
+                set(ins, value(ins, 1) ^ value(ins, 2));
+                break;
+            case "nor":
+                set(ins, ~(value(ins, 1) | value(ins, 2)));
+                break;
+            case "slt":
+            case "slti":
+                set(ins, value(ins, 1) < value(ins, 2) ? 1 : 0);
+                break;
+            case "sltu":
+                set(ins, Integer.compareUnsigned(value(ins, 1), value(ins, 2)) < 0
+                        ? 1 : 0);
+                break;
+            case "sll":
+                set(ins, value(ins, 1) << value(ins, 2));
+                break;
+            case "srl":
+                set(ins, value(ins, 1) >>> value(ins, 2));
+                break;
+            case "sra":
+                set(ins, value(ins, 1) >> value(ins, 2));
+                break;
+            case "mul":
+                lo = value(ins, 1) * value(ins, 2);
+                set(ins, lo);
+                break;
+            case "mult":
+                long product = (long) value(ins, 0) * value(ins, 1);
+                lo = (int) product;
+                hi = (int) (product >> 32);
+                break;
+            case "div":
+                if (ins.getOperandCount() == 2)
+                {
+                    int divisor = value(ins, 1);
+                    if (divisor != 0)
+                    {
+                        lo = value(ins, 0) / divisor;
+                        hi = value(ins, 0) % divisor;
+                    }
+                }
+                else
+                {
+                    set(ins, value(ins, 1) / nonZero(value(ins, 2)));
+                }
+                break;
+            case "rem":
+                set(ins, value(ins, 1) % nonZero(value(ins, 2)));
+                break;
+            case "mflo":
+                set(ins, lo);
+                break;
+            case "mfhi":
+                set(ins, hi);
+                break;
+            case "li":
+            case "move":
+                set(ins, value(ins, 1));
+                break;
+            case "neg":
+                set(ins, -value(ins, 1));
+                break;
+            case "la":
+                set(ins, address(ins.getOperand(1)));
+                break;
+            case "lw":
+                loads++;
+                set(ins, memory.loadWord(address(ins.getOperand(1))));
+                break;
+            case "lb":
+                loads++;
+                set(ins, memory.loadByte(address(ins.getOperand(1))));
+                break;
+            case "sw":
+                stores++;
+                memory.storeWord(address(ins.getOperand(1)), value(ins, 0));
+                break;
+            case "sb":
+                stores++;
+                memory.storeByte(address(ins.getOperand(1)), value(ins, 0));
+                break;
+            case "j":
+            case "b":
+                jumps++;
+                return target(ins, 0);
+            case "jal":
+                jumps++;
+                regs[31] = MipsProgram.TEXT_BASE + 4 * (pc + 1);
+                return target(ins, 0);
+            case "jr":
+                jumps++;
+                return (value(ins, 0) - MipsProgram.TEXT_BASE) >> 2;
+            case "jalr":
+                jumps++;
+                int destination = value(ins, 0);
+                regs[31] = MipsProgram.TEXT_BASE + 4 * (pc + 1);
+                return (destination - MipsProgram.TEXT_BASE) >> 2;
+            case "beq":
+                return branch(value(ins, 0) == value(ins, 1), ins, 2, pc);
+            case "bne":
+                return branch(value(ins, 0) != value(ins, 1), ins, 2, pc);
+            case "blt":
+                return branch(value(ins, 0) < value(ins, 1), ins, 2, pc);
+            case "ble":
+                return branch(value(ins, 0) <= value(ins, 1), ins, 2, pc);
+            case "bgt":
+                return branch(value(ins, 0) > value(ins, 1), ins, 2, pc);
+            case "bge":
+                return branch(value(ins, 0) >= value(ins, 1), ins, 2, pc);
+            case "beqz":
+                return branch(value(ins, 0) == 0, ins, 1, pc);
+            case "bnez":
+                return branch(value(ins, 0) != 0, ins, 1, pc);
+            case "syscall":
+                return syscall() ? -1 : pc + 1;
+            case "nop":
+                break;
+            default:
+                throw new IllegalStateException("Unknown instruction " + op);
+        }
+        return pc + 1;
+    }
+
+    /**
+     * Writes a value to the destination register of an instruction.  Writes
+     * to $zero are ignored.
+     *
+     * @param ins the instruction
+     * @param value the value to be written
+     */
+    private void set(Instruction ins, int value)
+    {
+        int reg = registerNumber(ins.getOperand(0));
+        if (reg != 0)
+        {
+            regs[reg] = value;
+        }
+    }
+
+    /**
+     * Returns the value of an operand, which is either a register or an
+     * integer constant.
+     *
+     * @param ins the instruction
+     * @param index the position of the operand
+     * @return the operand's value
+     */
+    private int value(Instruction ins, int index)
+    {
+        String operand = ins.getOperand(index);
+        if (operand == null)
+        {
+            throw new IllegalStateException("Missing operand for " + ins.getOp());
+        }
+        if (operand.startsWith("$"))
+        {
+            return regs[registerNumber(operand)];
+        }
+        return Long.decode(operand).intValue();
+    }
+
+    /**
+     * Returns the address named by a memory operand, which is a label, a
+     * register in parentheses, or an offset followed by a register in
+     * parentheses.
+     *
+     * @param operand the memory operand
+     * @return the address
+     */
+    private int address(String operand)
+    {
+        int open = operand.indexOf('(');
+        if (open < 0)
+        {
+            return program.getAddress(operand);
+        }
+        int base = regs[registerNumber(operand.substring(open + 1,
+                operand.length() - 1).trim())];
+        String offset = operand.substring(0, open).trim();
+        if (offset.length() == 0)
+        {
+            return base;
+        }
+        if (program.hasLabel(offset))
+        {
+            return program.getAddress(offset) + base;
+        }
+        return Long.decode(offset).intValue() + base;
+    }
+
+    /**
+     * Returns the index of the instruction labeled by an operand.
+     *
+     * @param ins the instruction
+     * @param index the position of the label operand
+     * @return the index of the labeled instruction
+     */
+    private int target(Instruction ins, int index)
+    {
+        return (program.getAddress(ins.getOperand(index))
+                - MipsProgram.TEXT_BASE) >> 2;
+    }
+
+    /**
+     * Completes a conditional branch, counting it and whether it was taken.
+     *
+     * @param condition whether the branch is taken
+     * @param ins the branch instruction
+     * @param labelIndex the position of the label operand
+     * @param pc the index of the branch instruction
+     * @return the index of the next instruction
+     */
+    private int branch(boolean condition, Instruction ins, int labelIndex, int pc)
+    {
+        branches++;
+        if (condition)
+        {
+            taken++;
+            return target(ins, labelIndex);
+        }
+        return pc + 1;
+    }
+
+    /**
+     * Returns the divisor of a pseudo-instruction division, which MARS
+     * rejects if it is zero.
+     *
+     * @param divisor the divisor
+     * @return the divisor
+     */
+    private static int nonZero(int divisor)
+    {
+        if (divisor == 0)
+        {
+            throw new ArithmeticException("Division by zero");
+        }
+        return divisor;
+    }
+
+    /**
+     * Performs the syscall selected by $v0.
+     *
+     * @return true if the program should exit; otherwise, false
+     */
+    private boolean syscall()
+    {
+        int service = regs[2];
+        if (service == 1)
+        {
+            out.print(regs[4]);
+        }
+        else if (service == 4)
+        {
+            out.print(memory.loadString(regs[4]));
+        }
+        else if (service == 5)
+        {
+            regs[2] = readInt();
+        }
+        else if (service == 10)
+        {
+            return true;
+        }
+        else
+        {
+            throw new IllegalStateException("Unsupported syscall " + service);
+        }
+        return false;
+    }
+
+    /**
+     * Reads an integer from its own line of input.
+     *
+     * @return the integer read
+     */
+    private int readInt()
+    {
+        out.flush();
+        try
+        {
+            String line = in.readLine();
+            if (line == null)
+            {
+                throw new IllegalStateException("No input for syscall 5");
+            }
+            return Integer.parseInt(line.trim());
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the value of the register with the specified number.
+     *
+     * @param number the register's number
+     * @return the value of the register
+     */
+    public int getRegister(int number)
+    {
+        return regs[number];
+    }
+
+    /**
+     * Returns the number of instructions executed.
+     *
+     * @return the dynamic instruction count
+     */
+    public long getInstructionCount()
+    {
+        return instructions;
+    }
+
+    /**
+     * Returns the number of loads from memory executed.
+     *
+     * @return the number of lw and lb instructions executed
+     */
+    public long getLoadCount()
+    {
+        return loads;
+    }
+
+    /**
+     * Returns the number of stores to memory executed.
+     *
+     * @return the number of sw and sb instructions executed
+     */
+    public long getStoreCount()
+    {
+        return stores;
+    }
+
+    /**
+     * Returns the number of conditional branches executed.
+     *
+     * @return the number of conditional branches
+     */
+    public long getBranchCount()
+    {
+        return branches;
+    }
+
+    /**
+     * Returns the number of conditional branches that were taken.
+     *
+     * @return the number of taken branches
+     */
+    public long getTakenBranchCount()
+    {
+        return taken;
+    }
+
+    /**
+     * Returns the number of unconditional jumps executed.
+     *
+     * @return the number of j, b, jal, jr and jalr instructions executed
+     */
+    public long getJumpCount()
+    {
+        return jumps;
+    }
+
+    /**
+     * Returns a summary of the counts gathered while running.
+     *
+     * @return the report
+     */
+    public String getReport()
+    {
+        return "instructions: " + instructions + "\nloads: " + loads
+                + "\nstores: " + stores + "\nbranches: " + branches
+                + " (" + taken + " taken)\njumps: " + jumps;
+    }
+}
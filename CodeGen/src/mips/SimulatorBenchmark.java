@@ -0,0 +1,117 @@
+package mips;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * The SimulatorBenchmark class compares the speed of the Simulator's
+ * decoded loop with that of its text interpreter.  The benchmark program
+ * computes 12! with the recursive subroutine from the subroutine lab, many
+ * times over, so that it exercises calls, returns, stack traffic and
+ * branches.  Each mode is run several times to let the JVM warm up, and the
+ * best time of each is reported along with the rate in millions of
+ * simulated instructions per second.
+ */
+public class SimulatorBenchmark
+{
+    private static final String SOURCE = ".text\n"
+            + "main:\n"
+            + "li $s0, 0\n"
+            + "li $s1, ITERATIONS\n"
+            + "repeat:\n"
+            + "bge $s0, $s1, done\n"
+            + "li $a0, 12\n"
+            + "subu $sp, $sp, 4\n"
+            + "sw $ra, ($sp)\n"
+            + "jal fact\n"
+            + "lw $ra, ($sp)\n"
+            + "addu $sp, $sp, 4\n"
+            + "addu $s2, $s2, $v0\n"
+            + "addu $s0, $s0, 1\n"
+            + "j repeat\n"
+            + "done:\n"
+            + "move $a0, $s2\n"
+            + "li $v0, 1\n"
+            + "syscall\n"
+            + "li $v0, 10\n"
+            + "syscall\n"
+            + "fact:\n"
+            + "bne $a0, 0, continue\n"
+            + "li $v0, 1\n"
+            + "j return\n"
+            + "continue:\n"
+            + "subu $sp, $sp, 4\n"
+            + "sw $a0, ($sp)\n"
+            + "subu $a0, $a0, 1\n"
+            + "subu $sp, $sp, 4\n"
+            + "sw $ra, ($sp)\n"
+            + "jal fact\n"
+            + "lw $ra, ($sp)\n"
+            + "addu $sp, $sp, 4\n"
+            + "lw $a0, ($sp)\n"
+            + "addu $sp, $sp, 4\n"
+            + "mult $v0, $a0\n"
+            + "mflo $v0\n"
+            + "return:\n"
+            + "jr $ra\n";
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of times fact(12) is computed, if given
+     * @throws IOException never, since the program is read from memory
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        MipsProgram program = Assembler.assemble(new ByteArrayInputStream(
+                SOURCE.replace("ITERATIONS", "" + iterations).getBytes()));
+        long interpreted = time(program, false);
+        long decoded = time(program, true);
+        System.out.println("interpret: " + interpreted / 1000000 + " ms");
+        System.out.println("run: " + decoded / 1000000 + " ms");
+        System.out.println("speedup: " + (double) interpreted / decoded);
+    }
+
+    /**
+     * Runs the program five times in the specified mode and returns the
+     * fastest time.
+     *
+     * @param program the benchmark program
+     * @param decode true to use the decoded loop; false to interpret
+     * @return the best time, in nanoseconds
+     */
+    private static long time(MipsProgram program, boolean decode)
+    {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++)
+        {
+            PrintStream sink = new PrintStream(new OutputStream()
+            {
+                public void write(int b)
+                {
+                }
+            });
+            InputStream none = new ByteArrayInputStream(new byte[0]);
+            Simulator simulator = new Simulator(program, none, sink);
+            long start = System.nanoTime();
+            if (decode)
+            {
+                simulator.run();
+            }
+            else
+            {
+                simulator.interpret();
+            }
+            long time = System.nanoTime() - start;
+            best = Math.min(best, time);
+            System.out.println((decode ? "run: " : "interpret: ")
+                    + simulator.getInstructionCount() * 1000.0 / time
+                    + " million instructions/s");
+        }
+        return best;
+    }
+}
@@ -0,0 +1,36 @@
+package mips;
+
+import java.io.FileInputStream;
+
+/**
+ * The SimulatorMain class assembles and runs a MIPS file, reading syscall
+ * input from the console, and then prints the counts gathered by the
+ * Simulator.  The file to run is given as the first argument; if there is
+ * none, the test.asm written by the Parser is run.
+ */
+public class SimulatorMain
+{
+    /**
+     * Assembles and runs the specified MIPS file.
+     *
+     * @param args the name of the file to run, if any
+     */
+    public static void main(String[] args)
+    {
+        String fileName = args.length > 0 ? args[0] : "test.asm";
+        try
+        {
+            FileInputStream stream = new FileInputStream(fileName);
+            MipsProgram program = Assembler.assemble(stream);
+            stream.close();
+            Simulator simulator = new Simulator(program, System.in, System.out);
+            simulator.run();
+            System.out.println();
+            System.out.println(simulator.getReport());
+        }
+        catch (Exception e)
+        {
+            System.err.println(e);
+        }
+    }
+}
@@ -1,14 +1,38 @@
 package parser;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class Emitter
 {
+	//number of temporary registers ($t0-$t9) available to expressions
+	public static final int TEMP_REGISTERS = 10;
+	//number of argument registers ($a0-$a3) that carry the first parameters
+	//of a procedure call
+	public static final int ARGUMENT_REGISTERS = 4;
+
 	private PrintWriter out;
 	private int currentID;
+	private List<Instruction> code;
+	private PeepholeOptimizer optimizer;
+	private int stackDepth;
+	private Map<String, String> registers;
+	private Map<String, Integer> offsets;
+	private Map<String, Integer> procedures;
 
-	//creates an emitter for writing to a new file with given name
+	//creates an emitter for writing to a new file with given name, using the
+	//default peephole rules
 	public Emitter(String outputFileName)
+	{
+		this(outputFileName, new PeepholeOptimizer());
+	}
+
+	//creates an emitter for writing to a new file with given name; the
+	//buffered code is rewritten by the optimizer (if not null) when closed
+	public Emitter(String outputFileName, PeepholeOptimizer optimizer)
 	{
 		try
 		{
@@ -19,26 +43,94 @@ public class Emitter
 			throw new RuntimeException(e);
 		}
 		currentID = 0;
+		code = new ArrayList<Instruction>();
+		this.optimizer = optimizer;
+		procedures = new HashMap<String, Integer>();
 	}
 
-	//prints one line of code to file (with non-labels indented)
+	//buffers one line of code (labels are written flush left, everything
+	//else indented)
 	public void emit(String code)
 	{
-		if (!code.endsWith(":"))
-			code = "\t" + code;
-		out.println(code);
+		this.code.add(Instruction.parse(code));
 	}
 	
 	public void emitPush(String reg)
 	{
 		emit("subu $sp, $sp, 4");
 		emit("sw " + reg + ", ($sp) # pushing " + reg + " to stack");
+		stackDepth += 4;
 	}
 	
 	public void emitPop(String reg)
 	{
 		emit("lw " + reg + ", ($sp)");
 		emit("addu $sp, $sp, 4 # popping to " + reg + " from stack");
+		stackDepth -= 4;
+	}
+	
+	//reserves the given number of bytes on the stack
+	public void emitAllocate(int bytes)
+	{
+		emit("subu $sp, $sp, " + bytes);
+		stackDepth += bytes;
+	}
+	
+	//releases the given number of bytes reserved on the stack
+	public void emitFree(int bytes)
+	{
+		emit("addu $sp, $sp, " + bytes);
+		stackDepth -= bytes;
+	}
+	
+	//starts compiling the body of a procedure whose local variables are held
+	//in the given registers or at the given offsets from the stack pointer as
+	//it is now; both are null once the procedure's code is done.  the stack
+	//pointer moves with every push, so the offsets are counted from here.
+	public void setLocals(Map<String, String> registers,
+			Map<String, Integer> offsets)
+	{
+		this.registers = registers;
+		this.offsets = offsets;
+		stackDepth = 0;
+	}
+	
+	//returns where the named variable lives in the code being compiled: a
+	//register, a word on the stack, or the global word labelled var<name>
+	public String location(String name)
+	{
+		if (registers != null && registers.containsKey(name))
+			return registers.get(name);
+		if (offsets != null && offsets.containsKey(name))
+			return (offsets.get(name) + stackDepth) + "($sp)";
+		return "var" + name;
+	}
+	
+	//returns whether a location returned by location is a register
+	public static boolean isRegister(String location)
+	{
+		return location.startsWith("$");
+	}
+	
+	//records that the named procedure, taking the given number of
+	//parameters, is compiled under the label proc<name>
+	public void declareProcedure(String name, int params)
+	{
+		procedures.put(name, params);
+	}
+	
+	//returns the number of parameters the named procedure takes, or -1 if no
+	//such procedure has been declared
+	public int getParamCount(String name)
+	{
+		Integer params = procedures.get(name);
+		return params == null ? -1 : params;
+	}
+	
+	//returns the name of the temporary register with the given index
+	public static String temp(int reg)
+	{
+		return "$t" + reg;
 	}
 	
 	public void nextLine()
@@ -52,9 +144,20 @@ public class Emitter
 		return currentID;
 	}
 
-	//closes the file.  should be called after all calls to emit.
+	//returns the optimizer used by this emitter, or null if there is none
+	public PeepholeOptimizer getOptimizer()
+	{
+		return optimizer;
+	}
+
+	//optimizes the buffered code, writes it, and closes the file.  should be
+	//called after all calls to emit.
 	public void close()
 	{
+		if (optimizer != null)
+			optimizer.optimize(code);
+		for (Instruction line : code)
+			out.println(line);
 		out.close();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,415 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ast.ProcedureDeclaration;
+import ast.Program;
+import ast.Statement;
+import scanner.ScanErrorException;
+import scanner.TokenStream;
+
+/**
+ * The IncrementalParser class keeps a Program up to date with a source text
+ * that is being edited, reparsing as little of it as possible after each
+ * edit.  A Program is made up of units that are parsed independently of one
+ * another: the VAR declaration, each procedure declaration, and the main
+ * Statement.  The IncrementalParser remembers where each unit's Tokens
+ * begin and end within the text, so an edit that falls within a single
+ * procedure or the main Statement is handled by lexing and parsing that unit
+ * alone.  Every other unit's subtree is reused as it is in the new Program.
+ *
+ * A Scanner's state between Tokens is nothing but its offset, so the unit is
+ * lexed from the end of the unit before it, and lexing stops at the first
+ * Token of the unit after it.  If that Token is not found where it was
+ * before the edit, shifted by the change in length, the edit has changed
+ * the Tokens beyond the unit. For example, it may have opened a comment or
+ * added another procedure. The IncrementalParser then falls back to
+ * reparsing the whole text.  It also does so for an edit that touches the
+ * VAR declaration or the boundary between two units.
+ *
+ * If the edited text does not parse, the edit is still applied and the
+ * error is thrown.  A broken procedure is remembered as the only unparsed
+ * unit, and further edits to it are still reparsed on their own, so a
+ * procedure can be typed one keystroke at a time. Edits anywhere else
+ * reparse the whole text until the error is fixed.  A main Statement that
+ * does not parse is never reparsed on its own, since text typed in front of
+ * its BEGIN may be a new procedure: the whole text is reparsed instead.
+ */
+public class IncrementalParser
+{
+    private char[] chars;
+    private int size;
+    private List<String> variables;
+    private List<ProcedureDeclaration> procedures;
+    private Statement statement;
+    private Program program;
+    private int[] firsts;
+    private int[] ends;
+    private int[] endLines;
+    private int broken;
+    private int fullReparses;
+    private int unitReparses;
+
+    /**
+     * Creates a new instance of the IncrementalParser class and parses the
+     * whole of the specified source text.
+     *
+     * @param source the source text
+     * @throws ScanErrorException if the Scanner encounters an error anywhere
+     *         in the text
+     * @throws IllegalArgumentException if the text does not hold a valid
+     *         Program
+     */
+    public IncrementalParser(String source) throws ScanErrorException
+    {
+        chars = source.toCharArray();
+        size = chars.length;
+        reparseAll();
+    }
+
+    /**
+     * Returns the Program held within the current text.
+     *
+     * @return the Program, or null if the last edit left the text without a
+     *         valid Program
+     */
+    public Program getProgram()
+    {
+        return program;
+    }
+
+    /**
+     * Returns the current text.
+     *
+     * @return the text with every edit applied
+     */
+    public String getText()
+    {
+        return new String(chars, 0, size);
+    }
+
+    /**
+     * Returns the number of edits, including the initial parse, after which
+     * the whole text was reparsed.
+     *
+     * @return the number of full reparses
+     */
+    public int getFullReparses()
+    {
+        return fullReparses;
+    }
+
+    /**
+     * Returns the number of edits after which only a single procedure or
+     * the main Statement was reparsed.
+     *
+     * @return the number of single-unit reparses
+     */
+    public int getUnitReparses()
+    {
+        return unitReparses;
+    }
+
+    /**
+     * Applies an edit to the text and returns the Program held within the
+     * edited text.  If the edit lies within a single procedure or the main
+     * Statement, only that unit is lexed and parsed again; otherwise the
+     * whole text is.
+     *
+     * @param offset the offset at which the edit begins
+     * @param removed the number of characters removed at that offset
+     * @param inserted the text inserted in their place
+     * @return the Program held within the edited text
+     * @throws ScanErrorException if the Scanner encounters an error within
+     *         the edited text
+     * @throws IllegalArgumentException if the edit lies outside of the text,
+     *         or if the edited text does not hold a valid Program
+     */
+    public Program edit(int offset, int removed, String inserted)
+            throws ScanErrorException
+    {
+        if (offset < 0 || removed < 0 || offset + removed > size)
+        {
+            throw new IllegalArgumentException("Edit of " + removed
+                    + " characters at " + offset + " lies outside of the text");
+        }
+        int unit = findUnit(offset, offset + removed);
+        int lineShift = countLines(inserted.toCharArray(), 0, inserted.length())
+                - countLines(chars, offset, offset + removed);
+        replace(offset, removed, inserted);
+        if (unit < 0)
+        {
+            reparseAll();
+            return program;
+        }
+        int shift = inserted.length() - removed;
+        for (int i = unit + 1; i < firsts.length; i++)
+        {
+            firsts[i] += shift;
+            ends[i] += shift;
+            endLines[i] += lineShift;
+        }
+        if (!reparseUnit(unit))
+        {
+            reparseAll();
+        }
+        return program;
+    }
+
+    /**
+     * Returns the unit within which an edit lies: one that begins after the
+     * last Token of the previous unit and ends before the first Token of the
+     * next unit.
+     *
+     * @param from the offset at which the edit begins
+     * @param to the offset at which the removed text ends
+     * @return the index of the unit, from 1 for the first procedure to the
+     *         number of procedures plus one for the main Statement, or -1 if
+     *         the whole text must be reparsed
+     */
+    private int findUnit(int from, int to)
+    {
+        if (firsts == null)
+        {
+            return -1;
+        }
+        int unit = 0;
+        while (unit < firsts.length - 1 && ends[unit] < from)
+        {
+            unit++;
+        }
+        if (unit == 0 || (unit + 1 < firsts.length && to >= firsts[unit + 1]))
+        {
+            return -1;
+        }
+        if (broken >= 0 && broken != unit)
+        {
+            return -1;
+        }
+        return unit;
+    }
+
+    /**
+     * Lexes and parses a single unit, and rebuilds the Program around it.
+     * The whole text must be reparsed instead if the unit no longer begins
+     * the way a full parse expects it to: a procedure with PROCEDURE, and
+     * the main Statement with anything else, as it does not once a
+     * procedure has been typed in front of it.  It must also be reparsed if
+     * the main Statement does not lex or parse, since the edit may have
+     * left part of a procedure in front of it, so that only a full parse
+     * can tell where the error lies.
+     *
+     * @param unit the index of the unit
+     * @return true if the unit was reparsed; false if the whole text must be
+     *         reparsed
+     * @throws ScanErrorException if the Scanner encounters an error within
+     *         a procedure, which is then marked as broken
+     * @throws IllegalArgumentException if a procedure does not parse, in
+     *         which case it is marked as broken
+     */
+    private boolean reparseUnit(int unit) throws ScanErrorException
+    {
+        boolean main = unit == firsts.length - 1;
+        int end = main ? Integer.MAX_VALUE : firsts[unit + 1];
+        TokenStream tokens;
+        try
+        {
+            tokens = TokenStream.lexRegion(chars, size, ends[unit - 1],
+                    endLines[unit - 1], end);
+        }
+        catch (ScanErrorException e)
+        {
+            if (main)
+            {
+                return false;
+            }
+            markBroken(unit);
+            throw e;
+        }
+        if (main == (tokens.kind(0) == TokenStream.PROCEDURE))
+        {
+            return false;
+        }
+        int last = tokens.size() - 1;
+        while (last > 0 && tokens.start(last - 1) >= end)
+        {
+            last--;
+        }
+        if (!main && tokens.start(last) != end)
+        {
+            return false;
+        }
+        Parser parser = new Parser(tokens);
+        try
+        {
+            if (main)
+            {
+                statement = parser.parseMainStatement();
+            }
+            else
+            {
+                procedures.set(unit - 1, parser.parseProcedure());
+            }
+        }
+        catch (RuntimeException e)
+        {
+            if (main || parser.getPosition() > last)
+            {
+                return false;
+            }
+            markBroken(unit);
+            throw e;
+        }
+        if (!main && parser.getPosition() != last)
+        {
+            return false;
+        }
+        unitReparses++;
+        broken = -1;
+        record(unit, tokens, 0, main ? tokens.size() - 1 : last);
+        program = new Program(variables, new ArrayList<ProcedureDeclaration>(
+                procedures), statement);
+        return true;
+    }
+
+    /**
+     * Marks a procedure that begins with PROCEDURE but could not be lexed or
+     * parsed as broken, which leaves the text without a valid Program.  A
+     * full parse would reach the procedure after parsing the same units
+     * before it, and would lex it from the same offset, so it would find it
+     * broken too; the error found here lies no later than the first Token
+     * of the next unit, as the Parser never looks past its current Token.
+     * The broken procedure is taken to end just before the next unit
+     * begins, so that further edits anywhere within it are still found to
+     * lie within it.
+     *
+     * @param unit the index of the procedure's unit
+     */
+    private void markBroken(int unit)
+    {
+        unitReparses++;
+        broken = unit;
+        ends[unit] = firsts[unit + 1] - 1;
+        program = null;
+    }
+
+    /**
+     * Lexes and parses the whole text, recording where each unit begins and
+     * ends.  If the text does not parse, no unit is recorded, so that the
+     * next edit reparses the whole text as well.  The same is done if the
+     * input ran out before the main Statement, since the Parser then skips
+     * straight to the closing PERIOD and the units no longer match the text.
+     *
+     * @throws ScanErrorException if the Scanner encounters an error anywhere
+     *         in the text
+     * @throws IllegalArgumentException if the text does not hold a valid
+     *         Program
+     */
+    private void reparseAll() throws ScanErrorException
+    {
+        fullReparses++;
+        firsts = null;
+        program = null;
+        broken = -1;
+        TokenStream tokens = TokenStream.lexRegion(chars, size, 0, 1,
+                Integer.MAX_VALUE);
+        Parser parser = new Parser(tokens);
+        variables = parser.parseVariables();
+        ArrayList<Integer> bounds = new ArrayList<Integer>();
+        bounds.add(parser.getPosition());
+        procedures = new ArrayList<ProcedureDeclaration>();
+        while (tokens.kind(parser.getPosition()) == TokenStream.PROCEDURE)
+        {
+            procedures.add(parser.parseProcedure());
+            bounds.add(parser.getPosition());
+        }
+        int main = parser.getPosition();
+        statement = parser.parseMainStatement();
+        program = new Program(variables, new ArrayList<ProcedureDeclaration>(
+                procedures), statement);
+        if (main == tokens.size() - 1)
+        {
+            return;
+        }
+        bounds.add(tokens.size() - 1);
+        int units = bounds.size();
+        firsts = new int[units];
+        ends = new int[units];
+        endLines = new int[units];
+        record(0, tokens, 0, bounds.get(0));
+        for (int i = 1; i < units; i++)
+        {
+            record(i, tokens, bounds.get(i - 1), bounds.get(i));
+        }
+    }
+
+    /**
+     * Records where a unit's Tokens begin and end, along with the line on
+     * which they end.  A unit without Tokens, such as a missing VAR
+     * declaration, begins and ends where its first Token would have been.
+     *
+     * @param unit the index of the unit
+     * @param tokens the Tokens from which the unit was parsed
+     * @param from the index of the unit's first Token
+     * @param to the index of the Token after the unit's last Token
+     */
+    private void record(int unit, TokenStream tokens, int from, int to)
+    {
+        if (to == from)
+        {
+            firsts[unit] = unit == 0 ? 0 : ends[unit - 1];
+            ends[unit] = firsts[unit];
+            endLines[unit] = unit == 0 ? 1 : endLines[unit - 1];
+            return;
+        }
+        int last = to - 1;
+        firsts[unit] = tokens.start(from);
+        ends[unit] = tokens.start(last) + tokens.length(last);
+        endLines[unit] = tokens.line(last)
+                + countLines(chars, tokens.start(last), ends[unit]);
+    }
+
+    /**
+     * Replaces a run of characters within the text, growing the buffer if
+     * the text no longer fits.
+     *
+     * @param offset the offset at which the run begins
+     * @param removed the number of characters within the run
+     * @param inserted the text that replaces the run
+     */
+    private void replace(int offset, int removed, String inserted)
+    {
+        int newSize = size - removed + inserted.length();
+        if (newSize > chars.length)
+        {
+            chars = Arrays.copyOf(chars, Math.max(newSize, chars.length * 2));
+        }
+        System.arraycopy(chars, offset + removed, chars,
+                offset + inserted.length(), size - offset - removed);
+        inserted.getChars(0, inserted.length(), chars, offset);
+        size = newSize;
+    }
+
+    /**
+     * Counts the new lines within a run of characters.
+     *
+     * @param text the characters
+     * @param from the offset at which the run begins
+     * @param to the offset at which the run ends
+     * @return the number of new lines
+     */
+    private static int countLines(char[] text, int from, int to)
+    {
+        int lines = 0;
+        for (int i = from; i < to; i++)
+        {
+            if (text[i] == '\n')
+            {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
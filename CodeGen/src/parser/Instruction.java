@@ -0,0 +1,299 @@
+package parser;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * The Instruction class is a structured record of a single line of MIPS
+ * assembly.  A line is either a label, an instruction or directive with its
+ * operands, a comment on its own, or blank.  Instructions may carry a
+ * trailing comment, which is kept so that the optimized file reads like the
+ * unoptimized one.
+ */
+public class Instruction
+{
+    private static final HashSet<String> NO_DESTINATION = new HashSet<String>(
+            Arrays.asList("sw", "sh", "sb", "j", "jr", "jal", "jalr", "b",
+                    "beq", "bne", "blt", "ble", "bgt", "bge", "beqz", "bnez",
+                    "bltz", "blez", "bgtz", "bgez", "mult", "multu", "syscall",
+                    "nop"));
+
+    private static final HashSet<String> CONTROL = new HashSet<String>(
+            Arrays.asList("j", "jr", "jal", "jalr", "b", "beq", "bne", "blt",
+                    "ble", "bgt", "bge", "beqz", "bnez", "bltz", "blez",
+                    "bgtz", "bgez", "syscall"));
+
+    private String label;
+    private String op;
+    private String[] operands;
+    private String comment;
+
+    /**
+     * Creates a new instance of the Instruction class.
+     *
+     * @param label the label defined by the line, or null
+     * @param op the mnemonic of the instruction or directive, or null
+     * @param operands the operands of the instruction
+     * @param comment the comment on the line (without the #), or null
+     */
+    public Instruction(String label, String op, String[] operands, String comment)
+    {
+        this.label = label;
+        this.op = op;
+        this.operands = operands;
+        this.comment = comment;
+    }
+
+    /**
+     * Creates a new instance of the Instruction class for an instruction
+     * without a comment.
+     *
+     * @param op the mnemonic of the instruction
+     * @param operands the operands of the instruction
+     */
+    public Instruction(String op, String... operands)
+    {
+        this(null, op, operands, null);
+    }
+
+    /**
+     * Parses a single line of MIPS assembly as passed to Emitter.emit.  A
+     * line ending with a colon is a label; otherwise, the first word is the
+     * mnemonic and the rest of the line, up to any comment, holds the
+     * comma-separated operands.  The operands of directives (such as
+     * .asciiz) are kept as a single operand so that strings are preserved.
+     *
+     * @param line the line of assembly
+     * @return the Instruction represented by the line
+     */
+    public static Instruction parse(String line)
+    {
+        String text = line.trim();
+        if (text.endsWith(":"))
+        {
+            return new Instruction(text.substring(0, text.length() - 1), null,
+                    new String[0], null);
+        }
+        String comment = null;
+        int hash = commentStart(text);
+        if (hash >= 0)
+        {
+            comment = text.substring(hash + 1).trim();
+            text = text.substring(0, hash).trim();
+        }
+        if (text.endsWith(":"))
+        {
+            return new Instruction(text.substring(0, text.length() - 1), null,
+                    new String[0], comment);
+        }
+        if (text.length() == 0)
+        {
+            return new Instruction(null, null, new String[0], comment);
+        }
+        int space = text.indexOf(' ');
+        if (space < 0)
+        {
+            return new Instruction(null, text, new String[0], comment);
+        }
+        String op = text.substring(0, space);
+        String rest = text.substring(space + 1).trim();
+        String[] operands;
+        if (op.startsWith("."))
+        {
+            operands = new String[] {rest};
+        }
+        else
+        {
+            operands = rest.split(",");
+            for (int i = 0; i < operands.length; i++)
+            {
+                operands[i] = operands[i].trim();
+            }
+        }
+        return new Instruction(null, op, operands, comment);
+    }
+
+    /**
+     * Returns the index of the # that starts the comment within a line,
+     * ignoring any # within a string literal.
+     *
+     * @param text the line
+     * @return the index of the comment, or -1 if there is none
+     */
+    private static int commentStart(String text)
+    {
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c == '\\' && quoted)
+            {
+                i++;
+            }
+            else if (c == '"')
+            {
+                quoted = !quoted;
+            }
+            else if (c == '#' && !quoted)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the label defined by the line.
+     *
+     * @return the label, or null if the line does not define a label
+     */
+    public String getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * Returns the mnemonic of the instruction or directive.
+     *
+     * @return the mnemonic, or null if the line holds no instruction
+     */
+    public String getOp()
+    {
+        return op;
+    }
+
+    /**
+     * Returns the operand at the specified position.
+     *
+     * @param index the position of the operand
+     * @return the operand, or null if the instruction has too few operands
+     */
+    public String getOperand(int index)
+    {
+        if (index >= operands.length)
+        {
+            return null;
+        }
+        return operands[index];
+    }
+
+    /**
+     * Returns the number of operands of the instruction.
+     *
+     * @return the number of operands
+     */
+    public int getOperandCount()
+    {
+        return operands.length;
+    }
+
+    /**
+     * Returns whether the line is an instruction with the specified
+     * mnemonic and operands.
+     *
+     * @param mnemonic the expected mnemonic
+     * @param expected the expected operands
+     * @return true if the line matches; otherwise, false
+     */
+    public boolean is(String mnemonic, String... expected)
+    {
+        return mnemonic.equals(op) && Arrays.equals(operands, expected);
+    }
+
+    /**
+     * Returns whether the instruction may transfer control elsewhere, after
+     * which the values of registers can no longer be tracked.  Syscalls
+     * are included because they read and write fixed registers.
+     *
+     * @return true if the instruction is a jump, branch or syscall
+     */
+    public boolean isControl()
+    {
+        return op != null && CONTROL.contains(op);
+    }
+
+    /**
+     * Returns whether the instruction assigns a value to the specified
+     * register.
+     *
+     * @param reg the name of the register, such as $t0
+     * @return true if the register is the instruction's destination
+     */
+    public boolean writes(String reg)
+    {
+        return hasDestination() && reg.equals(operands[0]);
+    }
+
+    /**
+     * Returns whether the instruction reads the specified register, either
+     * as a source operand or as the base of a memory address.
+     *
+     * @param reg the name of the register, such as $t0
+     * @return true if the register is one of the instruction's sources
+     */
+    public boolean reads(String reg)
+    {
+        if (op == null || op.startsWith("."))
+        {
+            return false;
+        }
+        for (int i = hasDestination() ? 1 : 0; i < operands.length; i++)
+        {
+            if (operands[i].equals(reg) || operands[i].endsWith("(" + reg + ")"))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the first operand of the instruction is a register
+     * that it writes.  The two-operand forms of div and divu only write the
+     * hi and lo registers.
+     *
+     * @return true if the first operand is a destination
+     */
+    private boolean hasDestination()
+    {
+        if (op == null || op.startsWith(".") || operands.length == 0
+                || NO_DESTINATION.contains(op))
+        {
+            return false;
+        }
+        return !((op.equals("div") || op.equals("divu")) && operands.length == 2);
+    }
+
+    /**
+     * Returns the line of assembly represented by the Instruction, formatted
+     * as the Emitter writes it: labels flush left and everything else
+     * indented by a tab.
+     *
+     * @return the line of assembly
+     */
+    public String toString()
+    {
+        String text;
+        if (label != null)
+        {
+            text = label + ":";
+        }
+        else if (op == null)
+        {
+            text = "\t";
+        }
+        else
+        {
+            text = "\t" + op;
+            for (int i = 0; i < operands.length; i++)
+            {
+                text += (i == 0 ? " " : ", ") + operands[i];
+            }
+        }
+        if (comment != null)
+        {
+            text += (op == null && label == null ? "# " : " # ") + comment;
+        }
+        return text;
+    }
+}
@@ -1,16 +1,32 @@
 package parser;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
+import arena.FlatBuilder;
+import arena.FlatCompiler;
+import arena.FlatInterpreter;
+import arena.FlatProgram;
 import environment.Environment;
+import environment.Frame;
 import scanner.*;
-import scanner.Token.TokenType;
 import ast.*;
 import ast.Number;
+import jit.CompiledProgram;
+import jit.JitCompiler;
+import vm.Bytecode;
+import vm.BytecodeCompiler;
+import vm.VirtualMachine;
 
 /**
  * The Parser class can parse and interpret basic Pascal statements that
@@ -48,56 +64,376 @@ import ast.Number;
  */
 public class Parser
 {
-    private Token currentToken;
-    private Scanner scanner;
-    private int currentIndex;
+    private static final int[] PRECEDENCE = new int[TokenStream.OTHER + 1];
+    
+    static
+    {
+        PRECEDENCE[TokenStream.PLUS] = 1;
+        PRECEDENCE[TokenStream.MINUS] = 1;
+        PRECEDENCE[TokenStream.TIMES] = 2;
+        PRECEDENCE[TokenStream.DIVIDE] = 2;
+        PRECEDENCE[TokenStream.MOD] = 2;
+    }
+    
+    private static final int OPEN = -1;
+    private static final int CALL = -2;
+    private static final int NEGATE = -3;
+    private static final int MAX_DEPTH = 256;
+    
+    private TokenStream tokens;
+    private byte[] source;
+    private ProgramCache cache;
+    private int current;
+    private boolean stackSafe;
+    private boolean folding;
+    private int foldCount;
+    private int memoCapacity;
+    private int inlineBudget;
+    private int inlineCount;
+    private int depth;
     
     /**
      * Creates a new instance of the Parser class, using the provided Scanner
-     * object to draw input.
+     * object to draw input.  The whole of the input is lexed into a 
+     * TokenStream before parsing begins.
      * 
      * @param scanner the Scanner that will provide the Parser with
      * expressions to parse and evaluate
      * @throws ScanErrorException if the Scanner encounters an error while 
-     * scanning its input stream for the next Token
+     * scanning its input stream
      */
     public Parser(Scanner scanner) throws ScanErrorException
     {
-        this.scanner = scanner;
-        currentToken = scanner.nextToken();
-        currentIndex = 1;
+        this(new TokenStream(scanner));
+    }
+    
+    /**
+     * Creates a new instance of the Parser class that parses the specified
+     * file.  If parallelLexing is true, the file is lexed by
+     * TokenStream.lexParallel in chunks on the common ForkJoinPool, four for
+     * each of its threads; a file too small to split is lexed by a single
+     * Scanner as usual.  Either way the Parser sees exactly the same Tokens.
+     * 
+     * @param file the file containing the source text
+     * @param parallelLexing true to lex the file in parallel; false to lex
+     *        it with a single Scanner
+     * @throws IOException if the file cannot be read
+     * @throws ScanErrorException if the Scanner encounters an error while
+     *         scanning the file
+     */
+    public Parser(Path file, boolean parallelLexing) throws IOException,
+            ScanErrorException
+    {
+        this(lex(file, parallelLexing));
+    }
+    
+    /**
+     * Lexes the specified file into a TokenStream, in parallel or with a
+     * single Scanner.
+     * 
+     * @param file the file containing the source text
+     * @param parallel true to lex the file in parallel
+     * @return the Tokens of the file
+     * @throws IOException if the file cannot be read
+     * @throws ScanErrorException if the Scanner encounters an error while
+     *         scanning the file
+     */
+    private static TokenStream lex(Path file, boolean parallel)
+            throws IOException, ScanErrorException
+    {
+        if (!parallel)
+        {
+            return new TokenStream(new Scanner(file));
+        }
+        String source = new String(Files.readAllBytes(file));
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        return TokenStream.lexParallel(source, pool,
+                pool.getParallelism() * 4);
+    }
+    
+    /**
+     * Creates a new instance of the Parser class that parses the Tokens of
+     * the specified TokenStream.
+     * 
+     * @param tokens the Tokens to be parsed
+     */
+    public Parser(TokenStream tokens)
+    {
+        this.tokens = tokens;
+        current = 0;
+        folding = true;
+    }
+    
+    /**
+     * Creates a new instance of the Parser class that parses the specified
+     * file, or loads the Program held within it from the specified cache.
+     * The file is read at once, but it is only scanned if the cache holds no
+     * Program parsed from the same source text, or if parseProgram is
+     * called.  The parse, run, and compile methods load the Program from the
+     * cache when they can, and otherwise scan and parse the file and add its
+     * Program to the cache.  Either way the Program is then inlined, folded,
+     * and memoized as usual, so a cached Program executes exactly as a
+     * freshly parsed one does.
+     * 
+     * @param file the file containing the source text
+     * @param cache the ProgramCache that is checked and then updated, or
+     *        null to scan and parse the file every time
+     * @throws IOException if the file cannot be read
+     * @throws ScanErrorException if there is no cache and the Scanner
+     *         encounters an error while scanning the file
+     */
+    public Parser(Path file, ProgramCache cache) throws IOException,
+            ScanErrorException
+    {
+        this((TokenStream) null);
+        source = Files.readAllBytes(file);
+        this.cache = cache;
+        if (cache == null)
+        {
+            tokens = lex(source);
+        }
     }
     
     /**
-     * Advances the Parser's input stream by one Token if the Token parameter
-     * matches the currentToken stored by the Parser.  If not, an
+     * Lexes the specified source text into a TokenStream with a single
+     * Scanner.
+     * 
+     * @param source the bytes of the source text
+     * @return the Tokens of the source text
+     * @throws ScanErrorException if the Scanner encounters an error while
+     *         scanning the source text
+     */
+    private static TokenStream lex(byte[] source) throws ScanErrorException
+    {
+        return new TokenStream(new Scanner(new ByteArrayInputStream(source)));
+    }
+    
+    /**
+     * Returns the Program held within the specified file, loading it from
+     * the cache if the cache holds a Program parsed from the same source
+     * text, as described for loadProgram.
+     * 
+     * @param file the file containing the source text
+     * @param cache the ProgramCache that is checked and then updated
+     * @return a Program containing the information stored within the file
+     * @throws IOException if the file cannot be read or the cache entry
+     *         cannot be written
+     * @throws ScanErrorException if the Scanner encounters an error while
+     *         scanning the file
+     * @throws IllegalArgumentException if the file does not hold a valid
+     *         Program
+     */
+    public static Program parseProgram(Path file, ProgramCache cache)
+            throws IOException, ScanErrorException
+    {
+        return new Parser(file, cache).loadProgram();
+    }
+    
+    /**
+     * Returns the Program held within the input.  If the Parser was created
+     * with a ProgramCache that holds a Program parsed from the same source
+     * text, a copy of it is deserialized and returned without scanning or
+     * parsing the input; otherwise the input is scanned and parsed as usual,
+     * and the Program is added to the cache, if there is one, before it is
+     * returned.
+     * 
+     * @return a Program containing the information stored within the input
+     * @throws IOException if the cache entry cannot be written
+     * @throws ScanErrorException if the Scanner encounters an error while
+     *         scanning the input
+     * @throws IllegalArgumentException if the input does not hold a valid
+     *         Program
+     */
+    private Program loadProgram() throws IOException, ScanErrorException
+    {
+        if (cache == null)
+        {
+            return parseProgram();
+        }
+        Program program = cache.get(source);
+        if (program == null)
+        {
+            program = parseProgram();
+            cache.put(source, program);
+        }
+        return program;
+    }
+    
+    /**
+     * Sets whether the Parser is stack-safe.  A stack-safe Parser recurses
+     * as usual until statements or factors are nested MAX_DEPTH deep, and
+     * parses anything nested more deeply with explicit stacks instead.  Its
+     * parse and compile methods resolve, execute, and compile the Program 
+     * with an IterativeInterpreter and an IterativeCompiler, which do the
+     * same, so that deeply nested programs do not overflow the Java stack
+     * while ordinary ones run as quickly as before.  The Parser is not 
+     * stack-safe by default.
+     * 
+     * @param stackSafe true to keep the Parser's work on explicit stacks;
+     *        false to recurse
+     */
+    public void setStackSafe(boolean stackSafe)
+    {
+        this.stackSafe = stackSafe;
+    }
+    
+    /**
+     * Sets whether the Parser folds constants.  A Parser that folds
+     * constants rewrites each Program with a ConstantFolder after parsing
+     * it, so that its parse, run, and compile methods all execute or
+     * compile the folded tree.  Constants are folded by default.
+     * 
+     * @param folding true to fold constants; false to use the Program as
+     *        parsed
+     */
+    public void setFolding(boolean folding)
+    {
+        this.folding = folding;
+    }
+    
+    /**
+     * Sets how many results the parse methods remember for each pure
+     * procedure.  Before a Program is executed, a PurityAnalyzer gives each
+     * pure procedure that is worth memoizing a MemoCache of this capacity,
+     * so that calls with values it has already seen are not executed again.
+     * The capacity is 0 by default, so nothing is memoized unless a caller
+     * asks for it and the Program runs exactly as written.
+     * 
+     * @param memoCapacity the greatest number of results kept for each
+     *        procedure, or 0 to execute every call
+     */
+    public void setMemoCapacity(int memoCapacity)
+    {
+        this.memoCapacity = memoCapacity;
+    }
+    
+    /**
+     * Sets the budget of the Inliner with which the Parser rewrites each
+     * Program after parsing it, so that its parse, run, and compile methods
+     * all execute or compile the inlined tree.  Calls are inlined only to
+     * procedures whose Statements hold at most this many nodes.  The budget
+     * is 0 by default, so nothing is inlined unless a caller asks for it.
+     * 
+     * @param inlineBudget the greatest number of nodes within an inlined
+     *        procedure's Statement, or 0 to inline nothing
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public void setInlineBudget(int inlineBudget)
+    {
+        if (inlineBudget < 0)
+        {
+            throw new IllegalArgumentException("Invalid inlining budget "
+                    + inlineBudget);
+        }
+        this.inlineBudget = inlineBudget;
+    }
+    
+    /**
+     * Returns the number of calls inlined by the Inliner the last time this
+     * Parser parsed a Program.
+     * 
+     * @return the number of inlined calls
+     */
+    public int getInlineCount()
+    {
+        return inlineCount;
+    }
+    
+    /**
+     * Returns the number of nodes folded by the ConstantFolder the last time
+     * this Parser parsed a Program.
+     * 
+     * @return the number of folded nodes, or 0 if constants are not folded
+     */
+    public int getFoldCount()
+    {
+        return foldCount;
+    }
+    
+    /**
+     * Returns the index within the TokenStream of the current Token, which 
+     * is the first Token that has not yet been parsed.
+     * 
+     * @return the index of the current Token
+     */
+    public int getPosition()
+    {
+        return current;
+    }
+    
+    /**
+     * Prints the current Token and the Parser's position in the input
+     * stream after an error.  If the Program was loaded from the cache, the
+     * input has not been scanned, so it is scanned now; a cached Program was
+     * parsed in full, so the Parser is then placed at the closing PERIOD,
+     * just as it would be had it parsed the input itself.
+     */
+    private void printPosition()
+    {
+        if (tokens == null)
+        {
+            try
+            {
+                tokens = lex(source);
+            }
+            catch (ScanErrorException e)
+            {
+                return;
+            }
+            current = tokens.size() - 1;
+        }
+        System.out.println("currentToken: " + tokens.toString(current));
+        System.out.println("Token Number " + (current + 1));
+    }
+    
+    /**
+     * Returns the kind of the current Token.
+     * 
+     * @return the kind of the current Token, as defined by TokenStream
+     */
+    private int kind()
+    {
+        return tokens.kind(current);
+    }
+    
+    /**
+     * Returns whether the Scanner produced any Tokens after the current 
+     * one.  The closing PERIOD added by the TokenStream does not count.
+     * 
+     * @return true if there are more Tokens to parse
+     *         false otherwise
+     */
+    private boolean hasNext()
+    {
+        return current < tokens.size() - 2;
+    }
+    
+    /**
+     * Advances the Parser's input stream by one Token if the current Token
+     * is of the expected kind.  Once the input has run out, the Parser 
+     * moves to the closing PERIOD instead.  Otherwise, an 
      * IllegalArgumentException is thrown, along with the expected and found
      * lexemes, to signal input that violates the Parser's grammar.
      * 
-     * @param expected the Token expected by the Parser
-     * @throws ScanErrorException if the Scanner encounters an error while
-     * scanning its input stream for the next Token
-     * @throws IllegalArgumentException if the expected Token and the 
-     * current Token do not match
+     * @param expected the kind of Token expected by the Parser
+     * @throws IllegalArgumentException if the current Token is not of the 
+     * expected kind
      */
-    private void eat(Token expected) throws ScanErrorException,
-                                            IllegalArgumentException
+    private void eat(int expected) throws IllegalArgumentException
     {
-        if (expected.isSameType(currentToken) && scanner.hasNext())
+        if (expected == kind() && hasNext())
         {
-            currentToken = scanner.nextToken();
-            currentIndex++;
+            current++;
         }
-        else if (!scanner.hasNext())
+        else if (!hasNext())
         {
-            currentToken = new Token(".", TokenType.end);
+            current = tokens.size() - 1;
         }
         else 
         {
-            String expectedLex = expected.getLexeme();
-            String foundLex = currentToken.getLexeme();
-            throw new IllegalArgumentException("\nExpected " + expectedLex + 
-                    "\nFound " + foundLex);
+            throw new IllegalArgumentException("\nExpected " + 
+                    TokenStream.name(expected) + "\nFound " + 
+                    tokens.lexeme(current));
         }
     }
     
@@ -114,8 +450,8 @@ public class Parser
     private Number parseNumber() throws ScanErrorException, 
                                         IllegalArgumentException
     {
-        int num = Integer.parseInt(currentToken.getLexeme());
-        eat(currentToken);
+        int num = Integer.parseInt(tokens.lexeme(current));
+        eat(kind());
         return new Number(num);
     }
     
@@ -149,85 +485,172 @@ public class Parser
      */
     public Program parseProgram() throws ScanErrorException,
                                          IllegalArgumentException
+    {
+        if (tokens == null)
+        {
+            tokens = lex(source);
+        }
+        List<String> vars = parseVariables();
+        ArrayList<ProcedureDeclaration> decs = new  
+                                        ArrayList<ProcedureDeclaration>();
+        while (kind() == TokenStream.PROCEDURE)
+        {
+            decs.add(parseProcedure());
+        }
+        Statement statement = parseMainStatement();
+        Program program = new Program(vars, decs, statement);
+        return program;
+    }
+    
+    /**
+     * Calls the loadProgram method to parse the input or load it from the
+     * cache, inlines calls to small procedures with an Inliner if an
+     * inlining budget has been set, as described for setInlineBudget, and
+     * then, if the Parser folds constants, folds the Program with a
+     * ConstantFolder, which also folds the values bound to the parameters
+     * of inlined procedures.
+     * 
+     * @return the Program with its small calls inlined, folded if the
+     * Parser folds constants
+     * @throws IOException if the cache entry cannot be written
+     * @throws ScanErrorException if the Scanner encounters an error while
+     * scanning its input stream for the next Token
+     * @throws IllegalArgumentException if the eat method encounters an error
+     * while advancing the Parser's input stream
+     */
+    private Program parseFoldedProgram() throws IOException,
+            ScanErrorException, IllegalArgumentException
+    {
+        Program program = loadProgram();
+        inlineCount = 0;
+        if (inlineBudget > 0)
+        {
+            Inliner inliner = new Inliner(inlineBudget);
+            program = inliner.inline(program);
+            inlineCount = inliner.getInlineCount();
+        }
+        foldCount = 0;
+        if (folding)
+        {
+            ConstantFolder folder = new ConstantFolder();
+            program = folder.fold(program);
+            foldCount = folder.getFoldCount();
+        }
+        return program;
+    }
+    
+    /**
+     * Parses the VAR declaration that may begin a Program.
+     * 
+     * @return the names of the declared variables, which is empty if the
+     * Program does not begin with a VAR declaration
+     * @throws ScanErrorException if the Scanner encounters an error while
+     * scanning its input stream for the next Token
+     * @throws IllegalArgumentException if the eat method encounters an error
+     * while advancing the Parser's input stream
+     */
+    public List<String> parseVariables() throws ScanErrorException,
+                                                IllegalArgumentException
     {
     	ArrayList<String> vars = new ArrayList<String>();
-    	if (currentToken.getLexeme().equals("VAR"))
+    	if (kind() == TokenStream.VAR)
     	{
-    		eat(currentToken);
-    		if (currentToken.getType() == TokenType.identifier)
+    		eat(kind());
+    		if (kind() == TokenStream.IDENTIFIER)
     		{
-    			vars.add(currentToken.getLexeme());
-    			eat(currentToken);
+    			vars.add(tokens.lexeme(current));
+    			eat(kind());
     		}
-    		while (currentToken.getType() == TokenType.comma)
+    		while (kind() == TokenStream.COMMA)
     		{
-    			eat(currentToken);
-    			if (currentToken.getType() == TokenType.identifier)
+    			eat(kind());
+    			if (kind() == TokenStream.IDENTIFIER)
     			{
-    				vars.add(currentToken.getLexeme());
-    				eat(currentToken);
+    				vars.add(tokens.lexeme(current));
+    				eat(kind());
     			}
     			else
     			{
     				throw new IllegalArgumentException("No variable name found.");
     			}
     		}
-    		eat(new Token(";", TokenType.eoL));
+    		eat(TokenStream.SEMICOLON);
     	}
-    	
-        ArrayList<ProcedureDeclaration> decs = new  
-                                        ArrayList<ProcedureDeclaration>();
-        while (currentToken.getLexeme().equals("PROCEDURE"))
+    	return vars;
+    }
+    
+    /**
+     * Parses a single procedure declaration, beginning with the PROCEDURE
+     * keyword and ending with the procedure's Statement.
+     * 
+     * @return the parsed ProcedureDeclaration
+     * @throws ScanErrorException if the Scanner encounters an error while
+     * scanning its input stream for the next Token
+     * @throws IllegalArgumentException if the eat method encounters an error
+     * while advancing the Parser's input stream
+     */
+    public ProcedureDeclaration parseProcedure() throws ScanErrorException,
+                                                        IllegalArgumentException
+    {
+        eat(TokenStream.PROCEDURE);
+        String name = "";
+        if (kind() == TokenStream.IDENTIFIER)
         {
-            eat(new Token("PROCEDURE", TokenType.keyword));
-            String name = "";
-            if (currentToken.getType() == TokenType.identifier)
+            name = tokens.lexeme(current);
+            eat(kind());
+        }
+        else
+        {
+            throw new IllegalArgumentException("Illegal Token found: " + 
+                                                 tokens.toString(current));
+        }   
+        ArrayList<String> params = new ArrayList<String>();
+        eat(TokenStream.OPEN_PAREN);
+        while (!(kind() == TokenStream.CLOSE_PAREN))
+        {
+            String param = "";
+            if (kind() == TokenStream.IDENTIFIER)
             {
-                name = currentToken.getLexeme();
-                eat(currentToken);
+                param = tokens.lexeme(current);
+                eat(kind());
             }
             else
             {
-                throw new IllegalArgumentException("Illegal Token found: " + 
-                                                             currentToken); 
-            }   
-            ArrayList<String> params = new ArrayList<String>();
-            eat(new Token("(", TokenType.parenExp));
-            while (!(currentToken.getLexeme().equals(")")))
+                throw new IllegalArgumentException("Illegal Token found: "
+                        + tokens.toString(current));
+            }
+            params.add(param);
+            if (kind() == TokenStream.CLOSE_PAREN)
             {
-                String param = "";
-                if (currentToken.getType() == TokenType.identifier)
-                {
-                    param = currentToken.getLexeme();
-                    eat(currentToken);
-                }
-                else
-                {
-                    throw new IllegalArgumentException("Illegal Token found: "
-                            + currentToken);
-                }
-                params.add(param);
-                if (currentToken.getLexeme().equals(")"))
-                {
-                    break;
-                }
-                else
-                {
-                    eat(new Token(",", TokenType.comma));
-                }
+                break;
+            }
+            else
+            {
+                eat(TokenStream.COMMA);
             }
-            eat(new Token(")", TokenType.parenExp));
-            eat(new Token(";", TokenType.eoL));
-            Statement statement = parseStatement();
-            ProcedureDeclaration dec = new 
-                               ProcedureDeclaration(statement, name, params);
-            decs.add(dec);
         }
-        
+        eat(TokenStream.CLOSE_PAREN);
+        eat(TokenStream.SEMICOLON);
         Statement statement = parseStatement();
-        eat(new Token(".", TokenType.end));
-        Program program = new Program(vars, decs, statement);
-        return program;
+        return new ProcedureDeclaration(statement, name, params);
+    }
+    
+    /**
+     * Parses the Statement that forms the executable portion of a Program,
+     * followed by the "." that denotes the end of input.
+     * 
+     * @return the parsed Statement
+     * @throws ScanErrorException if the Scanner encounters an error while
+     * scanning its input stream for the next Token
+     * @throws IllegalArgumentException if the eat method encounters an error
+     * while advancing the Parser's input stream
+     */
+    public Statement parseMainStatement() throws ScanErrorException,
+                                                 IllegalArgumentException
+    {
+        Statement statement = parseStatement();
+        eat(TokenStream.PERIOD);
+        return statement;
     }
     
     /**
@@ -267,6 +690,11 @@ public class Parser
      * is parsed, it is added to an ArrayList of statements, which is returned
      * within a Block object once an "END" keyword is located.
      * 
+     * A stack-safe Parser that is already nested MAX_DEPTH statements or 
+     * factors deep parses the statement with parseStatementIteratively 
+     * instead, so that deeper nesting does not overflow the Java stack.
+     * 
+     * @return the parsed Statement
      * @throws ScanErrorException if the Scanner encounters an error while
      * scanning its input stream for the next Token
      * @throws IllegalArgumentException if the eat method encounters an error
@@ -275,66 +703,207 @@ public class Parser
     public Statement parseStatement() throws ScanErrorException, 
                                         IllegalArgumentException
     {
-        if (currentToken.getLexeme().equals("IF"))
+        if (stackSafe && depth >= MAX_DEPTH)
+        {
+            return parseStatementIteratively();
+        }
+        depth++;
+        Statement statement = parseStatementRecursively();
+        depth--;
+        return statement;
+    }
+    
+    /**
+     * Parses and returns a statement as described for parseStatement, 
+     * calling parseStatement for any statement nested within it.
+     * 
+     * @return the parsed Statement
+     * @throws ScanErrorException if the Scanner encounters an error while
+     * scanning its input stream for the next Token
+     * @throws IllegalArgumentException if the eat method encounters an error
+     * while advancing the Parser's input stream
+     */
+    private Statement parseStatementRecursively() throws ScanErrorException, 
+                                                       IllegalArgumentException
+    {
+        if (kind() == TokenStream.IF)
         {
-            eat(new Token("IF", TokenType.keyword));
-            Expression left = parseExpr();
-            String logicOp = currentToken.getLexeme();
-            eat(currentToken);
-            Expression right = parseExpr();
-            Condition condition = new Condition(logicOp, left, right);
-            eat(new Token("THEN", TokenType.keyword));
+            eat(TokenStream.IF);
+            Condition condition = parseCondition();
+            eat(TokenStream.THEN);
             Statement statement = parseStatement();
             return new If(condition, statement);
         }
-        if (currentToken.getLexeme().equals("WHILE"))
+        if (kind() == TokenStream.WHILE)
         {
-            eat(new Token("WHILE", TokenType.keyword));
-            Expression left = parseExpr();
-            String logicOp = currentToken.getLexeme();
-            eat(currentToken);
-            Expression right = parseExpr();
-            Condition condition = new Condition(logicOp, left, right);
-            eat(new Token("DO", TokenType.keyword));
+            eat(TokenStream.WHILE);
+            Condition condition = parseCondition();
+            eat(TokenStream.DO);
             Statement statement = parseStatement();
             return new While(condition, statement);
         }
-        if (currentToken.getType() == TokenType.identifier)
+        if (kind() == TokenStream.IDENTIFIER)
         {
-            String var = currentToken.getLexeme();
-            eat(currentToken);
-            eat(new Token(":=", TokenType.operand));
+            String var = tokens.lexeme(current);
+            eat(kind());
+            eat(TokenStream.ASSIGN);
             Expression exp = parseExpr();
             Assignment assignment = new Assignment(var, exp);
-            eat(new Token(";", TokenType.eoL));
+            eat(TokenStream.SEMICOLON);
             return assignment;
         }
-        else if (currentToken.getLexeme().equals("WRITELN"))
+        else if (kind() == TokenStream.WRITELN)
         {    
-            eat(new Token("WRITELN", TokenType.keyword));
-            eat(new Token ("(", TokenType.parenExp));
+            eat(TokenStream.WRITELN);
+            eat(TokenStream.OPEN_PAREN);
             Expression exp = parseExpr();
-            eat(new Token(")", TokenType.parenExp));
-            eat(new Token(";", TokenType.eoL));
+            eat(TokenStream.CLOSE_PAREN);
+            eat(TokenStream.SEMICOLON);
             return new Writeln(exp);
         }
         else
         {
             ArrayList<Statement> statements = new ArrayList<Statement>();
-            eat(new Token("BEGIN", TokenType.keyword));
-            String endToken = currentToken.getLexeme();
-            while (!endToken.equals("END") && scanner.hasNext())
+            eat(TokenStream.BEGIN);
+            while (kind() != TokenStream.END && hasNext())
             {
                 statements.add(parseStatement());
-                endToken = currentToken.getLexeme();
             }
-            eat(new Token("END", TokenType.keyword));
-            eat(new Token(";", TokenType.eoL));        
+            eat(TokenStream.END);
+            eat(TokenStream.SEMICOLON);        
             Block block = new Block(statements);
             return block;
         }
     }
     
+    /**
+     * Parses and returns a Condition, which consists of two expressions
+     * separated by a logic operator.
+     * 
+     * @return the parsed Condition
+     * @throws ScanErrorException if the Scanner encounters an error while
+     * scanning its input stream for the next Token
+     * @throws IllegalArgumentException if the eat method encounters an error
+     * while advancing the Parser's input stream
+     */
+    private Condition parseCondition() throws ScanErrorException, 
+                                              IllegalArgumentException
+    {
+        Expression left = parseExpr();
+        String logicOp = tokens.lexeme(current);
+        eat(kind());
+        Expression right = parseExpr();
+        return Condition.create(logicOp, left, right);
+    }
+    
+    /**
+     * Parses and returns a statement in the same way as parseStatement, but
+     * without recursing for nested statements, so that the depth to which
+     * statements may be nested is limited only by memory.
+     * 
+     * Every IF, WHILE, and BEGIN that has been parsed but whose statement 
+     * has not is kept on an explicit stack, along with its Condition or the 
+     * List of statements parsed so far within the block.  Once a statement 
+     * is complete, it is passed to the construct on top of the stack: a 
+     * block adds it to its List and goes on to parse the next statement 
+     * unless an "END" keyword is located, while an IF or WHILE wraps it and
+     * is itself complete.  The statement that completes with an empty stack
+     * is returned.
+     * 
+     * @return the parsed Statement
+     * @throws ScanErrorException if the Scanner encounters an error while
+     * scanning its input stream for the next Token
+     * @throws IllegalArgumentException if the eat method encounters an error
+     * while advancing the Parser's input stream
+     */
+    private Statement parseStatementIteratively() throws ScanErrorException, 
+                                                       IllegalArgumentException
+    {
+        ArrayList<Integer> openKinds = new ArrayList<Integer>();
+        ArrayList<Object> openParts = new ArrayList<Object>();
+        while (true)
+        {
+            Statement statement = null;
+            if (kind() == TokenStream.IF || kind() == TokenStream.WHILE)
+            {
+                int opener = kind();
+                eat(opener);
+                Condition condition = parseCondition();
+                eat(opener == TokenStream.IF ? TokenStream.THEN : TokenStream.DO);
+                openKinds.add(opener);
+                openParts.add(condition);
+                continue;
+            }
+            if (kind() == TokenStream.IDENTIFIER)
+            {
+                String var = tokens.lexeme(current);
+                eat(kind());
+                eat(TokenStream.ASSIGN);
+                Expression exp = parseExpr();
+                eat(TokenStream.SEMICOLON);
+                statement = new Assignment(var, exp);
+            }
+            else if (kind() == TokenStream.WRITELN)
+            {
+                eat(TokenStream.WRITELN);
+                eat(TokenStream.OPEN_PAREN);
+                Expression exp = parseExpr();
+                eat(TokenStream.CLOSE_PAREN);
+                eat(TokenStream.SEMICOLON);
+                statement = new Writeln(exp);
+            }
+            else
+            {
+                eat(TokenStream.BEGIN);
+                openKinds.add(TokenStream.BEGIN);
+                openParts.add(new ArrayList<Statement>());
+            }
+            while (true)
+            {
+                int top = openKinds.size() - 1;
+                if (statement == null)
+                {
+                    if (kind() != TokenStream.END && hasNext())
+                    {
+                        break;
+                    }
+                    eat(TokenStream.END);
+                    eat(TokenStream.SEMICOLON);
+                    @SuppressWarnings("unchecked")
+                    ArrayList<Statement> statements = 
+                            (ArrayList<Statement>) openParts.remove(top);
+                    openKinds.remove(top);
+                    statement = new Block(statements);
+                    top--;
+                }
+                if (top < 0)
+                {
+                    return statement;
+                }
+                if (openKinds.get(top) == TokenStream.BEGIN)
+                {
+                    @SuppressWarnings("unchecked")
+                    ArrayList<Statement> statements = 
+                            (ArrayList<Statement>) openParts.get(top);
+                    statements.add(statement);
+                    statement = null;
+                }
+                else
+                {
+                    Condition condition = (Condition) openParts.remove(top);
+                    if (openKinds.remove(top) == TokenStream.IF)
+                    {
+                        statement = new If(condition, statement);
+                    }
+                    else
+                    {
+                        statement = new While(condition, statement);
+                    }
+                }
+            }
+        }
+    }
+    
     /**
      * Parses a factor and returns an Expression containing its value. A 
      * factor is defined to be a number, identifier, a factor preceded by a 
@@ -362,6 +931,9 @@ public class Parser
      * parentheses; this Expression is then returned after the closing 
      * parenthesis is eaten.
      * 
+     * A stack-safe Parser that is already nested MAX_DEPTH statements or 
+     * factors deep parses the factor with parseFactorIteratively instead.
+     * 
      * @return an Expression representing the value of the factor
      * @throws ScanErrorException if the Scanner encounters an error while
      * scanning its input stream for the next Token
@@ -371,42 +943,66 @@ public class Parser
     private Expression parseFactor() throws ScanErrorException, 
                           IllegalArgumentException
     {
-        if (currentToken.getLexeme().equals("-"))
+        if (stackSafe && depth >= MAX_DEPTH)
         {
-            eat(new Token("-", TokenType.mathOperand));
+            return parseFactorIteratively();
+        }
+        depth++;
+        Expression factor = parseFactorRecursively();
+        depth--;
+        return factor;
+    }
+    
+    /**
+     * Parses a factor as described for parseFactor, calling parseFactor for
+     * a negated factor and parseExpr for an expression within parentheses
+     * or a parameter of a ProcedureCall.
+     * 
+     * @return an Expression representing the value of the factor
+     * @throws ScanErrorException if the Scanner encounters an error while
+     * scanning its input stream for the next Token
+     * @throws IllegalArgumentException if the eat method encounters an error
+     * while advancing the Parser's input stream
+     */
+    private Expression parseFactorRecursively() throws ScanErrorException, 
+                                                     IllegalArgumentException
+    {
+        if (kind() == TokenStream.MINUS)
+        {
+            eat(TokenStream.MINUS);
             Number zero = new Number(0);
-            BinOp op = new BinOp("-", zero, parseFactor());
+            BinOp op = BinOp.create("-", zero, parseFactor());
             return op;
         }
-        else if (currentToken.getLexeme().equals("("))
+        else if (kind() == TokenStream.OPEN_PAREN)
         {
-            eat(new Token("(", TokenType.parenExp));
+            eat(TokenStream.OPEN_PAREN);
             Expression exp = parseExpr();
-            eat(new Token(")", TokenType.parenExp));
+            eat(TokenStream.CLOSE_PAREN);
             return exp;
         }
-        else if (currentToken.getType() == TokenType.identifier)
+        else if (kind() == TokenStream.IDENTIFIER)
         {
-            String var = currentToken.getLexeme();
-            eat(currentToken);
-            if (currentToken.getLexeme().equals("("))
+            String var = tokens.lexeme(current);
+            eat(kind());
+            if (kind() == TokenStream.OPEN_PAREN)
             {
                 ArrayList<Expression> params = new ArrayList<Expression>();
-                eat(new Token("(", TokenType.parenExp));
-                while (!(currentToken.getLexeme().equals(")")))
+                eat(TokenStream.OPEN_PAREN);
+                while (!(kind() == TokenStream.CLOSE_PAREN))
                 {
                     Expression exp = parseExpr();
                     params.add(exp);
-                    if (currentToken.getLexeme().equals(")"))
+                    if (kind() == TokenStream.CLOSE_PAREN)
                     {
                         break;
                     }
                     else
                     {
-                        eat(new Token(",", TokenType.comma));
+                        eat(TokenStream.COMMA);
                     }                    
                 }
-                eat(new Token(")", TokenType.parenExp));
+                eat(TokenStream.CLOSE_PAREN);
                 ProcedureCall call = new ProcedureCall(var, params);
                 return call;
             }
@@ -420,108 +1016,417 @@ public class Parser
     }
     
     /**
-     * Parses a term and returns its value.  A term is defined to be either
-     * a single factor or a factor either multiplied, divided by, or modded 
-     * with another factor.  Due to this definition, a term consists of 
-     * a variable number of factors linked via multiplication, division, or
-     * modulus.  
+     * Parses and returns an Expression.  An expression is defined
+     * to be either a single term or a term either added to or subtracted
+     * from another term, where a term is a variable number of factors linked
+     * via multiplication, division, or modulus.
      * 
-     * To begin, a single factor is parsed and its value is stored within an
-     * Expression object. As long as multiplication, division, or modulus 
-     * symbols are stored in the current Token, additional factors are
-     * layered within BinOp objects.  Once the Scanner runs out of 
-     * multiplication, division, or modulus signs, the final Expression is
-     * returned.
-     *  
-     * @return an Expression that represents the term
+     * @return an Expression that represents the scanned expression
      * @throws ScanErrorException if the Scanner encounters an error while
      * scanning its input stream for the next Token
      * @throws IllegalArgumentException if the eat method encounters an error
      * while advancing the Parser's input stream
      */
-    private Expression parseTerm() throws ScanErrorException, 
+    private Expression parseExpr() throws ScanErrorException, 
+                                                     IllegalArgumentException
+    {  
+        return parseExpr(1);
+    }
+    
+    /**
+     * Parses an Expression whose operators all bind at least as tightly as
+     * the given precedence, using precedence climbing.  A single factor is
+     * parsed first; as long as the current Token is an operator whose
+     * PRECEDENCE is at least minPrecedence, the operator is eaten and its 
+     * right operand is parsed with a minimum precedence one higher, which
+     * keeps operators of equal precedence left-associative.  The trees built
+     * are the same as those of the expr and term productions in the grammar,
+     * but one call handles every level of precedence, and each operator is
+     * looked up in the table once instead of being compared against every
+     * operator of its level.
+     * 
+     * @param minPrecedence the lowest precedence an operator may have to be
+     * consumed by this call
+     * @return an Expression that represents the scanned expression
+     * @throws ScanErrorException if the Scanner encounters an error while
+     * scanning its input stream for the next Token
+     * @throws IllegalArgumentException if the eat method encounters an error
+     * while advancing the Parser's input stream
+     */
+    private Expression parseExpr(int minPrecedence) throws ScanErrorException, 
                                                      IllegalArgumentException
     {
         Expression exp = parseFactor();
-        String op = currentToken.getLexeme();
-        while (op.equals("*") || op.equals("/") || op.equals("%"))
+        int precedence = PRECEDENCE[kind()];
+        while (precedence >= minPrecedence)
         {
-            eat(currentToken);
-            exp = new BinOp(op, exp, parseFactor());
-            op = currentToken.getLexeme();
+            String op = tokens.lexeme(current);
+            eat(kind());
+            exp = BinOp.create(op, exp, parseExpr(precedence + 1));
+            precedence = PRECEDENCE[kind()];
         }
         return exp;
     }
     
     /**
-     * Parses and returns an Expression.  An expression is defined
-     * to be either a single term or a term either added to or subtracted
-     * from another term.  Due to this definition, an expression consists
-     * of a variable number of terms linked via addition or subtraction.
+     * Parses a factor in the same way as parseFactor, but without recursing
+     * for parentheses, negations, or the parameters of a ProcedureCall, so
+     * that the depth to which expressions may be nested is limited only by
+     * memory.
      * 
-     * To begin, a single term is parsed and its value is stored within an
-     * Expression object. As long as addition or subtraction symbols are 
-     * stored in the current Token, additional terms are layered within 
-     * BinOp objects.  Once the Scanner runs out of addition or subtraction
-     * signs, the final Expression is returned.
+     * Factors are pushed onto a stack of operands, and binary operators onto
+     * a stack of pending operators, which also holds a marker for every open
+     * parenthesis, ProcedureCall, and negation.  Before a binary operator is
+     * pushed, every pending operator of equal or higher precedence above the
+     * nearest marker is applied to the operands, which builds the same
+     * left-associative trees as precedence climbing.  Negation markers are
+     * applied to each factor as soon as it is complete, and a closing
+     * parenthesis or the end of a parameter applies every operator down to
+     * its marker.  The first factor completed with no marker pending is
+     * returned.
      * 
-     * @return an Expression that represents the scanned expression
+     * @return an Expression representing the value of the factor
      * @throws ScanErrorException if the Scanner encounters an error while
      * scanning its input stream for the next Token
      * @throws IllegalArgumentException if the eat method encounters an error
      * while advancing the Parser's input stream
      */
-    private Expression parseExpr() throws ScanErrorException, 
+    private Expression parseFactorIteratively() throws ScanErrorException, 
                                                      IllegalArgumentException
-    {  
-        Expression exp = parseTerm();
-        String op = currentToken.getLexeme();
-        while (op.equals("+") || op.equals("-"))
+    {
+        ArrayList<Expression> operands = new ArrayList<Expression>();
+        int[] operators = new int[16];
+        int pending = 0;
+        ArrayList<String> callNames = new ArrayList<String>();
+        ArrayList<ArrayList<Expression>> callParams = 
+                new ArrayList<ArrayList<Expression>>();
+        while (true)
         {
-            eat(currentToken);
-            exp = new BinOp(op, exp, parseTerm());
-            op = currentToken.getLexeme();
+            if (pending + 2 > operators.length)
+            {
+                operators = Arrays.copyOf(operators, operators.length * 2);
+            }
+            if (kind() == TokenStream.MINUS)
+            {
+                eat(TokenStream.MINUS);
+                operators[pending++] = NEGATE;
+                continue;
+            }
+            if (kind() == TokenStream.OPEN_PAREN)
+            {
+                eat(TokenStream.OPEN_PAREN);
+                operators[pending++] = OPEN;
+                continue;
+            }
+            Expression factor;
+            if (kind() == TokenStream.IDENTIFIER)
+            {
+                String var = tokens.lexeme(current);
+                eat(kind());
+                if (kind() != TokenStream.OPEN_PAREN)
+                {
+                    factor = new Variable(var);
+                }
+                else
+                {
+                    eat(TokenStream.OPEN_PAREN);
+                    if (kind() != TokenStream.CLOSE_PAREN)
+                    {
+                        operators[pending++] = CALL;
+                        callNames.add(var);
+                        callParams.add(new ArrayList<Expression>());
+                        continue;
+                    }
+                    eat(TokenStream.CLOSE_PAREN);
+                    factor = new ProcedureCall(var, new ArrayList<Expression>());
+                }
+            }
+            else
+            {
+                factor = parseNumber();
+            }
+            while (true)
+            {
+                while (pending > 0 && operators[pending - 1] == NEGATE)
+                {
+                    pending--;
+                    factor = BinOp.create("-", new Number(0), factor);
+                }
+                if (pending == 0)
+                {
+                    return factor;
+                }
+                operands.add(factor);
+                int precedence = PRECEDENCE[kind()];
+                pending = reduce(operands, operators, pending, precedence);
+                if (precedence > 0)
+                {
+                    operators[pending++] = current;
+                    eat(kind());
+                    break;
+                }
+                factor = operands.remove(operands.size() - 1);
+                if (operators[--pending] == OPEN)
+                {
+                    eat(TokenStream.CLOSE_PAREN);
+                    continue;
+                }
+                int last = callNames.size() - 1;
+                callParams.get(last).add(factor);
+                if (kind() != TokenStream.CLOSE_PAREN)
+                {
+                    eat(TokenStream.COMMA);
+                }
+                if (kind() != TokenStream.CLOSE_PAREN)
+                {
+                    pending++;
+                    break;
+                }
+                eat(TokenStream.CLOSE_PAREN);
+                factor = new ProcedureCall(callNames.remove(last), 
+                        callParams.remove(last));
+            }
         }
-        return exp;
+    }
+    
+    /**
+     * Applies every pending binary operator whose precedence is at least the
+     * specified precedence, stopping at the nearest marker, to the operands
+     * on top of the operand stack.
+     * 
+     * @param operands the stack of parsed operands
+     * @param operators the stack of pending operators, holding the index of
+     *        each operator's Token or a marker
+     * @param pending the number of pending operators
+     * @param precedence the lowest precedence of the operators to apply, or 0
+     *        to apply every operator down to the nearest marker
+     * @return the number of operators still pending
+     */
+    private int reduce(ArrayList<Expression> operands, int[] operators, 
+            int pending, int precedence)
+    {
+        while (pending > 0 && operators[pending - 1] >= 0 
+                && PRECEDENCE[tokens.kind(operators[pending - 1])] >= precedence)
+        {
+            int op = operators[--pending];
+            Expression right = operands.remove(operands.size() - 1);
+            Expression left = operands.remove(operands.size() - 1);
+            operands.add(BinOp.create(tokens.lexeme(op), left, right));
+        }
+        return pending;
     }
     
     /**
      * Calls the parseProgram method to completely parse the input, then
-     * executes the Program.  Any errors caught will be printed to the console
-     * along with the currentToken and the Parser's position in the input 
-     * stream.
+     * resolves every variable to a Frame slot and executes the Program.
+     * Any errors caught will be printed to the console along with the 
+     * currentToken and the Parser's position in the input stream.
      */
     public void parse()
     {
-        Environment env = new Environment(null);
+        parse(true);
+    }
+    
+    /**
+     * Calls the parseProgram method to completely parse the input, then
+     * executes the Program.  If useFrames is true, the Program is first
+     * resolved and executed within an int-backed root Frame; otherwise it is
+     * executed within a HashMap-backed Environment, with every variable
+     * looked up by name.  If a memo capacity has been set, pure procedures
+     * remember their results, as described for setMemoCapacity.  A
+     * stack-safe Parser resolves and executes the Program with an
+     * IterativeInterpreter.  Any errors caught will be printed to the
+     * console along with the currentToken and the Parser's position in the
+     * input stream.
+     * 
+     * @param useFrames true if variables should be resolved to Frame slots
+     */
+    public void parse(boolean useFrames)
+    {
+        try
+        {
+            Program program = parseFoldedProgram();
+            if (memoCapacity > 0)
+            {
+                new PurityAnalyzer(program).memoize(program, memoCapacity);
+            }
+            IterativeInterpreter interpreter = new IterativeInterpreter();
+            Environment env;
+            if (useFrames)
+            {
+                env = new Frame(stackSafe ? interpreter.resolve(program)
+                                          : program.resolve());
+            }
+            else
+            {
+                env = new Environment(null);
+            }
+            if (stackSafe)
+            {
+                interpreter.run(program, env);
+            }
+            else
+            {
+                program.exec(env);
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            printPosition();
+            return;
+        }
+    }
+    
+    /**
+     * Calls the parseProgram method to completely parse the input, then
+     * compiles the Program to bytecode and executes it on a VirtualMachine
+     * rather than walking the AST.  Any errors caught will be printed to the
+     * console along with the currentToken and the Parser's position in the
+     * input stream.
+     */
+    public void runBytecode()
+    {
+        try
+        {
+            Program program = parseFoldedProgram();
+            Bytecode bytecode = new BytecodeCompiler().compile(program);
+            new VirtualMachine().run(bytecode);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            printPosition();
+            return;
+        }
+    }
+    
+    /**
+     * Calls the parseProgram method to completely parse the input, then
+     * compiles the Program to a JVM class and executes it.  If the Program
+     * cannot be compiled to a JVM class (for example, because a procedure
+     * relies on dynamic scoping), it is executed on the VirtualMachine
+     * instead.  Any errors caught will be printed to the console along with
+     * the currentToken and the Parser's position in the input stream.
+     */
+    public void jit()
+    {
         try
         {
-            Program program = parseProgram();
-            program.exec(env);
+            Program program = parseFoldedProgram();
+            CompiledProgram compiled;
+            try
+            {
+                compiled = new JitCompiler().compile(program);
+            }
+            catch (UnsupportedOperationException e)
+            {
+                System.err.println("JIT unavailable (" + e.getMessage()
+                        + "); using the VirtualMachine.");
+                new VirtualMachine().run(new BytecodeCompiler().compile(program));
+                return;
+            }
+            compiled.run();
         }
         catch (Exception e)
         {
             e.printStackTrace();
-            System.out.println("currentToken: " + currentToken);
-            System.out.println("Token Number " + currentIndex);
+            printPosition();
+            return;
+        }
+    }
+    
+    /**
+     * Calls the parseProgram method to completely parse the input, then
+     * converts the Program into a FlatProgram, whose nodes are stored within
+     * primitive arrays, and executes it with a FlatInterpreter.  Any errors
+     * caught will be printed to the console along with the currentToken and
+     * the Parser's position in the input stream.
+     */
+    public void runFlat()
+    {
+        try
+        {
+            FlatProgram program =
+                    new FlatBuilder().build(parseFoldedProgram());
+            new FlatInterpreter().run(program);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            printPosition();
             return;
         }
     }
     
     public void compile()
     {
-    	Emitter em = new Emitter("test.asm");
+    	compile(new Emitter("test.asm"));
+    }
+    
+    /**
+     * Calls the parseProgram method to completely parse the input, then
+     * compiles the Program to MIPS code using the specified Emitter, which
+     * is closed afterwards so that its buffered code is optimized and
+     * written.  A stack-safe Parser compiles the Program with an 
+     * IterativeCompiler.  Any errors caught will be printed to the console
+     * along with the currentToken and the Parser's position in the input 
+     * stream.
+     * 
+     * @param em the Emitter that is used to write to file
+     */
+    public void compile(Emitter em)
+    {
+        try
+        {
+            Program program = parseFoldedProgram();
+            if (stackSafe)
+            {
+                new IterativeCompiler().compile(program, em);
+            }
+            else
+            {
+                program.compile(em);
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            printPosition();
+            return;
+        }
+        finally
+        {
+            em.close();
+        }
+    }
+    
+    /**
+     * Calls the parseProgram method to completely parse the input, then
+     * converts the Program into a FlatProgram and compiles it to MIPS code
+     * with a FlatCompiler, using the specified Emitter, which is closed
+     * afterwards.  Any errors caught will be printed to the console along 
+     * with the currentToken and the Parser's position in the input stream.
+     * 
+     * @param em the Emitter that is used to write to file
+     */
+    public void compileFlat(Emitter em)
+    {
         try
         {
-            Program program = parseProgram();
-            program.compile(em);
+            FlatProgram program =
+                    new FlatBuilder().build(parseFoldedProgram());
+            new FlatCompiler().compile(program, em);
         }
         catch (Exception e)
         {
             e.printStackTrace();
-            System.out.println("currentToken: " + currentToken);
-            System.out.println("Token Number " + currentIndex);
+            printPosition();
             return;
         }
+        finally
+        {
+            em.close();
+        }
     }
 }
@@ -0,0 +1,131 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import scanner.ScanErrorException;
+import scanner.Scanner;
+import scanner.ScannerBenchmark;
+import scanner.TokenStream;
+
+/**
+ * The ParserBenchmark class compares the recursive Parser with a stack-safe
+ * one.  A program of ordinary depth, generated by the ScannerBenchmark
+ * class, is parsed, resolved and executed, and then compiled to MIPS code,
+ * several times in each mode to let the JVM warm up, and the best time of
+ * each is reported; whatever the program writes is discarded.  Finally, a
+ * program whose expression and statements are nested far more deeply than
+ * the Java stack allows is run in both modes, to show that only the
+ * stack-safe Parser can handle it.
+ */
+public class ParserBenchmark
+{
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of statements in the program, followed by the
+     *        depth of the deeply nested program, if given
+     * @throws ScanErrorException if a generated program cannot be scanned
+     * @throws IOException if the temporary file for MIPS code cannot be
+     *         created
+     */
+    public static void main(String[] args) throws ScanErrorException,
+            IOException
+    {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        TokenStream tokens = new TokenStream(
+                new Scanner(ScannerBenchmark.generate(statements)));
+        File asm = File.createTempFile("benchmark", ".asm");
+        asm.deleteOnExit();
+        PrintStream out = System.out;
+        PrintStream sink = new PrintStream(new OutputStream()
+        {
+            public void write(int b)
+            {
+            }
+        });
+        long[] exec = new long[2];
+        long[] compile = new long[2];
+        exec[0] = exec[1] = compile[0] = compile[1] = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++)
+        {
+            for (int mode = 0; mode < 2; mode++)
+            {
+                Parser parser = new Parser(tokens);
+                parser.setStackSafe(mode == 1);
+                System.setOut(sink);
+                long start = System.nanoTime();
+                parser.parse();
+                exec[mode] = Math.min(exec[mode], System.nanoTime() - start);
+                parser = new Parser(tokens);
+                parser.setStackSafe(mode == 1);
+                start = System.nanoTime();
+                parser.compile(new Emitter(asm.getPath()));
+                compile[mode] = Math.min(compile[mode],
+                        System.nanoTime() - start);
+                System.setOut(out);
+            }
+        }
+        System.out.println("parse and exec, recursive: "
+                + exec[0] / 1000000 + " ms");
+        System.out.println("parse and exec, stack-safe: "
+                + exec[1] / 1000000 + " ms");
+        System.out.println("parse and compile, recursive: "
+                + compile[0] / 1000000 + " ms");
+        System.out.println("parse and compile, stack-safe: "
+                + compile[1] / 1000000 + " ms");
+        tokens = new TokenStream(new Scanner(nest(depth)));
+        for (int mode = 0; mode < 2; mode++)
+        {
+            Parser parser = new Parser(tokens);
+            parser.setStackSafe(mode == 1);
+            System.out.print((mode == 1 ? "stack-safe" : "recursive")
+                    + " at depth " + depth + ": ");
+            try
+            {
+                parser.parse();
+            }
+            catch (StackOverflowError e)
+            {
+                System.out.println("StackOverflowError");
+            }
+        }
+    }
+
+    /**
+     * Generates a program that writes an expression nested within the
+     * specified number of parentheses, from within the same number of
+     * nested BEGIN and IF statements.  The program writes the depth.
+     *
+     * @param depth the depth to which the program is nested
+     * @return the text of the program
+     */
+    public static String nest(int depth)
+    {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+        {
+            program.append("BEGIN IF 0 < 1 THEN ");
+        }
+        program.append("WRITELN(");
+        for (int i = 0; i < depth; i++)
+        {
+            program.append('(');
+        }
+        program.append('0');
+        for (int i = 0; i < depth; i++)
+        {
+            program.append(" + 1)");
+        }
+        program.append(");");
+        for (int i = 0; i < depth; i++)
+        {
+            program.append(" END;");
+        }
+        program.append("\n.");
+        return program.toString();
+    }
+}
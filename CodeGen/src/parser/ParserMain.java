@@ -1,9 +1,13 @@
 package parser;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
+import ast.AstSerializer;
+import ast.Program;
 import scanner.ScanErrorException;
 import scanner.Scanner;
 
@@ -16,6 +20,9 @@ import scanner.Scanner;
  */
 public class ParserMain
 {
+    private static final Path CACHE_DIRECTORY = Paths.get(
+            System.getProperty("java.io.tmpdir"), "parsercache");
+    
     /**
      * Executes the first test method.
      * @param args arguments from the command line
@@ -25,6 +32,27 @@ public class ParserMain
         ParserMain.testCompile();
     }
     
+    /**
+     * Opens the ProgramCache shared by every test, which is kept within the
+     * directory parsercache inside the temporary directory, so that a file
+     * that has not changed since an earlier run is loaded rather than
+     * scanned and parsed again.
+     * 
+     * @return the ProgramCache, or null if its directory cannot be created,
+     *         in which case every file is scanned and parsed
+     */
+    private static ProgramCache openCache()
+    {
+        try
+        {
+            return new ProgramCache(CACHE_DIRECTORY);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+    
     /**
      * Loops through each parser test file and executes it.  If an exception
      * is thrown, the error and the number of the test that failed are both
@@ -37,9 +65,7 @@ public class ParserMain
             try
             {
                 String fileName = "parserTest" + i + ".txt";
-                File input = new File(fileName);
-                FileInputStream stream = new FileInputStream(input);
-                Parser parser = new Parser(new Scanner(stream));
+                Parser parser = new Parser(Paths.get(fileName), openCache());
                 System.out.println("Test " + i + ":");
                 parser.parse();
             }
@@ -59,9 +85,8 @@ public class ParserMain
     {
         try
         {
-            File input = new File("procedureTest1.txt");
-            FileInputStream stream = new FileInputStream(input);
-            Parser parser = new Parser(new Scanner(stream));
+            Parser parser = new Parser(Paths.get("procedureTest1.txt"),
+                    openCache());
             parser.parse();
         }
         catch (Exception e)
@@ -70,14 +95,180 @@ public class ParserMain
         }
     }
     
+    /**
+     * Executes the specified file twice, once within a HashMap-backed
+     * Environment and once within slot-resolved Frames, and prints the time
+     * taken by each run so that the two modes can be compared.
+     * 
+     * @param fileName the name of the file to be executed
+     */
+    public static void testFrames(String fileName)
+    {
+        try
+        {
+            long start = System.nanoTime();
+            new Parser(Paths.get(fileName), openCache()).parse(false);
+            long environmentTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            new Parser(Paths.get(fileName), openCache()).parse(true);
+            long frameTime = System.nanoTime() - start;
+            System.out.println("Environment: " + environmentTime / 1000000 + " ms");
+            System.out.println("Frames: " + frameTime / 1000000 + " ms");
+        }
+        catch (Exception e)
+        {
+            System.err.print(e + "\n");
+        }
+    }
+    
+    /**
+     * Executes the specified file twice, once after lexing it with a single
+     * Scanner and once after lexing it in parallel chunks, and prints the
+     * time taken by each run, lexing included, so that the two can be
+     * compared.
+     * 
+     * @param fileName the name of the file to be executed
+     */
+    public static void testParallelLexing(String fileName)
+    {
+        try
+        {
+            long start = System.nanoTime();
+            new Parser(Paths.get(fileName), false).parse(true);
+            long sequentialTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            new Parser(Paths.get(fileName), true).parse(true);
+            long parallelTime = System.nanoTime() - start;
+            System.out.println("Scanner: " + sequentialTime / 1000000 + " ms");
+            System.out.println("Parallel: " + parallelTime / 1000000 + " ms");
+        }
+        catch (Exception e)
+        {
+            System.err.print(e + "\n");
+        }
+    }
+    
+    /**
+     * Types a new procedure in front of the main Statement of a program one
+     * keystroke at a time, as an editor would, at each offset between the
+     * last procedure and the main BEGIN.  After every keystroke, an
+     * IncrementalParser must hold the same Program as a full parse of the
+     * same text, or fail just as the full parse does.  The IncrementalParser
+     * once parsed the text typed just before the main BEGIN as part of the
+     * main Statement, and kept failing even after the new procedure was
+     * complete.
+     * 
+     * @throws IllegalStateException if the IncrementalParser and the full
+     *         parse disagree after any keystroke
+     */
+    public static void testIncrementalParser()
+    {
+        String text = "VAR x;\nPROCEDURE f(y);\nBEGIN\nf := y + 1;\nEND;\n\n"
+                + "BEGIN\nx := f(2);\nWRITELN(x);\nEND;\n.";
+        String typed = "PROCEDURE h(z);\nBEGIN\nh := z;\nEND;\n";
+        int first = text.indexOf("END;\n\n") + 4;
+        AstSerializer serializer = new AstSerializer();
+        for (int offset = first; offset <= text.indexOf("BEGIN\nx"); offset++)
+        {
+            IncrementalParser parser = newIncrementalParser(text);
+            for (int i = 0; i < typed.length(); i++)
+            {
+                String edited = text.substring(0, offset)
+                        + typed.substring(0, i + 1) + text.substring(offset);
+                Program expected = null;
+                try
+                {
+                    expected = new Parser(new Scanner(edited)).parseProgram();
+                }
+                catch (ScanErrorException e)
+                {
+                }
+                catch (IllegalArgumentException e)
+                {
+                }
+                Program actual = null;
+                try
+                {
+                    actual = parser.edit(offset + i, 0,
+                            typed.substring(i, i + 1));
+                }
+                catch (ScanErrorException e)
+                {
+                }
+                catch (IllegalArgumentException e)
+                {
+                }
+                if (expected == null ? actual != null : actual == null
+                        || !Arrays.equals(serializer.write(actual),
+                                serializer.write(expected)))
+                {
+                    throw new IllegalStateException("Incremental parse "
+                            + "differs after typing \""
+                            + typed.substring(0, i + 1) + "\" at " + offset);
+                }
+            }
+        }
+        System.out.println("IncrementalParser: ok");
+    }
+    
+    /**
+     * Creates an IncrementalParser for the specified text.
+     * 
+     * @param text the source text, which must hold a valid Program
+     * @return the IncrementalParser
+     * @throws IllegalStateException if the text cannot be scanned
+     */
+    private static IncrementalParser newIncrementalParser(String text)
+    {
+        try
+        {
+            return new IncrementalParser(text);
+        }
+        catch (ScanErrorException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Executes the specified file either by walking its AST or by compiling
+     * it to bytecode and running it on the VirtualMachine, and prints the
+     * time taken.
+     * 
+     * @param fileName the name of the file to be executed
+     * @param useVM true if the file should be executed on the VirtualMachine
+     */
+    public static void testExecution(String fileName, boolean useVM)
+    {
+        try
+        {
+            Parser parser = new Parser(Paths.get(fileName), openCache());
+            long start = System.nanoTime();
+            if (useVM)
+            {
+                parser.runBytecode();
+            }
+            else
+            {
+                parser.parse();
+            }
+            long time = System.nanoTime() - start;
+            System.out.println((useVM ? "VM: " : "AST: ") + time / 1000000 + " ms");
+        }
+        catch (Exception e)
+        {
+            System.err.print(e + "\n");
+        }
+    }
+    
     public static void testCompile()
     {
     	try
         {
-            File input = new File("testfile.txt");
-            FileInputStream stream = new FileInputStream(input);
-            Parser parser = new Parser(new Scanner(stream));
-            parser.compile();
+            Parser parser = new Parser(Paths.get("testfile.txt"), openCache());
+            Emitter emitter = new Emitter("test.asm");
+            parser.compile(emitter);
+            System.out.println(emitter.getOptimizer().getReport());
         }
         catch (Exception e)
         {
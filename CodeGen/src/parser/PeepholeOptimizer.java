@@ -0,0 +1,323 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The PeepholeOptimizer class rewrites buffered MIPS instructions using a
+ * table of PeepholeRules.  Every rule is tried at every position, and the
+ * whole list is rescanned until no rule matches, since one rewrite often
+ * exposes another.  The number of instructions removed by each rule is
+ * recorded so that the effect of each rule can be reported.
+ *
+ * The default rule table removes redundant push/pop pairs, jumps to the
+ * instruction that immediately follows, loads that follow a store to the
+ * same address, moves of a register to itself, and addresses materialized
+ * with la only to be used by a single load or store.
+ */
+public class PeepholeOptimizer
+{
+    private List<PeepholeRule> rules;
+    private LinkedHashMap<String, Integer> removed;
+
+    /**
+     * Creates a new instance of the PeepholeOptimizer class that uses the
+     * default rule table.
+     */
+    public PeepholeOptimizer()
+    {
+        this(defaultRules());
+    }
+
+    /**
+     * Creates a new instance of the PeepholeOptimizer class that uses the
+     * specified rule table.  Rules are tried in the order given.
+     *
+     * @param rules the rules to be applied
+     */
+    public PeepholeOptimizer(List<PeepholeRule> rules)
+    {
+        this.rules = new ArrayList<PeepholeRule>(rules);
+        removed = new LinkedHashMap<String, Integer>();
+        for (PeepholeRule rule : rules)
+        {
+            removed.put(rule.getName(), 0);
+        }
+    }
+
+    /**
+     * Returns a new list containing the default rule table.
+     *
+     * @return the default rules
+     */
+    public static List<PeepholeRule> defaultRules()
+    {
+        List<PeepholeRule> rules = new ArrayList<PeepholeRule>();
+        rules.add(new PushPop());
+        rules.add(new JumpToNext());
+        rules.add(new StoreLoad());
+        rules.add(new SelfMove());
+        rules.add(new AddressLoad());
+        return rules;
+    }
+
+    /**
+     * Rewrites the specified instructions in place until no rule matches.
+     *
+     * @param code the buffered instructions
+     */
+    public void optimize(List<Instruction> code)
+    {
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (int i = 0; i < code.size(); i++)
+            {
+                for (PeepholeRule rule : rules)
+                {
+                    if (i >= code.size())
+                    {
+                        break;
+                    }
+                    int count = rule.apply(code, i);
+                    if (count > 0)
+                    {
+                        removed.put(rule.getName(), removed.get(rule.getName()) + count);
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of instructions removed by the rule with the
+     * specified name.
+     *
+     * @param name the name of the rule
+     * @return the number of instructions it removed
+     */
+    public int getRemoved(String name)
+    {
+        Integer count = removed.get(name);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns a report listing the number of instructions removed by each
+     * rule, one rule per line, followed by the total.
+     *
+     * @return the report
+     */
+    public String getReport()
+    {
+        StringBuilder report = new StringBuilder();
+        int total = 0;
+        for (String name : removed.keySet())
+        {
+            report.append(name).append(": ").append(removed.get(name))
+                    .append(" removed\n");
+            total += removed.get(name);
+        }
+        return report.append("total: ").append(total).append(" removed")
+                .toString();
+    }
+
+    /**
+     * Returns whether the specified register is overwritten before it is
+     * read again, looking only at the straight-line code following the
+     * specified index.  Any label or control transfer ends the search, and
+     * the register is then assumed to be live.
+     *
+     * @param code the buffered instructions
+     * @param index the index after which the register must be dead
+     * @param reg the name of the register
+     * @return true if the register is definitely dead; otherwise, false
+     */
+    static boolean isDead(List<Instruction> code, int index, String reg)
+    {
+        for (int i = index + 1; i < code.size(); i++)
+        {
+            Instruction ins = code.get(i);
+            if (ins.getLabel() != null || ins.reads(reg) || ins.isControl())
+            {
+                return false;
+            }
+            if (ins.writes(reg))
+            {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replaces a push immediately followed by a pop with a single move, or
+     * with nothing if the same register is pushed and popped:
+     * subu $sp, $sp, 4; sw R, ($sp); lw S, ($sp); addu $sp, $sp, 4.
+     */
+    private static class PushPop implements PeepholeRule
+    {
+        public String getName()
+        {
+            return "push-pop";
+        }
+
+        public int apply(List<Instruction> code, int index)
+        {
+            if (index + 3 >= code.size()
+                    || !code.get(index).is("subu", "$sp", "$sp", "4")
+                    || !"sw".equals(code.get(index + 1).getOp())
+                    || !"($sp)".equals(code.get(index + 1).getOperand(1))
+                    || !"lw".equals(code.get(index + 2).getOp())
+                    || !"($sp)".equals(code.get(index + 2).getOperand(1))
+                    || !code.get(index + 3).is("addu", "$sp", "$sp", "4"))
+            {
+                return 0;
+            }
+            String pushed = code.get(index + 1).getOperand(0);
+            String popped = code.get(index + 2).getOperand(0);
+            for (int i = 0; i < 4; i++)
+            {
+                code.remove(index);
+            }
+            if (pushed.equals(popped))
+            {
+                return 4;
+            }
+            code.add(index, new Instruction("move", popped, pushed));
+            return 3;
+        }
+    }
+
+    /**
+     * Removes an unconditional jump to a label that immediately follows it.
+     */
+    private static class JumpToNext implements PeepholeRule
+    {
+        public String getName()
+        {
+            return "jump-to-next";
+        }
+
+        public int apply(List<Instruction> code, int index)
+        {
+            Instruction jump = code.get(index);
+            if (!"j".equals(jump.getOp()) && !"b".equals(jump.getOp()))
+            {
+                return 0;
+            }
+            for (int i = index + 1; i < code.size()
+                    && code.get(i).getLabel() != null; i++)
+            {
+                if (code.get(i).getLabel().equals(jump.getOperand(0)))
+                {
+                    code.remove(index);
+                    return 1;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Removes a load of a register from the address it was just stored to:
+     * sw R, X; lw R, X.
+     */
+    private static class StoreLoad implements PeepholeRule
+    {
+        public String getName()
+        {
+            return "store-load";
+        }
+
+        public int apply(List<Instruction> code, int index)
+        {
+            if (index + 1 >= code.size())
+            {
+                return 0;
+            }
+            Instruction store = code.get(index);
+            Instruction load = code.get(index + 1);
+            if (!"sw".equals(store.getOp()) || store.getOperandCount() != 2
+                    || !load.is("lw", store.getOperand(0), store.getOperand(1)))
+            {
+                return 0;
+            }
+            code.remove(index + 1);
+            return 1;
+        }
+    }
+
+    /**
+     * Removes a move of a register to itself.
+     */
+    private static class SelfMove implements PeepholeRule
+    {
+        public String getName()
+        {
+            return "self-move";
+        }
+
+        public int apply(List<Instruction> code, int index)
+        {
+            Instruction move = code.get(index);
+            if (!"move".equals(move.getOp()) || move.getOperandCount() != 2
+                    || !move.getOperand(0).equals(move.getOperand(1)))
+            {
+                return 0;
+            }
+            code.remove(index);
+            return 1;
+        }
+    }
+
+    /**
+     * Folds an address materialized with la into the load or store that
+     * uses it, provided the address register is not needed afterwards:
+     * la R, X; lw S, (R) becomes lw S, X.
+     */
+    private static class AddressLoad implements PeepholeRule
+    {
+        public String getName()
+        {
+            return "address-load";
+        }
+
+        public int apply(List<Instruction> code, int index)
+        {
+            if (index + 1 >= code.size())
+            {
+                return 0;
+            }
+            Instruction la = code.get(index);
+            Instruction access = code.get(index + 1);
+            if (!"la".equals(la.getOp()) || la.getOperandCount() != 2)
+            {
+                return 0;
+            }
+            String reg = la.getOperand(0);
+            String op = access.getOp();
+            if (!("lw".equals(op) || "sw".equals(op))
+                    || !("(" + reg + ")").equals(access.getOperand(1)))
+            {
+                return 0;
+            }
+            String value = access.getOperand(0);
+            boolean overwritten = "lw".equals(op) && value.equals(reg);
+            if ("sw".equals(op) && value.equals(reg))
+            {
+                return 0;
+            }
+            if (!overwritten && !isDead(code, index + 1, reg))
+            {
+                return 0;
+            }
+            code.remove(index);
+            code.set(index, new Instruction(op, value, la.getOperand(1)));
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package parser;
+
+import java.util.List;
+
+/**
+ * The PeepholeRule interface describes a single rewrite performed by the
+ * PeepholeOptimizer.  A rule inspects a short window of instructions and,
+ * if they match its pattern, replaces them with an equivalent shorter
+ * sequence.
+ */
+public interface PeepholeRule
+{
+    /**
+     * Returns the name under which the rule is reported.
+     *
+     * @return the rule's name
+     */
+    String getName();
+
+    /**
+     * Attempts to apply the rule to the instructions starting at the
+     * specified index, rewriting the list in place if they match.
+     *
+     * @param code the buffered instructions
+     * @param index the index of the first instruction of the window
+     * @return the number of instructions removed, or 0 if the rule did not
+     *         match
+     */
+    int apply(List<Instruction> code, int index);
+}
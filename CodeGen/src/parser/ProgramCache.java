@@ -0,0 +1,126 @@
+package parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import ast.AstSerializer;
+import ast.Program;
+
+/**
+ * The ProgramCache class stores parsed Programs within a directory so that a
+ * source file that has been parsed once, in this run or any earlier one,
+ * does not need to be scanned and parsed again.  Each Program is written in
+ * the binary form of the AstSerializer class to a file named by the SHA-256
+ * hash of the source text it was parsed from, so an edited source simply
+ * misses the cache rather than returning a stale Program.
+ *
+ * Entries are written to a temporary file and then moved into place, so that
+ * a run that is interrupted, or another JVM reading the cache at the same
+ * time, never sees half of an entry.  An entry that cannot be read is
+ * treated as a miss.
+ */
+public class ProgramCache
+{
+    private static final String SUFFIX = ".ast";
+
+    private Path directory;
+
+    /**
+     * Creates a new instance of the ProgramCache class that stores its
+     * entries within the specified directory, creating the directory if it
+     * does not exist.
+     *
+     * @param directory the directory in which Programs are cached
+     * @throws IOException if the directory cannot be created
+     */
+    public ProgramCache(Path directory) throws IOException
+    {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Returns the Program that was cached for the specified source text.
+     *
+     * @param source the bytes of the source text
+     * @return a new copy of the cached Program, or null if there is no entry
+     *         for the source or it cannot be read
+     */
+    public Program get(byte[] source)
+    {
+        Path entry = directory.resolve(hash(source) + SUFFIX);
+        if (!Files.isRegularFile(entry))
+        {
+            return null;
+        }
+        try
+        {
+            return new AstSerializer().read(Files.readAllBytes(entry));
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Caches the specified Program as the result of parsing the specified
+     * source text, replacing any earlier entry for the same source.
+     *
+     * @param source the bytes of the source text
+     * @param program the Program parsed from the source text
+     * @throws IOException if the entry cannot be written
+     */
+    public void put(byte[] source, Program program) throws IOException
+    {
+        String name = hash(source) + SUFFIX;
+        Path temp = Files.createTempFile(directory, name, ".tmp");
+        try
+        {
+            Files.write(temp, new AstSerializer().write(program));
+            Files.move(temp, directory.resolve(name),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns the SHA-256 hash of the specified bytes as 64 lowercase
+     * hexadecimal digits.
+     *
+     * @param source the bytes to be hashed
+     * @return the hash of the bytes
+     * @throws IllegalStateException if the JVM does not provide SHA-256
+     */
+    public static String hash(byte[] source)
+    {
+        byte[] digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256").digest(source);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is unavailable", e);
+        }
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest)
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -2,6 +2,13 @@ package scanner;
 
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 import scanner.Token.TokenType;
 
@@ -31,14 +38,101 @@ import scanner.Token.TokenType;
 
 public class Scanner
 {
-    private BufferedReader in;
+    private static final String[] KEYWORDS = {"WRITELN", "BEGIN", "END", "IF",
+        "THEN", "WHILE", "DO", "PROCEDURE", "VAR"};
+    private static final Token END_OF_INPUT = new Token("END", TokenType.end);
+
+    private static final int DIGIT = 1;
+    private static final int LETTER = 2;
+    private static final int WHITE_SPACE = 4;
+    private static final int OPERAND = 8;
+    private static final int MATH = 16;
+    private static final int LOGIC = 32;
+    private static final int PAREN = 64;
+    private static final int QUOTE = 128;
+    private static final int[] CHAR_CLASS = new int[128];
+
+    private static final byte ERROR = 0;
+    private static final byte LOGIC_PAIR = 1;
+    private static final byte LOGIC_SINGLE = 2;
+    private static final byte OPERAND_PAIR = 3;
+    private static final byte END_OF_LINE = 4;
+    private static final byte MATH_SINGLE = 5;
+    private static final byte QUOTATION = 6;
+    private static final byte NEGATION = 7;
+    private static final byte BLOCK_COMMENT = 8;
+    private static final byte LINE_COMMENT = 9;
+    private static final byte[] OPERATOR_ACTION = new byte[128 * 128];
+
+    private static final String[] KEYWORD_TEXT = new String[16];
+    private static final Token[] KEYWORD_TOKENS = new Token[16];
+
+    static
+    {
+        for (char c = '0'; c <= '9'; c++)
+        {
+            CHAR_CLASS[c] |= DIGIT;
+        }
+        for (char c = 'A'; c <= 'Z'; c++)
+        {
+            CHAR_CLASS[c] |= LETTER;
+            CHAR_CLASS[c + 'a' - 'A'] |= LETTER;
+        }
+        for (char c : " \t\r\n".toCharArray())
+        {
+            CHAR_CLASS[c] |= WHITE_SPACE;
+        }
+        for (char c : "+-*/%".toCharArray())
+        {
+            CHAR_CLASS[c] |= MATH | OPERAND;
+        }
+        for (char c : "=<>".toCharArray())
+        {
+            CHAR_CLASS[c] |= LOGIC | OPERAND;
+        }
+        CHAR_CLASS['('] |= PAREN | OPERAND;
+        CHAR_CLASS[')'] |= PAREN | OPERAND;
+        CHAR_CLASS['\''] |= QUOTE | OPERAND;
+        CHAR_CLASS['"'] |= QUOTE | OPERAND;
+        for (char c : ";:.,".toCharArray())
+        {
+            CHAR_CLASS[c] |= OPERAND;
+        }
+        for (char first = 0; first < 128; first++)
+        {
+            for (char second = 0; second < 128; second++)
+            {
+                OPERATOR_ACTION[first * 128 + second] = 
+                        operatorAction(first, second);
+            }
+        }
+        for (String keyword : KEYWORDS)
+        {
+            addKeyword(keyword, new Token(keyword, TokenType.keyword));
+        }
+        addKeyword("mod", new Token("%", TokenType.operand));
+    }
+
+    private char[] buffer;
+    private ByteBuffer bytes;
+    private int length;
+    private int position;
     private char currentChar;
     private boolean eof;
+    private Token[] lexemes;
+    private int[] lexemeHashes;
+    private int lexemeCount;
+    private Token[] operators;
+    private int tokenStart;
+    private int line;
+    private int lineOffset;
+
     /**
      * Scanner constructor for construction of a scanner that 
-     * uses an InputStream object for input.  It sets the end-of-file 
-     * (eof) flag and then reads the first character of the input file into 
-     * the instance field currentChar.
+     * uses an InputStream object for input.  The entire stream is read into
+     * a char buffer, which the Scanner then walks by offset.  It sets the 
+     * end-of-file (eof) flag and then reads the first character of the input 
+     * into the instance field currentChar.
      * Usage: 
      * FileInputStream inStream = new FileInputStream(new File(<file name>);   
      * Scanner lex = new Scanner(inStream);
@@ -46,9 +140,27 @@ public class Scanner
      */
     public Scanner(InputStream inStream)
     {
-        in = new BufferedReader(new InputStreamReader(inStream));
-        eof = false;
-        getNextChar();
+        char[] chars = new char[8192];
+        int size = 0;
+        try
+        {
+            Reader in = new InputStreamReader(inStream);
+            int read = in.read(chars, 0, chars.length);
+            while (read != -1)
+            {
+                size += read;
+                if (size == chars.length)
+                {
+                    chars = Arrays.copyOf(chars, chars.length * 2);
+                }
+                read = in.read(chars, size, chars.length - size);
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("The input was incorrectly initialized.");
+        }
+        init(chars, size, 0, 1);
     }
     /**
      * Scanner constructor for constructing a scanner that 
@@ -60,42 +172,427 @@ public class Scanner
      */
     public Scanner(String inString)
     {
-        in = new BufferedReader(new StringReader(inString));
+        init(inString.toCharArray(), inString.length(), 0, 1);
+    }
+
+    /**
+     * Scanner constructor for constructing a scanner that scans a file 
+     * without reading it onto the heap.  The file is mapped into memory and
+     * its bytes are lexed directly as ASCII characters, so even a file 
+     * larger than the heap is never copied.  If a byte outside of ASCII is 
+     * found, the whole file is decoded with the default charset, as the 
+     * InputStream constructor would have done, and scanning continues from 
+     * the same offset, since every character before it was a single byte.
+     * Files of 2 GB or more cannot be mapped as a single buffer.
+     * Usage: Scanner lex = new Scanner(Paths.get(<file name>));
+     * @param path the path of the file to scan
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public Scanner(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            channel.close();
+        }
+        init(null, bytes.limit(), 0, 1);
+    }
+
+    /**
+     * Scanner constructor for constructing a scanner that scans part of a 
+     * buffer shared with other Scanners, beginning at the specified offset
+     * as if everything before it had already been scanned.  Tokens may run
+     * past the end of the part being scanned, so the Scanner is given the 
+     * whole of the input.  The buffer is never modified, so Scanners on 
+     * different threads may share it.
+     * @param chars the buffer holding the whole input
+     * @param size the number of characters of input in the buffer
+     * @param start the offset at which to begin scanning
+     * @param firstLine the line on which the offset lies
+     */
+    Scanner(char[] chars, int size, int start, int firstLine)
+    {
+        init(chars, size, start, firstLine);
+    }
+
+    /**
+     * Method: init
+     * Sets up the Scanner to scan the first length characters of the 
+     * specified buffer, or of the mapped bytes if the buffer is null, and 
+     * reads the character at the starting offset.
+     * 
+     * @param chars the buffer holding the input, or null
+     * @param size the number of characters of input
+     * @param start the offset at which to begin scanning
+     * @param firstLine the line on which the starting offset lies
+     */
+    private void init(char[] chars, int size, int start, int firstLine)
+    {
+        buffer = chars;
+        length = size;
+        position = start;
         eof = false;
+        line = firstLine;
+        lineOffset = start;
+        lexemes = new Token[64];
+        lexemeHashes = new int[64];
+        operators = new Token[128 * 128];
         getNextChar();
     }
 
     /**
      * Method: getNextChar
-     * Takes in the next character from the input stream.  This character is 
-     * read as an integer;  if the integer is negative, then the stream has 
-     * reached the end of the file, so the eof flag is set to true to indicate
-     * that.  Otherwise, the integer is converted to a char via ASCII and 
+     * Takes in the next character from the input buffer.  If the buffer has
+     * been exhausted, the eof flag is set to true to indicate that and 
+     * currentChar keeps its previous value.  Otherwise, the character is 
      * stored in the currentChar variable.
-     * 
-     * An IOException can be caught in the event that the BufferedReader 
-     * was incorrectly initialized.
      */
     private void getNextChar()
     {
-        try
+        if (position >= length)
+        {
+            eof = true;
+        }
+        else
+        {
+            currentChar = charAt(position);
+            position++;
+        }
+    }
+
+    /**
+     * Method: charAt
+     * Returns the character of the input at the specified offset.  When the
+     * input is a mapped file, the byte at that offset is the character, 
+     * unless it lies outside of ASCII, in which case the file is decoded 
+     * first.
+     * 
+     * @param index the offset of the character
+     * @return the character at the offset
+     */
+    private char charAt(int index)
+    {
+        if (bytes != null)
         {
-            int next = in.read();
-            if (next == -1)
+            byte b = bytes.get(index);
+            if (b >= 0)
             {
-                eof = true;
+                return (char) b;
             }
-            else
+            decode();
+        }
+        return buffer[index];
+    }
+
+    /**
+     * Method: decode
+     * Decodes the whole of the mapped file with the default charset and 
+     * scans the decoded characters from then on.  Only bytes at or beyond 
+     * the current offset can be multi-byte, so offsets already handed out 
+     * still refer to the same characters.
+     */
+    private void decode()
+    {
+        ByteBuffer all = bytes.duplicate();
+        all.clear();
+        CharBuffer chars = Charset.defaultCharset().decode(all);
+        buffer = new char[chars.remaining()];
+        chars.get(buffer);
+        length = buffer.length;
+        bytes = null;
+    }
+
+    /**
+     * Method: text
+     * Returns the characters of the input between the specified offsets as
+     * a String.
+     * 
+     * @param start the offset of the first character
+     * @param end the offset one past the last character
+     * @return the characters between the offsets
+     */
+    private String text(int start, int end)
+    {
+        if (bytes == null)
+        {
+            return new String(buffer, start, end - start);
+        }
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++)
+        {
+            chars[i - start] = charAt(i);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Method: offset
+     * Returns the offset within the input of currentChar, or the offset one
+     * past the last character read once the end of the input has been 
+     * reached.
+     * 
+     * @return the offset of the current character
+     */
+    private int offset()
+    {
+        return eof ? position : position - 1;
+    }
+
+    /**
+     * Method: getTokenStart
+     * Returns the offset within the input of the first character of the 
+     * Token most recently returned by nextToken.
+     * 
+     * @return the offset at which the last Token starts
+     */
+    public int getTokenStart()
+    {
+        return tokenStart;
+    }
+
+    /**
+     * Method: getTokenEnd
+     * Returns the offset within the input one past the last character of 
+     * the Token most recently returned by nextToken.  This includes any 
+     * quotation marks, which are not part of the Token's lexeme.
+     * 
+     * @return the offset at which the last Token ends
+     */
+    public int getTokenEnd()
+    {
+        return offset();
+    }
+
+    /**
+     * Method: getLine
+     * Returns the line of the input, counting from 1, on which the Token 
+     * most recently returned by nextToken starts.  Lines are counted only 
+     * when asked for, by looking for new lines between the last offset 
+     * counted and the start of the Token.
+     * 
+     * @return the line of the last Token
+     */
+    public int getLine()
+    {
+        while (lineOffset < tokenStart)
+        {
+            if (charAt(lineOffset) == '\n')
             {
-                currentChar = (char)next;
+                line++;
             }
+            lineOffset++;
+        }
+        return line;
+    }
 
-        } //end try
-        catch (IOException e)
+    /**
+     * Method: skipTo
+     * Advances the input so that currentChar is the character at the 
+     * specified offset, which lets a whole run of digits, letters or white 
+     * space be consumed at once.  If the offset is the length of the input,
+     * the eof flag is set and currentChar becomes the last character of the
+     * input, just as if each character had been eaten in turn.
+     * 
+     * @param index the offset of the new current character
+     */
+    private void skipTo(int index)
+    {
+        if (index >= length)
         {
-            System.err.println("The input was incorrectly initialized.");
+            position = length;
+            if (length > 0)
+            {
+                currentChar = charAt(length - 1);
+            }
+            eof = true;
         }
-        return;
+        else
+        {
+            currentChar = charAt(index);
+            position = index + 1;
+        }
+    }
+
+    /**
+     * Method: hash
+     * Computes the hash of the characters of the input between the 
+     * specified offsets, in the same way as String.hashCode.
+     * 
+     * @param start the offset of the first character
+     * @param end the offset one past the last character
+     * @return the hash of the characters
+     */
+    private int hash(int start, int end)
+    {
+        int h = 0;
+        for (int i = start; i < end; i++)
+        {
+            h = 31 * h + charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Method: slot
+     * Returns the slot of the lexeme table at which the search for a lexeme
+     * with the specified hash begins.  The hash is scrambled first, since 
+     * numbers that differ only in their last digit have consecutive hashes 
+     * and would otherwise fill one long run of the table.
+     * 
+     * @param h the hash of the lexeme
+     * @return the index of the first slot to try
+     */
+    private int slot(int h)
+    {
+        h *= 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (lexemes.length - 1);
+    }
+
+    /**
+     * Method: lexeme
+     * Returns the Token for the characters of the input between the 
+     * specified offsets.  Each distinct identifier or number is only made 
+     * into a String and a Token the first time it is scanned; afterwards, 
+     * the same Token is found in the lexeme table by comparing characters,
+     * so scanning it again allocates nothing.
+     * 
+     * @param start the offset of the first character
+     * @param end the offset one past the last character
+     * @param type the type of the Token if it is not yet in the table
+     * @return the Token for the lexeme
+     */
+    private Token lexeme(int start, int end, TokenType type)
+    {
+        int mask = lexemes.length - 1;
+        int h = hash(start, end);
+        int slot = slot(h);
+        Token found = lexemes[slot];
+        while (found != null)
+        {
+            if (lexemeHashes[slot] == h && matches(start, end, found.getLexeme()))
+            {
+                return found;
+            }
+            slot = (slot + 1) & mask;
+            found = lexemes[slot];
+        }
+        Token token = new Token(text(start, end), type);
+        addLexeme(token, h);
+        return token;
+    }
+
+    /**
+     * Method: matches
+     * Checks to see if the characters of the input between the specified 
+     * offsets spell out the specified text.
+     * 
+     * @param start the offset of the first character
+     * @param end the offset one past the last character
+     * @param text the text to compare against
+     * @return true if the characters match the text
+     *         false otherwise
+     */
+    private boolean matches(int start, int end, String text)
+    {
+        if (text.length() != end - start)
+        {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++)
+        {
+            if (text.charAt(i) != charAt(start + i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method: addLexeme
+     * Adds a Token to the lexeme table under its lexeme, doubling the table
+     * when it becomes half full.  The hash of each lexeme is kept beside 
+     * its Token, so that probing and resizing rarely need to look at the 
+     * lexeme itself.
+     * 
+     * @param token the Token to be returned when its lexeme is scanned
+     * @param h the hash of the Token's lexeme
+     */
+    private void addLexeme(Token token, int h)
+    {
+        if ((lexemeCount + 1) * 2 > lexemes.length)
+        {
+            Token[] old = lexemes;
+            int[] oldHashes = lexemeHashes;
+            lexemes = new Token[old.length * 2];
+            lexemeHashes = new int[old.length * 2];
+            lexemeCount = 0;
+            for (int i = 0; i < old.length; i++)
+            {
+                if (old[i] != null)
+                {
+                    addLexeme(old[i], oldHashes[i]);
+                }
+            }
+        }
+        int mask = lexemes.length - 1;
+        int slot = slot(h);
+        while (lexemes[slot] != null)
+        {
+            slot = (slot + 1) & mask;
+        }
+        lexemes[slot] = token;
+        lexemeHashes[slot] = h;
+        lexemeCount++;
+    }
+
+    /**
+     * Method: keywordSlot
+     * Computes the perfect hash of a keyword from its first character, its 
+     * last character and its length.  The nine keywords and "mod" each 
+     * land in a different slot of the 16-entry keyword table, so a single 
+     * comparison decides whether an identifier is a keyword.
+     * 
+     * @param first the first character of the identifier
+     * @param last the last character of the identifier
+     * @param size the number of characters in the identifier
+     * @return the slot of the keyword table to compare against
+     */
+    private static int keywordSlot(char first, char last, int size)
+    {
+        return (first + 10 * last + size) & 15;
+    }
+
+    /**
+     * Method: operator
+     * Returns the Token for an operator of one or two characters.  The type
+     * of an operator is determined by its characters, so each operator's 
+     * Token is created once and then reused.
+     * 
+     * @param first the first character of the operator
+     * @param second the second character of the operator, or 0 if the 
+     *        operator is a single character
+     * @param type the type of the operator
+     * @return the Token for the operator
+     */
+    private Token operator(char first, char second, TokenType type)
+    {
+        if (first >= 128 || second >= 128)
+        {
+            return new Token(second == 0 ? "" + first : "" + first + second, type);
+        }
+        int key = first * 128 + second;
+        Token token = operators[key];
+        if (token == null)
+        {
+            token = new Token(second == 0 ? "" + first : "" + first + second, type);
+            operators[key] = token;
+        }
+        return token;
     }
     
     /**
@@ -136,11 +633,27 @@ public class Scanner
         return !eof;
     }
 
+    /**
+     * Method: is
+     * Checks to see if the specified character belongs to any of the 
+     * specified classes of the character class table.  Characters outside 
+     * of ASCII belong to no class.
+     * 
+     * @param c the character to be tested
+     * @param classes the classes, combined with |
+     * @return true if the character is in one of the classes
+     *         false otherwise
+     */
+    private static boolean is(char c, int classes)
+    {
+        return c < 128 && (CHAR_CLASS[c] & classes) != 0;
+    }
+
     /**
      * Method: isDigit
      * Checks to see if the specified character is a digit, returning true 
-     * if it is and false otherwise.  The method checks the character's ASCII 
-     * value to see if it lies between 48 and 57 inclusive.
+     * if it is and false otherwise.  The method looks the character up in 
+     * the character class table.
      * 
      * @param numTest the character to be tested
      * @return true if the character is a digit (0-9)
@@ -148,7 +661,7 @@ public class Scanner
      */
     public static boolean isDigit(char numTest)
     {
-        return 48 <= numTest && numTest <= 57;
+        return is(numTest, DIGIT);
     }
 
     /**
@@ -172,9 +685,8 @@ public class Scanner
     /**
      * Method: isLetter
      * Checks to see if the specified character is a letter, returning true if
-     * it is and false otherwise. The method checks the character's ASCII 
-     * value to see if it lies between 65 and 90 inclusive or 97 and 122 
-     * inclusive.
+     * it is and false otherwise. The method looks the character up in the 
+     * character class table.
      * 
      * @param letTest the character to be tested
      * @return true if the character is a letter (A-Z || a-z)
@@ -182,8 +694,7 @@ public class Scanner
      */
     public static boolean isLetter(char letTest)
     {
-        return (65 <= letTest && letTest <= 90) || 
-               (97 <= letTest && letTest <= 122);
+        return is(letTest, LETTER);
     }
 
     /**
@@ -198,8 +709,7 @@ public class Scanner
      */
     public static boolean isWhiteSpace(char spaceTest)
     {
-        return (spaceTest == ' ' || spaceTest == '\t' || spaceTest == '\r' ||
-                spaceTest == '\n');
+        return is(spaceTest, WHITE_SPACE);
     }
 
     /**
@@ -220,8 +730,9 @@ public class Scanner
     /**
      * Method: isOperand
      * Checks to see if the specified character is an operand, returning true
-     * if it is and false otherwise.  An operand is defined as one of the
-     * following: '=', '+', '-', '*', '/', '%', ';'.
+     * if it is and false otherwise.  An operand is defined as a math or 
+     * logic operator, a parenthesis, a quotation mark, or one of the 
+     * following: ';', ':', '.', ','.
      * 
      * @param opTest the character to be tested
      * @return true if the character is an operand
@@ -229,10 +740,7 @@ public class Scanner
      */
     public static boolean isOperand(char opTest)
     {
-        return (isEqualSign(opTest) || isMathOperator(opTest) || 
-                isLogicOperator(opTest) || isParen(opTest) ||
-                isQuote(opTest) || opTest == ';' || opTest == ':' ||
-                opTest == '.' || opTest == ',');
+        return is(opTest, OPERAND);
     }
     
     /**
@@ -247,7 +755,7 @@ public class Scanner
      */
     public static boolean isLogicOperator(char logTest)
     {
-        return (logTest == '=' || logTest == '<' || logTest == '>');
+        return is(logTest, LOGIC);
     }
 
     /**
@@ -276,8 +784,7 @@ public class Scanner
      */
     public static boolean isMathOperator(char opTest)
     {
-        return (opTest == '+' || opTest == '-' || opTest == '*' || 
-                opTest == '/' || opTest == '%');
+        return is(opTest, MATH);
     }
 
     /**
@@ -310,7 +817,7 @@ public class Scanner
     
     public static boolean isParen(char parTest)
     {
-        return isOpenParen(parTest) || isCloseParen(parTest);
+        return is(parTest, PAREN);
     }
 
     /**
@@ -325,7 +832,7 @@ public class Scanner
      */
     public static boolean isQuote(char quoteTest)
     {
-        return (quoteTest == '\'' || quoteTest == '\"');
+        return is(quoteTest, QUOTE);
     }
 
     /**
@@ -347,19 +854,20 @@ public class Scanner
      */
     private Token scanNumber() throws ScanErrorException
     {
-        String num = "";
-        while (isDigit(currentChar) && !eof)
+        int start = offset();
+        int end = start;
+        while (end < length && isDigit(charAt(end)))
         {
-            num += currentChar;
-            eat(currentChar);
+            end++;
         }
+        skipTo(end);
         if ((!isWhiteSpace(currentChar) && !isParen(currentChar)) 
                 && !eof && currentChar != ';' && currentChar != ',')
         {
             throw new ScanErrorException
             ("Invalid character: expected a digit and found: " + currentChar);
         }
-        return new Token(num, TokenType.number);
+        return lexeme(start, end, TokenType.number);
     }
 
     /**
@@ -370,6 +878,8 @@ public class Scanner
      * However, if it finds a character that is an operand, the method will 
      * instead throw a ScanErrorException.  
      * An identifier is defined by the regular expression L(L+D)*.
+     * Keywords and "mod" are recognized through their perfect hash in the 
+     * keyword table, with a single comparison.
      * 
      * Precondition: currentChar has been recognized as a letter.
      * 
@@ -381,12 +891,13 @@ public class Scanner
      */
     private Token scanIdentifier() throws ScanErrorException
     {
-        String iden = "";
-        while ((isDigit(currentChar) || isLetter(currentChar)) && !eof)
+        int start = offset();
+        int end = start;
+        while (end < length && (isDigit(charAt(end)) || isLetter(charAt(end))))
         {
-            iden += currentChar;
-            eat(currentChar);
+            end++;
         }
+        skipTo(end);
         if (isOperand(currentChar) && !eof && currentChar != ';' 
         && !isParen(currentChar) && !isQuote(currentChar) && 
         currentChar != ',')
@@ -394,18 +905,17 @@ public class Scanner
             throw new ScanErrorException("Invalid character: expected a digit"
                     + " or a letter and found: " + currentChar);
         }
-        if (iden.equals("mod"))
+        int size = end - start;
+        if (size >= 2 && size <= 9)
         {
-            return new Token("%", TokenType.operand);
-        }
-        if (iden.equals("WRITELN") || iden.equals("BEGIN") || 
-            iden.equals("END") || iden.equals("IF") || iden.equals("THEN") ||
-            iden.equals("WHILE") || iden.equals("DO") || 
-            iden.equals("PROCEDURE") || iden.equals("VAR"))
-        {
-            return new Token(iden, TokenType.keyword);
+            int slot = keywordSlot(charAt(start), charAt(end - 1), size);
+            if (KEYWORD_TEXT[slot] != null 
+                    && matches(start, end, KEYWORD_TEXT[slot]))
+            {
+                return KEYWORD_TOKENS[slot];
+            }
         }
-        return new Token(iden, TokenType.identifier);
+        return lexeme(start, end, TokenType.identifier);
     }
 
     /**
@@ -439,10 +949,14 @@ public class Scanner
      * including the opening and closing quotation marks.  Any errors in 
      * scanning this lexeme are handled by the scanQuotes method.
      * 
+     * The decision for each pair of characters is looked up in the operator
+     * transition table, which operatorAction fills in when the class is 
+     * loaded.
+     * 
      * Precondition: currentChar has been recognized as an operand.
      * 
      * @return a String containing the operand lexeme at the head of the 
-     *         input stream
+     *         input stream, or null if a comment was skipped
      * 
      * @throws a ScanErrorException if (1) the input stream reaches the end of 
      * the file and doesn't find a semicolon; (2) skipComments fails to find 
@@ -453,29 +967,27 @@ public class Scanner
      */
     private Token scanOperand() throws ScanErrorException
     {
-        Token operand;
         char first = currentChar;
         if (isParen(first))
         {
-            String lexeme = "" + first;
             eat(first);
-            return new Token(lexeme, TokenType.parenExp);
+            return operator(first, (char) 0, TokenType.parenExp);
         }
         eat(first);
         if (first == '.')
         {
             eof = true;
-            return new Token(".", TokenType.end);
+            return operator(first, (char) 0, TokenType.end);
         }
         if (first == ',')
         {
-            return new Token(",", TokenType.comma);
+            return operator(first, (char) 0, TokenType.comma);
         }
         if (eof)
         {
             if (first == ';')
             {
-                return new Token(";", TokenType.eoL);
+                return operator(first, (char) 0, TokenType.eoL);
             }
             else
             {
@@ -483,83 +995,126 @@ public class Scanner
             }
         } //end if
         char second = currentChar;
+        switch (OPERATOR_ACTION[first * 128 + (second < 128 ? second : 127)])
+        {
+            case LOGIC_PAIR:
+                eat(second);
+                return operator(first, second, TokenType.logicOperand);
+            case LOGIC_SINGLE:
+                return operator(first, (char) 0, TokenType.logicOperand);
+            case OPERAND_PAIR:
+                eat(second);
+                return operator(first, second, TokenType.operand);
+            case END_OF_LINE:
+                eat(second);
+                return operator(first, (char) 0, TokenType.eoL);
+            case MATH_SINGLE:
+                eat(second);
+                return operator(first, (char) 0, TokenType.mathOperand);
+            case QUOTATION:
+                Token quote = new Token(scanQuotes(first), TokenType.quoteExp);
+                eat(currentChar);
+                return quote;
+            case NEGATION:
+                return operator(first, (char) 0, TokenType.mathOperand);
+            case BLOCK_COMMENT:
+                eat(second);
+                skipComments();
+                return null;
+            case LINE_COMMENT:
+                skipLineComment();
+                return null;
+            default:
+                throw new ScanErrorException("Invalid lexeme: " + first + second);
+        }
+    }
+
+    /**
+     * Method: operatorAction
+     * Decides what scanOperand does when it finds the specified pair of 
+     * characters at the start of an operand, where the first character is
+     * neither a parenthesis, a period nor a comma.  The decisions for every
+     * pair of ASCII characters are made once, when the class is loaded, and
+     * stored in the operator transition table.
+     * 
+     * A logic operator followed by another forms a two-character logic 
+     * operator (<>, <= or >=), unless the pair is ><, =<, => or doubled.  
+     * Any other operand followed by an equals sign forms a two-character 
+     * operand such as :=.  An operand followed by white space stands alone.
+     * A quotation mark starts a quoted String, and a minus sign directly 
+     * before a digit or an opening parenthesis is a negation.  /* and // 
+     * start comments, and any other pair of math operators is an error.
+     * 
+     * @param first the first character of the operand
+     * @param second the character following it
+     * @return the action to be taken
+     */
+    private static byte operatorAction(char first, char second)
+    {
         if (isMathOperator(first) && isMathOperator(second))
         {
             if (first == '/' && second == '*')
             {
-                skipComments();
+                return BLOCK_COMMENT;
             }
-            else if (first == '/' && second == '/')
+            if (first == '/' && second == '/')
             {
-                skipLineComment();
+                return LINE_COMMENT;
             }
-            else
-            {
-                throw new ScanErrorException
-                ("Invalid lexeme: " + first + second);
-            }
-        } //end if
+            return ERROR;
+        }
         if (isLogicOperator(first))
         {
-            if (isLogicOperator(second))
+            if (!isLogicOperator(second))
             {
-                String op = "" + first + second;
-                // <> <= >= >< =< => << >> ==
-                if (!(op.equals("><") || op.equals("=>") || op.equals("=<")
-                                            || first == second))
-                {
-                    eat(currentChar);
-                    return new Token(op, TokenType.logicOperand);
-                }
-                else throw new ScanErrorException("Invalid lexeme: " +
-                                                            first + second);
+                return LOGIC_SINGLE;
             }
-            else
+            if ((first == '>' && second == '<') || (first == '=' && second == '>')
+                    || (first == '=' && second == '<') || first == second)
             {
-                return new Token("" + first, TokenType.logicOperand);
+                return ERROR;
             }
+            return LOGIC_PAIR;
         }
-        if (isEqualSign(first) && isOperand(second))
-        {
-            if (isLogicOperator(second))
-            {
-                throw new ScanErrorException
-                ("Invalid lexeme: " + first + second);
-            }
-            operand = new Token("" + first + second, TokenType.operand);
-        } //end if
-        else if (isEqualSign(second) && isOperand(first))
+        if (isEqualSign(second) && isOperand(first))
         {
-            operand = new Token("" + first + second, TokenType.operand);
+            return OPERAND_PAIR;
         }
-        else if (isWhiteSpace(second))
+        if (isWhiteSpace(second))
         {
-            if (first == ';')
-            {
-                operand = new Token(";", TokenType.eoL);
-            }
-            else
-            {
-                operand = new Token("" + first, TokenType.mathOperand);
-            }
+            return first == ';' ? END_OF_LINE : MATH_SINGLE;
         }
-        else if (isQuote(first))
+        if (isQuote(first))
         {
-            operand = new Token(scanQuotes(first), TokenType.quoteExp);
+            return QUOTATION;
         }
-        else if (first == '-' && (isDigit(second) || isOpenParen(second)))
+        if (first == '-' && (isDigit(second) || isOpenParen(second)))
         {
-            operand = new Token("" + first, TokenType.mathOperand);
+            return NEGATION;
         }
-        else
-        {
-            throw new ScanErrorException("Invalid lexeme: " + first + second);
-        }
-        if (!(first == '-' && (isDigit(second) || isParen(second))))
+        return ERROR;
+    }
+
+    /**
+     * Method: addKeyword
+     * Stores a keyword in the keyword table at the slot given by its perfect
+     * hash.
+     * 
+     * @param text the keyword as it is written
+     * @param token the Token to be returned when the keyword is scanned
+     * @throws IllegalStateException if another keyword has the same hash
+     */
+    private static void addKeyword(String text, Token token)
+    {
+        int slot = keywordSlot(text.charAt(0), text.charAt(text.length() - 1), 
+                text.length());
+        if (KEYWORD_TEXT[slot] != null)
         {
-            eat(currentChar);
+            throw new IllegalStateException("Keywords " + text + " and " + 
+                    KEYWORD_TEXT[slot] + " collide");
         }
-        return operand;
+        KEYWORD_TEXT[slot] = text;
+        KEYWORD_TOKENS[slot] = token;
     }
     
     private String removeParen(String input)
@@ -587,8 +1142,9 @@ public class Scanner
      * of the comment block, the input stream is closed and the method throws 
      * a ScanErrorException.
      * 
-     * Precondition: The input stream is currently at a position such that
-     * currentChar = '*' and currentChar's previous value was '/'. 
+     * Precondition: The input stream is currently at the first character 
+     * after the opening slash and asterisk, so that the asterisk cannot also
+     * close the comment.
      * 
      * PostCondition: The input stream has skipped over the entire comment 
      * block and is one position past the end of the comment block.
@@ -725,11 +1281,10 @@ public class Scanner
      */
     private String scanQuotes(char openingQuote) throws ScanErrorException
     {
-        String lex = "" + currentChar;
+        int start = offset();
         while (!isQuote(currentChar) && !eof)
         {
             eat(currentChar);
-            lex += currentChar;
         }
         if (eof)
         {
@@ -741,7 +1296,7 @@ public class Scanner
                     openingQuote + " and received " + 
                     currentChar);
         }
-        return lex.substring(0, lex.length() - 1);
+        return text(start, offset());
     }
 
     /**
@@ -753,7 +1308,8 @@ public class Scanner
      * the method continues to advance the input stream until currentChar is no
      * longer a whitespace character.  While advancing through the white space, 
      * the method continually checks to see if it's reached the end of the 
-     * input stream, returning "END" if it has.
+     * input stream, returning "END" if it has.  A comment produces no 
+     * token, so scanning continues after it.
      * 
      * @return a String object containing the next token in the input stream
      * b
@@ -765,35 +1321,41 @@ public class Scanner
      */
     public Token nextToken() throws ScanErrorException
     {
-        Token token;
-        while (isWhiteSpace(currentChar))
+        Token token = null;
+        while (token == null)
         {
-            eat(currentChar);
+            if (isWhiteSpace(currentChar) && !eof)
+            {
+                int end = position;
+                while (end < length && isWhiteSpace(charAt(end)))
+                {
+                    end++;
+                }
+                skipTo(end);
+            }
+            tokenStart = offset();
             if (eof)
             {
-                break;
+                return END_OF_INPUT;
+            }
+            int classes = currentChar < 128 ? CHAR_CLASS[currentChar] : 0;
+            if ((classes & DIGIT) != 0)
+            {
+                token = scanNumber();
+            }
+            else if ((classes & LETTER) != 0)
+            {
+                token = scanIdentifier();
+            }
+            else if ((classes & OPERAND) != 0)
+            {
+                token = scanOperand();
+            }
+            else
+            {
+                throw new ScanErrorException
+                ("Invalid start to lexeme: " + currentChar);
             }
-        } // end while
-        if (eof)
-        {
-            return new Token("END", TokenType.end);
-        }
-        if (isDigit(currentChar))
-        {
-            token = scanNumber();
-        }
-        else if (isLetter(currentChar))
-        {
-            token = scanIdentifier();
-        }
-        else if (isOperand(currentChar))
-        {
-            token = scanOperand();
-        }
-        else
-        {
-            throw new ScanErrorException
-            ("Invalid start to lexeme: " + currentChar);
         }
         return token;
     }      
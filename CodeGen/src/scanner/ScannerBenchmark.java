@@ -0,0 +1,117 @@
+package scanner;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The ScannerBenchmark class measures how quickly the Scanner turns a large
+ * program into Tokens.  The program is generated in memory from a fixed
+ * seed, so that every run scans the same input: assignments with calls,
+ * numbers and the mod operator, IF and WHILE statements, and identifiers
+ * of several lengths.  The input is scanned several times to let the JVM
+ * warm up, and the best time is reported along with the rate in millions
+ * of Tokens per second.  The same program is then lexed into a TokenStream
+ * by a single Scanner and in parallel chunks on the common ForkJoinPool.
+ */
+public class ScannerBenchmark
+{
+    private static final String[] NAMES = {"a", "b", "count", "total",
+        "averyveryverylongidentifiername"};
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of statements in the program, if given
+     * @throws ScanErrorException if the generated program cannot be scanned
+     */
+    public static void main(String[] args) throws ScanErrorException
+    {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        String program = generate(statements);
+        System.out.println(program.length() + " characters");
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++)
+        {
+            long start = System.nanoTime();
+            Scanner scanner = new Scanner(program);
+            int tokens = 0;
+            while (scanner.hasNext())
+            {
+                scanner.nextToken();
+                tokens++;
+            }
+            long time = System.nanoTime() - start;
+            best = Math.min(best, time);
+            System.out.println(tokens * 1000.0 / time + " million tokens/s");
+        }
+        System.out.println("best: " + best / 1000000 + " ms");
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long sequential = Long.MAX_VALUE;
+        long parallel = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++)
+        {
+            long start = System.nanoTime();
+            new TokenStream(new Scanner(program));
+            sequential = Math.min(sequential, System.nanoTime() - start);
+            start = System.nanoTime();
+            TokenStream.lexParallel(program, pool, pool.getParallelism() * 4);
+            parallel = Math.min(parallel, System.nanoTime() - start);
+        }
+        System.out.println("TokenStream: " + sequential / 1000000 + " ms");
+        System.out.println("lexParallel on " + pool.getParallelism() 
+                + " threads: " + parallel / 1000000 + " ms");
+    }
+
+    /**
+     * Generates a program with the specified number of assignments, each of
+     * which calls a procedure.  Every fifth assignment is followed by an IF
+     * statement that may write a value, and every seventh by a WHILE loop
+     * that runs two hundred times.  The program is generated from a fixed
+     * seed, so the same number of assignments always gives the same text,
+     * and it runs to completion, so the ParserBenchmark class can execute
+     * and compile it as well as parse it.
+     *
+     * @param statements the number of assignments
+     * @return the text of the program
+     */
+    public static String generate(int statements)
+    {
+        Random random = new Random(1);
+        StringBuilder program = new StringBuilder();
+        program.append("VAR ");
+        for (String name : NAMES)
+        {
+            program.append(name).append(", ");
+        }
+        program.append("i;\n");
+        program.append("PROCEDURE f(x, y);\nBEGIN\nf := x * y + 3;\nEND;\n");
+        program.append("BEGIN\n");
+        for (String name : NAMES)
+        {
+            program.append(name).append(" := 0;\n");
+        }
+        for (int k = 1; k <= statements; k++)
+        {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            program.append(name).append(" := (")
+                    .append(NAMES[random.nextInt(NAMES.length)]).append(" + ")
+                    .append(random.nextInt(100000)).append(") * f(")
+                    .append(NAMES[random.nextInt(NAMES.length)]).append(", ")
+                    .append(random.nextInt(9) + 1).append(") mod 7;\n");
+            if (k % 5 == 0)
+            {
+                program.append("IF ").append(name).append(" <= ")
+                        .append(random.nextInt(7)).append(" THEN WRITELN(")
+                        .append(name).append(");\n");
+            }
+            if (k % 7 == 0)
+            {
+                program.append("i := 200;\nWHILE i > 0 DO\nBEGIN\n")
+                        .append("total := total + i mod 3;\ni := i - 1;\n")
+                        .append("END;\n");
+            }
+        }
+        program.append("END;\n.");
+        return program.toString();
+    }
+}
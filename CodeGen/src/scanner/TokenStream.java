@@ -0,0 +1,600 @@
+package scanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import scanner.Token.TokenType;
+
+/**
+ * The TokenStream class lexes the whole of a Scanner's input up front and
+ * stores the Tokens as parallel arrays rather than as objects.  The Token at
+ * a given index is described by its kind, the offset at which it starts, the
+ * number of characters it spans and the line on which it starts.  Every
+ * keyword and operator has a kind of its own, so a parser can recognize a
+ * Token by comparing ints, without looking at its lexeme or creating a Token
+ * to compare against.
+ *
+ * Lexemes are kept alongside the kinds for the Tokens a parser needs the
+ * text of, such as identifiers and numbers.  The Scanner interns these, so
+ * every occurrence of the same identifier shares a single String.
+ *
+ * The last Token of the stream is always a PERIOD that the Scanner did not
+ * produce; it stands in for the "." that the Parser assumes once the input
+ * has run out.
+ *
+ * A large input can also be lexed in parallel by lexParallel, which splits
+ * it into chunks, lexes each on a ForkJoinPool, and stitches the chunks
+ * back together into exactly the stream a single Scanner would produce.
+ */
+public class TokenStream
+{
+    public static final int IDENTIFIER = 0;
+    public static final int NUMBER = 1;
+    public static final int STRING = 2;
+    public static final int END_OF_INPUT = 3;
+    public static final int PERIOD = 4;
+    public static final int SEMICOLON = 5;
+    public static final int COMMA = 6;
+    public static final int OPEN_PAREN = 7;
+    public static final int CLOSE_PAREN = 8;
+    public static final int ASSIGN = 9;
+    public static final int PLUS = 10;
+    public static final int MINUS = 11;
+    public static final int TIMES = 12;
+    public static final int DIVIDE = 13;
+    public static final int MOD = 14;
+    public static final int EQUAL = 15;
+    public static final int NOT_EQUAL = 16;
+    public static final int LESS = 17;
+    public static final int LESS_EQUAL = 18;
+    public static final int GREATER = 19;
+    public static final int GREATER_EQUAL = 20;
+    public static final int WRITELN = 21;
+    public static final int BEGIN = 22;
+    public static final int END = 23;
+    public static final int IF = 24;
+    public static final int THEN = 25;
+    public static final int WHILE = 26;
+    public static final int DO = 27;
+    public static final int PROCEDURE = 28;
+    public static final int VAR = 29;
+    public static final int OTHER = 30;
+
+    private static final String[] NAMES = {"identifier", "number", "string",
+        "END", ".", ";", ",", "(", ")", ":=", "+", "-", "*", "/", "%", "=",
+        "<>", "<", "<=", ">", ">=", "WRITELN", "BEGIN", "END", "IF", "THEN",
+        "WHILE", "DO", "PROCEDURE", "VAR", "operator"};
+
+    private static final HashMap<String, Integer> FIXED_KINDS =
+            new HashMap<String, Integer>();
+
+    static
+    {
+        for (int kind = SEMICOLON; kind < OTHER; kind++)
+        {
+            FIXED_KINDS.put(NAMES[kind], kind);
+        }
+    }
+
+    private static final int MIN_CHUNK = 1 << 16;
+
+    private int[] kind;
+    private int[] start;
+    private int[] length;
+    private int[] line;
+    private String[] lexeme;
+    private int count;
+
+    /**
+     * Creates a new, empty instance of the TokenStream class.
+     */
+    private TokenStream()
+    {
+        kind = new int[1024];
+        start = new int[1024];
+        length = new int[1024];
+        line = new int[1024];
+        lexeme = new String[1024];
+    }
+
+    /**
+     * Creates a new instance of the TokenStream class holding every Token
+     * that the specified Scanner produces, followed by a closing PERIOD.
+     *
+     * @param scanner the Scanner whose input is to be lexed
+     * @throws ScanErrorException if the Scanner encounters an error anywhere
+     * in its input
+     */
+    public TokenStream(Scanner scanner) throws ScanErrorException
+    {
+        this();
+        do
+        {
+            add(scanner, scanner.nextToken());
+        } while (scanner.hasNext());
+        add(PERIOD, scanner.getTokenEnd(), 0, scanner.getLine(), ".");
+    }
+
+    /**
+     * Lexes the specified buffer from the specified offset, exactly as a
+     * single Scanner that had already reached that offset would, and stops
+     * after the Token that follows the first Token to start at or beyond the
+     * end offset.  The stream is closed with a PERIOD either way.  Because
+     * one more Token follows it, a Parser treats the Token at the end offset
+     * exactly as it would within a stream of the whole input.  An end offset
+     * beyond the input lexes the rest of the input, as the constructor does.
+     *
+     * @param chars the buffer holding the whole input
+     * @param size the number of characters of input in the buffer
+     * @param from the offset at which lexing begins, which must not lie
+     *        within a Token
+     * @param firstLine the line on which that offset lies
+     * @param end the offset at which lexing may stop
+     * @return the Tokens from the starting offset up to the end offset
+     * @throws ScanErrorException if the Scanner encounters an error within
+     *         a Token that starts before the end offset; an error beyond it
+     *         ends the stream instead
+     */
+    public static TokenStream lexRegion(char[] chars, int size, int from,
+            int firstLine, int end) throws ScanErrorException
+    {
+        TokenStream stream = new TokenStream();
+        Scanner scanner = new Scanner(chars, size, from, firstLine);
+        int beyond = 0;
+        try
+        {
+            do
+            {
+                stream.add(scanner, scanner.nextToken());
+                if (scanner.getTokenStart() >= end && ++beyond == 2)
+                {
+                    return stream.close();
+                }
+            } while (scanner.hasNext());
+        }
+        catch (ScanErrorException e)
+        {
+            if (scanner.getTokenStart() < end || stream.count == 0)
+            {
+                throw e;
+            }
+            return stream.close();
+        }
+        stream.add(PERIOD, scanner.getTokenEnd(), 0, scanner.getLine(), ".");
+        return stream;
+    }
+
+    /**
+     * Lexes the specified source on the specified pool and returns the same
+     * TokenStream that lexing it with a single Scanner would.
+     *
+     * The source is split into chunks, each ending just after a new line.
+     * A new line is usually the boundary between two Tokens, but the chunks
+     * are lexed without knowing whether they begin inside a comment or a 
+     * quotation, so each chunk is only trusted from the point at which it 
+     * agrees with the Tokens before it.  Because a Scanner's state between 
+     * Tokens is nothing but its offset, two Scanners that find a Token at 
+     * the same offset go on to find the same Tokens.  While stitching, a 
+     * Scanner resumes from the end of the last Token accepted until it 
+     * finds a Token at an offset where the next chunk also found one, and 
+     * the rest of that chunk is then taken as it is.  Normally this takes a
+     * single Token per chunk; a comment that crosses a boundary simply 
+     * makes the resuming Scanner read further.
+     *
+     * @param source the text to be lexed
+     * @param pool the pool on which to lex the chunks
+     * @param chunks the number of chunks to split the source into
+     * @return the Tokens of the source
+     * @throws ScanErrorException if a single Scanner would have thrown one
+     */
+    public static TokenStream lexParallel(String source, ForkJoinPool pool,
+            int chunks) throws ScanErrorException
+    {
+        char[] chars = source.toCharArray();
+        int size = chars.length;
+        int[] bounds = boundaries(chars, Math.min(chunks, size / MIN_CHUNK));
+        if (bounds.length <= 2)
+        {
+            return new TokenStream(new Scanner(source));
+        }
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<ForkJoinTask<Chunk>>();
+        for (int i = 0; i + 1 < bounds.length; i++)
+        {
+            tasks.add(pool.submit(new Chunk(chars, bounds[i], bounds[i + 1])));
+        }
+        Chunk[] lexed = new Chunk[tasks.size()];
+        int[] linesBefore = new int[tasks.size()];
+        for (int i = 0; i < lexed.length; i++)
+        {
+            lexed[i] = tasks.get(i).join();
+            if (i > 0)
+            {
+                linesBefore[i] = linesBefore[i - 1] + lexed[i - 1].newLines;
+            }
+        }
+        TokenStream stream = new TokenStream();
+        int resume = 0;
+        int i = 0;
+        while (i < lexed.length)
+        {
+            Chunk chunk = lexed[i];
+            int first = 0;
+            if (resume != chunk.from)
+            {
+                int j = i;
+                while (lexed[j].from > resume)
+                {
+                    j--;
+                }
+                int lineOfResume = linesBefore[j] + 1;
+                for (int c = lexed[j].from; c < resume; c++)
+                {
+                    if (chars[c] == '\n')
+                    {
+                        lineOfResume++;
+                    }
+                }
+                Scanner scanner = new Scanner(chars, size, resume, lineOfResume);
+                Token token = scanner.nextToken();
+                first = Arrays.binarySearch(chunk.tokens.start, 0, 
+                        chunk.tokens.count, scanner.getTokenStart());
+                while (first < 0)
+                {
+                    stream.add(scanner, token);
+                    resume = scanner.getTokenEnd();
+                    if (!scanner.hasNext())
+                    {
+                        return stream.close();
+                    }
+                    if (resume >= chunk.to)
+                    {
+                        break;
+                    }
+                    token = scanner.nextToken();
+                    first = Arrays.binarySearch(chunk.tokens.start, 0, 
+                            chunk.tokens.count, scanner.getTokenStart());
+                }
+                if (first < 0)
+                {
+                    while (i < lexed.length && lexed[i].to <= resume)
+                    {
+                        i++;
+                    }
+                    continue;
+                }
+            }
+            stream.append(chunk.tokens, first, linesBefore[i]);
+            if (chunk.error != null)
+            {
+                throw chunk.error;
+            }
+            if (chunk.endsInput)
+            {
+                return stream.close();
+            }
+            resume = chunk.end;
+            i++;
+        }
+        return stream.close();
+    }
+
+    /**
+     * Chooses the offsets at which the source is split: roughly evenly 
+     * spaced, but each moved forward to just after the next new line.
+     *
+     * @param chars the source
+     * @param chunks the number of chunks wanted
+     * @return the offsets, starting with 0 and ending with the length of 
+     * the source
+     */
+    private static int[] boundaries(char[] chars, int chunks)
+    {
+        int[] bounds = new int[Math.max(chunks, 1) + 1];
+        int n = 1;
+        for (int i = 1; i < chunks; i++)
+        {
+            int b = Math.max((int) ((long) chars.length * i / chunks), 
+                    bounds[n - 1]);
+            while (b < chars.length && chars[b] != '\n')
+            {
+                b++;
+            }
+            if (b + 1 < chars.length && b + 1 > bounds[n - 1])
+            {
+                bounds[n++] = b + 1;
+            }
+        }
+        bounds[n++] = chars.length;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * Appends the Tokens of another stream, starting at the specified index.
+     *
+     * @param other the stream whose Tokens are to be appended
+     * @param from the index of the first Token to be appended
+     * @param lineShift the number to be added to the line of each Token
+     */
+    private void append(TokenStream other, int from, int lineShift)
+    {
+        int added = other.count - from;
+        if (count + added > kind.length)
+        {
+            int capacity = Math.max(kind.length * 2, count + added);
+            kind = Arrays.copyOf(kind, capacity);
+            start = Arrays.copyOf(start, capacity);
+            length = Arrays.copyOf(length, capacity);
+            line = Arrays.copyOf(line, capacity);
+            lexeme = Arrays.copyOf(lexeme, capacity);
+        }
+        System.arraycopy(other.kind, from, kind, count, added);
+        System.arraycopy(other.start, from, start, count, added);
+        System.arraycopy(other.length, from, length, count, added);
+        System.arraycopy(other.lexeme, from, lexeme, count, added);
+        for (int i = 0; i < added; i++)
+        {
+            line[count + i] = other.line[from + i] + lineShift;
+        }
+        count += added;
+    }
+
+    /**
+     * Appends the Token just returned by the specified Scanner.
+     *
+     * @param scanner the Scanner that returned the Token
+     * @param token the Token
+     */
+    private void add(Scanner scanner, Token token)
+    {
+        add(kindOf(token), scanner.getTokenStart(),
+                scanner.getTokenEnd() - scanner.getTokenStart(),
+                scanner.getLine(), token.getLexeme());
+    }
+
+    /**
+     * Appends the closing PERIOD to a stream stitched together from chunks,
+     * placing it where a single Scanner would: at the end of the last Token
+     * and on its line.
+     *
+     * @return the TokenStream
+     */
+    private TokenStream close()
+    {
+        add(PERIOD, start[count - 1] + length[count - 1], 0, line[count - 1],
+                ".");
+        return this;
+    }
+
+    /**
+     * Appends a Token to the stream, doubling the arrays when they are full.
+     *
+     * @param k the kind of the Token
+     * @param s the offset at which the Token starts
+     * @param len the number of characters the Token spans
+     * @param l the line on which the Token starts
+     * @param text the lexeme of the Token
+     */
+    private void add(int k, int s, int len, int l, String text)
+    {
+        if (count == kind.length)
+        {
+            kind = Arrays.copyOf(kind, count * 2);
+            start = Arrays.copyOf(start, count * 2);
+            length = Arrays.copyOf(length, count * 2);
+            line = Arrays.copyOf(line, count * 2);
+            lexeme = Arrays.copyOf(lexeme, count * 2);
+        }
+        kind[count] = k;
+        start[count] = s;
+        length[count] = len;
+        line[count] = l;
+        lexeme[count] = text;
+        count++;
+    }
+
+    /**
+     * The Chunk class lexes one chunk of a source for lexParallel.  It 
+     * keeps every Token that starts within the chunk, along with the end of
+     * the last of them, whether the input ended there, any error the 
+     * Scanner threw, and the number of new lines in the chunk.  Lines are 
+     * counted from the start of the chunk.
+     */
+    private static class Chunk extends RecursiveTask<Chunk>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private char[] chars;
+        private int from;
+        private int to;
+        private TokenStream tokens;
+        private int end;
+        private boolean endsInput;
+        private ScanErrorException error;
+        private int newLines;
+
+        /**
+         * Creates a new instance of the Chunk class.
+         *
+         * @param chars the whole source
+         * @param from the offset at which the chunk starts
+         * @param to the offset at which the next chunk starts
+         */
+        Chunk(char[] chars, int from, int to)
+        {
+            this.chars = chars;
+            this.from = from;
+            this.to = to;
+            end = from;
+        }
+
+        /**
+         * Lexes the chunk.
+         *
+         * @return the lexed chunk
+         */
+        protected Chunk compute()
+        {
+            for (int c = from; c < to; c++)
+            {
+                if (chars[c] == '\n')
+                {
+                    newLines++;
+                }
+            }
+            tokens = new TokenStream();
+            Scanner scanner = new Scanner(chars, chars.length, from, 1);
+            try
+            {
+                while (scanner.hasNext())
+                {
+                    Token token = scanner.nextToken();
+                    if (scanner.getTokenStart() >= to && to < chars.length)
+                    {
+                        break;
+                    }
+                    tokens.add(scanner, token);
+                    end = scanner.getTokenEnd();
+                    endsInput = !scanner.hasNext();
+                }
+            }
+            catch (ScanErrorException e)
+            {
+                if (scanner.getTokenStart() < to || to == chars.length)
+                {
+                    error = e;
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Returns the kind of the specified Token.  Keywords and operators are
+     * identified by their lexemes; everything else by its TokenType.
+     *
+     * @param token the Token to be classified
+     * @return the kind of the Token
+     */
+    private static int kindOf(Token token)
+    {
+        TokenType type = token.getType();
+        if (type == TokenType.identifier)
+        {
+            return IDENTIFIER;
+        }
+        if (type == TokenType.number)
+        {
+            return NUMBER;
+        }
+        if (type == TokenType.quoteExp)
+        {
+            return STRING;
+        }
+        if (type == TokenType.end)
+        {
+            return token.getLexeme().equals(".") ? PERIOD : END_OF_INPUT;
+        }
+        Integer kind = FIXED_KINDS.get(token.getLexeme());
+        return kind == null ? OTHER : kind;
+    }
+
+    /**
+     * Returns a readable name for the specified kind: the spelling of a
+     * keyword or operator, or a description of any other kind.
+     *
+     * @param kind the kind of Token
+     * @return the name of the kind
+     */
+    public static String name(int kind)
+    {
+        return NAMES[kind];
+    }
+
+    /**
+     * Returns the number of Tokens in the stream, including the closing
+     * PERIOD.
+     *
+     * @return the number of Tokens
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the kind of the Token at the specified index.
+     *
+     * @param index the index of the Token
+     * @return the kind of the Token
+     */
+    public int kind(int index)
+    {
+        return kind[index];
+    }
+
+    /**
+     * Returns the offset within the input at which the Token at the
+     * specified index starts.
+     *
+     * @param index the index of the Token
+     * @return the offset of the Token's first character
+     */
+    public int start(int index)
+    {
+        return start[index];
+    }
+
+    /**
+     * Returns the number of characters of input spanned by the Token at the
+     * specified index.
+     *
+     * @param index the index of the Token
+     * @return the length of the Token
+     */
+    public int length(int index)
+    {
+        return length[index];
+    }
+
+    /**
+     * Returns the line, counting from 1, on which the Token at the specified
+     * index starts.
+     *
+     * @param index the index of the Token
+     * @return the line of the Token
+     */
+    public int line(int index)
+    {
+        return line[index];
+    }
+
+    /**
+     * Returns the lexeme of the Token at the specified index, as the Scanner
+     * produced it.
+     *
+     * @param index the index of the Token
+     * @return the lexeme of the Token
+     */
+    public String lexeme(int index)
+    {
+        return lexeme[index];
+    }
+
+    /**
+     * Returns a String representation of the Token at the specified index,
+     * in the same form as Token.toString, followed by its line.
+     *
+     * @param index the index of the Token
+     * @return a String describing the Token
+     */
+    public String toString(int index)
+    {
+        return lexeme[index] + "\t\t" + name(kind[index]) + " (line "
+                + line[index] + ")";
+    }
+}
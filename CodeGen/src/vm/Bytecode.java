@@ -0,0 +1,163 @@
+package vm;
+
+/**
+ * The Bytecode class holds a Program that has been compiled by the
+ * BytecodeCompiler: the instruction array, the layout of every procedure's
+ * frame, and the names of the global variables.  The main Statement begins
+ * at index 0 of the code; each procedure begins at its own entry point.
+ */
+public class Bytecode
+{
+    private int[] code;
+    private int[] entryPoints;
+    private int[] frameSizes;
+    private int[][] paramSlots;
+    private int[] returnSlots;
+    private int[][] dynamicSlots;
+    private String[] globalNames;
+    private String[] messages;
+    private int maxStack;
+
+    /**
+     * Creates a new instance of the Bytecode class.
+     *
+     * @param code the instructions of the Program
+     * @param entryPoints the index at which each procedure's code begins
+     * @param frameSizes the number of local slots in each procedure's frame
+     * @param paramSlots the local slot of each parameter of each procedure
+     * @param returnSlots the local slot of each procedure's return variable
+     * @param dynamicSlots for each procedure, the local slot that shadows
+     * each global slot, or -1 if the global is not shadowed
+     * @param globalNames the name of each global slot
+     * @param messages the messages thrown by FAIL instructions
+     * @param maxStack the deepest the operand stack grows within one frame
+     */
+    public Bytecode(int[] code, int[] entryPoints, int[] frameSizes,
+            int[][] paramSlots, int[] returnSlots, int[][] dynamicSlots,
+            String[] globalNames, String[] messages, int maxStack)
+    {
+        this.code = code;
+        this.entryPoints = entryPoints;
+        this.frameSizes = frameSizes;
+        this.paramSlots = paramSlots;
+        this.returnSlots = returnSlots;
+        this.dynamicSlots = dynamicSlots;
+        this.globalNames = globalNames;
+        this.messages = messages;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * Returns the instructions of the Program.
+     *
+     * @return the instruction array
+     */
+    public int[] getCode()
+    {
+        return code;
+    }
+
+    /**
+     * Returns the index at which each procedure's code begins.
+     *
+     * @return the entry point of each procedure
+     */
+    public int[] getEntryPoints()
+    {
+        return entryPoints;
+    }
+
+    /**
+     * Returns the number of local slots in each procedure's frame.
+     *
+     * @return the frame size of each procedure
+     */
+    public int[] getFrameSizes()
+    {
+        return frameSizes;
+    }
+
+    /**
+     * Returns the local slot of each parameter of each procedure.
+     *
+     * @return the parameter slots of each procedure
+     */
+    public int[][] getParamSlots()
+    {
+        return paramSlots;
+    }
+
+    /**
+     * Returns the local slot of each procedure's return variable.
+     *
+     * @return the return slot of each procedure
+     */
+    public int[] getReturnSlots()
+    {
+        return returnSlots;
+    }
+
+    /**
+     * Returns the local slot that shadows each global slot within each procedure.
+     *
+     * @return the dynamic slot table of each procedure
+     */
+    public int[][] getDynamicSlots()
+    {
+        return dynamicSlots;
+    }
+
+    /**
+     * Returns the name of each global slot.
+     *
+     * @return the global variable names
+     */
+    public String[] getGlobalNames()
+    {
+        return globalNames;
+    }
+
+    /**
+     * Returns the messages thrown by FAIL instructions.
+     *
+     * @return the failure messages
+     */
+    public String[] getMessages()
+    {
+        return messages;
+    }
+
+    /**
+     * Returns the deepest the operand stack grows within one frame.
+     *
+     * @return the maximum operand stack depth
+     */
+    public int getMaxStack()
+    {
+        return maxStack;
+    }
+
+    /**
+     * Returns a disassembled listing of the instructions, one per line,
+     * each preceded by its index.
+     *
+     * @return a String containing the listing
+     */
+    public String toString()
+    {
+        StringBuilder listing = new StringBuilder();
+        int pc = 0;
+        while (pc < code.length)
+        {
+            int op = code[pc];
+            listing.append(pc).append('\t').append(Opcode.name(op));
+            for (int i = 1; i <= Opcode.operandCount(op); i++)
+            {
+                listing.append(' ').append(code[pc + i]);
+            }
+            listing.append('\n');
+            pc += 1 + Opcode.operandCount(op);
+        }
+        return listing.toString();
+    }
+}
@@ -0,0 +1,458 @@
+package vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import ast.*;
+import environment.Scope;
+
+/**
+ * The BytecodeCompiler class compiles a Program into the dense int
+ * instruction set defined by the Opcode class.  The Program is resolved
+ * first, so every variable is compiled as a load or store of a fixed slot;
+ * operators are chosen once at compile time rather than by comparing
+ * Strings each time an Expression is evaluated.
+ *
+ * Procedure calls are bound at compile time, since every procedure is
+ * declared before the Program's Statement executes.  A call to an undeclared
+ * procedure, or one with the wrong number of parameters, compiles to a FAIL
+ * instruction so that the error is still reported only if the call executes.
+ */
+public class BytecodeCompiler
+{
+    private int[] code;
+    private int size;
+    private int depth;
+    private int maxDepth;
+    private HashMap<String, Integer> procedureIndex;
+    private List<ProcedureDeclaration> procedures;
+    private ArrayList<String> messages;
+    private HashMap<String, Integer> globalIndex;
+
+    /**
+     * Creates a new instance of the BytecodeCompiler class.
+     */
+    public BytecodeCompiler()
+    {
+        code = new int[64];
+    }
+
+    /**
+     * Compiles the specified Program.  The Program's Statement is compiled
+     * first, followed by a HALT instruction and the body of every procedure.
+     *
+     * @param program the Program to be compiled
+     * @return the compiled Bytecode
+     */
+    public Bytecode compile(Program program)
+    {
+        Scope globals = program.resolve();
+        String[] globalNames = globals.getGlobalNames();
+        globalIndex = new HashMap<String, Integer>();
+        for (int i = 0; i < globalNames.length; i++)
+        {
+            globalIndex.put(globalNames[i], i);
+        }
+        size = 0;
+        depth = 0;
+        maxDepth = 0;
+        messages = new ArrayList<String>();
+        procedures = program.getProcedures();
+        procedureIndex = new HashMap<String, Integer>();
+        for (int i = 0; i < procedures.size(); i++)
+        {
+            procedureIndex.put(procedures.get(i).getName(), i);
+        }
+
+        int count = procedures.size();
+        int[] entryPoints = new int[count];
+        int[] frameSizes = new int[count];
+        int[][] paramSlots = new int[count][];
+        int[] returnSlots = new int[count];
+        int[][] dynamicSlots = new int[count][];
+
+        compileStatement(program.getStatement());
+        emit(Opcode.HALT);
+        for (int i = 0; i < count; i++)
+        {
+            ProcedureDeclaration dec = procedures.get(i);
+            String[] names = dec.getFrameNames();
+            entryPoints[i] = size;
+            frameSizes[i] = names.length;
+            paramSlots[i] = dec.getParamSlots();
+            returnSlots[i] = dec.getReturnSlot();
+            dynamicSlots[i] = new int[globalNames.length];
+            Arrays.fill(dynamicSlots[i], -1);
+            for (int j = 0; j < names.length; j++)
+            {
+                Integer global = globalIndex.get(names[j]);
+                if (global != null)
+                {
+                    dynamicSlots[i][global] = j;
+                }
+            }
+            compileStatement(dec.getStatement());
+            emit(Opcode.RET);
+        }
+        return new Bytecode(Arrays.copyOf(code, size), entryPoints, frameSizes,
+                paramSlots, returnSlots, dynamicSlots, globalNames,
+                messages.toArray(new String[messages.size()]), maxDepth);
+    }
+
+    /**
+     * Appends a single int to the code, growing the array if necessary.
+     *
+     * @param value the int to be appended
+     */
+    private void emit(int value)
+    {
+        if (size == code.length)
+        {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = value;
+    }
+
+    /**
+     * Appends an instruction with a single operand to the code.
+     *
+     * @param opcode the opcode of the instruction
+     * @param operand the instruction's operand
+     */
+    private void emit(int opcode, int operand)
+    {
+        emit(opcode);
+        emit(operand);
+    }
+
+    /**
+     * Records a change in the depth of the operand stack.
+     *
+     * @param change the number of values pushed (or popped, if negative)
+     */
+    private void adjustDepth(int change)
+    {
+        depth += change;
+        if (depth > maxDepth)
+        {
+            maxDepth = depth;
+        }
+    }
+
+    /**
+     * Appends a FAIL instruction that throws the specified message.
+     *
+     * @param message the message of the IllegalArgumentException
+     */
+    private void emitFail(String message)
+    {
+        emit(Opcode.FAIL, messages.size());
+        messages.add(message);
+    }
+
+    /**
+     * Compiles the specified Statement.
+     *
+     * @param s the Statement to be compiled
+     */
+    private void compileStatement(Statement s)
+    {
+        if (s instanceof Block)
+        {
+            for (Statement child : ((Block) s).getStatements())
+            {
+                compileStatement(child);
+            }
+        }
+        else if (s instanceof Assignment)
+        {
+            Assignment a = (Assignment) s;
+            if (!compileIncrement(a))
+            {
+                compileExpression(a.getExpression());
+                compileStore(a.getDepth(), a.getSlot(), a.getVariable());
+            }
+        }
+        else if (s instanceof Writeln)
+        {
+            compileExpression(((Writeln) s).getExpression());
+            emit(Opcode.PRINT);
+            adjustDepth(-1);
+        }
+        else if (s instanceof If)
+        {
+            If i = (If) s;
+            int patch = compileCondition(i.getCondition());
+            compileStatement(i.getStatement());
+            code[patch] = size;
+        }
+        else if (s instanceof While)
+        {
+            While w = (While) s;
+            int top = size;
+            int patch = compileCondition(w.getCondition());
+            compileStatement(w.getStatement());
+            emit(Opcode.GOTO, top);
+            code[patch] = size;
+        }
+        else
+        {
+            throw new IllegalArgumentException("Cannot compile " + s);
+        }
+    }
+
+    /**
+     * Compiles a store of the value on top of the stack into the specified
+     * variable.  Dynamically scoped variables are addressed by their global
+     * slot, which every such variable is given during resolution.
+     *
+     * @param scopeDepth the depth to which the variable was resolved
+     * @param slot the slot to which the variable was resolved
+     * @param name the name of the variable
+     */
+    private void compileStore(int scopeDepth, int slot, String name)
+    {
+        if (scopeDepth == Scope.LOCAL)
+        {
+            emit(Opcode.STORE_LOCAL, slot);
+        }
+        else if (scopeDepth == Scope.GLOBAL)
+        {
+            emit(Opcode.STORE_GLOBAL, slot);
+        }
+        else
+        {
+            emit(Opcode.STORE_DYNAMIC, globalIndex.get(name));
+        }
+        adjustDepth(-1);
+    }
+
+    /**
+     * Compiles an Assignment of the form x := x + k or x := x - k, where k is
+     * a Number and x is a local or global variable, as a single INC
+     * instruction.
+     *
+     * @param a the Assignment to be compiled
+     * @return true if the Assignment was compiled, or false if it does not
+     * have the required form
+     */
+    private boolean compileIncrement(Assignment a)
+    {
+        if (a.getDepth() != Scope.LOCAL && a.getDepth() != Scope.GLOBAL)
+        {
+            return false;
+        }
+        if (!(a.getExpression() instanceof BinOp))
+        {
+            return false;
+        }
+        BinOp b = (BinOp) a.getExpression();
+        String op = b.getOperator();
+        if (!(b.getLeft() instanceof Variable) 
+                || !(b.getRight() instanceof ast.Number)
+                || !(op.equals("+") || op.equals("-")))
+        {
+            return false;
+        }
+        Variable v = (Variable) b.getLeft();
+        if (v.getDepth() != a.getDepth() || v.getSlot() != a.getSlot())
+        {
+            return false;
+        }
+        int k = ((ast.Number) b.getRight()).getValue();
+        if (op.equals("-"))
+        {
+            k = -k;
+        }
+        if (a.getDepth() == Scope.LOCAL)
+        {
+            emit(Opcode.INC_LOCAL, a.getSlot());
+        }
+        else
+        {
+            emit(Opcode.INC_GLOBAL, a.getSlot());
+        }
+        emit(k);
+        return true;
+    }
+
+    /**
+     * Compiles the specified Condition as a branch that is taken when the
+     * Condition is false.
+     *
+     * @param c the Condition to be compiled
+     * @return the index of the branch target, which must be patched once the
+     * target is known
+     */
+    private int compileCondition(Condition c)
+    {
+        compileExpression(c.getLeft());
+        boolean constant = c.getRight() instanceof ast.Number;
+        if (!constant)
+        {
+            compileExpression(c.getRight());
+            adjustDepth(-1);
+        }
+        adjustDepth(-1);
+        String op = c.getOperator();
+        int opcode;
+        if (op.equals("<>"))
+        {
+            opcode = Opcode.IF_EQ;
+        }
+        else if (op.equals("<"))
+        {
+            opcode = Opcode.IF_GE;
+        }
+        else if (op.equals("<="))
+        {
+            opcode = Opcode.IF_GT;
+        }
+        else if (op.equals(">"))
+        {
+            opcode = Opcode.IF_LE;
+        }
+        else if (op.equals(">="))
+        {
+            opcode = Opcode.IF_LT;
+        }
+        else if (op.equals("="))
+        {
+            opcode = Opcode.IF_NE;
+        }
+        else
+        {
+            emit(Opcode.POP);
+            if (!constant)
+            {
+                emit(Opcode.POP);
+            }
+            emit(Opcode.GOTO, 0);
+            return size - 1;
+        }
+        if (constant)
+        {
+            emit(opcode + Opcode.IF_EQ_CONST - Opcode.IF_EQ,
+                    ((ast.Number) c.getRight()).getValue());
+        }
+        else
+        {
+            emit(opcode);
+        }
+        emit(0);
+        return size - 1;
+    }
+
+    /**
+     * Compiles the specified Expression so that its value is left on top of
+     * the operand stack.
+     *
+     * @param exp the Expression to be compiled
+     */
+    private void compileExpression(Expression exp)
+    {
+        if (exp instanceof ast.Number)
+        {
+            emit(Opcode.CONST, ((ast.Number) exp).getValue());
+            adjustDepth(1);
+        }
+        else if (exp instanceof Variable)
+        {
+            Variable v = (Variable) exp;
+            if (v.getDepth() == Scope.LOCAL)
+            {
+                emit(Opcode.LOAD_LOCAL, v.getSlot());
+            }
+            else if (v.getDepth() == Scope.GLOBAL)
+            {
+                emit(Opcode.LOAD_GLOBAL, v.getSlot());
+            }
+            else
+            {
+                emit(Opcode.LOAD_DYNAMIC, globalIndex.get(v.getName()));
+            }
+            adjustDepth(1);
+        }
+        else if (exp instanceof BinOp)
+        {
+            BinOp b = (BinOp) exp;
+            compileExpression(b.getLeft());
+            String op = b.getOperator();
+            int opcode;
+            if (op.equals("+"))
+            {
+                opcode = Opcode.ADD;
+            }
+            else if (op.equals("-"))
+            {
+                opcode = Opcode.SUB;
+            }
+            else if (op.equals("*"))
+            {
+                opcode = Opcode.MUL;
+            }
+            else if (op.equals("/"))
+            {
+                opcode = Opcode.DIV;
+            }
+            else
+            {
+                opcode = Opcode.MOD;
+            }
+            if (b.getRight() instanceof ast.Number)
+            {
+                emit(opcode + Opcode.ADD_CONST - Opcode.ADD,
+                        ((ast.Number) b.getRight()).getValue());
+            }
+            else
+            {
+                compileExpression(b.getRight());
+                emit(opcode);
+                adjustDepth(-1);
+            }
+        }
+        else if (exp instanceof ProcedureCall)
+        {
+            compileCall((ProcedureCall) exp);
+        }
+        else
+        {
+            throw new IllegalArgumentException("Cannot compile " + exp);
+        }
+    }
+
+    /**
+     * Compiles the specified ProcedureCall.  The parameters are pushed in
+     * order and the CALL instruction replaces them with the return value.
+     *
+     * @param call the ProcedureCall to be compiled
+     */
+    private void compileCall(ProcedureCall call)
+    {
+        Integer index = procedureIndex.get(call.getName());
+        List<Expression> params = call.getParams();
+        if (index == null)
+        {
+            emitFail("Procedure " + call.getName() + "has not been declared.");
+            emit(Opcode.CONST, 0);
+            adjustDepth(1);
+            return;
+        }
+        if (procedures.get(index).getParams().size() != params.size())
+        {
+            emitFail("Invalid Number of parameters" + "when calling Method "
+                    + call.getName());
+            emit(Opcode.CONST, 0);
+            adjustDepth(1);
+            return;
+        }
+        for (Expression param : params)
+        {
+            compileExpression(param);
+        }
+        emit(Opcode.CALL, index);
+        adjustDepth(1 - params.size());
+    }
+}
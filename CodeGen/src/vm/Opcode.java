@@ -0,0 +1,121 @@
+package vm;
+
+/**
+ * The Opcode class defines the instruction set of the VirtualMachine.  Every
+ * instruction is encoded within an int array as its opcode followed by zero,
+ * one, or two int operands.  The operand stack holds ints; comparisons are
+ * fused with branches so that a Condition compiles to a single instruction,
+ * and the most common pairs of instructions (an operator or comparison with
+ * a constant right side, and adding a constant to a variable) have fused
+ * forms so that loops dispatch as few instructions as possible.
+ */
+public final class Opcode
+{
+    /** pushes the operand */
+    public static final int CONST = 0;
+    /** pushes the value of the local slot given by the operand */
+    public static final int LOAD_LOCAL = 1;
+    /** pops a value into the local slot given by the operand */
+    public static final int STORE_LOCAL = 2;
+    /** pushes the value of the global slot given by the operand */
+    public static final int LOAD_GLOBAL = 3;
+    /** pops a value into the global slot given by the operand */
+    public static final int STORE_GLOBAL = 4;
+    /** pushes the value of the dynamically scoped variable whose global
+     *  slot is given by the operand */
+    public static final int LOAD_DYNAMIC = 5;
+    /** pops a value into the dynamically scoped variable whose global slot
+     *  is given by the operand */
+    public static final int STORE_DYNAMIC = 6;
+    public static final int ADD = 7;
+    public static final int SUB = 8;
+    public static final int MUL = 9;
+    public static final int DIV = 10;
+    public static final int MOD = 11;
+    /** pops two values and jumps to the operand if they are equal */
+    public static final int IF_EQ = 12;
+    public static final int IF_NE = 13;
+    public static final int IF_LT = 14;
+    public static final int IF_LE = 15;
+    public static final int IF_GT = 16;
+    public static final int IF_GE = 17;
+    /** jumps to the operand */
+    public static final int GOTO = 18;
+    /** calls the procedure whose index is given by the operand */
+    public static final int CALL = 19;
+    /** returns the value of the current procedure's return variable */
+    public static final int RET = 20;
+    /** pops a value and prints it on its own line */
+    public static final int PRINT = 21;
+    /** discards the value on top of the stack */
+    public static final int POP = 22;
+    /** throws an IllegalArgumentException with the message whose index is
+     *  given by the operand */
+    public static final int FAIL = 23;
+    /** stops execution */
+    public static final int HALT = 24;
+    /** replaces the value on top of the stack with the result of combining
+     *  it with the operand; these fuse a CONST with the operator that
+     *  follows it */
+    public static final int ADD_CONST = 25;
+    public static final int SUB_CONST = 26;
+    public static final int MUL_CONST = 27;
+    public static final int DIV_CONST = 28;
+    public static final int MOD_CONST = 29;
+    /** pops a value and jumps to the second operand if it is equal to the
+     *  first operand; these fuse a CONST with the branch that follows it */
+    public static final int IF_EQ_CONST = 30;
+    public static final int IF_NE_CONST = 31;
+    public static final int IF_LT_CONST = 32;
+    public static final int IF_LE_CONST = 33;
+    public static final int IF_GT_CONST = 34;
+    public static final int IF_GE_CONST = 35;
+    /** adds the second operand to the local slot given by the first */
+    public static final int INC_LOCAL = 36;
+    /** adds the second operand to the global slot given by the first */
+    public static final int INC_GLOBAL = 37;
+
+    private static final String[] NAMES = {"const", "load_local",
+        "store_local", "load_global", "store_global", "load_dynamic",
+        "store_dynamic", "add", "sub", "mul", "div", "mod", "if_eq", "if_ne",
+        "if_lt", "if_le", "if_gt", "if_ge", "goto", "call", "ret", "print",
+        "pop", "fail", "halt", "add_const", "sub_const", "mul_const",
+        "div_const", "mod_const", "if_eq_const", "if_ne_const", "if_lt_const",
+        "if_le_const", "if_gt_const", "if_ge_const", "inc_local",
+        "inc_global"};
+
+    private Opcode()
+    {
+    }
+
+    /**
+     * Returns the number of operands that follow the specified opcode.
+     *
+     * @param opcode the opcode
+     * @return 0, 1, or 2
+     */
+    public static int operandCount(int opcode)
+    {
+        if (opcode >= IF_EQ_CONST)
+        {
+            return 2;
+        }
+        if (opcode <= STORE_DYNAMIC || (opcode >= IF_EQ && opcode <= CALL)
+                || opcode == FAIL || opcode >= ADD_CONST)
+        {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the mnemonic of the specified opcode.
+     *
+     * @param opcode the opcode
+     * @return the opcode's name
+     */
+    public static String name(int opcode)
+    {
+        return NAMES[opcode];
+    }
+}
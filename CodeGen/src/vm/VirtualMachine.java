@@ -0,0 +1,384 @@
+package vm;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * The VirtualMachine class executes Bytecode produced by the
+ * BytecodeCompiler.  Execution is a single loop that dispatches on the
+ * current opcode with a switch statement.  The value on top of the operand
+ * stack is cached within a local variable, so most instructions touch
+ * memory only for the variable they load or store.  The operand stack, the local
+ * variables of every active procedure, and the saved state of every caller
+ * are each stored within a single int array that grows as needed.  Because
+ * procedure calls never recurse on the Java stack, the depth of recursion is
+ * limited only by memory.
+ *
+ * The VirtualMachine produces the same output and throws the same
+ * exceptions as executing the Program's AST directly.
+ */
+public class VirtualMachine
+{
+    private PrintStream out;
+
+    /**
+     * Creates a new instance of the VirtualMachine class that prints to
+     * stdout.
+     */
+    public VirtualMachine()
+    {
+        this(System.out);
+    }
+
+    /**
+     * Creates a new instance of the VirtualMachine class that prints to the
+     * specified stream.
+     *
+     * @param out the stream to which WRITELN output is printed
+     */
+    public VirtualMachine(PrintStream out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Executes the specified Bytecode until it halts.
+     *
+     * @param program the Bytecode to be executed
+     */
+    public void run(Bytecode program)
+    {
+        int[] code = program.getCode();
+        int[] entryPoints = program.getEntryPoints();
+        int[] frameSizes = program.getFrameSizes();
+        int[][] paramSlots = program.getParamSlots();
+        int[] returnSlots = program.getReturnSlots();
+        int maxStack = program.getMaxStack() + 1;
+
+        int[] globals = new int[program.getGlobalNames().length];
+        boolean[] assigned = new boolean[globals.length];
+        int[] stack = new int[Math.max(64, maxStack * 2)];
+        int[] locals = new int[64];
+        int[] calls = new int[48];
+        int tos = 0;
+        int sp = 0;
+        int fp = 0;
+        int top = 0;
+        int csp = 0;
+        int procedure = -1;
+        int pc = 0;
+        int left;
+        int right;
+
+        while (true)
+        {
+            switch (code[pc])
+            {
+                case Opcode.CONST:
+                    stack[sp++] = tos;
+                    tos = code[pc + 1];
+                    pc += 2;
+                    break;
+                case Opcode.LOAD_LOCAL:
+                    stack[sp++] = tos;
+                    tos = locals[fp + code[pc + 1]];
+                    pc += 2;
+                    break;
+                case Opcode.STORE_LOCAL:
+                    locals[fp + code[pc + 1]] = tos;
+                    tos = stack[--sp];
+                    pc += 2;
+                    break;
+                case Opcode.LOAD_GLOBAL:
+                    right = code[pc + 1];
+                    if (!assigned[right])
+                    {
+                        throw uninitialized(program, right);
+                    }
+                    stack[sp++] = tos;
+                    tos = globals[right];
+                    pc += 2;
+                    break;
+                case Opcode.STORE_GLOBAL:
+                    right = code[pc + 1];
+                    globals[right] = tos;
+                    assigned[right] = true;
+                    tos = stack[--sp];
+                    pc += 2;
+                    break;
+                case Opcode.LOAD_DYNAMIC:
+                    right = code[pc + 1];
+                    left = findDynamic(program, right, procedure, fp, calls, csp);
+                    stack[sp++] = tos;
+                    if (left >= 0)
+                    {
+                        tos = locals[left];
+                    }
+                    else if (!assigned[right])
+                    {
+                        throw uninitialized(program, right);
+                    }
+                    else
+                    {
+                        tos = globals[right];
+                    }
+                    pc += 2;
+                    break;
+                case Opcode.STORE_DYNAMIC:
+                    right = code[pc + 1];
+                    left = findDynamic(program, right, procedure, fp, calls, csp);
+                    if (left >= 0)
+                    {
+                        locals[left] = tos;
+                    }
+                    else
+                    {
+                        globals[right] = tos;
+                        assigned[right] = true;
+                    }
+                    tos = stack[--sp];
+                    pc += 2;
+                    break;
+                case Opcode.ADD:
+                    tos = stack[--sp] + tos;
+                    pc++;
+                    break;
+                case Opcode.SUB:
+                    tos = stack[--sp] - tos;
+                    pc++;
+                    break;
+                case Opcode.MUL:
+                    tos = stack[--sp] * tos;
+                    pc++;
+                    break;
+                case Opcode.DIV:
+                    if (tos == 0)
+                    {
+                        throw new ArithmeticException("ERROR: DIVIDE BY ZERO");
+                    }
+                    tos = stack[--sp] / tos;
+                    pc++;
+                    break;
+                case Opcode.MOD:
+                    tos = stack[--sp] % tos;
+                    pc++;
+                    break;
+                case Opcode.ADD_CONST:
+                    tos += code[pc + 1];
+                    pc += 2;
+                    break;
+                case Opcode.SUB_CONST:
+                    tos -= code[pc + 1];
+                    pc += 2;
+                    break;
+                case Opcode.MUL_CONST:
+                    tos *= code[pc + 1];
+                    pc += 2;
+                    break;
+                case Opcode.DIV_CONST:
+                    if (code[pc + 1] == 0)
+                    {
+                        throw new ArithmeticException("ERROR: DIVIDE BY ZERO");
+                    }
+                    tos /= code[pc + 1];
+                    pc += 2;
+                    break;
+                case Opcode.MOD_CONST:
+                    tos %= code[pc + 1];
+                    pc += 2;
+                    break;
+                case Opcode.IF_EQ:
+                    left = stack[--sp];
+                    right = tos;
+                    tos = stack[--sp];
+                    pc = left == right ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.IF_NE:
+                    left = stack[--sp];
+                    right = tos;
+                    tos = stack[--sp];
+                    pc = left != right ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.IF_LT:
+                    left = stack[--sp];
+                    right = tos;
+                    tos = stack[--sp];
+                    pc = left < right ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.IF_LE:
+                    left = stack[--sp];
+                    right = tos;
+                    tos = stack[--sp];
+                    pc = left <= right ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.IF_GT:
+                    left = stack[--sp];
+                    right = tos;
+                    tos = stack[--sp];
+                    pc = left > right ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.IF_GE:
+                    left = stack[--sp];
+                    right = tos;
+                    tos = stack[--sp];
+                    pc = left >= right ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.IF_EQ_CONST:
+                    left = tos;
+                    tos = stack[--sp];
+                    pc = left == code[pc + 1] ? code[pc + 2] : pc + 3;
+                    break;
+                case Opcode.IF_NE_CONST:
+                    left = tos;
+                    tos = stack[--sp];
+                    pc = left != code[pc + 1] ? code[pc + 2] : pc + 3;
+                    break;
+                case Opcode.IF_LT_CONST:
+                    left = tos;
+                    tos = stack[--sp];
+                    pc = left < code[pc + 1] ? code[pc + 2] : pc + 3;
+                    break;
+                case Opcode.IF_LE_CONST:
+                    left = tos;
+                    tos = stack[--sp];
+                    pc = left <= code[pc + 1] ? code[pc + 2] : pc + 3;
+                    break;
+                case Opcode.IF_GT_CONST:
+                    left = tos;
+                    tos = stack[--sp];
+                    pc = left > code[pc + 1] ? code[pc + 2] : pc + 3;
+                    break;
+                case Opcode.IF_GE_CONST:
+                    left = tos;
+                    tos = stack[--sp];
+                    pc = left >= code[pc + 1] ? code[pc + 2] : pc + 3;
+                    break;
+                case Opcode.INC_LOCAL:
+                    locals[fp + code[pc + 1]] += code[pc + 2];
+                    pc += 3;
+                    break;
+                case Opcode.INC_GLOBAL:
+                    right = code[pc + 1];
+                    if (!assigned[right])
+                    {
+                        throw uninitialized(program, right);
+                    }
+                    globals[right] += code[pc + 2];
+                    pc += 3;
+                    break;
+                case Opcode.GOTO:
+                    pc = code[pc + 1];
+                    break;
+                case Opcode.CALL:
+                    left = code[pc + 1];
+                    int[] slots = paramSlots[left];
+                    if (top + frameSizes[left] > locals.length)
+                    {
+                        locals = Arrays.copyOf(locals,
+                                Math.max(locals.length * 2, top + frameSizes[left]));
+                    }
+                    if (sp + maxStack > stack.length)
+                    {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    if (csp + 4 > calls.length)
+                    {
+                        calls = Arrays.copyOf(calls, calls.length * 2);
+                    }
+                    if (slots.length > 0)
+                    {
+                        int last = slots.length - 1;
+                        sp -= slots.length;
+                        for (int i = 0; i < last; i++)
+                        {
+                            locals[top + slots[i]] = stack[sp + i + 1];
+                        }
+                        locals[top + slots[last]] = tos;
+                        tos = stack[sp];
+                    }
+                    locals[top + returnSlots[left]] = 0;
+                    calls[csp++] = pc + 2;
+                    calls[csp++] = fp;
+                    calls[csp++] = procedure;
+                    fp = top;
+                    top += frameSizes[left];
+                    procedure = left;
+                    pc = entryPoints[left];
+                    break;
+                case Opcode.RET:
+                    stack[sp++] = tos;
+                    tos = locals[fp + returnSlots[procedure]];
+                    top = fp;
+                    procedure = calls[--csp];
+                    fp = calls[--csp];
+                    pc = calls[--csp];
+                    break;
+                case Opcode.PRINT:
+                    out.println(tos);
+                    tos = stack[--sp];
+                    pc++;
+                    break;
+                case Opcode.POP:
+                    tos = stack[--sp];
+                    pc++;
+                    break;
+                case Opcode.FAIL:
+                    throw new IllegalArgumentException(
+                            program.getMessages()[code[pc + 1]]);
+                case Opcode.HALT:
+                    return;
+                default:
+                    throw new IllegalStateException("Invalid opcode " + code[pc]
+                            + " at " + pc);
+            }
+        }
+    }
+
+    /**
+     * Finds the innermost active procedure frame that stores a local
+     * variable with the same name as the specified global slot, searching
+     * from the current procedure back through each of its callers.
+     *
+     * @param program the Bytecode being executed
+     * @param global the global slot of the variable
+     * @param procedure the index of the current procedure, or -1 if the main
+     * Statement is executing
+     * @param fp the frame pointer of the current procedure
+     * @param calls the stack of saved caller states
+     * @param csp the height of the stack of saved caller states
+     * @return the index of the variable within the locals array, or -1 if
+     * the variable is global
+     */
+    private static int findDynamic(Bytecode program, int global, int procedure,
+            int fp, int[] calls, int csp)
+    {
+        int[][] dynamicSlots = program.getDynamicSlots();
+        while (procedure >= 0)
+        {
+            int slot = dynamicSlots[procedure][global];
+            if (slot >= 0)
+            {
+                return fp + slot;
+            }
+            procedure = calls[csp - 1];
+            fp = calls[csp - 2];
+            csp -= 3;
+        }
+        return -1;
+    }
+
+    /**
+     * Creates the exception thrown when a global variable is read before it
+     * has been assigned.
+     *
+     * @param program the Bytecode being executed
+     * @param global the global slot of the variable
+     * @return the exception to be thrown
+     */
+    private static IllegalArgumentException uninitialized(Bytecode program,
+            int global)
+    {
+        return new IllegalArgumentException("Variable "
+                + program.getGlobalNames()[global] + " has not been initialized.");
+    }
+}
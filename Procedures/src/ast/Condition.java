@@ -8,12 +8,25 @@ import environment.Environment;
  * between its two Expressions.  The type of logical comparison is dependent
  * on the String.
  * 
+ * As with a BinOp, the String is replaced by an integer code when the
+ * Condition is created, and the create method returns a subclass specialized
+ * to a single comparison, such as LessThanNode.
+ * 
  * @author hkunda
  * @date March 18, 2015
  */
 public class Condition extends Expression
 {
+    public static final int UNKNOWN = -1;
+    public static final int NOT_EQUAL = 0;
+    public static final int LESS = 1;
+    public static final int LESS_EQUAL = 2;
+    public static final int GREATER = 3;
+    public static final int GREATER_EQUAL = 4;
+    public static final int EQUAL = 5;
+
     private String logicOp;
+    private int code;
     private Expression left;
     private Expression right;
     
@@ -27,10 +40,80 @@ public class Condition extends Expression
     public Condition(String logicOp, Expression left, Expression right)
     {
         this.logicOp = logicOp;
+        code = codeOf(logicOp);
         this.left = left;
         this.right = right;
     }
     
+    /**
+     * Creates a Condition with the specified logic operator and left and
+     * right expressions, as an instance of the subclass that makes only that
+     * comparison.  A Condition with an unknown operator, which never holds,
+     * is not specialized.
+     * 
+     * @param logicOp the logic operator
+     * @param left the expression preceding the logic operator
+     * @param right the expression following the logic operator
+     * @return the specialized Condition
+     */
+    public static Condition create(String logicOp, Expression left,
+            Expression right)
+    {
+        switch (codeOf(logicOp))
+        {
+            case NOT_EQUAL:
+                return new NotEqualNode(logicOp, left, right);
+            case LESS:
+                return new LessThanNode(logicOp, left, right);
+            case LESS_EQUAL:
+                return new LessEqualNode(logicOp, left, right);
+            case GREATER:
+                return new GreaterThanNode(logicOp, left, right);
+            case GREATER_EQUAL:
+                return new GreaterEqualNode(logicOp, left, right);
+            case EQUAL:
+                return new EqualNode(logicOp, left, right);
+            default:
+                return new Condition(logicOp, left, right);
+        }
+    }
+    
+    /**
+     * Returns the code of the specified logic operator.
+     * 
+     * @param logicOp the logic operator
+     * @return NOT_EQUAL, LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, or EQUAL,
+     *         or UNKNOWN if the String is not a logic operator
+     */
+    public static int codeOf(String logicOp)
+    {
+        if (logicOp.equals("<>"))
+        {
+            return NOT_EQUAL;
+        }
+        if (logicOp.equals("<"))
+        {
+            return LESS;
+        }
+        if (logicOp.equals("<="))
+        {
+            return LESS_EQUAL;
+        }
+        if (logicOp.equals(">"))
+        {
+            return GREATER;
+        }
+        if (logicOp.equals(">="))
+        {
+            return GREATER_EQUAL;
+        }
+        if (logicOp.equals("="))
+        {
+            return EQUAL;
+        }
+        return UNKNOWN;
+    }
+    
     /**
      * Evaluates the Condition by returning either 0 or 1 depending on 
      * how the left and right Expressions compare to one another. This
@@ -48,61 +131,222 @@ public class Condition extends Expression
     {
         int leftExp = left.eval(env);
         int rightExp = right.eval(env);
-        int cond = 0;
-        if (logicOp.equals("<>"))
+        boolean holds;
+        switch (code)
         {
-            if (rightExp != leftExp)
-            {
-                cond = 1;
-            }
+            case NOT_EQUAL:
+                holds = leftExp != rightExp;
+                break;
+            case LESS:
+                holds = leftExp < rightExp;
+                break;
+            case LESS_EQUAL:
+                holds = leftExp <= rightExp;
+                break;
+            case GREATER:
+                holds = leftExp > rightExp;
+                break;
+            case GREATER_EQUAL:
+                holds = leftExp >= rightExp;
+                break;
+            case EQUAL:
+                holds = leftExp == rightExp;
+                break;
+            default:
+                holds = false;
+                break;
         }
-        if (logicOp.equals("<"))
+        return holds ? 1 : 0;
+    }
+    
+    /**
+     * Returns a String representation of the Condition object.
+     * 
+     * @param a String containing the left side of the Condition, the logic 
+     * operation, and the right side of the Condition, in sequential order.
+     */
+    public String toString()
+    {
+        return left + " " +  logicOp + " " + right;
+    }
+    
+    /**
+     * The NotEqualNode class is a Condition that holds if its two
+     * Expressions are not equal.
+     */
+    private static final class NotEqualNode extends Condition
+    {
+        /**
+         * Creates a new instance of the NotEqualNode class.
+         * 
+         * @param logicOp the logic operator, "<>"
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        NotEqualNode(String logicOp, Expression left, Expression right)
         {
-            if (leftExp < rightExp)
-            {
-                cond = 1;
-            }
+            super(logicOp, left, right);
         }
-        if (logicOp.equals("<="))
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
         {
-            if (leftExp <= rightExp)
-            {
-                cond = 1;
-            }
+            return super.left.eval(env) != super.right.eval(env) ? 1 : 0;
         }
-        if (logicOp.equals(">"))
+    }
+    
+    /**
+     * The LessThanNode class is a Condition that holds if its left
+     * Expression is less than its right Expression.
+     */
+    private static final class LessThanNode extends Condition
+    {
+        /**
+         * Creates a new instance of the LessThanNode class.
+         * 
+         * @param logicOp the logic operator, "<"
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        LessThanNode(String logicOp, Expression left, Expression right)
         {
-            if (leftExp > rightExp)
-            {
-                cond = 1;
-            }
+            super(logicOp, left, right);
         }
-        if (logicOp.equals(">="))
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
         {
-            if (leftExp >= rightExp)
-            {
-                cond = 1;
-            }
+            return super.left.eval(env) < super.right.eval(env) ? 1 : 0;
         }
-        if (logicOp.equals("="))
+    }
+    
+    /**
+     * The LessEqualNode class is a Condition that holds if its left
+     * Expression is at most its right Expression.
+     */
+    private static final class LessEqualNode extends Condition
+    {
+        /**
+         * Creates a new instance of the LessEqualNode class.
+         * 
+         * @param logicOp the logic operator, "<="
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        LessEqualNode(String logicOp, Expression left, Expression right)
+        {
+            super(logicOp, left, right);
+        }
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
         {
-            if (leftExp == rightExp)
-            {
-                cond = 1;
-            }
+            return super.left.eval(env) <= super.right.eval(env) ? 1 : 0;
         }
-        return cond;
     }
     
     /**
-     * Returns a String representation of the Condition object.
-     * 
-     * @param a String containing the left side of the Condition, the logic 
-     * operation, and the right side of the Condition, in sequential order.
+     * The GreaterThanNode class is a Condition that holds if its left
+     * Expression is greater than its right Expression.
      */
-    public String toString()
+    private static final class GreaterThanNode extends Condition
     {
-        return left + " " +  logicOp + " " + right;
+        /**
+         * Creates a new instance of the GreaterThanNode class.
+         * 
+         * @param logicOp the logic operator, ">"
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        GreaterThanNode(String logicOp, Expression left, Expression right)
+        {
+            super(logicOp, left, right);
+        }
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) > super.right.eval(env) ? 1 : 0;
+        }
+    }
+    
+    /**
+     * The GreaterEqualNode class is a Condition that holds if its left
+     * Expression is at least its right Expression.
+     */
+    private static final class GreaterEqualNode extends Condition
+    {
+        /**
+         * Creates a new instance of the GreaterEqualNode class.
+         * 
+         * @param logicOp the logic operator, ">="
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        GreaterEqualNode(String logicOp, Expression left, Expression right)
+        {
+            super(logicOp, left, right);
+        }
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) >= super.right.eval(env) ? 1 : 0;
+        }
+    }
+    
+    /**
+     * The EqualNode class is a Condition that holds if its two
+     * Expressions are equal.
+     */
+    private static final class EqualNode extends Condition
+    {
+        /**
+         * Creates a new instance of the EqualNode class.
+         * 
+         * @param logicOp the logic operator, "="
+         * @param left the expression preceding the logic operator
+         * @param right the expression following the logic operator
+         */
+        EqualNode(String logicOp, Expression left, Expression right)
+        {
+            super(logicOp, left, right);
+        }
+        
+        /**
+         * Evaluates both Expressions and compares them.
+         * 
+         * @param env the Environment object that stores known variables
+         * @return 1 if the Condition holds; otherwise, 0
+         */
+        public int eval(Environment env)
+        {
+            return super.left.eval(env) == super.right.eval(env) ? 1 : 0;
+        }
     }
 }
-
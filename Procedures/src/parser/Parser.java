@@ -257,7 +257,7 @@ public class Parser
             String logicOp = currentToken.getLexeme();
             eat(currentToken);
             Expression right = parseExpr();
-            Condition condition = new Condition(logicOp, left, right);
+            Condition condition = Condition.create(logicOp, left, right);
             eat(new Token("THEN", TokenType.keyword));
             Statement statement = parseStatement();
             return new If(condition, statement);
@@ -269,7 +269,7 @@ public class Parser
             String logicOp = currentToken.getLexeme();
             eat(currentToken);
             Expression right = parseExpr();
-            Condition condition = new Condition(logicOp, left, right);
+            Condition condition = Condition.create(logicOp, left, right);
             eat(new Token("DO", TokenType.keyword));
             Statement statement = parseStatement();
             return new While(condition, statement);
@@ -350,7 +350,7 @@ public class Parser
         {
             eat(new Token("-", TokenType.mathOperand));
             Number zero = new Number(0);
-            BinOp op = new BinOp("-", zero, parseFactor());
+            BinOp op = BinOp.create("-", zero, parseFactor());
             return op;
         }
         else if (currentToken.getLexeme().equals("("))
@@ -422,7 +422,7 @@ public class Parser
         while (op.equals("*") || op.equals("/") || op.equals("%"))
         {
             eat(currentToken);
-            exp = new BinOp(op, exp, parseFactor());
+            exp = BinOp.create(op, exp, parseFactor());
             op = currentToken.getLexeme();
         }
         return exp;
@@ -454,7 +454,7 @@ public class Parser
         while (op.equals("+") || op.equals("-"))
         {
             eat(currentToken);
-            exp = new BinOp(op, exp, parseTerm());
+            exp = BinOp.create(op, exp, parseTerm());
             op = currentToken.getLexeme();
         }
         return exp;